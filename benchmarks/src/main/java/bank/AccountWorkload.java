@@ -0,0 +1,81 @@
+package bank;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+// Base state shared by the benchmarks: the account count, the key distribution,
+// the order accounts are created in and a precomputed sequence of accounts to access.
+@State(Scope.Benchmark)
+public abstract class AccountWorkload {
+    private static final int ACCESS_SEQUENCE_BITS = 20;
+    private static final int ACCESS_SEQUENCE_MASK = (1 << ACCESS_SEQUENCE_BITS) - 1;
+    private static final double HOT_FRACTION = 0.01; // Share of accounts that are hot
+    private static final double HOT_TRAFFIC = 0.90;  // Share of accesses that hit a hot account
+
+    @Param({ "1000", "100000", "10000000" })
+    public int accounts;
+
+    // SORTED: created and accessed in ascending order
+    // RANDOM: created in random order and accessed uniformly
+    // SKEWED: created in random order, 90% of accesses go to 1% of the accounts
+    @Param({ "SORTED", "RANDOM", "SKEWED" })
+    public String distribution;
+
+    protected int[] creationOrder;
+    private int[] accessSequence;
+    private int cursor;
+    private int nextFreshAccount;
+
+    // Method to build the creation order and access sequence for the current parameters
+    protected void prepareWorkload() {
+        Random random = new Random(42);
+        creationOrder = new int[accounts];
+        for (int i = 0; i < accounts; i++) {
+            creationOrder[i] = i;
+        }
+        if (!distribution.equals("SORTED")) {
+            for (int i = accounts - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = creationOrder[i];
+                creationOrder[i] = creationOrder[j];
+                creationOrder[j] = swap;
+            }
+        }
+
+        accessSequence = new int[1 << ACCESS_SEQUENCE_BITS];
+        int hotAccounts = Math.max(1, (int) (accounts * HOT_FRACTION));
+        for (int i = 0; i < accessSequence.length; i++) {
+            switch (distribution) {
+                case "SORTED":
+                    accessSequence[i] = i % accounts;
+                    break;
+                case "SKEWED":
+                    accessSequence[i] = (random.nextDouble() < HOT_TRAFFIC)
+                            ? creationOrder[random.nextInt(hotAccounts)]
+                            : random.nextInt(accounts);
+                    break;
+                default:
+                    accessSequence[i] = random.nextInt(accounts);
+            }
+        }
+        cursor = 0;
+        nextFreshAccount = accounts;
+    }
+
+    // Method to get the next existing account to access
+    protected int nextAccount() {
+        return accessSequence[cursor++ & ACCESS_SEQUENCE_MASK];
+    }
+
+    // Method to get an account number that has never been created
+    protected int freshAccount() {
+        return nextFreshAccount++;
+    }
+
+    protected static String nameOf(int accountNumber) {
+        return "Customer " + accountNumber;
+    }
+}
@@ -0,0 +1,62 @@
+package bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmarks for the end-to-end Bank operations (locking, index lookups and journaling)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+public class BankOperationsBenchmark extends AccountWorkload {
+    private Bank bank;
+
+    // A fresh bank per iteration keeps the journal from growing without bound
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if (creationOrder == null) {
+            prepareWorkload();
+        }
+        bank = new Bank();
+        for (int accountNumber : creationOrder) {
+            bank.createAccount(accountNumber, nameOf(accountNumber), 1_000_000);
+        }
+    }
+
+    @Benchmark
+    public Customer lookup() {
+        return bank.findCustomer(nextAccount());
+    }
+
+    @Benchmark
+    public int deposit() {
+        return bank.deposit(nextAccount(), 10);
+    }
+
+    @Benchmark
+    public int withdraw() {
+        return bank.withdraw(nextAccount(), 1);
+    }
+
+    @Benchmark
+    public int transfer() {
+        return bank.transfer(nextAccount(), nextAccount(), 1);
+    }
+
+    @Benchmark
+    public int createThenDelete() {
+        int accountNumber = freshAccount();
+        bank.createAccount(accountNumber, "New customer", 100);
+        return bank.deleteAccount(accountNumber);
+    }
+}
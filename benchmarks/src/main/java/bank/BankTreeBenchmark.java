@@ -0,0 +1,65 @@
+package bank;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Benchmarks for BankTree: lookup, insert/delete, range scans and full in-order traversal
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+public class BankTreeBenchmark extends AccountWorkload {
+    private static final int RANGE_WIDTH = 100;
+
+    private BankTree bankTree;
+
+    @Setup
+    public void setUp() {
+        prepareWorkload();
+        bankTree = new BankTree();
+        for (int accountNumber : creationOrder) {
+            bankTree.insert(new Customer(accountNumber, nameOf(accountNumber), 100));
+        }
+    }
+
+    @Benchmark
+    public Customer lookup() {
+        return bankTree.findCustomer(nextAccount());
+    }
+
+    @Benchmark
+    public boolean insertThenDelete() {
+        int accountNumber = freshAccount();
+        bankTree.insert(new Customer(accountNumber, nameOf(accountNumber), 100));
+        return bankTree.deleteCustomer(accountNumber);
+    }
+
+    @Benchmark
+    public void accountRangeScan(Blackhole blackhole) {
+        int from = nextAccount();
+        Iterator<Customer> iterator = bankTree.rangeByAccount(from, from + RANGE_WIDTH - 1);
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void inOrderTraversal(Blackhole blackhole) {
+        Iterator<Customer> iterator = bankTree.iterateByName();
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+}
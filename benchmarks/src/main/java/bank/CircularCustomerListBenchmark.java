@@ -0,0 +1,43 @@
+package bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmarks for CircularCustomerList, whose lookups and deletes walk the ring
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+public class CircularCustomerListBenchmark extends AccountWorkload {
+    private CircularCustomerList circularList;
+
+    @Setup
+    public void setUp() {
+        prepareWorkload();
+        circularList = new CircularCustomerList();
+        for (int accountNumber : creationOrder) {
+            circularList.addCustomer(new Customer(accountNumber, nameOf(accountNumber), 100));
+        }
+    }
+
+    @Benchmark
+    public Customer lookup() {
+        return circularList.findCustomer(nextAccount());
+    }
+
+    @Benchmark
+    public boolean insertThenDelete() {
+        int accountNumber = freshAccount();
+        circularList.addCustomer(new Customer(accountNumber, "New customer", 100));
+        return circularList.deleteCustomer(accountNumber);
+    }
+}
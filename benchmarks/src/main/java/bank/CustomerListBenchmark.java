@@ -0,0 +1,48 @@
+package bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmarks for CustomerList: indexed lookup, and insert followed by delete
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+public class CustomerListBenchmark extends AccountWorkload {
+    private CustomerList customerList;
+
+    @Setup
+    public void setUp() {
+        prepareWorkload();
+        customerList = new CustomerList();
+        for (int accountNumber : creationOrder) {
+            customerList.addCustomer(new Customer(accountNumber, nameOf(accountNumber), 100));
+        }
+    }
+
+    @Benchmark
+    public Customer lookup() {
+        return customerList.findCustomer(nextAccount());
+    }
+
+    @Benchmark
+    public boolean insertThenDelete() {
+        int accountNumber = freshAccount();
+        customerList.addCustomer(new Customer(accountNumber, "New customer", 100));
+        return customerList.deleteCustomer(accountNumber);
+    }
+
+    @Benchmark
+    public Customer lookupMissing() {
+        return customerList.findCustomer(-1 - nextAccount());
+    }
+}
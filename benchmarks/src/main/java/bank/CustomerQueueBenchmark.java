@@ -0,0 +1,39 @@
+package bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmarks for CustomerQueue with a queue kept half full
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+public class CustomerQueueBenchmark extends AccountWorkload {
+    private CustomerQueue<Customer> customerQueue;
+    private Customer waitingCustomer;
+
+    @Setup
+    public void setUp() {
+        prepareWorkload();
+        customerQueue = new CustomerQueue<>(accounts);
+        for (int i = 0; i < accounts / 2; i++) {
+            customerQueue.offer(new Customer(creationOrder[i], nameOf(creationOrder[i]), 0));
+        }
+        waitingCustomer = new Customer(0, "Waiting customer", 0);
+    }
+
+    @Benchmark
+    public Customer offerThenPoll() {
+        customerQueue.offer(waitingCustomer);
+        return customerQueue.poll();
+    }
+}
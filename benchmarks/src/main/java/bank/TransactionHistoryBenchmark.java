@@ -0,0 +1,56 @@
+package bank;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmarks for the transaction journal: appends and per-account statement pages
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+public class TransactionHistoryBenchmark extends AccountWorkload {
+    private static final int PRELOADED_ENTRIES = 1_000_000;
+    private static final int PAGE_SIZE = 50;
+
+    private TransactionHistory transactionHistory;
+    private final int[] page = new int[PAGE_SIZE];
+
+    @Setup
+    public void setUp() {
+        prepareWorkload();
+    }
+
+    // A fresh journal per iteration keeps memory bounded however fast appends run
+    @Setup(Level.Iteration)
+    public void resetHistory() {
+        transactionHistory = new TransactionHistory();
+        for (int i = 0; i < PRELOADED_ENTRIES; i++) {
+            transactionHistory.recordTransaction(BankOperation.DEPOSIT, nextAccount(), 0, 1);
+        }
+    }
+
+    @Benchmark
+    public long appendDeposit() {
+        return transactionHistory.recordTransaction(BankOperation.DEPOSIT, nextAccount(), 0, 10);
+    }
+
+    @Benchmark
+    public long appendTransfer() {
+        return transactionHistory.recordTransaction(BankOperation.TRANSFER, nextAccount(), nextAccount(), 10);
+    }
+
+    @Benchmark
+    public int statementPage() {
+        return transactionHistory.statementPage(nextAccount(), -1, Long.MIN_VALUE, Long.MAX_VALUE, page);
+    }
+}
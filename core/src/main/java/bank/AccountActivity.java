@@ -0,0 +1,66 @@
+package bank;
+
+// Class representing one account's debits in a sliding window of ring buckets, plus the time
+// it was opened. The newest bucket is kept in fields and only written to the ring when the
+// window moves on, and the window totals are adjusted as buckets expire, so a debit and the
+// rules reading the totals touch this object alone.
+class AccountActivity {
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final long[] buckets; // [count, amount in minor units] per completed bucket
+    private long currentBucket;   // Newest bucket number (time / bucketMillis)
+    private int currentCount;     // Debits in the newest bucket
+    private long currentAmount;
+    private int debitCount;       // Totals over the whole window, newest bucket included
+    private long debitAmount;
+    private final long openedMillis; // 0 when opened before the rules were enabled
+
+    public AccountActivity(long bucketMillis, int buckets, long openedMillis) {
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = buckets;
+        this.buckets = new long[buckets * 2];
+        this.openedMillis = openedMillis;
+    }
+
+    // Method to move the window forward to a time, expiring the buckets that fall out of it
+    public void advance(long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        if (bucket <= currentBucket) {
+            return; // Same bucket, or a clock that stepped back: keep adding to the newest bucket
+        }
+        int slot = (int) (currentBucket % bucketCount) * 2;
+        buckets[slot] = currentCount;
+        buckets[slot + 1] = currentAmount;
+        currentCount = 0;
+        currentAmount = 0;
+        long expired = Math.min(bucket - currentBucket, bucketCount);
+        for (long next = currentBucket + 1; expired > 0; next++, expired--) {
+            slot = (int) (next % bucketCount) * 2;
+            debitCount -= (int) buckets[slot];
+            debitAmount -= buckets[slot + 1];
+            buckets[slot] = 0;
+            buckets[slot + 1] = 0;
+        }
+        currentBucket = bucket;
+    }
+
+    // Method to count a debit in the newest bucket
+    public void recordDebit(long amountMinorUnits) {
+        currentCount++;
+        currentAmount += amountMinorUnits;
+        debitCount++;
+        debitAmount += amountMinorUnits;
+    }
+
+    public int getDebitCount() {
+        return debitCount;
+    }
+
+    public long getDebitAmount() {
+        return debitAmount;
+    }
+
+    public long getOpenedMillis() {
+        return openedMillis;
+    }
+}
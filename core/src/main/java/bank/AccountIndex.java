@@ -0,0 +1,235 @@
+package bank;
+
+// Class representing a hash index keyed on the primitive account number.
+// Uses open addressing with linear probing, so keys are never boxed and
+// deletes use backward shifting instead of tombstones. When the table fills
+// up, a table of twice the size is allocated and entries are migrated a few
+// slots at a time on each write, so no single insert pays for a full rehash.
+class AccountIndex<V> {
+    private static final int MIGRATE_STEP = 8; // Old slots moved per write while resizing
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int threshold;
+    private int size; // Entries across both tables
+
+    // Table being drained during an incremental resize (null when not resizing)
+    private int[] oldKeys;
+    private Object[] oldValues;
+    private int oldMask;
+    private int migrateCursor;
+
+    // Constructor to initialize an empty index sized for the expected number of accounts
+    public AccountIndex(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public AccountIndex() {
+        this(16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = capacity / 2; // Keep the load factor at or below 0.5
+    }
+
+    // Spread sequential account numbers across the table
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Method to find the slot holding a key, or -1 if it is absent
+    private static int find(int[] k, Object[] v, int m, int key) {
+        int i = hash(key) & m;
+        while (v[i] != null) {
+            if (k[i] == key) {
+                return i;
+            }
+            i = (i + 1) & m;
+        }
+        return -1;
+    }
+
+    // Method to look up the value stored for an account number
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = find(keys, values, mask, key);
+        if (slot >= 0) {
+            return (V) values[slot];
+        }
+        if (oldKeys != null) {
+            slot = find(oldKeys, oldValues, oldMask, key);
+            if (slot >= 0) {
+                return (V) oldValues[slot];
+            }
+        }
+        return null; // Key not found
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    // Method to insert or replace the value for an account number; returns the previous value
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        if (oldKeys != null) {
+            int oldSlot = find(oldKeys, oldValues, oldMask, key);
+            if (oldSlot >= 0) {
+                evacuate(oldSlot); // Move the key into the new table before replacing it
+            }
+            migrateStep();
+        }
+
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+
+        if (size > threshold) {
+            startResize();
+        }
+        return null;
+    }
+
+    // Method to remove an account number; returns the removed value
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (oldKeys != null) {
+            migrateStep();
+        }
+
+        int slot = find(keys, values, mask, key);
+        if (slot >= 0) {
+            V removed = (V) values[slot];
+            shiftBack(slot);
+            size--;
+            return removed;
+        }
+
+        if (oldKeys != null) {
+            slot = find(oldKeys, oldValues, oldMask, key);
+            if (slot >= 0) {
+                V removed = (V) oldValues[slot];
+                oldValues[slot] = null;
+                // Move the rest of the probe cluster so no chain is broken by the hole
+                evacuate((slot + 1) & oldMask);
+                size--;
+                return removed;
+            }
+        }
+        return null; // Key not found
+    }
+
+    // Method to get the number of indexed accounts
+    public int size() {
+        return size;
+    }
+
+    // Method to visit every value in the index (order is unspecified)
+    @SuppressWarnings("unchecked")
+    public void forEach(java.util.function.Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+        if (oldValues != null) {
+            for (Object value : oldValues) {
+                if (value != null) {
+                    action.accept((V) value);
+                }
+            }
+        }
+    }
+
+    // Delete a slot in the current table by shifting later cluster members back
+    private void shiftBack(int slot) {
+        int hole = slot;
+        int j = slot;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) {
+                break;
+            }
+            int home = hash(keys[j]) & mask;
+            // The entry may move into the hole only if its home is not in (hole, j]
+            boolean stays = (hole <= j) ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!stays) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = null;
+    }
+
+    private void startResize() {
+        if (oldKeys != null) {
+            finishMigration(); // Only reachable if writes outran the migration
+        }
+        oldKeys = keys;
+        oldValues = values;
+        oldMask = mask;
+        migrateCursor = 0;
+        allocate(keys.length * 2);
+    }
+
+    // Move a bounded number of old slots into the new table
+    private void migrateStep() {
+        int end = Math.min(migrateCursor + MIGRATE_STEP, oldValues.length);
+        for (; migrateCursor < end; migrateCursor++) {
+            if (oldValues[migrateCursor] != null) {
+                evacuate(migrateCursor);
+            }
+        }
+        if (migrateCursor == oldValues.length) {
+            oldKeys = null;
+            oldValues = null;
+        }
+    }
+
+    private void finishMigration() {
+        while (oldKeys != null) {
+            migrateStep();
+        }
+    }
+
+    // Move every entry from a slot to the end of its probe cluster into the new table
+    private void evacuate(int slot) {
+        int i = slot;
+        while (oldValues[i] != null) {
+            insertNew(oldKeys[i], oldValues[i]);
+            oldValues[i] = null;
+            i = (i + 1) & oldMask;
+        }
+    }
+
+    private void insertNew(int key, Object value) {
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+}
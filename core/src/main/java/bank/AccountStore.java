@@ -0,0 +1,55 @@
+package bank;
+
+import java.io.IOException;
+
+// Interface representing a table of accounts kept outside the heap, addressed by slot. find
+// returns the slot of an account; every account can also be visited by scanning the slots from
+// 0 to capacity() - 1 where isLive(slot) holds. Balances are in minor units. Callers provide the
+// locking (see Bank): balance updates on one account must be serialized, and create/delete
+// must be exclusive.
+interface AccountStore extends AutoCloseable {
+    long MINOR_UNITS = 100; // Balances are stored in cents
+
+    // Method to convert an amount to the minor units balances are stored in
+    static long toMinorUnits(double amount) {
+        return Math.round(amount * MINOR_UNITS);
+    }
+
+    // Method to convert minor units back to an amount
+    static double fromMinorUnits(long minorUnits) {
+        return (double) minorUnits / MINOR_UNITS;
+    }
+
+    // Method to find the slot of an account, or -1 if it does not exist
+    long find(int accountNumber);
+
+    long getBalance(long slot);
+
+    void setBalance(long slot, long minorUnits);
+
+    void addBalance(long slot, long minorUnits);
+
+    int getAccountNumber(long slot);
+
+    boolean isLive(long slot);
+
+    // Method to get the name stored for a slot (allocates; not used on the balance path)
+    String getName(long slot);
+
+    // Method to create an account; returns false if the account number is taken
+    boolean create(int accountNumber, String name, long balanceMinorUnits) throws IOException;
+
+    // Method to delete an account; returns false if it does not exist
+    boolean delete(int accountNumber);
+
+    long size();
+
+    // Method to get the number of slots; live accounts are the slots where isLive(slot) is true
+    long capacity();
+
+    // Method to write buffered changes back to the files
+    void force();
+
+    @Override
+    void close() throws IOException;
+}
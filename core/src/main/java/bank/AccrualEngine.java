@@ -0,0 +1,106 @@
+package bank;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// Class representing the end-of-day batch engine for interest and fees. The account
+// numbers are copied once and grouped by lock stripe. The groups are then split into
+// shards that a fork-join pool processes in parallel. Each shard handles one stripe
+// run at a time: it holds that stripe's lock for a short run of accounts and appends
+// the run's journal entries in one call. Online deposits and withdrawals therefore
+// keep running between runs.
+class AccrualEngine {
+    private static final int SHARD_SIZE = 16 * 1024; // Accounts per fork-join leaf task
+    private static final int RUN_SIZE = 1024;        // Accounts updated per stripe lock acquisition
+
+    private final Bank bank;
+    private final ForkJoinPool pool;
+
+    public AccrualEngine(Bank bank, ForkJoinPool pool) {
+        this.bank = bank;
+        this.pool = pool;
+    }
+
+    // Method to apply a rule to every account; type is BankOperation.INTEREST or BankOperation.FEE
+    public Result run(byte type, AccrualRule rule) {
+        if (type != BankOperation.INTEREST && type != BankOperation.FEE) {
+            throw new IllegalArgumentException("Not an accrual type: " + BankOperation.typeName(type));
+        }
+        long start = System.nanoTime();
+        int[] accounts = bank.snapshotAccountsByStripe();
+        Result result = new Result();
+        pool.invoke(new Shard(type, rule, accounts, 0, accounts.length, result));
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Class representing the outcome of one engine run
+    static final class Result {
+        private final LongAdder accounts = new LongAdder();
+        private final LongAdder minorUnits = new LongAdder();
+        private long elapsedNanos;
+
+        void add(int accountCount, long totalMinorUnits) {
+            accounts.add(accountCount);
+            minorUnits.add(totalMinorUnits);
+        }
+
+        // Method to get how many accounts received a non-zero interest credit or fee
+        public long getAccountsAdjusted() {
+            return accounts.sum();
+        }
+
+        // Method to get the total credited or charged
+        public double getTotalAmount() {
+            return AccountStore.fromMinorUnits(minorUnits.sum());
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    // Fork-join task covering a range of the stripe-ordered account array
+    private final class Shard extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final byte type;
+        private final AccrualRule rule;
+        private final int[] accounts;
+        private final int from;
+        private final int to;
+        private final Result result;
+
+        Shard(byte type, AccrualRule rule, int[] accounts, int from, int to, Result result) {
+            this.type = type;
+            this.rule = rule;
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SHARD_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Shard(type, rule, accounts, from, middle, result),
+                        new Shard(type, rule, accounts, middle, to, result));
+                return;
+            }
+            int[] applied = new int[RUN_SIZE];
+            double[] amounts = new double[RUN_SIZE];
+            int runStart = from;
+            while (runStart < to) {
+                // A run never crosses into another stripe, so it needs a single lock
+                int stripe = bank.stripeOf(accounts[runStart]);
+                int runEnd = runStart + 1;
+                while (runEnd < to && runEnd - runStart < RUN_SIZE && bank.stripeOf(accounts[runEnd]) == stripe) {
+                    runEnd++;
+                }
+                bank.applyAccrualRun(type, rule, accounts, runStart, runEnd, applied, amounts, result);
+                runStart = runEnd;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package bank;
+
+// Interface for a rule that decides the interest credited to, or the fee charged to, one account.
+// Rules are called concurrently from many threads and must not touch the bank themselves.
+interface AccrualRule {
+    // Method to get the (non-negative) amount for an account given its current balance
+    double amountFor(int accountNumber, double balance);
+
+    // Rule crediting one day of simple interest at an annual percentage rate
+    static AccrualRule dailyInterest(double annualRatePercent) {
+        double dailyRate = annualRatePercent / 100.0 / 365.0;
+        return (accountNumber, balance) -> (balance > 0) ? balance * dailyRate : 0;
+    }
+
+    // Rule charging a flat fee, waived for balances at or above a threshold
+    static AccrualRule monthlyFee(double fee, double waivedAtBalance) {
+        return (accountNumber, balance) -> (balance >= waivedAtBalance) ? 0 : fee;
+    }
+}
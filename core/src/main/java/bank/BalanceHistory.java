@@ -0,0 +1,251 @@
+package bank;
+
+import java.util.*;
+
+// Class representing a temporal balance store that answers "what was the balance at time T" from the
+// transaction journal. The journal is cut into intervals of CHECKPOINT_ENTRIES entries, and the end of
+// each interval is a checkpoint recording the balance of every account the interval changed, with the
+// account's newest entry so far. One account's balance as of T is its last checkpoint before the
+// interval holding T plus a replay of its own entries in that interval, reached through the journal's
+// per-account chain; all balances as of T are every account's checkpoint plus a replay of that part of
+// one interval. Neither scans the history.
+// The store follows the journal on its own: catchUp replays new entries, and every query catches up first.
+class BalanceHistory {
+    static final long CLOSED = Long.MIN_VALUE; // Balance of an account that is not open
+    private static final int CHECKPOINT_ENTRIES = 1 << 16;
+
+    private final TransactionHistory history;
+    private final AccountIndex<Timeline> timelines = new AccountIndex<>();
+    private int replayed; // Journal entries replayed so far; checkpoint c ends at (c + 1) * CHECKPOINT_ENTRIES
+    private Timeline[] touched = new Timeline[1024]; // Accounts changed since the last checkpoint
+    private int touchedCount;
+
+    // Interface for visiting balances (in minor units) as of a time
+    interface BalanceVisitor {
+        void visit(int accountNumber, long balanceMinorUnits);
+    }
+
+    public BalanceHistory(TransactionHistory history) {
+        this.history = history;
+    }
+
+    // Method to replay the journal entries recorded since the last call, taking every checkpoint they complete
+    public synchronized void catchUp() {
+        int size = history.size();
+        for (int i = replayed; i < size; i++) {
+            int source = history.getSource(i);
+            int destination = history.getDestination(i);
+            byte type = history.getType(i);
+            if (type != BankOperation.REJECTED && type != BankOperation.FLAGGED) {
+                replay(timeline(source), i);
+                if (TransactionHistory.changesDestination(type, source, destination)) {
+                    replay(timeline(destination), i);
+                }
+            }
+            replayed = i + 1;
+            if (replayed % CHECKPOINT_ENTRIES == 0) {
+                int checkpoint = replayed / CHECKPOINT_ENTRIES - 1;
+                for (int j = 0; j < touchedCount; j++) {
+                    touched[j].addRecord(checkpoint);
+                    touched[j] = null;
+                }
+                touchedCount = 0;
+            }
+        }
+    }
+
+    // Method to get an account's balance in minor units as of a time (CLOSED if it was not open then)
+    public synchronized long balanceAt(int accountNumber, long timestamp) {
+        catchUp();
+        Timeline timeline = timelines.get(accountNumber);
+        if (timeline == null) {
+            return CLOSED;
+        }
+        int end = history.countUntil(timestamp, replayed); // Entries [0, end) happened by then
+        int checkpoint = end / CHECKPOINT_ENTRIES - 1;       // The last checkpoint within them, or -1
+        int record = timeline.recordAtOrBefore(checkpoint);
+        long balance = (record >= 0) ? timeline.balance(record) : CLOSED;
+
+        // Find the account's newest entry in the interval after the checkpoint
+        int interval = checkpoint + 1;
+        int newest;
+        if (interval < replayed / CHECKPOINT_ENTRIES) {
+            if (record + 1 == timeline.count || timeline.checkpoint(record + 1) != interval) {
+                return balance; // The account did not change in that interval
+            }
+            newest = timeline.newestEntry(record + 1);
+        } else {
+            newest = timeline.newest; // The interval has no checkpoint yet
+        }
+
+        // Walk the account's chain back to the checkpoint, then replay the entries that happened by then
+        int start = interval * CHECKPOINT_ENTRIES;
+        int[] entries = new int[16];
+        int count = 0;
+        for (int index = newest; index >= start; index = history.previousForAccount(index, accountNumber)) {
+            if (index < end) {
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, count * 2);
+                }
+                entries[count++] = index;
+            }
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            balance = balanceAfter(entries[i], accountNumber, balance);
+        }
+        return balance;
+    }
+
+    // Method to visit every account open at a time with its balance then, in no particular order
+    public synchronized void forEachBalanceAt(long timestamp, BalanceVisitor visitor) {
+        catchUp();
+        int end = history.countUntil(timestamp, replayed);
+        int checkpoint = end / CHECKPOINT_ENTRIES - 1;
+
+        // Replay the entries between the checkpoint and the time on top of the checkpoint balances
+        AccountIndex<long[]> replayedBalances = new AccountIndex<>();
+        for (int i = (checkpoint + 1) * CHECKPOINT_ENTRIES; i < end; i++) {
+            byte type = history.getType(i);
+            if (type == BankOperation.REJECTED || type == BankOperation.FLAGGED) {
+                continue;
+            }
+            int source = history.getSource(i);
+            int destination = history.getDestination(i);
+            replayBalance(replayedBalances, source, checkpoint, i);
+            if (TransactionHistory.changesDestination(type, source, destination)) {
+                replayBalance(replayedBalances, destination, checkpoint, i);
+            }
+        }
+        timelines.forEach(timeline -> {
+            long[] replayedBalance = replayedBalances.get(timeline.accountNumber);
+            long balance;
+            if (replayedBalance != null) {
+                balance = replayedBalance[0];
+            } else {
+                int record = timeline.recordAtOrBefore(checkpoint);
+                balance = (record >= 0) ? timeline.balance(record) : CLOSED;
+            }
+            if (balance != CLOSED) {
+                visitor.visit(timeline.accountNumber, balance);
+            }
+        });
+    }
+
+    private void replayBalance(AccountIndex<long[]> replayedBalances, int accountNumber, int checkpoint, int index) {
+        long[] balance = replayedBalances.get(accountNumber);
+        if (balance == null) {
+            Timeline timeline = timelines.get(accountNumber);
+            int record = timeline.recordAtOrBefore(checkpoint);
+            balance = new long[] {(record >= 0) ? timeline.balance(record) : CLOSED};
+            replayedBalances.put(accountNumber, balance);
+        }
+        balance[0] = balanceAfter(index, accountNumber, balance[0]);
+    }
+
+    private Timeline timeline(int accountNumber) {
+        Timeline timeline = timelines.get(accountNumber);
+        if (timeline == null) {
+            timeline = new Timeline(accountNumber);
+            timelines.put(accountNumber, timeline);
+        }
+        return timeline;
+    }
+
+    private void replay(Timeline timeline, int index) {
+        timeline.balance = balanceAfter(index, timeline.accountNumber, timeline.balance);
+        timeline.newest = index;
+        if (!timeline.touched) {
+            timeline.touched = true;
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = timeline;
+        }
+    }
+
+    // Helper method to apply one journal entry to an account's balance in minor units
+    private long balanceAfter(int index, int accountNumber, long balance) {
+        byte type = history.getType(index);
+        long amount = AccountStore.toMinorUnits(history.getAmount(index));
+        if (type == BankOperation.CREATE) {
+            return amount;
+        }
+        if (balance == CLOSED) {
+            return CLOSED;
+        }
+        switch (type) {
+            case BankOperation.DELETE:
+                return CLOSED;
+            case BankOperation.DEPOSIT:
+            case BankOperation.INTEREST:
+            case BankOperation.TRANSFER_IN:
+                return balance + amount;
+            case BankOperation.WITHDRAW:
+            case BankOperation.FEE:
+            case BankOperation.TRANSFER_OUT:
+                return balance - amount;
+            case BankOperation.TRANSFER:
+            case BankOperation.REVERSAL:
+                // The source pays the destination; an entry from an account to itself changes nothing
+                int source = history.getSource(index);
+                if (source == history.getDestination(index)) {
+                    return balance;
+                }
+                return (source == accountNumber) ? balance - amount : balance + amount;
+            default:
+                return balance;
+        }
+    }
+
+    // Class representing one account's replayed balance and the checkpoints that recorded it
+    private static final class Timeline {
+        final int accountNumber;
+        long balance = CLOSED; // After the entries replayed so far
+        int newest = -1;       // Newest replayed entry touching the account
+        boolean touched;       // Changed since the last checkpoint
+        // Per record: {checkpoint << 32 | newest entry at the checkpoint, balance at the checkpoint}
+        long[] records = new long[2];
+        int count;
+
+        Timeline(int accountNumber) {
+            this.accountNumber = accountNumber;
+        }
+
+        void addRecord(int checkpoint) {
+            if (2 * count == records.length) {
+                records = Arrays.copyOf(records, records.length * 2);
+            }
+            records[2 * count] = ((long) checkpoint << 32) | newest;
+            records[2 * count + 1] = balance;
+            count++;
+            touched = false;
+        }
+
+        int checkpoint(int record) {
+            return (int) (records[2 * record] >>> 32);
+        }
+
+        int newestEntry(int record) {
+            return (int) records[2 * record];
+        }
+
+        long balance(int record) {
+            return records[2 * record + 1];
+        }
+
+        // Find the last record taken at or before a checkpoint, or -1
+        int recordAtOrBefore(int checkpoint) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (checkpoint(middle) <= checkpoint) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package bank;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Class representing an order-statistics index of balances for top-N, rank, percentile and
+// range-count queries. Entries are (balance in minor units, account number) pairs kept in
+// sorted blocks of at most BLOCK_CAPACITY; a directory of each block's largest entry finds a
+// block by binary search and a Fenwick tree over block sizes turns a block position into a
+// rank, so a query is O(log n + k).
+// A change is applied in place by the posting thread: the old entry is shifted out of its block
+// and the new one into its block, each followed by a Fenwick point update, so a change is
+// O(log n + BLOCK_CAPACITY) whatever the table size. Only a block that fills up is split, and only
+// one that runs nearly empty is folded into a neighbour; those two rebuild the directory, which
+// happens once per many changes to that block.
+class BalanceIndex {
+    private static final int BLOCK_CAPACITY = 512;
+    private static final int MERGE_BELOW = BLOCK_CAPACITY / 8; // A smaller block joins a neighbour with room
+
+    // Entries, guarded by lock
+    private long[][] balances = new long[16][];
+    private int[][] accounts = new int[16][];
+    private int[] sizes = new int[16];
+    private long[] lastBalance = new long[16]; // Largest entry of each block
+    private int[] lastAccount = new int[16];
+    private int[] counts = new int[17];        // Fenwick tree over sizes (1-based)
+    private int blocks;
+    private long size;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Method to index accounts in bulk (as when the index is enabled); must be called before any other change
+    public void load(int[] loadAccounts, long[] loadBalances, int count) {
+        lock.writeLock().lock();
+        try {
+            if (size != 0) {
+                throw new IllegalStateException("The balance index already holds entries");
+            }
+            long[] entryBalances = Arrays.copyOf(loadBalances, count);
+            int[] entryAccounts = Arrays.copyOf(loadAccounts, count);
+            sortEntries(entryBalances, entryAccounts, count, new long[count], new long[count], new int[count]);
+            // Leave room in every block, so the first postings do not split them all
+            int fill = BLOCK_CAPACITY * 3 / 4;
+            int needed = (count + fill - 1) / fill;
+            ensureDirectory(needed);
+            for (int from = 0; from < count; from += fill) {
+                int to = Math.min(count, from + fill);
+                long[] blockBalances = new long[BLOCK_CAPACITY];
+                int[] blockAccounts = new int[BLOCK_CAPACITY];
+                System.arraycopy(entryBalances, from, blockBalances, 0, to - from);
+                System.arraycopy(entryAccounts, from, blockAccounts, 0, to - from);
+                balances[blocks] = blockBalances;
+                accounts[blocks] = blockAccounts;
+                sizes[blocks] = to - from;
+                lastBalance[blocks] = blockBalances[to - from - 1];
+                lastAccount[blocks++] = blockAccounts[to - from - 1];
+            }
+            size = count;
+            rebuildCounts();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Method to add an account with its balance
+    public void add(int accountNumber, long minorUnits) {
+        lock.writeLock().lock();
+        try {
+            insertEntry(minorUnits, accountNumber);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Method to remove an account, given the balance it was indexed with
+    public void remove(int accountNumber, long minorUnits) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(minorUnits, accountNumber);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Method to move an account from its old balance to its new one
+    public void update(int accountNumber, long oldMinorUnits, long newMinorUnits) {
+        if (oldMinorUnits == newMinorUnits) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeEntry(oldMinorUnits, accountNumber);
+            insertEntry(newMinorUnits, accountNumber);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Method to get the number of indexed accounts
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Method to count the accounts whose balance is below minorUnits
+    public long countBelow(long minorUnits) {
+        lock.readLock().lock();
+        try {
+            return rank(minorUnits, Integer.MIN_VALUE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Method to count the accounts whose balance is above minorUnits
+    public long countAbove(long minorUnits) {
+        lock.readLock().lock();
+        try {
+            return (minorUnits == Long.MAX_VALUE) ? 0 : size - rank(minorUnits + 1, Integer.MIN_VALUE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Method to count the accounts whose balance is in [fromMinorUnits, toMinorUnits)
+    public long countBetween(long fromMinorUnits, long toMinorUnits) {
+        lock.readLock().lock();
+        try {
+            return Math.max(0, rank(toMinorUnits, Integer.MIN_VALUE) - rank(fromMinorUnits, Integer.MIN_VALUE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Method to get the balance at a 0-based rank from the lowest; fails if the rank is out of range
+    public long balanceAt(long rank) {
+        lock.readLock().lock();
+        try {
+            if (rank < 0 || rank >= size) {
+                throw new IndexOutOfBoundsException("Rank " + rank + " of " + size);
+            }
+            return select(rank);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Method to get the balance at a percentile (0 to 100) by the nearest-rank method; 0 when empty
+    public long percentile(double percentile) {
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * size));
+            return select(Math.min(rank, size) - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Method to copy out the highest balances, highest first; returns the number copied
+    public int top(int limit, int[] topAccounts, long[] topBalances) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (int block = blocks - 1; block >= 0 && count < limit; block--) {
+                for (int i = sizes[block] - 1; i >= 0 && count < limit; i--) {
+                    topAccounts[count] = accounts[block][i];
+                    topBalances[count++] = balances[block][i];
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Shift an entry into the block it sorts into, splitting the block first if it is full (the write lock must be held)
+    private void insertEntry(long balance, int accountNumber) {
+        if (blocks == 0) {
+            ensureDirectory(1);
+            balances[0] = new long[BLOCK_CAPACITY];
+            accounts[0] = new int[BLOCK_CAPACITY];
+            sizes[0] = 0;
+            blocks = 1;
+            rebuildCounts();
+        }
+        int block = Math.min(locate(balance, accountNumber), blocks - 1); // Past the end goes into the last block
+        int position = lowerBound(block, balance, accountNumber);
+        if (sizes[block] == BLOCK_CAPACITY) {
+            int half = BLOCK_CAPACITY / 2;
+            splitBlock(block, half);
+            if (position > half) {
+                block++;
+                position -= half;
+            }
+        }
+        int blockSize = sizes[block];
+        System.arraycopy(balances[block], position, balances[block], position + 1, blockSize - position);
+        System.arraycopy(accounts[block], position, accounts[block], position + 1, blockSize - position);
+        balances[block][position] = balance;
+        accounts[block][position] = accountNumber;
+        sizes[block] = blockSize + 1;
+        if (position == blockSize) {
+            lastBalance[block] = balance;
+            lastAccount[block] = accountNumber;
+        }
+        size++;
+        addCount(block, 1);
+    }
+
+    // Shift an entry out of its block, folding the block into a neighbour if it runs nearly empty
+    // (the write lock must be held)
+    private void removeEntry(long balance, int accountNumber) {
+        int block = locate(balance, accountNumber);
+        int position = (block < blocks) ? lowerBound(block, balance, accountNumber) : 0;
+        if (block == blocks || position == sizes[block] || balances[block][position] != balance
+                || accounts[block][position] != accountNumber) {
+            throw new IllegalStateException("Account " + accountNumber + " is not indexed at " + balance);
+        }
+        int blockSize = sizes[block] - 1;
+        System.arraycopy(balances[block], position + 1, balances[block], position, blockSize - position);
+        System.arraycopy(accounts[block], position + 1, accounts[block], position, blockSize - position);
+        sizes[block] = blockSize;
+        size--;
+        if (blockSize == 0) {
+            removeBlock(block);
+            return;
+        }
+        if (position == blockSize) {
+            lastBalance[block] = balances[block][blockSize - 1];
+            lastAccount[block] = accounts[block][blockSize - 1];
+        }
+        addCount(block, -1);
+        if (blockSize < MERGE_BELOW) {
+            // Join a neighbour that stays at most half full, so the result is not split again soon after
+            if (block + 1 < blocks && blockSize + sizes[block + 1] <= BLOCK_CAPACITY / 2) {
+                joinBlocks(block);
+            } else if (block > 0 && blockSize + sizes[block - 1] <= BLOCK_CAPACITY / 2) {
+                joinBlocks(block - 1);
+            }
+        }
+    }
+
+    // Split a block after its first keep entries into two directory slots
+    private void splitBlock(int block, int keep) {
+        ensureDirectory(blocks + 1);
+        shiftDirectory(block + 1, 1);
+        int moved = sizes[block] - keep;
+        long[] movedBalances = new long[BLOCK_CAPACITY];
+        int[] movedAccounts = new int[BLOCK_CAPACITY];
+        System.arraycopy(balances[block], keep, movedBalances, 0, moved);
+        System.arraycopy(accounts[block], keep, movedAccounts, 0, moved);
+        balances[block + 1] = movedBalances;
+        accounts[block + 1] = movedAccounts;
+        sizes[block + 1] = moved;
+        lastBalance[block + 1] = lastBalance[block];
+        lastAccount[block + 1] = lastAccount[block];
+        sizes[block] = keep;
+        lastBalance[block] = balances[block][keep - 1];
+        lastAccount[block] = accounts[block][keep - 1];
+        rebuildCounts();
+    }
+
+    // Append the block after this one to it and drop the emptied directory slot
+    private void joinBlocks(int block) {
+        int next = block + 1;
+        System.arraycopy(balances[next], 0, balances[block], sizes[block], sizes[next]);
+        System.arraycopy(accounts[next], 0, accounts[block], sizes[block], sizes[next]);
+        sizes[block] += sizes[next];
+        lastBalance[block] = lastBalance[next];
+        lastAccount[block] = lastAccount[next];
+        sizes[next] = 0;
+        removeBlock(next);
+    }
+
+    private void removeBlock(int block) {
+        shiftDirectory(block + 1, -1);
+        balances[blocks] = null; // The directory shrank by one
+        accounts[blocks] = null;
+        rebuildCounts();
+    }
+
+    // Move the directory slots from a block on by distance (+1 to open a slot, -1 to close one), adjusting blocks
+    private void shiftDirectory(int from, int distance) {
+        int moved = blocks - from;
+        System.arraycopy(balances, from, balances, from + distance, moved);
+        System.arraycopy(accounts, from, accounts, from + distance, moved);
+        System.arraycopy(sizes, from, sizes, from + distance, moved);
+        System.arraycopy(lastBalance, from, lastBalance, from + distance, moved);
+        System.arraycopy(lastAccount, from, lastAccount, from + distance, moved);
+        blocks += distance;
+    }
+
+    private void ensureDirectory(int needed) {
+        if (needed > sizes.length) {
+            int capacity = Math.max(needed, sizes.length * 2);
+            balances = Arrays.copyOf(balances, capacity);
+            accounts = Arrays.copyOf(accounts, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            lastBalance = Arrays.copyOf(lastBalance, capacity);
+            lastAccount = Arrays.copyOf(lastAccount, capacity);
+            counts = new int[capacity + 1];
+        }
+    }
+
+    // Fenwick point update for one block's size
+    private void addCount(int block, int delta) {
+        for (int i = block + 1; i <= blocks; i += i & -i) {
+            counts[i] += delta;
+        }
+    }
+
+    // Rebuild the Fenwick tree in O(blocks) after the directory changed shape
+    private void rebuildCounts() {
+        Arrays.fill(counts, 0);
+        for (int i = 1; i <= blocks; i++) {
+            counts[i] += sizes[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= blocks) {
+                counts[parent] += counts[i];
+            }
+        }
+    }
+    // Helper method to sort entries by balance, then account number. When the balances span less than
+    // 2^31 minor units, which is nearly always, each entry packs into one long and a primitive sort does
+    // it; otherwise a merge sort runs on the two columns.
+    private static void sortEntries(long[] entryBalances, int[] entryAccounts, int count, long[] keys,
+            long[] balanceBuffer, int[] accountBuffer) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, entryBalances[i]);
+            max = Math.max(max, entryBalances[i]);
+        }
+        long span = max - min; // Negative if it overflows
+        if (span >= 0 && span <= Integer.MAX_VALUE) {
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((entryBalances[i] - min) << 32) | ((entryAccounts[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+            }
+            Arrays.sort(keys, 0, count);
+            for (int i = 0; i < count; i++) {
+                entryBalances[i] = (keys[i] >>> 32) + min;
+                entryAccounts[i] = (int) keys[i] ^ Integer.MIN_VALUE;
+            }
+            return;
+        }
+        long[] fromBalances = entryBalances;
+        int[] fromAccounts = entryAccounts;
+        long[] toBalances = balanceBuffer;
+        int[] toAccounts = accountBuffer;
+        for (int width = 1; width < count; width *= 2) {
+            for (int start = 0; start < count; start += 2 * width) {
+                int middle = Math.min(start + width, count);
+                int end = Math.min(start + 2 * width, count);
+                int left = start;
+                int right = middle;
+                for (int k = start; k < end; k++) {
+                    if (right == end || (left < middle && compare(fromBalances[left], fromAccounts[left],
+                            fromBalances[right], fromAccounts[right]) <= 0)) {
+                        toBalances[k] = fromBalances[left];
+                        toAccounts[k] = fromAccounts[left++];
+                    } else {
+                        toBalances[k] = fromBalances[right];
+                        toAccounts[k] = fromAccounts[right++];
+                    }
+                }
+            }
+            long[] swappedBalances = fromBalances;
+            fromBalances = toBalances;
+            toBalances = swappedBalances;
+            int[] swappedAccounts = fromAccounts;
+            fromAccounts = toAccounts;
+            toAccounts = swappedAccounts;
+        }
+        if (fromBalances != entryBalances) {
+            System.arraycopy(fromBalances, 0, entryBalances, 0, count);
+            System.arraycopy(fromAccounts, 0, entryAccounts, 0, count);
+        }
+    }
+
+    // Helper method to find the first block whose largest entry is not below the key (blocks if none).
+    // The directory stays in cache, so its balances are searched without a data-dependent branch (the
+    // JIT emits conditional moves, sparing a misprediction per step); accounts only order equal balances.
+    private int locate(long balance, int accountNumber) {
+        int low = firstBlockNotBelow(balance);
+        if (low == blocks || lastBalance[low] != balance) {
+            return low;
+        }
+        // Many blocks can end on the same balance (every account opened with the same deposit)
+        int high = (balance == Long.MAX_VALUE) ? blocks : firstBlockNotBelow(balance + 1);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lastAccount[middle] < accountNumber) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int firstBlockNotBelow(long balance) {
+        int low = 0;
+        for (int length = blocks; length > 1; ) {
+            int half = length >>> 1;
+            low = (lastBalance[low + half - 1] < balance) ? low + half : low;
+            length -= half;
+        }
+        return (blocks > 0 && lastBalance[low] < balance) ? low + 1 : low;
+    }
+
+    // Helper method to find the first position in a block whose entry is not below the key
+    private int lowerBound(int block, long balance, int accountNumber) {
+        long[] blockBalances = balances[block];
+        int[] blockAccounts = accounts[block];
+        int low = 0;
+        int high = sizes[block];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long middleBalance = blockBalances[middle];
+            // The account column is only read on a balance tie, so a search touches one array
+            if (middleBalance < balance || (middleBalance == balance && blockAccounts[middle] < accountNumber)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Helper method to get the balance at a 0-based rank by descending the Fenwick tree to its block
+    private long select(long rank) {
+        int block = 0;
+        long remaining = rank;
+        for (int step = Integer.highestOneBit(blocks); step > 0; step >>= 1) {
+            if (block + step <= blocks && counts[block + step] <= remaining) {
+                block += step;
+                remaining -= counts[block];
+            }
+        }
+        return balances[block][(int) remaining];
+    }
+
+    // Helper method to count the entries below a key
+    private long rank(long balance, int accountNumber) {
+        int block = locate(balance, accountNumber);
+        if (block == blocks) {
+            return size;
+        }
+        long before = 0;
+        for (int i = block; i > 0; i -= i & -i) {
+            before += counts[i];
+        }
+        return before + lowerBound(block, balance, accountNumber);
+    }
+
+    private static int compare(long balance, int accountNumber, long otherBalance, int otherAccountNumber) {
+        int balanceComparison = Long.compare(balance, otherBalance);
+        return (balanceComparison != 0) ? balanceComparison : Integer.compare(accountNumber, otherAccountNumber);
+    }
+}
@@ -0,0 +1,2565 @@
+package bank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class Bank {
+    private CustomerList customerList;
+    private CircularCustomerList circularCustomerList;
+    private TransactionHistory transactionHistory;
+    private CustomerQueue<TellerPool.Request> customerQueue; // Intake for operations served by tellers
+    private TellerPool tellerPool; // null until tellers are started
+    private BankTree bankTree;
+    private LockStripes locks;
+    private WriteAheadLog writeAheadLog; // null unless durability is enabled
+    private ScheduledExecutorService checkpointer;
+    private AccountStore accountStore; // null unless accounts are kept off-heap
+    private volatile ReplicationLog replicationLog; // null unless replicas are served
+    private volatile FraudRules fraudRules; // null unless fraud rules are enabled
+    private volatile NameSearchIndex nameIndex; // null unless name search is enabled
+    private volatile BalanceIndex balanceIndex; // null unless balance rankings are enabled
+    private volatile BalanceHistory balanceHistory; // null unless as-of balance queries are enabled
+    private ScheduledExecutorService historyFollower; // Keeps balanceHistory caught up with the journal
+    private final Set<Long> reversedEntries = new HashSet<>(); // Sequence numbers already reversed (guarded by itself)
+    private volatile long historyStartMillis; // The journal holds every entry since then (a recovered snapshot's time)
+    private volatile ChangePublisher changePublisher; // null unless change data capture is enabled
+    private ReplicationServer replicationServer;
+    private final BankMetrics metrics = new BankMetrics();
+    private final VersionClock versions = new VersionClock(); // Orders heap changes for snapshots
+    // Cross-shard transfer legs prepared by a coordinator and not yet committed or aborted
+    private final java.util.concurrent.ConcurrentHashMap<Long, PreparedLeg> preparedLegs =
+            new java.util.concurrent.ConcurrentHashMap<>();
+    // Per thread: {highest LSN whose wait was deferred, 1 while inside applyBatch}
+    private final ThreadLocal<long[]> deferredLsn = ThreadLocal.withInitial(() -> new long[2]);
+
+    private static final int WORKER_CHUNK = 256; // Operations claimed at a time by each worker
+    private static final long DEFAULT_CHECKPOINT_MILLIS = 60_000;
+    private static final long METRICS_DUMP_MILLIS = 10_000;
+    private static final int DEFAULT_REPLICATION_BACKLOG = 1 << 20; // Operations kept for reconnecting replicas
+    private static final long DEFAULT_WORKLOAD_SEED = 42;
+    private static final double DEFAULT_WORKLOAD_SKEW = 0.99; // Zipf exponent of account popularity
+    private static final int WORKLOAD_THREADS = 16; // Open-loop workers for --load-test and --replay
+    private static final int DEFAULT_CACHED_ACCOUNTS = 1 << 16; // Hot accounts kept in memory by --disk-dir
+    private static final int NAME_SEARCH_RESULTS = 20; // Matches listed by the console search
+    private static final int NAME_SEARCH_TYPOS = 2; // Edits tolerated when nothing matches exactly
+    private static final int BALANCE_RANKING_RESULTS = 10; // Accounts listed by the console rankings
+    private static final long BALANCE_HISTORY_CATCH_UP_MILLIS = 1000;
+    private static final int DEFAULT_CHANGE_RING_EVENTS = 1 << 16; // Change events kept for subscribers
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int DEFAULT_TELLERS = 64;
+    private static final int EXPORT_PAGE_SIZE = 4096; // Customers copied per lock acquisition
+    private static final int EXPORT_BUFFER_BYTES = 1 << 20;
+    private static final int EXPORT_SORT_RUN = 1 << 18; // Off-heap keys sorted in memory before a run is spilled
+
+    private Scanner scanner;
+
+    public Bank() {
+        // Initialize data structures here
+        customerList = new CustomerList();
+        circularCustomerList = new CircularCustomerList();
+        transactionHistory = new TransactionHistory();
+        bankTree = new BankTree();
+        customerQueue = new CustomerQueue<>(QUEUE_CAPACITY);
+        locks = new LockStripes(Runtime.getRuntime().availableProcessors() * 16);
+        scanner = new Scanner(System.in);
+
+        metrics.registerGauge("accounts", this::getAccountCount);
+        metrics.registerGauge("historySize", transactionHistory::size);
+        metrics.registerGauge("queueDepth", customerQueue::getSize);
+    }
+
+    // Method to credit one day of interest to every account at an annual percentage rate
+    public AccrualEngine.Result accrueDailyInterest(double annualRatePercent) {
+        return runAccrual(BankOperation.INTEREST, AccrualRule.dailyInterest(annualRatePercent));
+    }
+
+    // Method to charge the monthly fee to every account below the balance that waives it
+    public AccrualEngine.Result chargeMonthlyFee(double fee, double waivedAtBalance) {
+        return runAccrual(BankOperation.FEE, AccrualRule.monthlyFee(fee, waivedAtBalance));
+    }
+
+    // Method to apply any interest (BankOperation.INTEREST) or fee (BankOperation.FEE) rule to every account
+    public AccrualEngine.Result runAccrual(byte type, AccrualRule rule) {
+        return new AccrualEngine(this, ForkJoinPool.commonPool()).run(type, rule);
+    }
+
+    // Method to check every live balance against a replay of the transaction journal
+    public Reconciler.Report reconcile() {
+        int journalSize;
+        BankSnapshot snapshot = null;
+        int[] accountNumbers = null;
+        long[] balances = null;
+        // Cut the journal and the balances at the same instant: every committed change has been journaled
+        locks.lockAll();
+        try {
+            journalSize = transactionHistory.size();
+            if (accountStore == null) {
+                snapshot = openSnapshot();
+            } else {
+                // Off-heap balances cannot be versioned, so copy them while the locks are held
+                accountNumbers = new int[(int) accountStore.size()];
+                balances = new long[accountNumbers.length];
+                int count = 0;
+                for (long slot = 0; slot < accountStore.capacity(); slot++) {
+                    if (accountStore.isLive(slot)) {
+                        accountNumbers[count] = accountStore.getAccountNumber(slot);
+                        balances[count++] = accountStore.getBalance(slot);
+                    }
+                }
+            }
+        } finally {
+            locks.unlockAll();
+        }
+
+        Reconciler reconciler = new Reconciler(transactionHistory, ForkJoinPool.commonPool(),
+                Runtime.getRuntime().availableProcessors());
+        if (snapshot == null) {
+            int[] mappedAccounts = accountNumbers;
+            long[] mappedBalances = balances;
+            return reconciler.run(journalSize, visitor -> {
+                for (int i = 0; i < mappedAccounts.length; i++) {
+                    visitor.visit(mappedAccounts[i], mappedBalances[i]);
+                }
+            });
+        }
+        try (BankSnapshot pinned = snapshot) {
+            return reconciler.run(journalSize, visitor -> {
+                Iterator<Customer> iterator = pinned.rawIterateByAccount();
+                while (iterator.hasNext()) {
+                    Customer customer = iterator.next();
+                    visitor.visit(customer.accountNumber, AccountStore.toMinorUnits(pinned.balanceOf(customer)));
+                }
+            });
+        }
+    }
+
+    // Method to get the metrics collected for this bank
+    public BankMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Method to get the number of open accounts (read without locking, so it may be momentarily stale)
+    public long getAccountCount() {
+        AccountStore store = accountStore;
+        return (store != null) ? store.size() : customerList.getSize();
+    }
+
+    // Method to display the main menu
+    public void displayMenu() {
+        System.out.println("Bank Operations Menu:");
+        System.out.println("1. Create Account");
+        System.out.println("2. Deposit");
+        System.out.println("3. Withdraw");
+        System.out.println("4. Transfer");
+        System.out.println("5. View Transaction History");
+        System.out.println("6. Delete Account");
+        System.out.println("7. View Details of All Customers in Dictionary Order");
+        System.out.println("8. View Account Statement");
+        System.out.println("9. Search Customers by Name");
+        System.out.println("10. View Balance Rankings");
+        System.out.println("11. View Balance As Of a Date");
+        System.out.println("12. Exit");
+    }
+
+    // Method to perform bank operations based on user input
+    public void performOperations() {
+        boolean exit = false;
+        while (!exit) {
+            displayMenu();
+            System.out.print("Enter your choice: ");
+            int choice = scanner.nextInt();
+            scanner.nextLine(); // Consume the newline character
+
+            switch (choice) {
+                case 1:
+                    createAccount();
+                    break;
+                case 2:
+                    deposit();
+                    break;
+                case 3:
+                    withdraw();
+                    break;
+                case 4:
+                    transfer();
+                    break;
+                case 5:
+                    viewTransactionHistory();
+                    break;
+                case 6:
+                    deleteAccount();
+                    break;
+                case 7:
+                    viewAllCustomers();
+                    break;
+                case 8:
+                    viewAccountStatement();
+                    break;
+                case 9:
+                    searchCustomers();
+                    break;
+                case 10:
+                    viewBalanceRankings();
+                    break;
+                case 11:
+                    viewBalanceAsOf();
+                    break;
+                case 12:
+                    exit = true;
+                    break;
+                default:
+                    System.out.println("Invalid choice. Please enter a valid option.");
+            }
+        }
+        scanner.close();
+    }
+
+    // Method to create a new customer account
+    public void createAccount() {
+        System.out.println("Enter account details:");
+
+        // Input account number
+        System.out.print("Account Number: ");
+        int accountNumber = scanner.nextInt();
+
+        // Input customer name
+        scanner.nextLine(); // Consume the newline character
+        System.out.print("Customer Name: ");
+        String name = scanner.nextLine();
+
+        // Input initial balance
+        System.out.print("Initial Balance: ");
+        double balance = scanner.nextDouble();
+
+        if (createAccount(accountNumber, name, balance) != BankOperation.SUCCESS) {
+            System.out.println("Account number already exists. Account creation failed.");
+            return;
+        }
+
+        System.out.println("Account created successfully.");
+    }
+
+    // Method to create a new customer account without console input
+    public int createAccount(int accountNumber, String name, double balance) {
+        long start = System.nanoTime();
+        int result = executeCreateAccount(accountNumber, name, balance);
+        metrics.record(BankOperation.CREATE, result, start);
+        return result;
+    }
+
+    private int executeCreateAccount(int accountNumber, String name, double balance) {
+        // Create a new customer object
+        Customer newCustomer = new Customer(accountNumber, name, balance);
+
+        long lsn;
+        locks.lockAll();
+        try {
+            if (accountStore != null) {
+                if (!accountStore.create(accountNumber, name, AccountStore.toMinorUnits(balance))) {
+                    return BankOperation.DUPLICATE_ACCOUNT;
+                }
+            } else {
+                // Add the new customer to the customer list
+                if (!customerList.addCustomer(newCustomer)) {
+                    return BankOperation.DUPLICATE_ACCOUNT;
+                }
+
+                // Insert the new customer into the BST, publishing it at the next version
+                long version = versions.begin();
+                try {
+                    newCustomer.version = version;
+                    bankTree.insert(newCustomer, version); // This line is essential
+                } finally {
+                    versions.commit(version);
+                }
+            }
+            lsn = recordCommitted(BankOperation.CREATE, accountNumber, 0, name, balance);
+            FraudRules rules = fraudRules;
+            if (rules != null) {
+                if (accountStore != null) {
+                    rules.accountOpened(locks.stripeOf(accountNumber), accountNumber, System.currentTimeMillis());
+                } else {
+                    newCustomer.activity = rules.newActivity(System.currentTimeMillis());
+                }
+            }
+            NameSearchIndex names = nameIndex;
+            if (names != null) {
+                names.add(accountNumber, name);
+            }
+            BalanceIndex ranking = balanceIndex;
+            if (ranking != null) {
+                ranking.add(accountNumber, AccountStore.toMinorUnits(balance));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not extend the account store", e);
+        } finally {
+            locks.unlockAll();
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Method to open many accounts at once on a bank that has none yet (onboarding a whole portfolio);
+    // returns the number opened. A repeated account number keeps its first row, as createAccount would.
+    // The indexes are built from sorted columns in one pass instead of one rebalancing insert per account.
+    public int bulkLoad(int[] accountNumbers, String[] names, double[] balances, int count) {
+        int[] opened = new int[count]; // Rows that opened an account, in input order
+        int loaded = 0;
+        long lsn = 0;
+        locks.lockAll();
+        try {
+            if (getAccountCount() > 0) {
+                throw new IllegalStateException("Bulk loading needs a bank without accounts");
+            }
+            long now = System.currentTimeMillis();
+            FraudRules rules = fraudRules;
+            if (accountStore != null) {
+                for (int i = 0; i < count; i++) {
+                    if (accountStore.create(accountNumbers[i], names[i], AccountStore.toMinorUnits(balances[i]))) {
+                        opened[loaded++] = i;
+                        if (rules != null) {
+                            rules.accountOpened(locks.stripeOf(accountNumbers[i]), accountNumbers[i], now);
+                        }
+                    }
+                }
+            } else {
+                CustomerList list = new CustomerList(count);
+                Customer[] customers = new Customer[count];
+                long version = versions.begin();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        Customer customer = new Customer(accountNumbers[i], names[i], balances[i]);
+                        if (list.addCustomer(customer)) {
+                            customer.version = version;
+                            if (rules != null) {
+                                customer.activity = rules.newActivity(now);
+                            }
+                            customers[loaded] = customer;
+                            opened[loaded++] = i;
+                        }
+                    }
+                    customerList = list;
+                    bankTree.load(customers, loaded, version, ForkJoinPool.commonPool());
+                } finally {
+                    versions.commit(version);
+                }
+            }
+
+            int[] openedAccounts = new int[loaded];
+            double[] openedBalances = new double[loaded];
+            NameSearchIndex nameSearch = nameIndex;
+            BalanceIndex ranking = balanceIndex;
+            for (int j = 0; j < loaded; j++) {
+                int i = opened[j];
+                openedAccounts[j] = accountNumbers[i];
+                openedBalances[j] = balances[i];
+                if (nameSearch != null) {
+                    nameSearch.add(accountNumbers[i], names[i]);
+                }
+                if (ranking != null) {
+                    ranking.add(accountNumbers[i], AccountStore.toMinorUnits(balances[i]));
+                }
+            }
+            // Replicas and the durable log still see one create per account, each with its journal entry
+            synchronized (transactionHistory) {
+                long first = transactionHistory.recordBatch(BankOperation.CREATE, openedAccounts, openedBalances,
+                        loaded);
+                long committedMillis = transactionHistory.getLastTimestamp();
+                for (int j = 0; j < loaded; j++) {
+                    int i = opened[j];
+                    lsn = logCommitted(BankOperation.CREATE, accountNumbers[i], 0, names[i], balances[i], 0,
+                            first + j, committedMillis);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not extend the account store", e);
+        } finally {
+            locks.unlockAll();
+        }
+        awaitDurable(lsn);
+        return loaded;
+    }
+
+    // Method to bulk load the customers of a CSV file written by exportCustomers; returns the number opened
+    public int importCustomers(Path input) throws IOException {
+        CustomerImporter importer = new CustomerImporter();
+        importer.read(input);
+        return bulkLoad(importer.getAccountNumbers(), importer.getNames(), importer.getBalances(),
+                importer.getCount());
+    }
+
+    // Method to look up a customer by account number (a detached copy when accounts are off-heap)
+    public Customer findCustomer(int accountNumber) {
+        locks.lock(accountNumber);
+        try {
+            if (accountStore != null) {
+                long slot = accountStore.find(accountNumber);
+                return (slot >= 0) ? new Customer(accountNumber, accountStore.getName(slot),
+                        AccountStore.fromMinorUnits(accountStore.getBalance(slot))) : null;
+            }
+            return customerList.findCustomer(accountNumber);
+        } finally {
+            locks.unlock(accountNumber);
+        }
+    }
+
+    // Method to deposit money into an account
+    public void deposit() {
+        System.out.println("Enter account details for deposit:");
+
+        // Input account number
+        System.out.print("Account Number: ");
+        int accountNumber = scanner.nextInt();
+
+        // Input deposit amount
+        System.out.print("Deposit Amount: ");
+        double depositAmount = scanner.nextDouble();
+
+        if (deposit(accountNumber, depositAmount) == BankOperation.SUCCESS) {
+            System.out.println("Deposit successful. New balance: " + findCustomer(accountNumber).balance);
+        } else {
+            System.out.println("Account not found. Deposit failed.");
+        }
+    }
+
+    // Method to deposit money into an account without console input
+    public int deposit(int accountNumber, double depositAmount) {
+        long start = System.nanoTime();
+        int result = executeDeposit(accountNumber, depositAmount);
+        metrics.record(BankOperation.DEPOSIT, result, start);
+        return result;
+    }
+
+    private int executeDeposit(int accountNumber, double depositAmount) {
+        long lsn;
+        locks.lock(accountNumber);
+        try {
+            if (accountStore != null) {
+                long slot = accountStore.find(accountNumber);
+                if (slot < 0) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                addStoreBalance(slot, accountNumber, AccountStore.toMinorUnits(depositAmount));
+            } else {
+                // Find the customer by account number
+                Customer customer = customerList.findCustomer(accountNumber);
+                if (customer == null) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+
+                // Update the customer's balance with the deposit amount
+                commitBalance(customer, customer.balance + depositAmount);
+            }
+
+            // Record the transaction in the transaction history
+            lsn = recordCommitted(BankOperation.DEPOSIT, accountNumber, 0, null, depositAmount);
+        } finally {
+            locks.unlock(accountNumber);
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Method to withdraw money from an account
+    public void withdraw() {
+        System.out.println("Enter account details for withdrawal:");
+
+        // Input account number
+        System.out.print("Account Number: ");
+        int accountNumber = scanner.nextInt();
+
+        // Input withdrawal amount
+        System.out.print("Withdrawal Amount: ");
+        double withdrawalAmount = scanner.nextDouble();
+
+        int result = withdraw(accountNumber, withdrawalAmount);
+        if (result == BankOperation.SUCCESS) {
+            System.out.println("Withdrawal successful. New balance: " + findCustomer(accountNumber).balance);
+        } else if (result == BankOperation.INSUFFICIENT_BALANCE) {
+            System.out.println("Insufficient balance. Withdrawal failed.");
+        } else if (result == BankOperation.REJECTED_BY_RULE) {
+            System.out.println("Withdrawal refused by a fraud rule.");
+        } else {
+            System.out.println("Account not found. Withdrawal failed.");
+        }
+    }
+
+    // Method to withdraw money from an account without console input
+    public int withdraw(int accountNumber, double withdrawalAmount) {
+        long start = System.nanoTime();
+        int result = executeWithdraw(accountNumber, withdrawalAmount);
+        metrics.record(BankOperation.WITHDRAW, result, start);
+        return result;
+    }
+
+    private int executeWithdraw(int accountNumber, double withdrawalAmount) {
+        long lsn;
+        FraudRules rules = fraudRules;
+        long now = (rules != null) ? System.currentTimeMillis() : 0;
+        int verdict = FraudRule.ALLOW;
+        locks.lock(accountNumber);
+        try {
+            // The balance check, the fraud rules and the update happen under the same lock
+            if (accountStore != null) {
+                long slot = accountStore.find(accountNumber);
+                if (slot < 0) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                long amount = AccountStore.toMinorUnits(withdrawalAmount);
+                if (accountStore.getBalance(slot) < amount) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                if (rules != null && (verdict = screenDebit(rules, BankOperation.WITHDRAW, accountNumber, null,
+                        0, null, withdrawalAmount, now)) == FraudRule.REJECT) {
+                    return BankOperation.REJECTED_BY_RULE;
+                }
+                addStoreBalance(slot, accountNumber, -amount);
+            } else {
+                // Find the customer by account number
+                Customer customer = customerList.findCustomer(accountNumber);
+                if (customer == null) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                if (customer.balance < withdrawalAmount) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                if (rules != null && (verdict = screenDebit(rules, BankOperation.WITHDRAW, accountNumber, customer,
+                        0, null, withdrawalAmount, now)) == FraudRule.REJECT) {
+                    return BankOperation.REJECTED_BY_RULE;
+                }
+
+                commitBalance(customer, customer.balance - withdrawalAmount);
+            }
+
+            // Record the transaction in the transaction history
+            lsn = recordCommitted(BankOperation.WITHDRAW, accountNumber, 0, null, withdrawalAmount);
+            if (verdict == FraudRule.FLAG) {
+                recordRuleOutcome(BankOperation.FLAGGED, accountNumber, 0, withdrawalAmount);
+            }
+        } finally {
+            locks.unlock(accountNumber);
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Method to transfer money between accounts
+    public void transfer() {
+        System.out.println("Enter transfer details:");
+
+        // Input source account number
+        System.out.print("Source Account Number: ");
+        int sourceAccountNumber = scanner.nextInt();
+
+        // Input destination account number
+        System.out.print("Destination Account Number: ");
+        int destinationAccountNumber = scanner.nextInt();
+
+        // Input transfer amount
+        System.out.print("Transfer Amount: ");
+        double transferAmount = scanner.nextDouble();
+
+        int result = transfer(sourceAccountNumber, destinationAccountNumber, transferAmount);
+        if (result == BankOperation.SUCCESS) {
+            System.out.println("Transfer successful.");
+            System.out.println("Source Account Balance: " + findCustomer(sourceAccountNumber).balance);
+            System.out.println("Destination Account Balance: " + findCustomer(destinationAccountNumber).balance);
+        } else if (result == BankOperation.INSUFFICIENT_BALANCE) {
+            System.out.println("Insufficient balance in the source account. Transfer failed.");
+        } else if (result == BankOperation.REJECTED_BY_RULE) {
+            System.out.println("Transfer refused by a fraud rule.");
+        } else {
+            System.out.println("One or both accounts not found. Transfer failed.");
+        }
+    }
+
+    // Method to transfer money between accounts without console input
+    public int transfer(int sourceAccountNumber, int destinationAccountNumber, double transferAmount) {
+        long start = System.nanoTime();
+        int result = executeTransfer(sourceAccountNumber, destinationAccountNumber, transferAmount);
+        metrics.record(BankOperation.TRANSFER, result, start);
+        return result;
+    }
+
+    private int executeTransfer(int sourceAccountNumber, int destinationAccountNumber, double transferAmount) {
+        long lsn;
+        FraudRules rules = fraudRules;
+        long now = (rules != null) ? System.currentTimeMillis() : 0;
+        int verdict = FraudRule.ALLOW;
+        locks.lockPair(sourceAccountNumber, destinationAccountNumber);
+        try {
+            if (accountStore != null) {
+                long sourceSlot = accountStore.find(sourceAccountNumber);
+                long destinationSlot = accountStore.find(destinationAccountNumber);
+                if (sourceSlot < 0 || destinationSlot < 0) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                long amount = AccountStore.toMinorUnits(transferAmount);
+                if (accountStore.getBalance(sourceSlot) < amount) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                if (rules != null && (verdict = screenDebit(rules, BankOperation.TRANSFER, sourceAccountNumber,
+                        null, destinationAccountNumber, null, transferAmount, now)) == FraudRule.REJECT) {
+                    return BankOperation.REJECTED_BY_RULE;
+                }
+                addStoreBalance(sourceSlot, sourceAccountNumber, -amount);
+                addStoreBalance(destinationSlot, destinationAccountNumber, amount);
+            } else {
+                // Find the source and destination customers by account number
+                Customer sourceCustomer = customerList.findCustomer(sourceAccountNumber);
+                Customer destinationCustomer = customerList.findCustomer(destinationAccountNumber);
+
+                if (sourceCustomer == null || destinationCustomer == null) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                if (sourceCustomer.balance < transferAmount) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                if (rules != null && (verdict = screenDebit(rules, BankOperation.TRANSFER, sourceAccountNumber,
+                        sourceCustomer, destinationAccountNumber, destinationCustomer, transferAmount,
+                        now)) == FraudRule.REJECT) {
+                    return BankOperation.REJECTED_BY_RULE;
+                }
+
+                // Both sides share one version, so no snapshot can see half a transfer
+                long version = versions.begin();
+                try {
+                    writeBalance(sourceCustomer, sourceCustomer.balance - transferAmount, version);
+                    writeBalance(destinationCustomer, destinationCustomer.balance + transferAmount, version);
+                } finally {
+                    versions.commit(version);
+                }
+            }
+
+            // Record the transfer (covering both accounts) in the transaction history
+            lsn = recordCommitted(BankOperation.TRANSFER, sourceAccountNumber, destinationAccountNumber, null,
+                    transferAmount);
+            if (verdict == FraudRule.FLAG) {
+                recordRuleOutcome(BankOperation.FLAGGED, sourceAccountNumber, destinationAccountNumber,
+                        transferAmount);
+            }
+        } finally {
+            locks.unlockPair(sourceAccountNumber, destinationAccountNumber);
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Method to apply a single operation; returns one of the BankOperation result codes
+    public int apply(BankOperation operation) {
+        switch (operation.type) {
+            case BankOperation.CREATE:
+                return createAccount(operation.accountNumber, operation.name, operation.amount);
+            case BankOperation.DEPOSIT:
+                return deposit(operation.accountNumber, operation.amount);
+            case BankOperation.WITHDRAW:
+                return withdraw(operation.accountNumber, operation.amount);
+            case BankOperation.TRANSFER:
+                return transfer(operation.accountNumber, operation.targetAccountNumber, operation.amount);
+            case BankOperation.DELETE:
+                return deleteAccount(operation.accountNumber);
+            case BankOperation.INTEREST:
+            case BankOperation.FEE:
+                return applyAccrual(operation.type, operation.accountNumber, operation.amount);
+            case BankOperation.TRANSFER_OUT:
+            case BankOperation.TRANSFER_IN:
+                return executeTransferLeg(operation.type, operation.accountNumber, operation.targetAccountNumber,
+                        operation.amount, operation.reference);
+            case BankOperation.REVERSAL: {
+                int result = applyReversal(operation.accountNumber, operation.targetAccountNumber, operation.amount,
+                        operation.reference);
+                if (result == BankOperation.SUCCESS && operation.reference != 0) {
+                    synchronized (reversedEntries) {
+                        reversedEntries.add(operation.reference); // Replayed: the entry stays reversed
+                    }
+                }
+                return result;
+            }
+            case BankOperation.REJECTED:
+            case BankOperation.FLAGGED:
+                // Fraud rule outcomes only reach apply() when a log is replayed: journal them again
+                locks.lock(operation.accountNumber);
+                try {
+                    recordRuleOutcome(operation.type, operation.accountNumber, operation.targetAccountNumber,
+                            operation.amount);
+                } finally {
+                    locks.unlock(operation.accountNumber);
+                }
+                return BankOperation.SUCCESS;
+            default:
+                return BankOperation.INVALID_OPERATION;
+        }
+    }
+
+    // Method to apply operations in order on the calling thread, waiting for durability once
+    // for the whole batch instead of once per operation. results[i] receives the result of operations[i].
+    public void applyBatch(BankOperation[] operations, int count, int[] results) {
+        long[] deferred = deferredLsn.get();
+        deferred[0] = 0;
+        deferred[1] = 1; // Defer durability waits on this thread
+        try {
+            for (int i = 0; i < count; i++) {
+                results[i] = apply(operations[i]);
+            }
+        } finally {
+            deferred[1] = 0;
+        }
+        awaitDurable(deferred[0]);
+    }
+
+    // Method to apply operations from several worker threads at once.
+    // Workers claim chunks of the array, so operations on different accounts run in
+    // parallel; results[i] (if results is not null) receives the result code of operations[i].
+    public void applyConcurrently(BankOperation[] operations, int count, int[] results, int threads) {
+        AtomicInteger nextIndex = new AtomicInteger();
+        Runnable worker = () -> {
+            int start;
+            while ((start = nextIndex.getAndAdd(WORKER_CHUNK)) < count) {
+                int end = Math.min(start + WORKER_CHUNK, count);
+                for (int i = start; i < end; i++) {
+                    int result = apply(operations[i]);
+                    if (results != null) {
+                        results[i] = result;
+                    }
+                }
+            }
+        };
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(worker, "bank-worker-" + i);
+            workers[i].start();
+        }
+        for (Thread thread : workers) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for bank workers", e);
+            }
+        }
+    }
+
+    // Method to start tellers that serve operations submitted to the customer queue
+    public synchronized void startTellers(int tellerCount) {
+        if (tellerPool != null) {
+            throw new IllegalStateException("Tellers are already running");
+        }
+        tellerPool = new TellerPool(this, customerQueue, tellerCount);
+    }
+
+    // Method to queue an operation for the tellers, waiting while the queue is full.
+    // The future completes with the operation's result code once it has been applied.
+    public CompletableFuture<Integer> submit(BankOperation operation) throws InterruptedException {
+        return tellers().submit(operation);
+    }
+
+    // Method to queue an operation, waiting up to the timeout for room; returns null if the queue stayed full
+    public CompletableFuture<Integer> submit(BankOperation operation, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return tellers().submit(operation, timeout, unit);
+    }
+
+    // Helper method to get the teller pool, starting the default number of tellers on first use
+    private synchronized TellerPool tellers() {
+        if (tellerPool == null) {
+            startTellers(DEFAULT_TELLERS);
+        }
+        return tellerPool;
+    }
+
+    // Helper method for the accrual engine: copies every account number, grouped by lock stripe
+    int[] snapshotAccountsByStripe() {
+        int[] accounts;
+        locks.lockAll();
+        try {
+            if (accountStore != null) {
+                accounts = new int[(int) accountStore.size()];
+                int count = 0;
+                for (long slot = 0; slot < accountStore.capacity(); slot++) {
+                    if (accountStore.isLive(slot)) {
+                        accounts[count++] = accountStore.getAccountNumber(slot);
+                    }
+                }
+            } else {
+                accounts = new int[bankTree.getSize()];
+                Iterator<Customer> iterator = bankTree.iterateByAccount();
+                for (int i = 0; i < accounts.length; i++) {
+                    accounts[i] = iterator.next().accountNumber;
+                }
+            }
+        } finally {
+            locks.unlockAll();
+        }
+        // Counting sort by stripe, so each stripe's accounts are contiguous
+        int[] starts = new int[locks.getStripeCount() + 1];
+        for (int accountNumber : accounts) {
+            starts[locks.stripeOf(accountNumber) + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] grouped = new int[accounts.length];
+        for (int accountNumber : accounts) {
+            grouped[starts[locks.stripeOf(accountNumber)]++] = accountNumber;
+        }
+        return grouped;
+    }
+
+    int stripeOf(int accountNumber) {
+        return locks.stripeOf(accountNumber);
+    }
+
+    // Method to check every withdrawal and transfer against fraud rules over a sliding window of
+    // windowMillis (split into buckets). Rejected debits fail with REJECTED_BY_RULE; rejections
+    // and flags are both journaled. Accounts opened before this call count as long established.
+    public void enableFraudRules(long windowMillis, int buckets, FraudRule... rules) {
+        if (fraudRules != null) {
+            throw new IllegalStateException("Fraud rules are already enabled");
+        }
+        FraudRules engine = new FraudRules(windowMillis, buckets, locks.getStripeCount(), rules);
+        locks.lockAll();
+        try {
+            fraudRules = engine;
+        } finally {
+            locks.unlockAll();
+        }
+        metrics.registerGauge("fraudRejections", engine::getRejectedCount);
+        metrics.registerGauge("fraudFlags", engine::getFlaggedCount);
+    }
+
+    // Method to index customer names for searchCustomersByName and searchCustomersBySpelling.
+    // The index is built from the current accounts and then kept in step with every account
+    // created or deleted.
+    public void enableNameSearch() {
+        if (nameIndex != null) {
+            throw new IllegalStateException("Name search is already enabled");
+        }
+        NameSearchIndex names = new NameSearchIndex();
+        locks.lockAll();
+        try {
+            if (accountStore != null) {
+                for (long slot = 0; slot < accountStore.capacity(); slot++) {
+                    if (accountStore.isLive(slot)) {
+                        names.add(accountStore.getAccountNumber(slot), accountStore.getName(slot));
+                    }
+                }
+            } else {
+                for (Iterator<Customer> it = bankTree.iterateByAccount(); it.hasNext(); ) {
+                    Customer customer = it.next();
+                    names.add(customer.accountNumber, customer.name);
+                }
+            }
+            nameIndex = names;
+        } finally {
+            locks.unlockAll();
+        }
+        metrics.registerGauge("indexedNames", names::size);
+    }
+
+    // Method to find up to limit customers whose name, or any word of it, starts with a prefix
+    // (ignoring case), in dictionary order
+    public List<Customer> searchCustomersByName(String prefix, int limit) {
+        return customersOf(requireNameIndex().searchPrefix(prefix, checkLimit(limit)));
+    }
+
+    // Method to find up to limit customers whose name, or any word of it, starts with text at most
+    // maxEdits typos (a wrong, missing, extra or swapped letter) from the query; closest first
+    public List<Customer> searchCustomersBySpelling(String query, int maxEdits, int limit) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("maxEdits must not be negative");
+        }
+        return customersOf(requireNameIndex().searchFuzzy(query, maxEdits, checkLimit(limit)));
+    }
+
+    private NameSearchIndex requireNameIndex() {
+        NameSearchIndex names = nameIndex;
+        if (names == null) {
+            throw new IllegalStateException("Name search is not enabled");
+        }
+        return names;
+    }
+
+    private static int checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        return limit;
+    }
+
+    // Helper method to look up search results, skipping accounts deleted since the search
+    private List<Customer> customersOf(int[] accountNumbers) {
+        List<Customer> customers = new ArrayList<>(accountNumbers.length);
+        for (int accountNumber : accountNumbers) {
+            Customer customer = findCustomer(accountNumber);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        return customers;
+    }
+
+    // Method to index balances for topBalances, balanceRank, balancePercentile and the balance counts.
+    // The index is built from the current accounts and then kept in step with every posting.
+    public void enableBalanceIndex() {
+        if (balanceIndex != null) {
+            throw new IllegalStateException("Balance rankings are already enabled");
+        }
+        BalanceIndex ranking = new BalanceIndex();
+        locks.lockAll();
+        try {
+            int count = 0;
+            int[] accountNumbers;
+            long[] balances;
+            if (accountStore != null) {
+                accountNumbers = new int[(int) accountStore.size()];
+                balances = new long[accountNumbers.length];
+                for (long slot = 0; slot < accountStore.capacity(); slot++) {
+                    if (accountStore.isLive(slot)) {
+                        accountNumbers[count] = accountStore.getAccountNumber(slot);
+                        balances[count++] = accountStore.getBalance(slot);
+                    }
+                }
+            } else {
+                accountNumbers = new int[bankTree.getSize()];
+                balances = new long[accountNumbers.length];
+                for (Iterator<Customer> it = bankTree.iterateByAccount(); it.hasNext(); ) {
+                    Customer customer = it.next();
+                    accountNumbers[count] = customer.accountNumber;
+                    balances[count++] = AccountStore.toMinorUnits(customer.balance);
+                }
+            }
+            ranking.load(accountNumbers, balances, count); // One sort instead of an insert per account
+            balanceIndex = ranking;
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    // Method to get up to limit customers with the highest balances, highest first. Each is a copy
+    // carrying the balance it was ranked by, so the list stays ordered while postings continue.
+    public List<Customer> topBalances(int limit) {
+        int[] accountNumbers = new int[checkLimit(limit)];
+        long[] balances = new long[limit];
+        int count = requireBalanceIndex().top(limit, accountNumbers, balances);
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Customer customer = findCustomer(accountNumbers[i]);
+            if (customer != null) {
+                customers.add(new Customer(accountNumbers[i], customer.name,
+                        AccountStore.fromMinorUnits(balances[i])));
+            }
+        }
+        return customers;
+    }
+
+    // Method to get an account's rank by balance: 1 plus the number of accounts holding more (0 if there is no account)
+    public long balanceRank(int accountNumber) {
+        Customer customer = findCustomer(accountNumber);
+        if (customer == null) {
+            return 0;
+        }
+        return 1 + requireBalanceIndex().countAbove(AccountStore.toMinorUnits(customer.balance));
+    }
+
+    // Method to get the balance at a percentile (0 to 100, nearest rank), such as 50 for the median
+    public double balancePercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        return AccountStore.fromMinorUnits(requireBalanceIndex().percentile(percentile));
+    }
+
+    // Method to count the accounts holding more than an amount
+    public long countBalancesAbove(double amount) {
+        return requireBalanceIndex().countAbove(AccountStore.toMinorUnits(amount));
+    }
+
+    // Method to count the accounts whose balance is in [fromAmount, toAmount)
+    public long countBalancesBetween(double fromAmount, double toAmount) {
+        return requireBalanceIndex().countBetween(AccountStore.toMinorUnits(fromAmount),
+                AccountStore.toMinorUnits(toAmount));
+    }
+
+    private BalanceIndex requireBalanceIndex() {
+        BalanceIndex ranking = balanceIndex;
+        if (ranking == null) {
+            throw new IllegalStateException("Balance rankings are not enabled");
+        }
+        return ranking;
+    }
+
+    // Method to publish every committed operation as a change event (see ChangePublisher) to subscribers
+    // added with subscribeChanges, keeping the ringEvents newest for them. Unless file is null, every
+    // event is also appended to that change file, and numbering continues after the events it holds.
+    // Enable it after recovery, so replayed operations are not published again.
+    public ChangePublisher enableChangeCapture(Path file, int ringEvents) throws IOException {
+        if (changePublisher != null) {
+            throw new IllegalStateException("Change data capture is already enabled");
+        }
+        ChangePublisher changes = new ChangePublisher(ringEvents,
+                (file != null) ? ChangeFile.openForAppend(file) : null);
+        // No operation is half way through publishing when capture starts
+        locks.lockAll();
+        try {
+            changePublisher = changes;
+        } finally {
+            locks.unlockAll();
+        }
+        return changes;
+    }
+
+    // Method to receive the change events after a sequence number on a thread of the subscriber's own,
+    // in batches of up to batchEvents (see ChangePublisher.subscribe). A slow subscriber falls behind
+    // without holding up postings; close it to stop.
+    public ChangePublisher.Subscriber subscribeChanges(long afterSequence, int batchEvents, long lingerMillis,
+            ChangeHandler handler) {
+        ChangePublisher changes = changePublisher;
+        if (changes == null) {
+            throw new IllegalStateException("Change data capture is not enabled");
+        }
+        return changes.subscribe(afterSequence, batchEvents, lingerMillis, handler);
+    }
+
+    // Method to answer balanceAsOf and forEachBalanceAsOf from periodic checkpoints of the transaction
+    // journal (see BalanceHistory). The journal so far is replayed once here; after that a background
+    // thread follows it, and every query catches up with the entries recorded since.
+    public synchronized void enableBalanceHistory() {
+        if (balanceHistory != null) {
+            throw new IllegalStateException("As-of balance queries are already enabled");
+        }
+        BalanceHistory temporal = new BalanceHistory(transactionHistory);
+        temporal.catchUp();
+        historyFollower = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bank-balance-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+        historyFollower.scheduleWithFixedDelay(temporal::catchUp, BALANCE_HISTORY_CATCH_UP_MILLIS,
+                BALANCE_HISTORY_CATCH_UP_MILLIS, TimeUnit.MILLISECONDS);
+        balanceHistory = temporal;
+    }
+
+    // Method to get an account's balance as of a time in epoch milliseconds, counting every journal
+    // entry recorded at or before it; NaN if the account was not open then, or if the time is before
+    // getHistoryStartMillis() (entries from before a recovered snapshot are not kept)
+    public double balanceAsOf(int accountNumber, long timestamp) {
+        long balance = requireBalanceHistory().balanceAt(accountNumber, timestamp);
+        return (balance == BalanceHistory.CLOSED) ? Double.NaN : AccountStore.fromMinorUnits(balance);
+    }
+
+    // Method to visit every account open at a time in epoch milliseconds with its balance then (in minor
+    // units, in no particular order), such as every balance at the end of last month
+    public void forEachBalanceAsOf(long timestamp, BalanceHistory.BalanceVisitor visitor) {
+        requireBalanceHistory().forEachBalanceAt(timestamp, visitor);
+    }
+
+    // Method to get the time from which as-of queries are answered: 0, or after a restart the time of
+    // the snapshot the journal was recovered from
+    public long getHistoryStartMillis() {
+        return historyStartMillis;
+    }
+
+    private BalanceHistory requireBalanceHistory() {
+        BalanceHistory temporal = balanceHistory;
+        if (temporal == null) {
+            throw new IllegalStateException("As-of balance queries are not enabled");
+        }
+        return temporal;
+    }
+
+    // Method to reverse a deposit, withdrawal, transfer, interest credit or fee, given its journal
+    // sequence number. A compensating REVERSAL entry gives back its balance effect, and the original
+    // stays in the journal, so statements and as-of balances show both. Returns INVALID_OPERATION
+    // for an unknown entry, one of another type or one already reversed, and INSUFFICIENT_BALANCE
+    // if the account to be debited no longer holds the amount. With durability enabled the REVERSAL
+    // names the entry it compensates, so an entry stays reversed after a restart; entries covered by
+    // the last checkpoint are no longer in the journal then and cannot be reversed.
+    public int reverseTransaction(long sequence) {
+        int index = transactionHistory.indexOf(sequence);
+        if (index < 0) {
+            return BankOperation.INVALID_OPERATION;
+        }
+        int source = transactionHistory.getSource(index);
+        double amount = transactionHistory.getAmount(index);
+        int result;
+        synchronized (reversedEntries) {
+            if (!reversedEntries.add(sequence)) {
+                return BankOperation.INVALID_OPERATION; // Already claimed, so a concurrent call cannot reverse it too
+            }
+        }
+        switch (transactionHistory.getType(index)) {
+            case BankOperation.DEPOSIT:
+            case BankOperation.INTEREST:
+                result = applyReversal(source, 0, amount, sequence);
+                break;
+            case BankOperation.WITHDRAW:
+            case BankOperation.FEE:
+                result = applyReversal(source, 0, -amount, sequence);
+                break;
+            case BankOperation.TRANSFER:
+                result = applyReversal(transactionHistory.getDestination(index), source, amount, sequence);
+                break;
+            default:
+                // Openings, closings, cross-shard legs, rule outcomes and reversals themselves
+                result = BankOperation.INVALID_OPERATION;
+        }
+        if (result != BankOperation.SUCCESS) {
+            synchronized (reversedEntries) {
+                reversedEntries.remove(sequence);
+            }
+        }
+        return result;
+    }
+
+    // Helper method to post a compensating entry: amount moves from accountNumber to targetAccountNumber,
+    // or out of accountNumber (into it, when negative) if targetAccountNumber is 0, compensating the
+    // entry with sequence number reversedSequence (0 if unknown). Like the entries it compensates, it
+    // is not screened by the fraud rules.
+    private int applyReversal(int accountNumber, int targetAccountNumber, double amount, long reversedSequence) {
+        long lsn;
+        boolean pair = targetAccountNumber != 0;
+        if (pair) {
+            locks.lockPair(accountNumber, targetAccountNumber);
+        } else {
+            locks.lock(accountNumber);
+        }
+        try {
+            if (accountStore != null) {
+                long slot = accountStore.find(accountNumber);
+                long targetSlot = pair ? accountStore.find(targetAccountNumber) : 0;
+                if (slot < 0 || targetSlot < 0) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                long minorUnits = AccountStore.toMinorUnits(amount);
+                if (accountStore.getBalance(slot) < minorUnits) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                addStoreBalance(slot, accountNumber, -minorUnits);
+                if (pair) {
+                    addStoreBalance(targetSlot, targetAccountNumber, minorUnits);
+                }
+            } else {
+                Customer customer = customerList.findCustomer(accountNumber);
+                Customer targetCustomer = pair ? customerList.findCustomer(targetAccountNumber) : null;
+                if (customer == null || (pair && targetCustomer == null)) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                if (customer.balance < amount) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                long version = versions.begin();
+                try {
+                    writeBalance(customer, customer.balance - amount, version);
+                    if (pair) {
+                        writeBalance(targetCustomer, targetCustomer.balance + amount, version);
+                    }
+                } finally {
+                    versions.commit(version);
+                }
+            }
+            lsn = recordCommitted(BankOperation.REVERSAL, accountNumber, targetAccountNumber, null, amount,
+                    reversedSequence);
+        } finally {
+            if (pair) {
+                locks.unlockPair(accountNumber, targetAccountNumber);
+            } else {
+                locks.unlock(accountNumber);
+            }
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Helper method to run the fraud rules on a debit (its stripes must be held; the customers are
+    // null for off-heap accounts). Counts the debit, which the caller applies unless it is rejected,
+    // and journals a rejection.
+    private int screenDebit(FraudRules rules, byte type, int accountNumber, Customer source,
+            int destinationAccountNumber, Customer destination, double amount, long nowMillis) {
+        AccountActivity sourceActivity;
+        if (source != null) {
+            if (source.activity == null) {
+                source.activity = rules.newActivity(0); // Opened before the rules were enabled
+            }
+            sourceActivity = source.activity;
+        } else {
+            sourceActivity = rules.activityOf(locks.stripeOf(accountNumber), accountNumber);
+        }
+        // A transfer's destination is only known here for transfers inside this bank
+        AccountActivity destinationActivity = null;
+        if (type == BankOperation.TRANSFER) {
+            destinationActivity = (destination != null) ? destination.activity
+                    : rules.findActivity(locks.stripeOf(destinationAccountNumber), destinationAccountNumber);
+        }
+        long minorUnits = AccountStore.toMinorUnits(amount);
+        int verdict = rules.checkDebit(type, sourceActivity, destinationActivity, minorUnits, nowMillis);
+        if (verdict == FraudRule.REJECT) {
+            recordRuleOutcome(BankOperation.REJECTED, accountNumber, destinationAccountNumber, amount);
+        } else {
+            sourceActivity.recordDebit(minorUnits);
+        }
+        return verdict;
+    }
+
+    // Helper method to journal a fraud rule outcome; it is logged so replicas and recovery keep it,
+    // but nothing waits for it to be durable since no balance changed
+    private void recordRuleOutcome(byte type, int accountNumber, int destinationAccountNumber, double amount) {
+        recordCommitted(type, accountNumber, destinationAccountNumber, null, amount);
+    }
+
+    // Helper method for the accrual engine: applies a rule to accounts[from, to), which all share one
+    // stripe, under that stripe's lock, then journals the run in one append
+    void applyAccrualRun(byte type, AccrualRule rule, int[] accounts, int from, int to, int[] applied,
+            double[] amounts, AccrualEngine.Result result) {
+        int count = 0;
+        long totalMinorUnits = 0;
+        long lastLsn = 0;
+        locks.lock(accounts[from]);
+        try {
+            for (int i = from; i < to; i++) {
+                int accountNumber = accounts[i];
+                long slot = -1;
+                Customer customer = null;
+                double balance;
+                if (accountStore != null) {
+                    slot = accountStore.find(accountNumber);
+                    if (slot < 0) {
+                        continue; // Closed since the snapshot
+                    }
+                    balance = AccountStore.fromMinorUnits(accountStore.getBalance(slot));
+                } else {
+                    customer = customerList.findCustomer(accountNumber);
+                    if (customer == null) {
+                        continue;
+                    }
+                    balance = customer.balance;
+                }
+                // Amounts are whole cents, and a fee never takes a balance below zero
+                long minorUnits = AccountStore.toMinorUnits(rule.amountFor(accountNumber, balance));
+                if (type == BankOperation.FEE) {
+                    minorUnits = Math.min(minorUnits, Math.max(0, AccountStore.toMinorUnits(balance)));
+                }
+                if (minorUnits <= 0) {
+                    continue;
+                }
+                double amount = AccountStore.fromMinorUnits(minorUnits);
+                long signedMinorUnits = (type == BankOperation.FEE) ? -minorUnits : minorUnits;
+                if (accountStore != null) {
+                    addStoreBalance(slot, accountNumber, signedMinorUnits);
+                } else {
+                    commitBalance(customer, customer.balance + ((type == BankOperation.FEE) ? -amount : amount));
+                }
+                applied[count] = accountNumber;
+                amounts[count] = amount;
+                count++;
+                totalMinorUnits += minorUnits;
+            }
+            synchronized (transactionHistory) {
+                long first = transactionHistory.recordBatch(type, applied, amounts, count);
+                long committedMillis = transactionHistory.getLastTimestamp();
+                for (int i = 0; i < count; i++) {
+                    long lsn = logCommitted(type, applied[i], 0, null, amounts[i], 0, first + i, committedMillis);
+                    lastLsn = Math.max(lastLsn, lsn);
+                }
+            }
+        } finally {
+            locks.unlock(accounts[from]);
+        }
+        awaitDurable(lastLsn);
+        result.add(count, totalMinorUnits);
+    }
+
+    // Helper method to apply one logged interest credit or fee (used when replaying the log)
+    private int applyAccrual(byte type, int accountNumber, double amount) {
+        long lsn;
+        locks.lock(accountNumber);
+        try {
+            double signedAmount = (type == BankOperation.FEE) ? -amount : amount;
+            if (accountStore != null) {
+                long slot = accountStore.find(accountNumber);
+                if (slot < 0) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                if (AccountStore.fromMinorUnits(accountStore.getBalance(slot)) + signedAmount < 0) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                addStoreBalance(slot, accountNumber, AccountStore.toMinorUnits(signedAmount));
+            } else {
+                Customer customer = customerList.findCustomer(accountNumber);
+                if (customer == null) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                if (customer.balance + signedAmount < 0) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                commitBalance(customer, customer.balance + signedAmount);
+            }
+            lsn = recordCommitted(type, accountNumber, 0, null, amount);
+        } finally {
+            locks.unlock(accountNumber);
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Class representing one prepared leg of a cross-shard transfer
+    private static final class PreparedLeg {
+        final byte type; // TRANSFER_OUT (already debited) or TRANSFER_IN (credited on commit)
+        final int accountNumber;
+        final int remoteAccountNumber;
+        final double amount;
+
+        PreparedLeg(byte type, int accountNumber, int remoteAccountNumber, double amount) {
+            this.type = type;
+            this.accountNumber = accountNumber;
+            this.remoteAccountNumber = remoteAccountNumber;
+            this.amount = amount;
+        }
+    }
+
+    // Method to prepare this bank's leg of a cross-shard transfer (two-phase commit, phase one).
+    // An outgoing leg debits the account now, so the funds cannot be spent twice; an incoming leg
+    // only checks the account. Either way the account cannot be deleted until the leg is resolved.
+    // Preparing the same transaction again is a no-op. With durability enabled the prepared leg is
+    // logged before this returns, so it survives a restart until the coordinator resolves it.
+    public int prepareTransferLeg(long transactionId, byte type, int accountNumber, int remoteAccountNumber,
+            double amount) {
+        if (preparedLegs.containsKey(transactionId)) {
+            return BankOperation.SUCCESS;
+        }
+        if (type == BankOperation.TRANSFER_OUT) {
+            return executeTransferLeg(type, accountNumber, remoteAccountNumber, amount, transactionId);
+        }
+        if (type != BankOperation.TRANSFER_IN) {
+            return BankOperation.INVALID_OPERATION;
+        }
+        long lsn;
+        locks.lock(accountNumber);
+        try {
+            boolean exists = (accountStore != null) ? accountStore.find(accountNumber) >= 0
+                    : customerList.findCustomer(accountNumber) != null;
+            if (!exists) {
+                return BankOperation.ACCOUNT_NOT_FOUND;
+            }
+            PreparedLeg leg = new PreparedLeg(type, accountNumber, remoteAccountNumber, amount);
+            if (preparedLegs.putIfAbsent(transactionId, leg) != null) {
+                return BankOperation.SUCCESS;
+            }
+            lsn = logLegState(BankOperation.LEG_PREPARED, leg, transactionId);
+        } finally {
+            locks.unlock(accountNumber);
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Method to commit a prepared leg; committing an unknown or already resolved transaction is a no-op
+    public int commitTransferLeg(long transactionId) {
+        PreparedLeg leg = preparedLegs.get(transactionId);
+        if (leg == null) {
+            return BankOperation.SUCCESS;
+        }
+        if (leg.type == BankOperation.TRANSFER_IN) {
+            return executeTransferLeg(BankOperation.TRANSFER_IN, leg.accountNumber, leg.remoteAccountNumber,
+                    leg.amount, transactionId);
+        }
+        return resolveLeg(transactionId, leg); // The debit was applied when the leg was prepared
+    }
+
+    // Method to abort a prepared leg, returning any debited funds; aborting twice is a no-op
+    public int abortTransferLeg(long transactionId) {
+        PreparedLeg leg = preparedLegs.get(transactionId);
+        if (leg == null) {
+            return BankOperation.SUCCESS;
+        }
+        if (leg.type == BankOperation.TRANSFER_OUT) {
+            // The refund is journaled as an incoming leg from the account the funds were going to
+            return executeTransferLeg(BankOperation.TRANSFER_IN, leg.accountNumber, leg.remoteAccountNumber,
+                    leg.amount, transactionId);
+        }
+        return resolveLeg(transactionId, leg); // Nothing was credited yet
+    }
+
+    // Helper method to forget a prepared leg whose resolution moves no money, logging that it is resolved
+    private int resolveLeg(long transactionId, PreparedLeg leg) {
+        long lsn;
+        locks.lock(leg.accountNumber);
+        try {
+            if (!preparedLegs.remove(transactionId, leg)) {
+                return BankOperation.SUCCESS; // Resolved by another call meanwhile
+            }
+            lsn = logLegState(BankOperation.LEG_RESOLVED, leg, transactionId);
+        } finally {
+            locks.unlock(leg.accountNumber);
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Helper method to apply a logged change to the prepared legs while the log is replayed
+    private void replayLegState(BankOperation operation) {
+        locks.lock(operation.accountNumber);
+        try {
+            if (operation.type == BankOperation.LEG_PREPARED) {
+                preparedLegs.put(operation.reference, new PreparedLeg(BankOperation.TRANSFER_IN,
+                        operation.accountNumber, operation.targetAccountNumber, operation.amount));
+            } else {
+                preparedLegs.remove(operation.reference);
+            }
+        } finally {
+            locks.unlock(operation.accountNumber);
+        }
+    }
+
+    // Helper method to check (with every stripe held) whether an account has a leg pending
+    private boolean hasPreparedLeg(int accountNumber) {
+        for (PreparedLeg leg : preparedLegs.values()) {
+            if (leg.accountNumber == accountNumber) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Helper method to apply one leg of a cross-shard transfer to the local account. When
+    // transactionId is not 0, an outgoing leg is registered as prepared and an incoming one (a
+    // commit, or the refund of an aborted debit) resolves the prepared leg, while the lock is still
+    // held; the id is logged with the leg so recovery can do the same.
+    private int executeTransferLeg(byte type, int accountNumber, int remoteAccountNumber, double amount,
+            long transactionId) {
+        long lsn;
+        // Only a newly prepared debit is screened; replayed legs and refunds already were
+        FraudRules rules = (type == BankOperation.TRANSFER_OUT && transactionId != 0) ? fraudRules : null;
+        long now = (rules != null) ? System.currentTimeMillis() : 0;
+        int verdict = FraudRule.ALLOW;
+        locks.lock(accountNumber);
+        try {
+            if (type == BankOperation.TRANSFER_IN && transactionId != 0 && preparedLegs.remove(transactionId) == null) {
+                return BankOperation.SUCCESS; // Resolved by another call meanwhile
+            }
+            double signedAmount = (type == BankOperation.TRANSFER_OUT) ? -amount : amount;
+            if (accountStore != null) {
+                long slot = accountStore.find(accountNumber);
+                if (slot < 0) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                long minorUnits = AccountStore.toMinorUnits(signedAmount);
+                if (accountStore.getBalance(slot) + minorUnits < 0) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                if (rules != null && (verdict = screenDebit(rules, type, accountNumber, null, remoteAccountNumber,
+                        null, amount, now)) == FraudRule.REJECT) {
+                    return BankOperation.REJECTED_BY_RULE;
+                }
+                addStoreBalance(slot, accountNumber, minorUnits);
+            } else {
+                Customer customer = customerList.findCustomer(accountNumber);
+                if (customer == null) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                if (customer.balance + signedAmount < 0) {
+                    return BankOperation.INSUFFICIENT_BALANCE;
+                }
+                if (rules != null && (verdict = screenDebit(rules, type, accountNumber, customer, remoteAccountNumber,
+                        null, amount, now)) == FraudRule.REJECT) {
+                    return BankOperation.REJECTED_BY_RULE;
+                }
+                commitBalance(customer, customer.balance + signedAmount);
+            }
+            if (type == BankOperation.TRANSFER_OUT && transactionId != 0) {
+                preparedLegs.put(transactionId, new PreparedLeg(type, accountNumber, remoteAccountNumber, amount));
+            }
+            lsn = recordCommitted(type, accountNumber, remoteAccountNumber, null, amount, transactionId);
+            if (verdict == FraudRule.FLAG) {
+                recordRuleOutcome(BankOperation.FLAGGED, accountNumber, remoteAccountNumber, amount);
+            }
+        } finally {
+            locks.unlock(accountNumber);
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Method to view transaction history
+    public void viewTransactionHistory() {
+        int size = transactionHistory.size();
+
+        if (size == 0) {
+            System.out.println("Transaction history is empty.");
+        } else {
+            System.out.println("Transaction History:");
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                line.setLength(0);
+                long sequence = transactionHistory.getSequence(i);
+                if (sequence == 0) {
+                    line.append("-. "); // Restored from a snapshot
+                } else {
+                    line.append(sequence).append(". ");
+                }
+                transactionHistory.describe(i, line);
+                System.out.println(line);
+            }
+        }
+    }
+
+    // Method to view the most recent transactions of one account, a page at a time
+    public void viewAccountStatement() {
+        System.out.print("Account Number: ");
+        int accountNumber = scanner.nextInt();
+        System.out.print("Transactions per page: ");
+        int pageSize = Math.max(1, scanner.nextInt());
+        scanner.nextLine(); // Consume the newline character
+
+        int total = transactionHistory.countForAccount(accountNumber);
+        if (total == 0) {
+            System.out.println("No transactions found for account " + accountNumber + ".");
+            return;
+        }
+        System.out.println("Statement for account " + accountNumber + " (" + total + " transactions, newest first):");
+
+        int[] page = new int[pageSize];
+        int lastIndex = -1;
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int count = transactionHistory.statementPage(accountNumber, lastIndex, Long.MIN_VALUE, Long.MAX_VALUE, page);
+            for (int i = 0; i < count; i++) {
+                line.setLength(0);
+                long sequence = transactionHistory.getSequence(page[i]);
+                line.append('#').append((sequence != 0) ? String.valueOf(sequence) : "-").append(' ')
+                        .append(java.time.Instant.ofEpochMilli(transactionHistory.getTimestamp(page[i]))).append(' ');
+                transactionHistory.describe(page[i], line);
+                System.out.println(line);
+            }
+            if (count < pageSize) {
+                break;
+            }
+            lastIndex = page[count - 1];
+            System.out.print("Show more? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                break;
+            }
+        }
+    }
+
+    // Method to search customers by name, falling back to near spellings when nothing starts with the text
+    public void searchCustomers() {
+        System.out.print("Name (or the start of any word of it): ");
+        String query = scanner.nextLine();
+        List<Customer> customers = searchCustomersByName(query, NAME_SEARCH_RESULTS);
+        if (customers.isEmpty()) {
+            customers = searchCustomersBySpelling(query, NAME_SEARCH_TYPOS, NAME_SEARCH_RESULTS);
+            if (!customers.isEmpty()) {
+                System.out.println("No exact matches. Similar names:");
+            }
+        }
+        if (customers.isEmpty()) {
+            System.out.println("No matching customers found.");
+            return;
+        }
+        for (Customer customer : customers) {
+            System.out.println("Account Number: " + customer.accountNumber + ", Name: " + customer.name
+                    + ", Balance: " + customer.balance);
+        }
+    }
+
+    // Method to show the highest balances, the balance distribution and how many accounts hold more than an amount
+    public void viewBalanceRankings() {
+        System.out.print("Count accounts holding more than: ");
+        double threshold = scanner.nextDouble();
+        scanner.nextLine(); // Consume the newline character
+
+        System.out.println("Highest balances:");
+        int place = 1;
+        for (Customer customer : topBalances(BALANCE_RANKING_RESULTS)) {
+            System.out.println(place++ + ". Account Number: " + customer.accountNumber + ", Name: " + customer.name
+                    + ", Balance: " + customer.balance);
+        }
+        System.out.println("Median balance: " + balancePercentile(50));
+        System.out.println("90th percentile balance: " + balancePercentile(90));
+        System.out.println("Accounts holding more than " + threshold + ": " + countBalancesAbove(threshold));
+    }
+
+    // Method to show an account's balance at the end of a day
+    public void viewBalanceAsOf() {
+        System.out.print("Account Number: ");
+        int accountNumber = scanner.nextInt();
+        System.out.print("Date (yyyy-mm-dd): ");
+        String date = scanner.next();
+        scanner.nextLine(); // Consume the newline character
+
+        long endOfDay;
+        try {
+            endOfDay = java.time.LocalDate.parse(date).plusDays(1).atStartOfDay(java.time.ZoneId.systemDefault())
+                    .toInstant().toEpochMilli() - 1;
+        } catch (java.time.format.DateTimeParseException e) {
+            System.out.println("Not a date: " + date);
+            return;
+        }
+        if (endOfDay < getHistoryStartMillis()) {
+            System.out.println("History before " + java.time.Instant.ofEpochMilli(getHistoryStartMillis())
+                    + " is not retained.");
+            return;
+        }
+        double balance = balanceAsOf(accountNumber, endOfDay);
+        if (Double.isNaN(balance)) {
+            System.out.println("Account " + accountNumber + " was not open at the end of " + date + ".");
+        } else {
+            System.out.println("Balance of account " + accountNumber + " at the end of " + date + ": " + balance);
+        }
+    }
+
+    // Method to delete a customer account by account number
+    public void deleteAccount() {
+        System.out.println("Enter account number to delete:");
+        int accountNumber = scanner.nextInt();
+
+        if (deleteAccount(accountNumber) == BankOperation.SUCCESS) {
+            System.out.println("Account deleted successfully.");
+        } else {
+            System.out.println("Account not found. Deletion failed.");
+        }
+    }
+
+    // Method to delete a customer account without console input
+    public int deleteAccount(int accountNumber) {
+        long start = System.nanoTime();
+        int result = executeDeleteAccount(accountNumber);
+        metrics.record(BankOperation.DELETE, result, start);
+        return result;
+    }
+
+    private int executeDeleteAccount(int accountNumber) {
+        long lsn;
+        locks.lockAll();
+        try {
+            double closingBalance;
+            long closingMinorUnits;
+            String name;
+            if (accountStore != null) {
+                long slot = accountStore.find(accountNumber);
+                if (slot < 0) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                if (hasPreparedLeg(accountNumber)) {
+                    return BankOperation.TRANSFER_IN_PROGRESS;
+                }
+                closingMinorUnits = accountStore.getBalance(slot);
+                closingBalance = AccountStore.fromMinorUnits(closingMinorUnits);
+                name = accountStore.getName(slot);
+                accountStore.delete(accountNumber);
+            } else {
+                Customer customer = customerList.findCustomer(accountNumber);
+                if (customer == null) {
+                    return BankOperation.ACCOUNT_NOT_FOUND;
+                }
+                if (hasPreparedLeg(accountNumber)) {
+                    return BankOperation.TRANSFER_IN_PROGRESS;
+                }
+                closingBalance = customer.balance;
+                closingMinorUnits = AccountStore.toMinorUnits(closingBalance);
+                name = customer.name;
+                customerList.deleteCustomer(accountNumber);
+                long version = versions.begin();
+                try {
+                    bankTree.deleteCustomer(accountNumber, version);
+                } finally {
+                    versions.commit(version);
+                }
+            }
+            lsn = recordCommitted(BankOperation.DELETE, accountNumber, 0, null, closingBalance);
+            FraudRules rules = fraudRules;
+            if (rules != null && accountStore != null) {
+                rules.accountClosed(locks.stripeOf(accountNumber), accountNumber); // Heap state goes with the Customer
+            }
+            NameSearchIndex names = nameIndex;
+            if (names != null) {
+                names.remove(accountNumber, name);
+            }
+            BalanceIndex ranking = balanceIndex;
+            if (ranking != null) {
+                ranking.remove(accountNumber, closingMinorUnits);
+            }
+        } finally {
+            locks.unlockAll();
+        }
+        awaitDurable(lsn);
+        return BankOperation.SUCCESS;
+    }
+
+    // Method to turn on durability: recover the state stored in a directory, then log every
+    // committed operation there and take a snapshot every checkpointMillis (0 disables them)
+    public void enableDurability(Path directory, long checkpointMillis) throws IOException {
+        if (writeAheadLog != null) {
+            throw new IllegalStateException("Durability is already enabled");
+        }
+        if (accountStore != null) {
+            throw new IllegalStateException("Off-heap account stores are persisted by their own files");
+        }
+        WriteAheadLog log = new WriteAheadLog(directory);
+        // Operations replayed here are not logged again because writeAheadLog is still null,
+        // and not screened again because they passed the fraud rules when they were first applied
+        FraudRules rules = fraudRules;
+        fraudRules = null;
+        try {
+            log.recover(new WriteAheadLog.RecoveryHandler() {
+                private long snapshotMillis;
+
+                @Override
+                public void restoreHistory(long lastSequence, long millis) {
+                    // The journal before the snapshot is gone: numbering continues after it, and the
+                    // restored accounts are journaled as opened at the snapshot time
+                    transactionHistory.continueAfter(lastSequence);
+                    snapshotMillis = millis;
+                    historyStartMillis = millis;
+                }
+
+                @Override
+                public void restoreAccount(int accountNumber, String name, double balance) {
+                    transactionHistory.stampNext(0, snapshotMillis);
+                    try {
+                        createAccount(accountNumber, name, balance);
+                    } finally {
+                        transactionHistory.clearStamp();
+                    }
+                }
+
+                @Override
+                public void replay(BankOperation operation, long sequence, long commitMillis) {
+                    if (operation.type == BankOperation.LEG_PREPARED || operation.type == BankOperation.LEG_RESOLVED) {
+                        replayLegState(operation); // Never accepted from apply(), which callers outside can reach
+                        return;
+                    }
+                    if (sequence != 0) {
+                        transactionHistory.stampNext(sequence, commitMillis); // Journaled as it was first
+                    }
+                    try {
+                        apply(operation);
+                    } finally {
+                        transactionHistory.clearStamp();
+                    }
+                }
+
+                @Override
+                public void restorePreparedLeg(long transactionId, byte type, int accountNumber,
+                        int remoteAccountNumber, double amount) {
+                    preparedLegs.put(transactionId, new PreparedLeg(type, accountNumber, remoteAccountNumber, amount));
+                }
+            });
+        } finally {
+            fraudRules = rules;
+        }
+        log.start();
+        writeAheadLog = log;
+
+        if (checkpointMillis > 0) {
+            startCheckpointer().scheduleWithFixedDelay(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Checkpoint failed: " + e);
+                }
+            }, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Method to keep accounts off-heap in memory-mapped files in a directory, reopening any
+    // accounts already stored there. Must be called before any account is created.
+    public void useMappedStore(Path directory, long expectedAccounts) throws IOException {
+        checkStoreChoice();
+        useAccountStore(new MappedAccountStore(directory, expectedAccounts));
+    }
+
+    // Method to keep accounts on disk in a directory (read and written with file I/O, see
+    // FileAccountStore), with the cachedAccounts most used ones cached in memory. Changed
+    // balances are written back when evicted and every checkpointMillis. Must be called
+    // before any account is created.
+    public void useDiskStore(Path directory, long expectedAccounts, int cachedAccounts, long checkpointMillis)
+            throws IOException {
+        checkStoreChoice();
+        FileAccountStore backing = new FileAccountStore(directory, expectedAccounts);
+        CachedAccountStore store = new CachedAccountStore(backing, cachedAccounts);
+        useAccountStore(store);
+        metrics.registerGauge("accountCacheHits", store::getHitCount);
+        metrics.registerGauge("accountCacheMisses", store::getMissCount);
+        metrics.registerGauge("accountCacheEvictions", store::getEvictionCount);
+        metrics.registerGauge("accountCacheWriteBacks", store::getWriteBackCount);
+        metrics.registerGauge("accountCacheSize", store::getCachedCount);
+        if (checkpointMillis > 0) {
+            startCheckpointer().scheduleWithFixedDelay(() -> {
+                try {
+                    // Write back with every stripe held, as creates and deletes move slots in the
+                    // file; the slower flush to disk can then run alongside postings
+                    locks.lockAll();
+                    try {
+                        store.writeBackChanges();
+                    } finally {
+                        locks.unlockAll();
+                    }
+                    backing.force();
+                } catch (RuntimeException e) {
+                    System.err.println("Account store flush failed: " + e);
+                }
+            }, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Helper method to get the thread that runs periodic checkpoints and flushes, starting it if needed
+    private synchronized ScheduledExecutorService startCheckpointer() {
+        if (checkpointer == null) {
+            checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bank-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return checkpointer;
+    }
+
+    // Method to keep accounts in any off-heap account store, such as a cache in front of a
+    // custom store. The bank closes the store on shutdown. Must be called before any account
+    // is created.
+    public void useAccountStore(AccountStore store) {
+        checkStoreChoice();
+        locks.lockAll();
+        try {
+            accountStore = store;
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    private void checkStoreChoice() {
+        if (writeAheadLog != null || customerList.getSize() > 0 || accountStore != null) {
+            throw new IllegalStateException("The account store must be chosen before any account exists");
+        }
+    }
+
+    // Method to write a snapshot of the account table so older log segments can be deleted
+    public void checkpoint() throws IOException {
+        if (writeAheadLog == null) {
+            throw new IllegalStateException("Durability is not enabled");
+        }
+        int count;
+        int[] accountNumbers;
+        String[] names;
+        double[] balances;
+        List<BankOperation> legs = new ArrayList<>();
+        long snapshotLsn;
+        long lastSequence;
+        long snapshotMillis;
+
+        // Copy the table and cut the log at the same instant
+        locks.lockAll();
+        try {
+            for (Map.Entry<Long, PreparedLeg> entry : preparedLegs.entrySet()) {
+                PreparedLeg leg = entry.getValue();
+                BankOperation copy = new BankOperation(leg.type, leg.accountNumber, leg.remoteAccountNumber, null,
+                        leg.amount);
+                copy.reference = entry.getKey();
+                legs.add(copy);
+            }
+            count = bankTree.getSize();
+            accountNumbers = new int[count];
+            names = new String[count];
+            balances = new double[count];
+            Iterator<Customer> iterator = bankTree.iterateByAccount();
+            for (int i = 0; i < count; i++) {
+                Customer customer = iterator.next();
+                accountNumbers[i] = customer.accountNumber;
+                names[i] = customer.name;
+                balances[i] = customer.balance;
+            }
+            snapshotLsn = writeAheadLog.rotate();
+            // Every committed entry is journaled under its locks, so the journal is cut here too
+            lastSequence = transactionHistory.getLastSequence();
+            snapshotMillis = transactionHistory.getLastTimestamp();
+        } finally {
+            locks.unlockAll();
+        }
+
+        writeAheadLog.writeSnapshot(accountNumbers, names, balances, count, legs, snapshotLsn, lastSequence,
+                snapshotMillis);
+    }
+
+    // Method to stop background work and flush the log
+    public void shutdown() throws IOException {
+        TellerPool pool;
+        synchronized (this) {
+            pool = tellerPool;
+        }
+        if (pool != null) {
+            try {
+                pool.shutdown(); // Serve what is already queued before closing the log
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        metrics.stopPeriodicDump();
+        if (replicationServer != null) {
+            replicationServer.close();
+        }
+        if (checkpointer != null) {
+            checkpointer.shutdown(); // Not shutdownNow: an interrupt during file I/O closes the channel
+            try {
+                checkpointer.awaitTermination(1, TimeUnit.MINUTES); // A running flush ends before the store closes
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (historyFollower != null) {
+                historyFollower.shutdownNow();
+            }
+        }
+        ChangePublisher changes = changePublisher;
+        if (changes != null) {
+            changes.close(); // The change file gets every event published so far
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+        if (accountStore != null) {
+            accountStore.close();
+        }
+    }
+
+    // Helper method to change one heap balance as its own commit version (its stripe must be held)
+    private void commitBalance(Customer customer, double balance) {
+        long version = versions.begin();
+        try {
+            writeBalance(customer, balance, version);
+        } finally {
+            versions.commit(version);
+        }
+    }
+
+    // Helper method to change a heap balance at a version, keeping the balance index in step (its stripe must be held)
+    private void writeBalance(Customer customer, double balance, long version) {
+        BalanceIndex index = balanceIndex;
+        if (index != null) {
+            index.update(customer.accountNumber, AccountStore.toMinorUnits(customer.balance),
+                    AccountStore.toMinorUnits(balance));
+        }
+        versions.writeBalance(customer, balance, version);
+    }
+
+    // Helper method to change an off-heap balance, keeping the balance index in step (its stripe must be held)
+    private void addStoreBalance(long slot, int accountNumber, long minorUnits) {
+        BalanceIndex index = balanceIndex;
+        if (index != null) {
+            long balance = accountStore.getBalance(slot);
+            index.update(accountNumber, balance, balance + minorUnits);
+        }
+        accountStore.addBalance(slot, minorUnits);
+    }
+
+    // Method to serve replicas (see BankReplica) on a loopback port, keeping the last backlogRecords
+    // committed operations for replicas that reconnect; returns the port
+    public synchronized int startReplication(int port, int backlogRecords) throws IOException {
+        if (replicationServer != null) {
+            throw new IllegalStateException("Replication is already started");
+        }
+        ReplicationLog log = new ReplicationLog(backlogRecords);
+        // Start the log at a clean cut: every later commit is in it, every earlier one in the snapshot
+        locks.lockAll();
+        try {
+            replicationLog = log;
+        } finally {
+            locks.unlockAll();
+        }
+        replicationServer = new ReplicationServer(this, log, port);
+        return replicationServer.getPort();
+    }
+
+    // Method to get a read-your-writes token: a replica whose awaitToken(token, ...) returns true
+    // reflects every operation this bank had committed when the token was taken
+    public long getReplicationToken() {
+        ReplicationLog log = replicationLog;
+        return (log != null) ? log.getLastSequence() : 0;
+    }
+
+    // Helper method to send a replica the journal and every account at one instant; returns the
+    // replication sequence number the snapshot covers
+    long writeReplicationSnapshot(DataOutputStream out, ReplicationLog log) throws IOException {
+        long sequence;
+        int journalSize;
+        BankSnapshot snapshot = null;
+        int[] accountNumbers = null;
+        String[] names = null;
+        long[] balances = null;
+        locks.lockAll();
+        try {
+            sequence = log.getLastSequence();
+            journalSize = transactionHistory.size();
+            if (accountStore == null) {
+                snapshot = openSnapshot();
+            } else {
+                // Off-heap balances cannot be versioned, so copy them while the locks are held
+                accountNumbers = new int[(int) accountStore.size()];
+                names = new String[accountNumbers.length];
+                balances = new long[accountNumbers.length];
+                int count = 0;
+                for (long slot = 0; slot < accountStore.capacity(); slot++) {
+                    if (accountStore.isLive(slot)) {
+                        accountNumbers[count] = accountStore.getAccountNumber(slot);
+                        names[count] = accountStore.getName(slot);
+                        balances[count++] = accountStore.getBalance(slot);
+                    }
+                }
+            }
+        } finally {
+            locks.unlockAll();
+        }
+
+        out.writeByte(ReplicationServer.SNAPSHOT);
+        out.writeLong(log.getLogId());
+        out.writeLong(sequence);
+        out.writeInt(journalSize);
+        for (int i = 0; i < journalSize; i++) {
+            out.writeByte(transactionHistory.getType(i));
+            out.writeInt(transactionHistory.getSource(i));
+            out.writeInt(transactionHistory.getDestination(i));
+            out.writeDouble(transactionHistory.getAmount(i));
+            out.writeLong(transactionHistory.getTimestamp(i));
+        }
+        if (snapshot == null) {
+            out.writeInt(accountNumbers.length);
+            for (int i = 0; i < accountNumbers.length; i++) {
+                out.writeInt(accountNumbers[i]);
+                out.writeDouble(AccountStore.fromMinorUnits(balances[i]));
+                out.writeUTF(names[i]);
+            }
+        } else {
+            try (BankSnapshot pinned = snapshot) {
+                out.writeInt(pinned.size());
+                Iterator<Customer> iterator = pinned.rawIterateByAccount();
+                while (iterator.hasNext()) {
+                    Customer customer = iterator.next();
+                    out.writeInt(customer.accountNumber);
+                    out.writeDouble(pinned.balanceOf(customer));
+                    out.writeUTF(customer.name);
+                }
+            }
+        }
+        out.flush();
+        return sequence;
+    }
+
+    // Helper method to add an account copied from another bank, without journaling or logging it
+    void restoreAccount(int accountNumber, String name, double balance) {
+        Customer customer = new Customer(accountNumber, name, balance);
+        locks.lockAll();
+        try {
+            if (customerList.addCustomer(customer)) {
+                long version = versions.begin();
+                try {
+                    customer.version = version;
+                    bankTree.insert(customer, version);
+                } finally {
+                    versions.commit(version);
+                }
+                NameSearchIndex names = nameIndex;
+                if (names != null) {
+                    names.add(accountNumber, name);
+                }
+                BalanceIndex ranking = balanceIndex;
+                if (ranking != null) {
+                    ranking.add(accountNumber, AccountStore.toMinorUnits(balance));
+                }
+            }
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    // Method to get the transaction journal (read-only use: statements and history views)
+    TransactionHistory getTransactionHistory() {
+        return transactionHistory;
+    }
+
+    // Method to open a consistent read-only snapshot of every account without blocking writers.
+    // Close it when done so the balances only it still needs can be reclaimed.
+    public BankSnapshot openSnapshot() {
+        if (accountStore != null) {
+            throw new IllegalStateException("Snapshots are only kept for heap accounts");
+        }
+        return versions.open(bankTree);
+    }
+
+    // Helper method to journal and log a committed operation (called while its locks are held); returns 0
+    // when not logging
+    private long recordCommitted(byte type, int accountNumber, int targetAccountNumber, String name, double amount) {
+        return recordCommitted(type, accountNumber, targetAccountNumber, name, amount, 0);
+    }
+
+    // Helper method to journal and log a committed operation that carries a reference (a cross-shard
+    // transaction id, or the entry a reversal compensates). With a write-ahead log, the journal entry's
+    // sequence number and time are logged with it, in journal order, so recovery rebuilds the journal
+    // as it was: statements keep their numbers and as-of balances their times across a restart.
+    private long recordCommitted(byte type, int accountNumber, int targetAccountNumber, String name, double amount,
+            long reference) {
+        if (writeAheadLog == null) {
+            transactionHistory.recordTransaction(type, accountNumber, targetAccountNumber, amount);
+            return logCommitted(type, accountNumber, targetAccountNumber, name, amount, reference, 0, 0);
+        }
+        synchronized (transactionHistory) {
+            long sequence = transactionHistory.recordTransaction(type, accountNumber, targetAccountNumber, amount);
+            return logCommitted(type, accountNumber, targetAccountNumber, name, amount, reference, sequence,
+                    transactionHistory.getLastTimestamp());
+        }
+    }
+
+    // Helper method to log an operation already journaled as an entry (0 if it is not known). Only the
+    // write-ahead log keeps the reference and the entry: replicas and change subscribers see the
+    // balance change alone.
+    private long logCommitted(byte type, int accountNumber, int targetAccountNumber, String name, double amount,
+            long reference, long sequence, long commitMillis) {
+        ReplicationLog replication = replicationLog;
+        if (replication != null) {
+            replication.append(type, accountNumber, targetAccountNumber, name, amount);
+        }
+        ChangePublisher changes = changePublisher;
+        if (changes != null) {
+            publishChange(changes, type, accountNumber, targetAccountNumber, amount);
+        }
+        WriteAheadLog log = writeAheadLog;
+        return (log != null)
+                ? log.append(type, accountNumber, targetAccountNumber, name, amount, reference, sequence, commitMillis)
+                : 0;
+    }
+
+    // Helper method to log a change to the prepared cross-shard legs that moves no money (its account's
+    // stripe must be held). Only the write-ahead log needs it, to rebuild the prepared legs on recovery.
+    private long logLegState(byte type, PreparedLeg leg, long transactionId) {
+        WriteAheadLog log = writeAheadLog;
+        return (log != null) ? log.append(type, leg.accountNumber, leg.remoteAccountNumber, null, leg.amount,
+                transactionId, 0, 0) : 0;
+    }
+
+    // Helper method to publish a change event with the balances it left (its locks must be held)
+    private void publishChange(ChangePublisher changes, byte type, int accountNumber, int targetAccountNumber,
+            double amount) {
+        long minorUnits = AccountStore.toMinorUnits(amount);
+        long balance;
+        if (type == BankOperation.CREATE) {
+            balance = minorUnits;
+        } else if (type == BankOperation.DELETE) {
+            balance = 0; // The amount is the closing balance
+        } else {
+            balance = currentMinorUnits(accountNumber);
+        }
+        long targetBalance = (type == BankOperation.TRANSFER
+                || (type == BankOperation.REVERSAL && targetAccountNumber != 0))
+                ? currentMinorUnits(targetAccountNumber) : 0;
+        changes.publish(type, accountNumber, targetAccountNumber, minorUnits, balance, targetBalance);
+    }
+
+    private long currentMinorUnits(int accountNumber) {
+        if (accountStore != null) {
+            long slot = accountStore.find(accountNumber);
+            return (slot >= 0) ? accountStore.getBalance(slot) : 0;
+        }
+        Customer customer = customerList.findCustomer(accountNumber);
+        return (customer != null) ? AccountStore.toMinorUnits(customer.balance) : 0;
+    }
+
+    // Helper method to wait (after the locks are released) until a logged operation is on disk
+    private void awaitDurable(long lsn) {
+        if (lsn != 0) {
+            long[] deferred = deferredLsn.get();
+            if (deferred[1] != 0) {
+                deferred[0] = Math.max(deferred[0], lsn); // applyBatch waits once at the end
+            } else {
+                writeAheadLog.awaitDurable(lsn);
+            }
+        }
+    }
+
+    // Method to view details of all customers in dictionary order
+    public void viewAllCustomers() {
+        System.out.flush();
+        try {
+            // Not closed: that would close standard output
+            BufferedChannelWriter out = new BufferedChannelWriter(
+                    java.nio.channels.Channels.newChannel(System.out), 64 * 1024);
+            exportCustomers(out, CustomerExporter.Format.TEXT, null, 0, Long.MAX_VALUE);
+        } catch (IOException e) {
+            System.out.println("Could not list customers: " + e.getMessage());
+        }
+    }
+
+    // Method to export every customer to a channel as CSV or JSON and close it; returns the number exported.
+    // Heap accounts are exported in dictionary order; off-heap accounts in storage order.
+    public long exportCustomers(java.nio.channels.WritableByteChannel channel, CustomerExporter.Format format)
+            throws IOException {
+        try (BufferedChannelWriter out = new BufferedChannelWriter(channel, EXPORT_BUFFER_BYTES)) {
+            if (accountStore == null) {
+                return exportCustomers(out, format, null, 0, Long.MAX_VALUE);
+            }
+            CustomerExporter exporter = new CustomerExporter(out, format);
+            exporter.begin();
+            CustomerPage page = new CustomerPage(EXPORT_PAGE_SIZE);
+            long slot = 0;
+            while (slot >= 0) {
+                slot = copyCustomersInStoreOrder(slot, page);
+                for (int i = 0; i < page.count; i++) {
+                    exporter.writeRow(page.accountNumbers[i], page.names[i], page.balances[i]);
+                }
+            }
+            return exporter.end();
+        }
+    }
+
+    // Method to export up to limit customers in dictionary order that come strictly after
+    // (afterName, afterAccount); pass the last row of the previous page to get the next one,
+    // or a null name to start from the beginning. Returns the number exported.
+    public long exportCustomers(BufferedChannelWriter out, CustomerExporter.Format format, String afterName,
+            int afterAccount, long limit) throws IOException {
+        CustomerExporter exporter = new CustomerExporter(out, format);
+        exporter.begin();
+        if (accountStore == null) {
+            // Heap accounts: stream a consistent snapshot without holding any lock
+            try (BankSnapshot snapshot = openSnapshot()) {
+                Iterator<Customer> iterator = snapshot.rawIterateByNameAfter(afterName, afterAccount);
+                for (long written = 0; written < limit && iterator.hasNext(); written++) {
+                    Customer customer = iterator.next();
+                    exporter.writeRow(customer.accountNumber, customer.name, snapshot.balanceOf(customer));
+                }
+            }
+            return exporter.end();
+        }
+        exportMappedCustomersByName(exporter, afterName, afterAccount, limit);
+        return exporter.end();
+    }
+
+    // Class representing a reusable page of customers copied out under the locks
+    static final class CustomerPage {
+        final int[] accountNumbers;
+        final String[] names;
+        final double[] balances;
+        int count;
+
+        CustomerPage(int capacity) {
+            accountNumbers = new int[capacity];
+            names = new String[capacity];
+            balances = new double[capacity];
+        }
+
+        void add(int accountNumber, String name, double balance) {
+            accountNumbers[count] = accountNumber;
+            names[count] = name;
+            balances[count] = balance;
+            count++;
+        }
+    }
+
+    // Helper method to export up to limit off-heap customers after (afterName, afterAccount) in dictionary
+    // order. Off-heap accounts are kept in hash order, so one pass copies them out in store-order pages
+    // (all stripes are held only while one page is copied) and their keys are sorted once: in memory, or
+    // as sorted runs of EXPORT_SORT_RUN spilled to temporary files and merged. A whole listing is then
+    // O(n log n) rather than a scan of the table per page; balances are as of the page they were copied in.
+    private void exportMappedCustomersByName(CustomerExporter exporter, String afterName, int afterAccount,
+            long limit) throws IOException {
+        Comparator<Customer> byName = (a, b) -> {
+            int order = a.name.compareTo(b.name);
+            return (order != 0) ? order : Integer.compare(a.accountNumber, b.accountNumber);
+        };
+        Customer cursor = (afterName != null) ? new Customer(afterAccount, afterName, 0) : null;
+        CustomerPage page = new CustomerPage(EXPORT_PAGE_SIZE);
+        List<Customer> run = new ArrayList<>();
+        List<Path> spilled = new ArrayList<>();
+        try {
+            long slot = 0;
+            while (slot >= 0) {
+                slot = copyCustomersInStoreOrder(slot, page);
+                for (int i = 0; i < page.count; i++) {
+                    Customer customer = new Customer(page.accountNumbers[i], page.names[i], page.balances[i]);
+                    if (cursor != null && byName.compare(customer, cursor) <= 0) {
+                        continue;
+                    }
+                    run.add(customer);
+                    if (run.size() == EXPORT_SORT_RUN) {
+                        run.sort(byName);
+                        if (limit < EXPORT_SORT_RUN / 2) {
+                            run.subList((int) limit, run.size()).clear(); // Only the first limit can be exported
+                        } else {
+                            spilled.add(spillRun(run));
+                            run.clear();
+                        }
+                    }
+                }
+            }
+            run.sort(byName);
+            if (spilled.isEmpty()) {
+                for (int i = 0; i < run.size() && i < limit; i++) {
+                    Customer customer = run.get(i);
+                    exporter.writeRow(customer.accountNumber, customer.name, customer.balance);
+                }
+                return;
+            }
+            spilled.add(spillRun(run));
+            run.clear();
+            mergeRuns(spilled, byName, exporter, limit);
+        } finally {
+            for (Path file : spilled) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Helper method to write a sorted run of customers to a temporary file
+    private static Path spillRun(List<Customer> run) throws IOException {
+        Path file = Files.createTempFile("bank-export-", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file),
+                1 << 16))) {
+            out.writeInt(run.size());
+            for (Customer customer : run) {
+                out.writeInt(customer.accountNumber);
+                out.writeUTF(customer.name);
+                out.writeDouble(customer.balance);
+            }
+        }
+        return file;
+    }
+
+    // Helper method to merge sorted run files into the export, taking the smallest head each time
+    private static void mergeRuns(List<Path> files, Comparator<Customer> byName, CustomerExporter exporter,
+            long limit) throws IOException {
+        List<SortedRun> runs = new ArrayList<>();
+        PriorityQueue<SortedRun> heads = new PriorityQueue<>((a, b) -> byName.compare(a.head, b.head));
+        try {
+            for (Path file : files) {
+                SortedRun run = new SortedRun(file);
+                runs.add(run);
+                if (run.advance()) {
+                    heads.add(run);
+                }
+            }
+            for (long written = 0; written < limit && !heads.isEmpty(); written++) {
+                SortedRun run = heads.poll();
+                exporter.writeRow(run.head.accountNumber, run.head.name, run.head.balance);
+                if (run.advance()) {
+                    heads.add(run);
+                }
+            }
+        } finally {
+            for (SortedRun run : runs) {
+                run.in.close();
+            }
+        }
+    }
+
+    // Class representing a sorted run file being merged, positioned at its smallest unmerged customer
+    private static final class SortedRun {
+        final DataInputStream in;
+        int remaining;
+        Customer head;
+
+        SortedRun(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            remaining = in.readInt();
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            int accountNumber = in.readInt();
+            String name = in.readUTF();
+            head = new Customer(accountNumber, name, in.readDouble());
+            return true;
+        }
+    }
+
+    // Helper method to copy the next page of off-heap accounts in storage order; returns the slot
+    // to continue from, or -1 at the end
+    private long copyCustomersInStoreOrder(long fromSlot, CustomerPage page) {
+        page.count = 0;
+        locks.lockAll();
+        try {
+            long slot = fromSlot;
+            long capacity = accountStore.capacity();
+            for (; slot < capacity && page.count < page.accountNumbers.length; slot++) {
+                if (accountStore.isLive(slot)) {
+                    page.add(accountStore.getAccountNumber(slot), accountStore.getName(slot),
+                            AccountStore.fromMinorUnits(accountStore.getBalance(slot)));
+                }
+            }
+            return (slot < capacity) ? slot : -1;
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Bank bank = new Bank();
+        Path batchInput = null;
+        Path batchOutput = null;
+        Path exportFile = null;
+        Path importFile = null;
+        boolean reconcile = false;
+        int shardPort = -1;
+        int replicationPort = -1;
+        int primaryPort = -1;
+        int workloadAccounts = 0;
+        double workloadRate = 0;
+        double workloadSeconds = 0;
+        Path recordFile = null;
+        Path replayFile = null;
+        Path changeFile = null;
+        double replaySpeed = 1;
+        bank.getMetrics().registerMBeans();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--data-dir") && i + 1 < args.length) {
+                bank.enableDurability(Paths.get(args[++i]), DEFAULT_CHECKPOINT_MILLIS);
+            } else if (args[i].equals("--mapped-dir") && i + 1 < args.length) {
+                bank.useMappedStore(Paths.get(args[++i]), 1024);
+            } else if (args[i].equals("--disk-dir") && i + 1 < args.length) {
+                bank.useDiskStore(Paths.get(args[++i]), 1024, DEFAULT_CACHED_ACCOUNTS, DEFAULT_CHECKPOINT_MILLIS);
+            } else if (args[i].equals("--metrics-file") && i + 1 < args.length) {
+                bank.getMetrics().startPeriodicDump(METRICS_DUMP_MILLIS, Paths.get(args[++i]));
+            } else if (args[i].equals("--batch") && i + 2 < args.length) {
+                batchInput = Paths.get(args[++i]);
+                batchOutput = Paths.get(args[++i]);
+            } else if (args[i].equals("--import") && i + 1 < args.length) {
+                importFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--export") && i + 1 < args.length) {
+                exportFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--reconcile")) {
+                reconcile = true;
+            } else if (args[i].equals("--shard-server") && i + 1 < args.length) {
+                shardPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--replicate") && i + 1 < args.length) {
+                replicationPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--replica-of") && i + 1 < args.length) {
+                primaryPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--load-test") && i + 3 < args.length) {
+                workloadAccounts = Integer.parseInt(args[++i]);
+                workloadRate = Double.parseDouble(args[++i]);
+                workloadSeconds = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--record-workload") && i + 4 < args.length) {
+                recordFile = Paths.get(args[++i]);
+                workloadAccounts = Integer.parseInt(args[++i]);
+                workloadRate = Double.parseDouble(args[++i]);
+                workloadSeconds = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--replay") && i + 2 < args.length) {
+                replayFile = Paths.get(args[++i]);
+                replaySpeed = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--changes") && i + 1 < args.length) {
+                changeFile = Paths.get(args[++i]);
+            }
+        }
+        if (changeFile != null) {
+            bank.enableChangeCapture(changeFile, DEFAULT_CHANGE_RING_EVENTS);
+        }
+        if (importFile != null) {
+            long start = System.nanoTime();
+            int imported = bank.importCustomers(importFile);
+            System.out.printf("Imported %d customers from %s in %.3f s%n", imported, importFile,
+                    (System.nanoTime() - start) / 1e9);
+        }
+        if (primaryPort >= 0) {
+            // Replica mode: follow the primary and report the lag until the process is killed
+            BankReplica replica = new BankReplica(new InetSocketAddress(InetAddress.getLoopbackAddress(), primaryPort));
+            replica.start();
+            try {
+                while (true) {
+                    Thread.sleep(METRICS_DUMP_MILLIS);
+                    System.out.println("Replica at record " + replica.getAppliedSequence() + ", "
+                            + replica.getLagRecords() + " records behind"
+                            + (replica.isConnected() ? "" : " (primary unreachable)"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            replica.close();
+            return;
+        }
+        if (replicationPort >= 0) {
+            System.out.println("Serving replicas on port "
+                    + bank.startReplication(replicationPort, DEFAULT_REPLICATION_BACKLOG));
+        }
+        if (shardPort >= 0) {
+            // Shard mode: serve this bank to a ShardedBank coordinator until the process is killed
+            ShardServer server = new ShardServer(bank, shardPort);
+            System.out.println("Shard listening on port " + server.getPort());
+            try {
+                Thread.currentThread().join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server.close();
+            bank.shutdown();
+            return;
+        }
+        if (recordFile != null) {
+            WorkloadGenerator generator = new WorkloadGenerator(DEFAULT_WORKLOAD_SEED, workloadAccounts,
+                    DEFAULT_WORKLOAD_SKEW).setRate(workloadRate);
+            long operations = (long) (workloadRate * workloadSeconds);
+            long nanos = WorkloadFile.record(generator, operations, recordFile);
+            System.out.printf("Recorded %d operations over %.1f s to %s%n", operations, nanos / 1e9, recordFile);
+            return;
+        }
+        if (workloadAccounts > 0 || replayFile != null) {
+            // Load-test mode: open the accounts, drive the generated or recorded stream open-loop, report
+            WorkloadRunner runner = new WorkloadRunner(bank, WORKLOAD_THREADS);
+            WorkloadRunner.Report report;
+            if (replayFile != null) {
+                try (WorkloadFile file = new WorkloadFile(replayFile)) {
+                    WorkloadGenerator.setUp(bank, file.getAccounts(), file.getInitialBalance());
+                    report = runner.run(file, Long.MAX_VALUE, replaySpeed);
+                }
+            } else {
+                WorkloadGenerator generator = new WorkloadGenerator(DEFAULT_WORKLOAD_SEED, workloadAccounts,
+                        DEFAULT_WORKLOAD_SKEW).setRate(workloadRate);
+                WorkloadGenerator.setUp(bank, workloadAccounts, generator.getInitialBalance());
+                report = runner.run(generator, (long) (workloadRate * workloadSeconds), 1);
+            }
+            System.out.print(report.toText());
+            bank.shutdown();
+            return;
+        }
+        if (batchInput != null || exportFile != null || reconcile) {
+            // Headless mode: run the command file, export and/or reconcile, then exit
+            if (batchInput != null) {
+                new BatchProcessor(bank).process(batchInput, batchOutput);
+            }
+            if (exportFile != null) {
+                CustomerExporter.Format format = exportFile.toString().endsWith(".json")
+                        ? CustomerExporter.Format.JSON : CustomerExporter.Format.CSV;
+                long exported = bank.exportCustomers(FileChannel.open(exportFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), format);
+                System.out.println("Exported " + exported + " customers to " + exportFile);
+            }
+            if (reconcile) {
+                System.out.print(bank.reconcile().toText());
+            }
+        } else {
+            bank.enableNameSearch();
+            bank.enableBalanceIndex();
+            bank.enableBalanceHistory();
+            bank.performOperations();
+        }
+        bank.shutdown();
+    }
+}
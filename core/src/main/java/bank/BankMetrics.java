@@ -0,0 +1,235 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Class representing the bank's metrics: a latency histogram and success/failure
+// counters per operation type, plus named gauges read on demand. Snapshots are
+// available in-process, as text or JSON dumps, and through JMX MBeans.
+class BankMetrics {
+    private static final byte[] OPERATION_TYPES = {
+        BankOperation.CREATE, BankOperation.DEPOSIT, BankOperation.WITHDRAW,
+        BankOperation.TRANSFER, BankOperation.DELETE
+    };
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATION_TYPES.length + 1];
+    private final LongAdder[] successes = new LongAdder[OPERATION_TYPES.length + 1];
+    private final LongAdder[] failures = new LongAdder[OPERATION_TYPES.length + 1];
+    private final Map<String, java.util.function.LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService dumper;
+
+    public BankMetrics() {
+        for (byte type : OPERATION_TYPES) {
+            latencies[type] = new LatencyHistogram();
+            successes[type] = new LongAdder();
+            failures[type] = new LongAdder();
+        }
+    }
+
+    // Method to record one finished operation given its start time from System.nanoTime()
+    public void record(byte type, int result, long startNanos) {
+        latencies[type].record(System.nanoTime() - startNanos);
+        if (result == BankOperation.SUCCESS) {
+            successes[type].increment();
+        } else {
+            failures[type].increment();
+        }
+    }
+
+    // Method to add a gauge whose value is read whenever a snapshot is taken
+    public void registerGauge(String name, java.util.function.LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public LatencyHistogram getLatency(byte type) {
+        return latencies[type];
+    }
+
+    public long getSuccessCount(byte type) {
+        return successes[type].sum();
+    }
+
+    public long getFailureCount(byte type) {
+        return failures[type].sum();
+    }
+
+    public Map<String, Long> getGaugeValues() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<String, java.util.function.LongSupplier> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        return values;
+    }
+
+    // Method to render all metrics as human-readable text
+    public String toText() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-9s %10s %8s %10s %10s %10s %10s%n", "operation", "ok", "failed", "p50(ns)",
+                "p99(ns)", "p999(ns)", "max(ns)"));
+        for (byte type : OPERATION_TYPES) {
+            LatencyHistogram latency = latencies[type];
+            out.append(String.format("%-9s %10d %8d %10d %10d %10d %10d%n", BankOperation.typeName(type),
+                    successes[type].sum(), failures[type].sum(), latency.getPercentileNanos(50),
+                    latency.getPercentileNanos(99), latency.getPercentileNanos(99.9), latency.getMaxNanos()));
+        }
+        for (Map.Entry<String, Long> gauge : getGaugeValues().entrySet()) {
+            out.append(gauge.getKey()).append(" = ").append(gauge.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+
+    // Method to render all metrics as a JSON object
+    public String toJson() {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"timestamp\":").append(System.currentTimeMillis()).append(",\"operations\":{");
+        for (int i = 0; i < OPERATION_TYPES.length; i++) {
+            byte type = OPERATION_TYPES[i];
+            LatencyHistogram latency = latencies[type];
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append('"').append(BankOperation.typeName(type)).append("\":{")
+                    .append("\"success\":").append(successes[type].sum())
+                    .append(",\"failure\":").append(failures[type].sum())
+                    .append(",\"meanNanos\":").append(Math.round(latency.getMeanNanos()))
+                    .append(",\"p50Nanos\":").append(latency.getPercentileNanos(50))
+                    .append(",\"p99Nanos\":").append(latency.getPercentileNanos(99))
+                    .append(",\"p999Nanos\":").append(latency.getPercentileNanos(99.9))
+                    .append(",\"maxNanos\":").append(latency.getMaxNanos()).append('}');
+        }
+        out.append("},\"gauges\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> gauge : getGaugeValues().entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            out.append('"').append(gauge.getKey()).append("\":").append(gauge.getValue());
+        }
+        return out.append("}}").toString();
+    }
+
+    // Method to write a JSON snapshot to a file (or text to standard output if file is null) periodically
+    public synchronized void startPeriodicDump(long intervalMillis, Path file) {
+        stopPeriodicDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bank-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                if (file == null) {
+                    System.out.print(toText());
+                } else {
+                    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                    Files.write(temp, toJson().getBytes(StandardCharsets.UTF_8));
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                System.err.println("Metrics dump failed: " + e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopPeriodicDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    // Method to expose the metrics as JMX MBeans under the "bank" domain
+    public void registerMBeans() {
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (byte type : OPERATION_TYPES) {
+                javax.management.ObjectName name = new javax.management.ObjectName(
+                        "bank:type=Operation,name=" + BankOperation.typeName(type));
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new OperationStats(type), name);
+                }
+            }
+            javax.management.ObjectName gaugesName = new javax.management.ObjectName("bank:type=Gauges");
+            if (!server.isRegistered(gaugesName)) {
+                server.registerMBean((GaugesMXBean) this::getGaugeValues, gaugesName);
+            }
+        } catch (javax.management.JMException e) {
+            throw new IllegalStateException("Could not register metrics MBeans", e);
+        }
+    }
+
+    // JMX view of one operation type
+    public interface OperationStatsMXBean {
+        long getSuccessCount();
+
+        long getFailureCount();
+
+        double getMeanNanos();
+
+        long getP50Nanos();
+
+        long getP99Nanos();
+
+        long getP999Nanos();
+
+        long getMaxNanos();
+    }
+
+    // JMX view of the gauges
+    public interface GaugesMXBean {
+        Map<String, Long> getValues();
+    }
+
+    private class OperationStats implements OperationStatsMXBean {
+        private final byte type;
+
+        OperationStats(byte type) {
+            this.type = type;
+        }
+
+        @Override
+        public long getSuccessCount() {
+            return successes[type].sum();
+        }
+
+        @Override
+        public long getFailureCount() {
+            return failures[type].sum();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            return latencies[type].getMeanNanos();
+        }
+
+        @Override
+        public long getP50Nanos() {
+            return latencies[type].getPercentileNanos(50);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return latencies[type].getPercentileNanos(99);
+        }
+
+        @Override
+        public long getP999Nanos() {
+            return latencies[type].getPercentileNanos(99.9);
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return latencies[type].getMaxNanos();
+        }
+    }
+}
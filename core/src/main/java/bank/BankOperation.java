@@ -0,0 +1,133 @@
+package bank;
+
+// Class representing one bank operation that can be applied without console input
+class BankOperation {
+    // Operation types
+    static final byte CREATE = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAW = 3;
+    static final byte TRANSFER = 4;
+    static final byte DELETE = 5;
+    static final byte INTEREST = 6; // Interest credited by the accrual engine
+    static final byte FEE = 7;      // Fee charged by the accrual engine
+    static final byte TRANSFER_OUT = 8; // Debit leg of a transfer to an account on another shard
+    static final byte TRANSFER_IN = 9;  // Credit leg of a transfer from an account on another shard
+    static final byte REJECTED = 10;    // Debit refused by a fraud rule (journal only)
+    static final byte FLAGGED = 11;     // Transfer let through but flagged by a fraud rule (journal only)
+    static final byte REVERSAL = 12;    // Compensating entry that gives back an earlier entry's balance effect
+    static final byte LEG_PREPARED = 13; // Incoming cross-shard leg prepared (write-ahead log only)
+    static final byte LEG_RESOLVED = 14; // Cross-shard leg resolved with no balance change (write-ahead log only)
+
+    // Result codes returned by the Bank operations
+    static final int SUCCESS = 0;
+    static final int ACCOUNT_NOT_FOUND = 1;
+    static final int INSUFFICIENT_BALANCE = 2;
+    static final int DUPLICATE_ACCOUNT = 3;
+    static final int INVALID_OPERATION = 4;
+    static final int TRANSFER_IN_PROGRESS = 5; // The account has a cross-shard transfer leg pending
+    static final int REJECTED_BY_RULE = 6;     // A fraud rule refused the debit
+    static final int RESULT_CODES = 7;         // Number of result codes, for arrays indexed by result
+
+    byte type;
+    int accountNumber;       // Account (source account for transfers)
+    int targetAccountNumber; // Destination account for transfers
+    String name;             // Customer name for account creation
+    double amount;           // Amount, or initial balance for account creation
+    long reference;          // Cross-shard transaction id of a transfer leg, or 0
+
+    public BankOperation() {
+    }
+
+    public BankOperation(byte type, int accountNumber, int targetAccountNumber, String name, double amount) {
+        set(type, accountNumber, targetAccountNumber, name, amount);
+    }
+
+    // Method to overwrite all fields, so operation objects can be reused
+    public BankOperation set(byte type, int accountNumber, int targetAccountNumber, String name, double amount) {
+        this.type = type;
+        this.accountNumber = accountNumber;
+        this.targetAccountNumber = targetAccountNumber;
+        this.name = name;
+        this.amount = amount;
+        this.reference = 0;
+        return this;
+    }
+
+    public static BankOperation create(int accountNumber, String name, double balance) {
+        return new BankOperation(CREATE, accountNumber, 0, name, balance);
+    }
+
+    public static BankOperation deposit(int accountNumber, double amount) {
+        return new BankOperation(DEPOSIT, accountNumber, 0, null, amount);
+    }
+
+    public static BankOperation withdraw(int accountNumber, double amount) {
+        return new BankOperation(WITHDRAW, accountNumber, 0, null, amount);
+    }
+
+    public static BankOperation transfer(int sourceAccountNumber, int destinationAccountNumber, double amount) {
+        return new BankOperation(TRANSFER, sourceAccountNumber, destinationAccountNumber, null, amount);
+    }
+
+    public static BankOperation delete(int accountNumber) {
+        return new BankOperation(DELETE, accountNumber, 0, null, 0);
+    }
+
+    // Method to get a short label for an operation type
+    public static String typeName(byte type) {
+        switch (type) {
+            case CREATE:
+                return "CREATE";
+            case DEPOSIT:
+                return "DEPOSIT";
+            case WITHDRAW:
+                return "WITHDRAW";
+            case TRANSFER:
+                return "TRANSFER";
+            case DELETE:
+                return "DELETE";
+            case INTEREST:
+                return "INTEREST";
+            case FEE:
+                return "FEE";
+            case TRANSFER_OUT:
+                return "TRANSFER_OUT";
+            case TRANSFER_IN:
+                return "TRANSFER_IN";
+            case REJECTED:
+                return "REJECTED";
+            case FLAGGED:
+                return "FLAGGED";
+            case REVERSAL:
+                return "REVERSAL";
+            case LEG_PREPARED:
+                return "LEG_PREPARED";
+            case LEG_RESOLVED:
+                return "LEG_RESOLVED";
+            default:
+                return "UNKNOWN";
+        }
+    }
+
+    // Method to get a short label for a result code
+    public static String resultName(int result) {
+        switch (result) {
+            case SUCCESS:
+                return "OK";
+            case ACCOUNT_NOT_FOUND:
+                return "ACCOUNT_NOT_FOUND";
+            case INSUFFICIENT_BALANCE:
+                return "INSUFFICIENT_BALANCE";
+            case DUPLICATE_ACCOUNT:
+                return "DUPLICATE_ACCOUNT";
+            case INVALID_OPERATION:
+                return "INVALID_OPERATION";
+            case TRANSFER_IN_PROGRESS:
+                return "TRANSFER_IN_PROGRESS";
+            case REJECTED_BY_RULE:
+                return "REJECTED_BY_RULE";
+            default:
+                return "ERROR";
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package bank;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+// Class representing a read-only replica of a primary bank. It applies the primary's
+// committed operations in order to a local copy, which serves lookups, history and
+// listings without touching the primary. A replica that is new, or has fallen further
+// behind than the primary's backlog, is caught up from a snapshot. After a write on the
+// primary, Bank.getReplicationToken() gives a token; awaitToken(token, ...) on a replica
+// waits until that write is visible there (read-your-writes).
+class BankReplica implements AutoCloseable {
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final InetSocketAddress primary;
+    private volatile Bank bank = new Bank(); // Replaced whole when a snapshot is loaded
+    private volatile long appliedSequence;
+    private volatile boolean caughtUp; // The first snapshot is loaded, so even token 0 is visible
+    private volatile long primarySequence;
+    private volatile long lagMillis;
+    private volatile long lastContactMillis;
+    private volatile boolean connected;
+    private volatile long maxLagRecords = Long.MAX_VALUE;
+    private volatile long maxLagMillis = Long.MAX_VALUE;
+    private volatile int waiters; // Threads blocked in awaitToken
+    private volatile boolean closed;
+    private volatile Socket socket;
+    private long logId; // Receiver thread only
+    private long lastCommitMillis; // Receiver thread only
+    private boolean lagging; // Receiver thread only
+    private Thread receiver;
+
+    public BankReplica(InetSocketAddress primary) {
+        this.primary = primary;
+        registerGauges(bank);
+    }
+
+    // Method to start following the primary; reconnects on its own after a failure
+    public synchronized void start() {
+        if (receiver != null) {
+            return;
+        }
+        receiver = new Thread(this::follow, "replica-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    // Method to set the lag beyond which the replica reports itself as lagging
+    public void setMaxLag(long records, long millis) {
+        maxLagRecords = records;
+        maxLagMillis = millis;
+    }
+
+    // Method to wait until the operations covered by a primary token are visible here
+    public boolean awaitToken(long token, long timeout, TimeUnit unit) throws InterruptedException {
+        if (caughtUp && appliedSequence >= token) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            waiters++;
+            try {
+                while (!caughtUp || appliedSequence < token) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } finally {
+                waiters--;
+            }
+        }
+        return true;
+    }
+
+    Bank getBank() {
+        return bank;
+    }
+
+    // Method to look up a customer as of the last applied operation
+    public Customer findCustomer(int accountNumber) {
+        return bank.findCustomer(accountNumber);
+    }
+
+    // Method to look up a customer once the given primary token is visible; null if it did not arrive in time
+    public Customer findCustomer(int accountNumber, long token, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return awaitToken(token, timeout, unit) ? bank.findCustomer(accountNumber) : null;
+    }
+
+    // Method to get the replicated transaction history (for statements and history views)
+    public TransactionHistory getTransactionHistory() {
+        return bank.getTransactionHistory();
+    }
+
+    // Method to open a consistent snapshot of every replicated account
+    public BankSnapshot openSnapshot() {
+        return bank.openSnapshot();
+    }
+
+    // Method to export every replicated customer to a channel as CSV or JSON
+    public long exportCustomers(java.nio.channels.WritableByteChannel channel, CustomerExporter.Format format)
+            throws IOException {
+        return bank.exportCustomers(channel, format);
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    // Method to get how many committed records the primary holds that are not applied here
+    public long getLagRecords() {
+        return Math.max(0, primarySequence - appliedSequence);
+    }
+
+    // Method to get how far behind the primary this replica is in time, measured on the primary's
+    // clock when connected and growing with the time since last contact when not
+    public long getLagMillis() {
+        if (!connected) {
+            return (lastContactMillis == 0) ? Long.MAX_VALUE : System.currentTimeMillis() - lastContactMillis;
+        }
+        return lagMillis;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    // Method to check whether the lag is beyond the limits set with setMaxLag
+    public boolean isLagging() {
+        return getLagRecords() > maxLagRecords || getLagMillis() > maxLagMillis;
+    }
+
+    // Receiver loop: connect, catch up, apply records until the connection fails, then retry
+    private void follow() {
+        while (!closed) {
+            try (Socket connection = new Socket(primary.getAddress(), primary.getPort())) {
+                socket = connection;
+                connection.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(connection.getOutputStream());
+                out.writeLong(logId);
+                out.writeLong(appliedSequence);
+                out.flush();
+                connected = true;
+                receive(new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16)));
+            } catch (IOException e) {
+                if (!closed && connected) {
+                    System.err.println("Replica lost the primary at " + primary + ": " + e.getMessage());
+                }
+            } finally {
+                connected = false;
+            }
+            if (!closed) {
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(DataInputStream in) throws IOException {
+        BankOperation operation = new BankOperation();
+        while (true) {
+            byte frame = in.readByte();
+            lastContactMillis = System.currentTimeMillis();
+            if (frame == ReplicationServer.RECORD) {
+                long sequence = in.readLong();
+                long commitMillis = in.readLong();
+                byte type = in.readByte();
+                int accountNumber = in.readInt();
+                int targetAccountNumber = in.readInt();
+                double amount = in.readDouble();
+                String name = in.readUTF();
+                int result = bank.apply(operation.set(type, accountNumber, targetAccountNumber,
+                        name.isEmpty() ? null : name, amount));
+                if (result != BankOperation.SUCCESS) {
+                    // Operations arrive in commit order, so this means the copies have diverged
+                    System.err.println("Replica could not apply record " + sequence + ": "
+                            + BankOperation.resultName(result));
+                }
+                lastCommitMillis = commitMillis;
+                appliedSequence = sequence;
+                if (waiters > 0) {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            } else if (frame == ReplicationServer.HEARTBEAT) {
+                primarySequence = in.readLong();
+                long primaryMillis = in.readLong();
+                lagMillis = (appliedSequence < primarySequence) ? Math.max(0, primaryMillis - lastCommitMillis) : 0;
+                reportLag();
+            } else if (frame == ReplicationServer.SNAPSHOT) {
+                loadSnapshot(in);
+            } else {
+                throw new IOException("Unknown replication frame " + frame);
+            }
+        }
+    }
+
+    // Helper method to replace the local copy with a snapshot of the primary
+    private void loadSnapshot(DataInputStream in) throws IOException {
+        long snapshotLogId = in.readLong();
+        long sequence = in.readLong();
+        Bank copy = new Bank();
+        TransactionHistory history = copy.getTransactionHistory();
+        int journalSize = in.readInt();
+        for (int i = 0; i < journalSize; i++) {
+            byte type = in.readByte();
+            int source = in.readInt();
+            int destination = in.readInt();
+            double amount = in.readDouble();
+            history.recordTransaction(type, source, destination, amount, in.readLong());
+        }
+        int accounts = in.readInt();
+        for (int i = 0; i < accounts; i++) {
+            int accountNumber = in.readInt();
+            double balance = in.readDouble();
+            copy.restoreAccount(accountNumber, in.readUTF(), balance);
+        }
+        registerGauges(copy);
+        bank = copy; // Readers switch to the new copy; any open snapshot keeps the old one
+        logId = snapshotLogId;
+        lastCommitMillis = System.currentTimeMillis();
+        appliedSequence = sequence;
+        caughtUp = true;
+        primarySequence = Math.max(primarySequence, sequence);
+        if (waiters > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    // Helper method to report crossing the configured lag limits, once per crossing
+    private void reportLag() {
+        boolean nowLagging = isLagging();
+        if (nowLagging != lagging) {
+            lagging = nowLagging;
+            System.err.println(nowLagging
+                    ? "Replica is lagging: " + getLagRecords() + " records, " + getLagMillis() + " ms behind"
+                    : "Replica caught up with the primary");
+        }
+    }
+
+    private void registerGauges(Bank copy) {
+        copy.getMetrics().registerGauge("replicationLagRecords", this::getLagRecords);
+        copy.getMetrics().registerGauge("replicationLagMillis", () -> connected ? lagMillis : -1);
+    }
+
+    // Method to stop following the primary
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Socket connection = socket;
+        if (connection != null) {
+            connection.close();
+        }
+        Thread thread;
+        synchronized (this) {
+            thread = receiver;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
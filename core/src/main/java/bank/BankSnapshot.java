@@ -0,0 +1,96 @@
+package bank;
+
+import java.util.*;
+
+// Class representing a consistent, read-only view of every heap account as of one commit
+// version. Opening one is O(1) and never blocks writers; iterate at leisure, then close it.
+class BankSnapshot implements AutoCloseable {
+    private final VersionClock clock;
+    private final BankTree.Roots roots;
+    private final long version;
+    private boolean closed;
+
+    BankSnapshot(VersionClock clock, BankTree.Roots roots, long version) {
+        this.clock = clock;
+        this.roots = roots;
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Method to get the number of accounts in the snapshot
+    public int size() {
+        return roots.size;
+    }
+
+    // Method to look up an account; returns a detached copy with the snapshot's balance, or null
+    public Customer findCustomer(int accountNumber) {
+        Customer customer = roots.findCustomer(accountNumber);
+        return (customer != null) ? detach(customer) : null;
+    }
+
+    // Method to get the snapshot's balance of a customer returned by one of the raw iterators
+    public double balanceOf(Customer customer) {
+        return clock.readBalance(customer, version);
+    }
+
+    // Method to iterate over detached copies of all customers in dictionary order
+    public Iterator<Customer> iterateByName() {
+        return detaching(roots.iterateByName());
+    }
+
+    // Method to iterate over detached copies of all customers in account number order
+    public Iterator<Customer> iterateByAccount() {
+        return detaching(roots.iterateByAccount());
+    }
+
+    // Method to iterate over the live customers after (name, accountNumber) in name order without copying;
+    // read their balances through balanceOf
+    Iterator<Customer> rawIterateByNameAfter(String name, int accountNumber) {
+        return roots.iterateByNameAfter(name, accountNumber);
+    }
+
+    // Method to iterate over the live customers in account number order without copying;
+    // read their balances through balanceOf
+    Iterator<Customer> rawIterateByAccount() {
+        return roots.iterateByAccount();
+    }
+
+    // Method to add up every balance in the snapshot
+    public double totalBalance() {
+        double total = 0;
+        Iterator<Customer> iterator = roots.iterateByAccount();
+        while (iterator.hasNext()) {
+            total += balanceOf(iterator.next());
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            clock.release(version);
+        }
+    }
+
+    private Customer detach(Customer customer) {
+        return new Customer(customer.accountNumber, customer.name, balanceOf(customer));
+    }
+
+    private Iterator<Customer> detaching(Iterator<Customer> live) {
+        return new Iterator<Customer>() {
+            @Override
+            public boolean hasNext() {
+                return live.hasNext();
+            }
+
+            @Override
+            public Customer next() {
+                return detach(live.next());
+            }
+        };
+    }
+}
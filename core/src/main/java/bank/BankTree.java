@@ -0,0 +1,497 @@
+package bank;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Class representing two self-balancing (AVL) search trees over the same customers:
+// one ordered by name (ties broken by account number) and one ordered by account number.
+// Every operation is O(log n) and iteration uses an explicit stack, so sorted input
+// cannot produce a degenerate tree or overflow the call stack.
+// The trees are persistent: insert and delete copy the nodes on the path they change
+// and publish new roots in one volatile write, and a published node is never modified.
+// Holding on to a Roots object therefore gives a stable view for as long as it is needed.
+class BankTree {
+    private static final int NAME_SORT_CUTOFF = 64; // Smaller groups are sorted by comparing names
+    private static final int CHAR_KEY_BITS = 17;    // A character plus one value for "name has ended"
+
+    private volatile Roots roots = new Roots(null, null, 0, 0);
+
+    public BankTree() {
+    }
+
+    // Class representing a node in one of the AVL trees
+    static class TreeNode {
+        Customer customer;
+        TreeNode left;
+        TreeNode right;
+        int height;
+
+        public TreeNode(Customer customer) {
+            this.customer = customer;
+            this.left = null;
+            this.right = null;
+            this.height = 1;
+        }
+
+        // Constructor to copy a node before changing it
+        TreeNode(TreeNode original) {
+            this.customer = original.customer;
+            this.left = original.left;
+            this.right = original.right;
+            this.height = original.height;
+        }
+    }
+
+    // Class representing one published version of both trees
+    static final class Roots {
+        final TreeNode nameRoot;    // Ordered by name, then account number
+        final TreeNode accountRoot; // Ordered by account number
+        final int size;
+        final long version;         // Commit version of the change that produced these roots
+
+        Roots(TreeNode nameRoot, TreeNode accountRoot, int size, long version) {
+            this.nameRoot = nameRoot;
+            this.accountRoot = accountRoot;
+            this.size = size;
+            this.version = version;
+        }
+
+        // Method to search for a customer by account number
+        public Customer findCustomer(int accountNumber) {
+            TreeNode current = accountRoot;
+            while (current != null) {
+                int accountComparison = Integer.compare(accountNumber, current.customer.accountNumber);
+                if (accountComparison == 0) {
+                    return current.customer;
+                }
+                current = (accountComparison < 0) ? current.left : current.right;
+            }
+            return null; // Customer not found
+        }
+
+        // Method to iterate over all customers in dictionary order
+        public Iterator<Customer> iterateByName() {
+            return new TreeIterator(nameRoot, c -> false, c -> false);
+        }
+
+        // Method to iterate over customers whose name is in [fromName, toName); null means unbounded
+        public Iterator<Customer> rangeByName(String fromName, String toName) {
+            return new TreeIterator(nameRoot,
+                    c -> fromName != null && c.name.compareTo(fromName) < 0,
+                    c -> toName != null && c.name.compareTo(toName) >= 0);
+        }
+
+        // Method to iterate over customers that come strictly after (name, accountNumber) in name order
+        public Iterator<Customer> iterateByNameAfter(String name, int accountNumber) {
+            if (name == null) {
+                return iterateByName();
+            }
+            Customer cursor = new Customer(accountNumber, name, 0);
+            return new TreeIterator(nameRoot, c -> compare(c, cursor, true) <= 0, c -> false);
+        }
+
+        // Method to iterate over all customers in account number order
+        public Iterator<Customer> iterateByAccount() {
+            return new TreeIterator(accountRoot, c -> false, c -> false);
+        }
+
+        // Method to iterate over customers whose account number is in [fromAccount, toAccount]
+        public Iterator<Customer> rangeByAccount(int fromAccount, int toAccount) {
+            return new TreeIterator(accountRoot,
+                    c -> c.accountNumber < fromAccount,
+                    c -> c.accountNumber > toAccount);
+        }
+    }
+
+    // Method to insert a new customer into both trees; fails if the account number is taken
+    public boolean insert(Customer customer) {
+        return insert(customer, 0);
+    }
+
+    // Method to insert a new customer and tag the new roots with the commit version of the insert.
+    // Writers must be serialized by the caller (Bank holds every stripe lock).
+    public boolean insert(Customer customer, long version) {
+        Roots current = roots;
+        if (current.findCustomer(customer.accountNumber) != null) {
+            return false;
+        }
+        roots = new Roots(insertRec(current.nameRoot, customer, true),
+                insertRec(current.accountRoot, customer, false), current.size + 1, version);
+        return true;
+    }
+
+    // Recursive method to insert a customer; recursion depth is bounded by the AVL height
+    private TreeNode insertRec(TreeNode root, Customer customer, boolean byName) {
+        if (root == null) {
+            return new TreeNode(customer);
+        }
+
+        root = new TreeNode(root);
+        if (compare(customer, root.customer, byName) < 0) {
+            root.left = insertRec(root.left, customer, byName);
+        } else {
+            root.right = insertRec(root.right, customer, byName);
+        }
+
+        return rebalance(root);
+    }
+
+    // Method to fill an empty tree with many customers at once (account numbers must be distinct); the
+    // array may be reordered. Each order is sorted only if the input is not already in it, then both trees are built bottom-up
+    // as perfectly balanced trees in O(n), their subtrees in parallel on the pool.
+    // Writers must be serialized by the caller (Bank holds every stripe lock).
+    public void load(Customer[] customers, int count, long version, ForkJoinPool pool) {
+        if (roots.size != 0) {
+            throw new IllegalStateException("Only an empty tree can be bulk loaded");
+        }
+        Customer[] byName = (customers.length == count) ? customers : Arrays.copyOf(customers, count);
+        if (!isSorted(byName, true)) {
+            sortByName(byName);
+        }
+        Customer[] byAccount = byName;
+        if (!isSorted(byAccount, false)) {
+            // Sort (account, position) pairs as primitives rather than comparing objects
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((long) byName[i].accountNumber << 32) | i;
+            }
+            Arrays.parallelSort(keys);
+            byAccount = new Customer[count];
+            for (int i = 0; i < count; i++) {
+                byAccount[i] = byName[(int) keys[i]];
+            }
+        }
+        ForkJoinTask<TreeNode> nameTree = pool.submit(new BalancedBuild(byName, 0, count));
+        TreeNode accountRoot = pool.invoke(new BalancedBuild(byAccount, 0, count));
+        roots = new Roots(nameTree.join(), accountRoot, count, version);
+    }
+
+    private static boolean isSorted(Customer[] customers, boolean byName) {
+        for (int i = 1; i < customers.length; i++) {
+            if (compare(customers[i - 1], customers[i], byName) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Method to sort customers into name order without comparing String objects pairwise: each pass packs
+    // two characters of every name (plus its position) into a long and sorts those primitives, then only
+    // groups that still tie are refined two characters deeper (a most-significant-digit radix sort)
+    private static void sortByName(Customer[] customers) {
+        int count = customers.length;
+        if (count > 1) {
+            sortByName(customers, 0, count, 0, new long[count], new Customer[count]);
+        }
+    }
+
+    private static void sortByName(Customer[] customers, int from, int to, int depth, long[] keys,
+            Customer[] scratch) {
+        int size = to - from;
+        int indexBits = 32 - Integer.numberOfLeadingZeros(size - 1);
+        if (size < NAME_SORT_CUTOFF || indexBits > 63 - 2 * CHAR_KEY_BITS) {
+            Arrays.sort(customers, from, to, (a, b) -> compare(a, b, true));
+            return;
+        }
+        // Skip the characters every name in the group shares
+        String first = customers[from].name;
+        int common = first.length();
+        for (int i = from + 1; i < to && common > depth; i++) {
+            String name = customers[i].name;
+            int limit = Math.min(common, name.length());
+            int j = depth;
+            while (j < limit && name.charAt(j) == first.charAt(j)) {
+                j++;
+            }
+            common = j;
+        }
+        depth = Math.max(depth, common);
+
+        for (int i = 0; i < size; i++) {
+            String name = customers[from + i].name;
+            long digit = (charKey(name, depth) << CHAR_KEY_BITS) | charKey(name, depth + 1);
+            keys[from + i] = (digit << indexBits) | i;
+        }
+        if (from == 0 && to == customers.length) {
+            Arrays.parallelSort(keys, from, to);
+        } else {
+            Arrays.sort(keys, from, to);
+        }
+        long mask = (1L << indexBits) - 1;
+        for (int i = from; i < to; i++) {
+            scratch[i] = customers[from + (int) (keys[i] & mask)];
+        }
+        System.arraycopy(scratch, from, customers, from, size);
+
+        // Refine each run of equal digits; keys of a run are only overwritten once the scan has passed it
+        int runStart = from;
+        for (int i = from + 1; i <= to; i++) {
+            long digit = keys[runStart] >>> indexBits;
+            if (i < to && (keys[i] >>> indexBits) == digit) {
+                continue;
+            }
+            if (i - runStart > 1) {
+                if ((digit & ((1L << CHAR_KEY_BITS) - 1)) == 0) {
+                    // Every name in the run has ended: they are equal, so order by account number
+                    Arrays.sort(customers, runStart, i, (a, b) -> Integer.compare(a.accountNumber, b.accountNumber));
+                } else {
+                    sortByName(customers, runStart, i, depth + 2, keys, scratch);
+                }
+            }
+            runStart = i;
+        }
+    }
+
+    // Helper method to map the character at an index to a sort digit; a name that has ended sorts first
+    private static long charKey(String name, int index) {
+        return (index < name.length()) ? name.charAt(index) + 1 : 0;
+    }
+
+    // Class representing the construction of a perfectly balanced subtree over the sorted slice [from, to)
+    private static final class BalancedBuild extends RecursiveTask<TreeNode> {
+        private static final long serialVersionUID = 1L;
+        private static final int SEQUENTIAL_NODES = 1 << 14; // Smaller slices are not worth forking
+
+        private final Customer[] sorted;
+        private final int from;
+        private final int to;
+
+        BalancedBuild(Customer[] sorted, int from, int to) {
+            this.sorted = sorted;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TreeNode compute() {
+            if (to - from <= SEQUENTIAL_NODES) {
+                return build(sorted, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            BalancedBuild left = new BalancedBuild(sorted, from, middle);
+            left.fork();
+            TreeNode node = new TreeNode(sorted[middle]);
+            node.right = new BalancedBuild(sorted, middle + 1, to).compute();
+            node.left = left.join();
+            updateHeight(node);
+            return node;
+        }
+
+        // Recursive method to build a slice; recursion depth is log2 of the slice length
+        private static TreeNode build(Customer[] sorted, int from, int to) {
+            if (from >= to) {
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            TreeNode node = new TreeNode(sorted[middle]);
+            node.left = build(sorted, from, middle);
+            node.right = build(sorted, middle + 1, to);
+            updateHeight(node);
+            return node;
+        }
+    }
+
+    // Method to search for a customer by account number
+    public Customer findCustomer(int accountNumber) {
+        return roots.findCustomer(accountNumber);
+    }
+
+    // Method to delete a customer by account number
+    public boolean deleteCustomer(int accountNumber) {
+        return deleteCustomer(accountNumber, 0);
+    }
+
+    // Method to delete a customer and tag the new roots with the commit version of the delete
+    public boolean deleteCustomer(int accountNumber, long version) {
+        Roots current = roots;
+        Customer customer = current.findCustomer(accountNumber);
+        if (customer == null) {
+            return false;
+        }
+        roots = new Roots(deleteRec(current.nameRoot, customer, true),
+                deleteRec(current.accountRoot, customer, false), current.size - 1, version);
+        return true;
+    }
+
+    // Recursive method to delete a customer from one tree
+    private TreeNode deleteRec(TreeNode root, Customer customer, boolean byName) {
+        if (root == null) {
+            return null;
+        }
+
+        int comparison = compare(customer, root.customer, byName);
+        if (comparison < 0) {
+            root = new TreeNode(root);
+            root.left = deleteRec(root.left, customer, byName);
+        } else if (comparison > 0) {
+            root = new TreeNode(root);
+            root.right = deleteRec(root.right, customer, byName);
+        } else {
+            if (root.left == null) {
+                return root.right;
+            }
+            if (root.right == null) {
+                return root.left;
+            }
+            TreeNode successor = new TreeNode(findMin(root.right));
+            successor.right = deleteMin(root.right);
+            successor.left = root.left;
+            root = successor;
+        }
+
+        return rebalance(root);
+    }
+
+    // Helper method to unlink the minimum node of a subtree
+    private TreeNode deleteMin(TreeNode node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node = new TreeNode(node);
+        node.left = deleteMin(node.left);
+        return rebalance(node);
+    }
+
+    // Helper method to find the minimum node in a subtree
+    private TreeNode findMin(TreeNode node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    // Method to get the number of customers in the tree
+    public int getSize() {
+        return roots.size;
+    }
+
+    // Method to get the currently published roots; they stay valid however the tree changes later
+    public Roots getRoots() {
+        return roots;
+    }
+
+    // Method to iterate over all customers in dictionary order
+    public Iterator<Customer> iterateByName() {
+        return roots.iterateByName();
+    }
+
+    // Method to iterate over customers whose name is in [fromName, toName); null means unbounded
+    public Iterator<Customer> rangeByName(String fromName, String toName) {
+        return roots.rangeByName(fromName, toName);
+    }
+
+    // Method to iterate over customers that come strictly after (name, accountNumber) in name order
+    public Iterator<Customer> iterateByNameAfter(String name, int accountNumber) {
+        return roots.iterateByNameAfter(name, accountNumber);
+    }
+
+    // Method to iterate over all customers in account number order
+    public Iterator<Customer> iterateByAccount() {
+        return roots.iterateByAccount();
+    }
+
+    // Method to iterate over customers whose account number is in [fromAccount, toAccount]
+    public Iterator<Customer> rangeByAccount(int fromAccount, int toAccount) {
+        return roots.rangeByAccount(fromAccount, toAccount);
+    }
+
+    // Ordering used by each tree
+    private static int compare(Customer a, Customer b, boolean byName) {
+        if (byName) {
+            int nameComparison = a.name.compareTo(b.name);
+            if (nameComparison != 0) {
+                return nameComparison;
+            }
+        }
+        return Integer.compare(a.accountNumber, b.accountNumber);
+    }
+
+    private static int height(TreeNode node) {
+        return (node != null) ? node.height : 0;
+    }
+
+    private static void updateHeight(TreeNode node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    // Rotations copy the pivot, which may still be shared with published trees;
+    // the node passed in is always a private copy already
+    private static TreeNode rotateRight(TreeNode node) {
+        TreeNode pivot = new TreeNode(node.left);
+        node.left = pivot.right;
+        pivot.right = node;
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    private static TreeNode rotateLeft(TreeNode node) {
+        TreeNode pivot = new TreeNode(node.right);
+        node.right = pivot.left;
+        pivot.left = node;
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    // Restore the AVL invariant at a node whose subtrees differ in height by at most two
+    private static TreeNode rebalance(TreeNode node) {
+        updateHeight(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(new TreeNode(node.left));
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(new TreeNode(node.right));
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    // Inner class for in-order iteration with an explicit stack, bounded by a lower and upper key
+    static class TreeIterator implements Iterator<Customer> {
+        private final ArrayDeque<TreeNode> stack = new ArrayDeque<>();
+        private final java.util.function.Predicate<Customer> aboveUpper;
+
+        TreeIterator(TreeNode root, java.util.function.Predicate<Customer> belowLower,
+                java.util.function.Predicate<Customer> aboveUpper) {
+            this.aboveUpper = aboveUpper;
+            // Seek to the first node that is not below the lower bound
+            TreeNode current = root;
+            while (current != null) {
+                if (belowLower.test(current.customer)) {
+                    current = current.right;
+                } else {
+                    stack.push(current);
+                    current = current.left;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && !aboveUpper.test(stack.peek().customer);
+        }
+
+        @Override
+        public Customer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TreeNode node = stack.pop();
+            TreeNode current = node.right;
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
+            }
+            return node.customer;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Class representing the headless batch mode: streams a CSV file of commands
+// through the bank and writes one result line per command.
+//
+// Input lines (blank lines and lines starting with '#' are skipped):
+//   CREATE,<account>,<name>,<balance>     (the name may be "quoted")
+//   DEPOSIT,<account>,<amount>
+//   WITHDRAW,<account>,<amount>
+//   TRANSFER,<source>,<destination>,<amount>
+//   DELETE,<account>
+// Output lines: <line number>,<operation>,<result>
+//
+// A parser thread reads the file through a large buffer and fills batches of
+// reusable BankOperation objects; the calling thread applies each batch in file
+// order (sharing one durable-log wait per batch) and writes its results.
+class BatchProcessor {
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final int BATCHES_IN_FLIGHT = 3;
+    private static final int READ_BUFFER_BYTES = 1 << 22;
+    private static final byte[][] TYPE_LABELS = new byte[6][];
+    private static final double[] POWERS_OF_TEN = new double[19];
+
+    static {
+        for (byte type = 0; type < TYPE_LABELS.length; type++) {
+            TYPE_LABELS[type] = BankOperation.typeName(type).getBytes(StandardCharsets.US_ASCII);
+        }
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final Bank bank;
+    private final long[] resultCounts = new long[BankOperation.RESULT_CODES];
+
+    public BatchProcessor(Bank bank) {
+        this.bank = bank;
+    }
+
+    // Class representing one batch of parsed commands
+    private static class Batch {
+        final BankOperation[] operations = new BankOperation[BATCH_SIZE];
+        final long[] lineNumbers = new long[BATCH_SIZE];
+        final int[] results = new int[BATCH_SIZE];
+        int count;
+        boolean last;
+
+        Batch() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                operations[i] = new BankOperation();
+            }
+        }
+    }
+
+    // Method to process a whole file; returns the number of commands processed
+    public long process(Path input, Path output) throws IOException {
+        ArrayBlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES_IN_FLIGHT);
+        ArrayBlockingQueue<Batch> full = new ArrayBlockingQueue<>(BATCHES_IN_FLIGHT);
+        for (int i = 0; i < BATCHES_IN_FLIGHT; i++) {
+            free.add(new Batch());
+        }
+        IOException[] parseFailure = new IOException[1];
+        Thread parser = new Thread(() -> {
+            try {
+                parse(input, free, full);
+            } catch (IOException e) {
+                parseFailure[0] = e;
+            } catch (InterruptedException e) {
+                return;
+            }
+            finishParsing(free, full);
+        }, "batch-parser");
+
+        long start = System.nanoTime();
+        long processed = 0;
+        Arrays.fill(resultCounts, 0);
+        parser.start();
+        try (BufferedChannelWriter out = new BufferedChannelWriter(FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), 1 << 20)) {
+            while (true) {
+                Batch batch = full.take();
+                bank.applyBatch(batch.operations, batch.count, batch.results);
+                for (int i = 0; i < batch.count; i++) {
+                    int result = batch.results[i];
+                    resultCounts[result]++;
+                    out.writeLong(batch.lineNumbers[i]).write((byte) ',')
+                            .write(TYPE_LABELS[batch.operations[i].type]).write((byte) ',')
+                            .writeAscii(BankOperation.resultName(result)).write((byte) '\n');
+                }
+                processed += batch.count;
+                boolean last = batch.last;
+                batch.count = 0;
+                free.put(batch);
+                if (last) {
+                    break;
+                }
+            }
+            parser.join();
+        } catch (InterruptedException e) {
+            parser.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch processing interrupted", e);
+        }
+        if (parseFailure[0] != null) {
+            throw parseFailure[0];
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Processed %d operations in %.3f s (%.0f ops/s)%n", processed, seconds,
+                processed / Math.max(seconds, 1e-9));
+        for (int result = 0; result < resultCounts.length; result++) {
+            if (resultCounts[result] > 0) {
+                System.out.println("  " + BankOperation.resultName(result) + ": " + resultCounts[result]);
+            }
+        }
+        return processed;
+    }
+
+    // Hand over a final (possibly empty) batch so the consumer stops even after a failure
+    private static void finishParsing(ArrayBlockingQueue<Batch> free, ArrayBlockingQueue<Batch> full) {
+        try {
+            Batch batch = free.take();
+            batch.count = 0;
+            batch.last = true;
+            full.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Parser loop: split the input into lines without creating a String per line
+    private void parse(Path input, ArrayBlockingQueue<Batch> free, ArrayBlockingQueue<Batch> full)
+            throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            byte[] data = new byte[READ_BUFFER_BYTES];
+            ByteBuffer wrapper = ByteBuffer.wrap(data);
+            int length = 0; // Bytes of data currently buffered
+            long lineNumber = 0;
+            Batch batch = free.take();
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                wrapper.position(length);
+                int read = channel.read(wrapper);
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    length += read;
+                }
+
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (data[i] != '\n') {
+                        continue;
+                    }
+                    lineNumber++;
+                    if (parseLine(data, lineStart, i, batch.operations[batch.count])) {
+                        batch.lineNumbers[batch.count++] = lineNumber;
+                        if (batch.count == BATCH_SIZE) {
+                            full.put(batch);
+                            batch = free.take();
+                        }
+                    }
+                    lineStart = i + 1;
+                }
+                if (endOfInput && lineStart < length) {
+                    lineNumber++; // Last line without a trailing newline
+                    if (parseLine(data, lineStart, length, batch.operations[batch.count])) {
+                        batch.lineNumbers[batch.count++] = lineNumber;
+                    }
+                    lineStart = length;
+                }
+                if (lineStart == 0 && length == data.length) {
+                    throw new IOException("Line " + (lineNumber + 1) + " is longer than " + data.length + " bytes");
+                }
+                // Keep the partial line at the front of the buffer
+                System.arraycopy(data, lineStart, data, 0, length - lineStart);
+                length -= lineStart;
+            }
+            if (batch.count > 0) {
+                full.put(batch);
+            } else {
+                free.put(batch);
+            }
+        }
+    }
+
+    // Parse one line into an operation; returns false for lines that should be skipped.
+    // Malformed lines become operations of type 0, which the bank reports as INVALID_OPERATION.
+    private boolean parseLine(byte[] data, int start, int end, BankOperation operation) {
+        if (end > start && data[end - 1] == '\r') {
+            end--;
+        }
+        while (start < end && data[start] == ' ') {
+            start++;
+        }
+        if (start == end || data[start] == '#') {
+            return false;
+        }
+        operation.set((byte) 0, 0, 0, null, 0);
+
+        int[] cursor = { start };
+        int fieldEnd = fieldEnd(data, start, end);
+        byte type = parseType(data, start, fieldEnd);
+        cursor[0] = fieldEnd + 1;
+        try {
+            switch (type) {
+                case BankOperation.CREATE: {
+                    int accountNumber = (int) parseLong(data, cursor, end);
+                    String name = parseName(data, cursor, end);
+                    double balance = parseDecimal(data, cursor, end);
+                    operation.set(type, accountNumber, 0, name, balance);
+                    break;
+                }
+                case BankOperation.DEPOSIT:
+                case BankOperation.WITHDRAW: {
+                    int accountNumber = (int) parseLong(data, cursor, end);
+                    operation.set(type, accountNumber, 0, null, parseDecimal(data, cursor, end));
+                    break;
+                }
+                case BankOperation.TRANSFER: {
+                    int source = (int) parseLong(data, cursor, end);
+                    int destination = (int) parseLong(data, cursor, end);
+                    operation.set(type, source, destination, null, parseDecimal(data, cursor, end));
+                    break;
+                }
+                case BankOperation.DELETE:
+                    operation.set(type, (int) parseLong(data, cursor, end), 0, null, 0);
+                    break;
+                default:
+                    break; // Unknown command: left as type 0
+            }
+        } catch (NumberFormatException e) {
+            operation.set((byte) 0, 0, 0, null, 0);
+        }
+        return true;
+    }
+
+    static int fieldEnd(byte[] data, int start, int end) {
+        int i = start;
+        while (i < end && data[i] != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    private static byte parseType(byte[] data, int start, int end) {
+        if (matches(data, start, end, "CREATE")) {
+            return BankOperation.CREATE;
+        } else if (matches(data, start, end, "DEPOSIT")) {
+            return BankOperation.DEPOSIT;
+        } else if (matches(data, start, end, "WITHDRAW")) {
+            return BankOperation.WITHDRAW;
+        } else if (matches(data, start, end, "TRANSFER")) {
+            return BankOperation.TRANSFER;
+        } else if (matches(data, start, end, "DELETE")) {
+            return BankOperation.DELETE;
+        }
+        return 0;
+    }
+
+    private static boolean matches(byte[] data, int start, int end, String keyword) {
+        if (end - start != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (Character.toUpperCase((char) data[start + i]) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Parse a signed integer field and move the cursor past its comma
+    static long parseLong(byte[] data, int[] cursor, int end) {
+        int i = cursor[0];
+        int fieldEnd = fieldEnd(data, i, end);
+        boolean negative = i < fieldEnd && data[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == fieldEnd) {
+            throw new NumberFormatException("Empty number");
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Bad digit");
+            }
+            value = value * 10 + digit;
+        }
+        cursor[0] = fieldEnd + 1;
+        return negative ? -value : value;
+    }
+
+    // Parse a plain decimal field such as 12.50; anything fancier falls back to Double.parseDouble
+    static double parseDecimal(byte[] data, int[] cursor, int end) {
+        int start = cursor[0];
+        int fieldEnd = fieldEnd(data, start, end);
+        cursor[0] = fieldEnd + 1;
+        int i = start;
+        boolean negative = i < fieldEnd && data[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < fieldEnd; i++) {
+            byte b = data[i];
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9' && digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else {
+                return Double.parseDouble(new String(data, start, fieldEnd - start, StandardCharsets.US_ASCII));
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Empty number");
+        }
+        // Both operands are exact doubles, so the division is correctly rounded
+        double value = (fractionDigits > 0) ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    // Parse a name field, which may be quoted ("" stands for a quote inside a quoted name)
+    static String parseName(byte[] data, int[] cursor, int end) {
+        int i = cursor[0];
+        if (i < end && data[i] == '"') {
+            StringBuilder name = null;
+            int segmentStart = i + 1;
+            for (int j = i + 1; j < end; j++) {
+                if (data[j] != '"') {
+                    continue;
+                }
+                if (j + 1 < end && data[j + 1] == '"') {
+                    if (name == null) {
+                        name = new StringBuilder();
+                    }
+                    name.append(new String(data, segmentStart, j + 1 - segmentStart, StandardCharsets.UTF_8));
+                    segmentStart = j + 2;
+                    j++;
+                    continue;
+                }
+                String tail = new String(data, segmentStart, j - segmentStart, StandardCharsets.UTF_8);
+                cursor[0] = fieldEnd(data, j, end) + 1;
+                return (name == null) ? tail : name.append(tail).toString();
+            }
+            throw new NumberFormatException("Unterminated quoted name");
+        }
+        int fieldEnd = fieldEnd(data, i, end);
+        cursor[0] = fieldEnd + 1;
+        return new String(data, i, fieldEnd - i, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Class representing a buffered writer that encodes text straight into a large
+// NIO buffer and writes it to a channel when full, without per-value Strings.
+class BufferedChannelWriter implements AutoCloseable {
+    private final java.nio.channels.WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+
+    public BufferedChannelWriter(java.nio.channels.WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public BufferedChannelWriter write(byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(value);
+        return this;
+    }
+
+    public BufferedChannelWriter write(byte[] bytes) throws IOException {
+        return write(bytes, 0, bytes.length);
+    }
+
+    public BufferedChannelWriter write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+        return this;
+    }
+
+    // Method to write a string that is known to be ASCII
+    public BufferedChannelWriter writeAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            write((byte) text.charAt(i));
+        }
+        return this;
+    }
+
+    public BufferedChannelWriter writeUtf8(String text) throws IOException {
+        int length = text.length();
+        if (length <= buffer.capacity()) {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+            int start = buffer.position();
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    buffer.position(start); // Not ASCII: fall back to the encoder
+                    return write(text.getBytes(StandardCharsets.UTF_8));
+                }
+                buffer.put((byte) c);
+            }
+            return this;
+        }
+        return write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public BufferedChannelWriter writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            return writeAscii(Long.toString(value));
+        }
+        if (value < 0) {
+            write((byte) '-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            write(digits[--count]);
+        }
+        return this;
+    }
+
+    // Method to write a double exactly as Double.toString would; whole cents are formatted without allocating
+    public BufferedChannelWriter writeDouble(double value) throws IOException {
+        double magnitude = Math.abs(value);
+        long cents = Math.round(magnitude * 100);
+        if (magnitude < 1e7 && (magnitude >= 1e-3 || magnitude == 0) && cents / 100.0 == magnitude
+                && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)) {
+            if (value < 0) {
+                write((byte) '-');
+            }
+            writeLong(cents / 100).write((byte) '.');
+            int fraction = (int) (cents % 100);
+            write((byte) ('0' + fraction / 10));
+            if (fraction % 10 != 0) {
+                write((byte) ('0' + fraction % 10));
+            }
+            return this;
+        }
+        return writeAscii(Double.toString(value));
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
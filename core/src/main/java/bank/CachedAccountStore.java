@@ -0,0 +1,418 @@
+package bank;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Class representing a bounded cache of hot accounts in front of another account store, with
+// W-TinyLFU eviction: new accounts enter a small LRU window, and an account leaving the window
+// only displaces the main region's least recently used account if it has been looked up more
+// often (per a count-min frequency sketch). Bursts and scans therefore cannot flush the
+// accounts that see steady traffic. Balance changes stay in the cache and are written back
+// when an account is evicted or on force(). The cache is split into segments by account
+// number, each with its own lock.
+//
+// find returns a handle (HANDLE | account number) instead of a slot of the backing store, so
+// an account's cached entry can be evicted and reloaded between calls. Slots below capacity()
+// are the backing store's, as seen by scans; scans read through the cache without loading
+// accounts into it.
+class CachedAccountStore implements AccountStore {
+    private static final long HANDLE = 1L << 40; // Above any slot: 2^40 slots would need 32 TB
+    private static final int MAX_SEGMENTS = 16;
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final AccountStore backing;
+    private final Segment[] segments;
+    private final int maximumAccounts;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder writeBacks = new LongAdder();
+
+    // Constructor to cache up to maximumAccounts accounts of a backing store
+    public CachedAccountStore(AccountStore backing, int maximumAccounts) {
+        if (maximumAccounts < 1) {
+            throw new IllegalArgumentException("maximumAccounts must be positive");
+        }
+        this.backing = backing;
+        this.maximumAccounts = maximumAccounts;
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 2 * 64 <= maximumAccounts) {
+            count *= 2; // At least 64 accounts per segment, so each keeps a useful window
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maximumAccounts / count + ((i < maximumAccounts % count) ? 1 : 0));
+        }
+    }
+
+    // Class representing a cached account
+    private static final class Entry {
+        final int accountNumber;
+        long balance;
+        String name; // Read from the backing store on first use
+        boolean dirty; // Changed since it was loaded or last written back
+        byte queue;
+        Entry previous;
+        Entry next;
+
+        Entry(int accountNumber, long balance) {
+            this.accountNumber = accountNumber;
+            this.balance = balance;
+        }
+    }
+
+    // Class representing one segment: its entries, three LRU queues and a frequency sketch
+    private final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final AccountIndex<Entry> entries;
+        final FrequencySketch sketch;
+        // Circular lists with sentinel heads; the least recently used entry is head.next
+        final Entry window = sentinel();
+        final Entry probation = sentinel();
+        final Entry protectedQueue = sentinel();
+        final int maximum;
+        final int windowMaximum;
+        final int protectedMaximum;
+        int windowSize;
+        int mainSize;
+        int protectedSize;
+
+        Segment(int maximum) {
+            this.maximum = maximum;
+            this.windowMaximum = Math.max(1, maximum / 100);
+            this.protectedMaximum = (maximum - windowMaximum) * 4 / 5;
+            this.entries = new AccountIndex<>(maximum);
+            this.sketch = new FrequencySketch(maximum);
+        }
+
+        // Look up an account, loading it from the backing store on a miss; null if it does not exist
+        Entry lookup(int accountNumber) {
+            sketch.increment(accountNumber);
+            Entry entry = entries.get(accountNumber);
+            if (entry != null) {
+                hits.increment();
+                touch(entry);
+                return entry;
+            }
+            misses.increment();
+            return load(accountNumber);
+        }
+
+        // Get a cached account, loading it (without counting a lookup) if it was evicted since find
+        Entry require(int accountNumber) {
+            Entry entry = entries.get(accountNumber);
+            if (entry == null) {
+                entry = load(accountNumber);
+                if (entry == null) {
+                    throw new IllegalStateException("Account " + accountNumber + " does not exist");
+                }
+            }
+            return entry;
+        }
+
+        private Entry load(int accountNumber) {
+            long slot = backing.find(accountNumber);
+            if (slot < 0) {
+                return null;
+            }
+            Entry entry = new Entry(accountNumber, backing.getBalance(slot));
+            entry.queue = WINDOW;
+            append(window, entry);
+            windowSize++;
+            entries.put(accountNumber, entry);
+            if (windowSize > windowMaximum) {
+                evictFromWindow();
+            }
+            return entry;
+        }
+
+        private void touch(Entry entry) {
+            unlink(entry);
+            if (entry.queue == WINDOW) {
+                append(window, entry);
+            } else if (entry.queue == PROTECTED) {
+                append(protectedQueue, entry);
+            } else {
+                // A second hit in the main region promotes the account to the protected queue
+                entry.queue = PROTECTED;
+                append(protectedQueue, entry);
+                if (++protectedSize > protectedMaximum) {
+                    Entry demoted = protectedQueue.next;
+                    unlink(demoted);
+                    demoted.queue = PROBATION;
+                    append(probation, demoted);
+                    protectedSize--;
+                }
+            }
+        }
+
+        // Move the window's oldest account to the main region, then evict whichever of it and the
+        // main region's oldest account is used less if the main region is over its share
+        private void evictFromWindow() {
+            Entry candidate = window.next;
+            unlink(candidate);
+            windowSize--;
+            candidate.queue = PROBATION;
+            append(probation, candidate);
+            mainSize++;
+            if (windowSize + mainSize <= maximum) {
+                return;
+            }
+            Entry victim = probation.next;
+            if (victim == candidate) {
+                victim = (protectedQueue.next != protectedQueue) ? protectedQueue.next : candidate;
+            }
+            if (victim != candidate
+                    && sketch.frequency(candidate.accountNumber) <= sketch.frequency(victim.accountNumber)) {
+                victim = candidate;
+            }
+            evict(victim);
+        }
+
+        private void evict(Entry entry) {
+            remove(entry);
+            evictions.increment();
+            if (entry.dirty) {
+                writeBack(entry);
+            }
+        }
+
+        void remove(Entry entry) {
+            unlink(entry);
+            if (entry.queue == WINDOW) {
+                windowSize--;
+            } else {
+                mainSize--;
+                if (entry.queue == PROTECTED) {
+                    protectedSize--;
+                }
+            }
+            entries.remove(entry.accountNumber);
+        }
+
+        void writeBack(Entry entry) {
+            backing.setBalance(backing.find(entry.accountNumber), entry.balance);
+            entry.dirty = false;
+            writeBacks.increment();
+        }
+
+        void writeBackAll() {
+            for (Entry head : new Entry[] {window, probation, protectedQueue}) {
+                for (Entry entry = head.next; entry != head; entry = entry.next) {
+                    if (entry.dirty) {
+                        writeBack(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Entry sentinel() {
+        Entry head = new Entry(0, 0);
+        head.previous = head;
+        head.next = head;
+        return head;
+    }
+
+    private static void append(Entry head, Entry entry) {
+        entry.previous = head.previous;
+        entry.next = head;
+        head.previous.next = entry;
+        head.previous = entry;
+    }
+
+    private static void unlink(Entry entry) {
+        entry.previous.next = entry.next;
+        entry.next.previous = entry.previous;
+    }
+
+    private Segment segmentOf(int accountNumber) {
+        return segments[(int) (MappedAccountStore.hash(accountNumber) >>> 16) & (segments.length - 1)];
+    }
+
+    private static boolean isHandle(long slot) {
+        return slot >= HANDLE;
+    }
+
+    @Override
+    public long find(int accountNumber) {
+        Segment segment = segmentOf(accountNumber);
+        segment.lock.lock();
+        try {
+            return (segment.lookup(accountNumber) != null) ? HANDLE | (accountNumber & 0xFFFFFFFFL) : -1;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public long getBalance(long slot) {
+        int accountNumber = getAccountNumber(slot);
+        Segment segment = segmentOf(accountNumber);
+        segment.lock.lock();
+        try {
+            if (isHandle(slot)) {
+                return segment.require(accountNumber).balance;
+            }
+            Entry entry = segment.entries.get(accountNumber);
+            return (entry != null) ? entry.balance : backing.getBalance(slot);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void setBalance(long slot, long minorUnits) {
+        update(slot, minorUnits, false);
+    }
+
+    @Override
+    public void addBalance(long slot, long minorUnits) {
+        update(slot, minorUnits, true);
+    }
+
+    // Helper method to change a balance in the cache, or in the backing store for a scanned
+    // slot whose account is not cached
+    private void update(long slot, long minorUnits, boolean add) {
+        int accountNumber = getAccountNumber(slot);
+        Segment segment = segmentOf(accountNumber);
+        segment.lock.lock();
+        try {
+            Entry entry = isHandle(slot) ? segment.require(accountNumber) : segment.entries.get(accountNumber);
+            if (entry != null) {
+                entry.balance = add ? entry.balance + minorUnits : minorUnits;
+                entry.dirty = true;
+            } else if (add) {
+                backing.addBalance(slot, minorUnits);
+            } else {
+                backing.setBalance(slot, minorUnits);
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public int getAccountNumber(long slot) {
+        return isHandle(slot) ? (int) slot : backing.getAccountNumber(slot);
+    }
+
+    @Override
+    public boolean isLive(long slot) {
+        return isHandle(slot) ? backing.find((int) slot) >= 0 : backing.isLive(slot);
+    }
+
+    @Override
+    public String getName(long slot) {
+        if (!isHandle(slot)) {
+            return backing.getName(slot);
+        }
+        int accountNumber = (int) slot;
+        Segment segment = segmentOf(accountNumber);
+        segment.lock.lock();
+        try {
+            Entry entry = segment.require(accountNumber);
+            if (entry.name == null) {
+                entry.name = backing.getName(backing.find(accountNumber));
+            }
+            return entry.name;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean create(int accountNumber, String name, long balanceMinorUnits) throws IOException {
+        return backing.create(accountNumber, name, balanceMinorUnits); // Cached on first lookup
+    }
+
+    @Override
+    public boolean delete(int accountNumber) {
+        Segment segment = segmentOf(accountNumber);
+        segment.lock.lock();
+        try {
+            Entry entry = segment.entries.get(accountNumber);
+            if (entry != null) {
+                segment.remove(entry); // Its balance goes with the account
+            }
+            return backing.delete(accountNumber);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return backing.size();
+    }
+
+    @Override
+    public long capacity() {
+        return backing.capacity();
+    }
+
+    // Method to write every changed balance back to the backing store, then flush it
+    @Override
+    public void force() {
+        writeBackChanges();
+        backing.force();
+    }
+
+    // Method to write every changed balance back to the backing store without flushing it. The
+    // backing store's slots move when accounts are created or deleted, so the caller must keep
+    // those out (the bank holds every stripe).
+    public void writeBackChanges() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.writeBackAll();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        backing.close();
+    }
+
+    public int getMaximumAccounts() {
+        return maximumAccounts;
+    }
+
+    // Method to get the number of accounts currently cached
+    public long getCachedCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                count += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // Method to get the number of changed balances written back to the backing store
+    public long getWriteBackCount() {
+        return writeBacks.sum();
+    }
+}
@@ -0,0 +1,56 @@
+package bank;
+
+import java.nio.ByteBuffer;
+
+// Class representing change events copied out of the ring or the change file, kept in their binary
+// form (see ChangePublisher for the layout) and decoded on access
+class ChangeBatch {
+    final byte[] bytes;
+    private final ByteBuffer events;
+    int count;
+
+    public ChangeBatch(int capacity) {
+        bytes = new byte[capacity * ChangePublisher.EVENT_BYTES];
+        events = ByteBuffer.wrap(bytes);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return bytes.length / ChangePublisher.EVENT_BYTES;
+    }
+
+    public long getSequence(int i) {
+        return events.getLong(i * ChangePublisher.EVENT_BYTES);
+    }
+
+    public long getCommitMillis(int i) {
+        return events.getLong(i * ChangePublisher.EVENT_BYTES + 8);
+    }
+
+    public byte getType(int i) {
+        return events.get(i * ChangePublisher.EVENT_BYTES + 16);
+    }
+
+    public int getAccountNumber(int i) {
+        return events.getInt(i * ChangePublisher.EVENT_BYTES + 17);
+    }
+
+    public int getTargetAccountNumber(int i) {
+        return events.getInt(i * ChangePublisher.EVENT_BYTES + 21);
+    }
+
+    public double getAmount(int i) {
+        return AccountStore.fromMinorUnits(events.getLong(i * ChangePublisher.EVENT_BYTES + 25));
+    }
+
+    public double getBalance(int i) {
+        return AccountStore.fromMinorUnits(events.getLong(i * ChangePublisher.EVENT_BYTES + 33));
+    }
+
+    public double getTargetBalance(int i) {
+        return AccountStore.fromMinorUnits(events.getLong(i * ChangePublisher.EVENT_BYTES + 41));
+    }
+}
@@ -0,0 +1,111 @@
+package bank;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Class representing the change file: change events appended in sequence order in the ring's binary
+// layout (see ChangePublisher), so a consumer can resume from any sequence number after a restart.
+// Sequences only increase, so an event is found by binary search even across skipped ones. A torn
+// event at the end, left by a crash mid-write, is cut off when the file is opened for appending.
+class ChangeFile implements AutoCloseable {
+    private static final long FORCE_MILLIS = 1000;
+
+    private final FileChannel channel;
+    private final boolean appending;
+    private volatile long length; // Bytes of whole events (when appending)
+    private long lastSequence;
+    private long lastForceMillis;
+
+    private ChangeFile(Path path, boolean appending) throws IOException {
+        this.appending = appending;
+        channel = appending ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE) : FileChannel.open(path, StandardOpenOption.READ);
+        long whole = channel.size() / ChangePublisher.EVENT_BYTES * ChangePublisher.EVENT_BYTES;
+        if (appending) {
+            channel.truncate(whole);
+            channel.position(whole);
+        }
+        length = whole;
+        lastSequence = (whole > 0) ? readSequence(whole - ChangePublisher.EVENT_BYTES) : 0;
+    }
+
+    // Method to open a change file for the publisher to append to, creating it if needed
+    public static ChangeFile openForAppend(Path path) throws IOException {
+        return new ChangeFile(path, true);
+    }
+
+    // Method to open a change file for reading, such as by a consumer resuming after a restart
+    public static ChangeFile openForRead(Path path) throws IOException {
+        return new ChangeFile(path, false);
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    // Method to append a batch of events (called by the publisher's file sink). Events are forced to
+    // disk at most every FORCE_MILLIS and on close, so the sink keeps up with the ring: operations are
+    // made durable by the write-ahead log, not by this file.
+    void append(ChangeBatch batch) throws IOException {
+        ByteBuffer events = ByteBuffer.wrap(batch.bytes, 0, batch.count * ChangePublisher.EVENT_BYTES);
+        while (events.hasRemaining()) {
+            channel.write(events);
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastForceMillis >= FORCE_MILLIS) {
+            channel.force(false);
+            lastForceMillis = now;
+        }
+        lastSequence = batch.getSequence(batch.count - 1);
+        length += (long) batch.count * ChangePublisher.EVENT_BYTES;
+    }
+
+    // Method to read the events from a sequence number on into a batch; returns the number read
+    public int read(long fromSequence, ChangeBatch batch) throws IOException {
+        // A reader sees events as they are appended by this or another process
+        long end = appending ? length
+                : channel.size() / ChangePublisher.EVENT_BYTES * ChangePublisher.EVENT_BYTES;
+        long low = 0;
+        long high = end / ChangePublisher.EVENT_BYTES;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (readSequence(middle * ChangePublisher.EVENT_BYTES) < fromSequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        long position = low * ChangePublisher.EVENT_BYTES;
+        int count = (int) Math.min((end - position) / ChangePublisher.EVENT_BYTES, batch.capacity());
+        ByteBuffer events = ByteBuffer.wrap(batch.bytes, 0, count * ChangePublisher.EVENT_BYTES);
+        while (events.hasRemaining()) {
+            if (channel.read(events, position + events.position()) < 0) {
+                throw new EOFException("Change file ended at " + (position + events.position()));
+            }
+        }
+        batch.count = count;
+        return count;
+    }
+
+    private long readSequence(long position) throws IOException {
+        ByteBuffer sequence = ByteBuffer.allocate(8);
+        while (sequence.hasRemaining()) {
+            if (channel.read(sequence, position + sequence.position()) < 0) {
+                throw new EOFException("Change file ended at " + (position + sequence.position()));
+            }
+        }
+        return sequence.getLong(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (appending) {
+            channel.force(false);
+        }
+        channel.close();
+    }
+}
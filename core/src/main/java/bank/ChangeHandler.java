@@ -0,0 +1,7 @@
+package bank;
+
+// Interface for a consumer of change events. It is called on its subscriber's own thread with each
+// batch in sequence order; a jump in the sequence numbers means events were lost (see ChangePublisher).
+interface ChangeHandler {
+    void onEvents(ChangeBatch batch);
+}
@@ -0,0 +1,280 @@
+package bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Class representing the change-data-capture publisher. Every committed operation becomes a
+// fixed-size binary event in a ring buffer:
+// [long sequence][long commitMillis][byte type][int account][int target][long amount][long balance][long targetBalance]
+// Amounts and balances are in minor units. balance is the account's balance after the change (0 after a
+// DELETE, whose amount is the closing balance) and targetBalance the target's after a transfer or a
+// reversal between two accounts (0 otherwise). Sequences count from 1 and continue after the events
+// already in the change file, so they stay valid offsets across restarts.
+// The ring has one writer at a time: postings from many threads are serialized by a short lock around
+// the copy into the slot, so claiming a slot is a plain increment. Each subscriber reads with its own
+// cursor on its own thread: it copies a batch of slots and then checks that the writer has not lapped
+// it meanwhile, so readers take no lock and never hold the writer back. A subscriber that falls more
+// than the ring behind resumes from the change file, or skips what it lost if there is none.
+// The change file's own sink is lapped like any other: it skips what it lost, the file keeps the gap,
+// and a subscriber reading the file counts the gap as missed. Size the ring so that does not happen.
+class ChangePublisher implements AutoCloseable {
+    static final int EVENT_BYTES = 49;
+    private static final long PARK_NANOS = 100_000_000; // Longest idle wait before a subscriber looks again
+    private static final long FILE_LINGER_MILLIS = 10;  // How long the file sink lets a batch fill
+
+    private final byte[] ring;
+    private final ByteBuffer slots;
+    private final int mask;
+    private volatile long claimed;   // Newest sequence being written
+    private volatile long published; // Newest sequence fully written
+    private volatile Subscriber[] subscribers = new Subscriber[0];
+    private final ChangeFile file; // null unless events are also kept on disk
+    private final Subscriber fileSink;
+    private final long firstInRing; // Events before this one were published before a restart
+
+    // Constructor to keep the most recent ringEvents events (rounded up to a power of two), also
+    // appending every event to a change file unless file is null
+    public ChangePublisher(int ringEvents, ChangeFile file) {
+        int capacity = Integer.highestOneBit(Math.max(2, ringEvents - 1)) << 1;
+        ring = new byte[capacity * EVENT_BYTES];
+        slots = ByteBuffer.wrap(ring);
+        mask = capacity - 1;
+        this.file = file;
+        long last = (file != null) ? file.getLastSequence() : 0;
+        claimed = last;
+        published = last;
+        firstInRing = last + 1;
+        fileSink = (file != null) ? subscribe(last, capacity / 2, FILE_LINGER_MILLIS, batch -> {
+            try {
+                file.append(batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "bank-change-file", true) : null;
+    }
+
+    // Method to publish a committed operation (called while its locks are held)
+    public synchronized void publish(byte type, int accountNumber, int targetAccountNumber, long amount,
+            long balance, long targetBalance) {
+        long sequence = published + 1;
+        claimed = sequence;
+        VarHandle.storeStoreFence(); // A reader must see the claim before the old event in the slot changes
+        int offset = (int) (sequence & mask) * EVENT_BYTES;
+        slots.putLong(offset, sequence);
+        slots.putLong(offset + 8, System.currentTimeMillis());
+        slots.put(offset + 16, type);
+        slots.putInt(offset + 17, accountNumber);
+        slots.putInt(offset + 21, targetAccountNumber);
+        slots.putLong(offset + 25, amount);
+        slots.putLong(offset + 33, balance);
+        slots.putLong(offset + 41, targetBalance);
+        published = sequence;
+        for (Subscriber subscriber : subscribers) {
+            if (sequence >= subscriber.wakeAt) {
+                subscriber.wakeAt = Long.MAX_VALUE; // One wake-up per wait, however many events follow
+                LockSupport.unpark(subscriber.thread);
+            }
+        }
+    }
+
+    // Method to start a subscriber that receives the events after a sequence number (0 for every event
+    // still available, getLastSequence() for new ones only) in batches of up to batchEvents. With
+    // lingerMillis above 0 it waits that long for a batch to fill before delivering a partial one.
+    public Subscriber subscribe(long afterSequence, int batchEvents, long lingerMillis, ChangeHandler handler) {
+        return subscribe(afterSequence, batchEvents, lingerMillis, handler, "bank-change-subscriber", false);
+    }
+
+    private synchronized Subscriber subscribe(long afterSequence, int batchEvents, long lingerMillis,
+            ChangeHandler handler, String threadName, boolean writesFile) {
+        Subscriber subscriber = new Subscriber(afterSequence, batchEvents, lingerMillis, handler, threadName,
+                writesFile);
+        Subscriber[] grown = Arrays.copyOf(subscribers, subscribers.length + 1);
+        grown[grown.length - 1] = subscriber;
+        subscribers = grown;
+        subscriber.thread.start();
+        return subscriber;
+    }
+
+    private synchronized void unsubscribe(Subscriber subscriber) {
+        List<Subscriber> remaining = new ArrayList<>(Arrays.asList(subscribers));
+        remaining.remove(subscriber);
+        subscribers = remaining.toArray(new Subscriber[0]);
+    }
+
+    public long getLastSequence() {
+        return published;
+    }
+
+    // Method to get the oldest sequence number the ring still holds
+    public long getOldestSequence() {
+        return Math.max(firstInRing, claimed - mask);
+    }
+
+    // Method to count the events the change file lost because its sink fell a whole ring behind
+    public long getUnfiledEvents() {
+        return (fileSink != null) ? fileSink.getMissedEvents() : 0;
+    }
+
+    // Method to stop every subscriber, letting the change file catch up first
+    @Override
+    public void close() throws IOException {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber != fileSink) {
+                subscriber.close();
+            }
+        }
+        if (fileSink != null) {
+            fileSink.drainAndClose();
+            file.close();
+        }
+    }
+
+    // Class representing one subscriber: a cursor into the ring and the thread that advances it
+    final class Subscriber implements AutoCloseable {
+        private final ChangeHandler handler;
+        private final ChangeBatch batch;
+        private final long lingerNanos;
+        private final boolean writesFile; // The file sink, which cannot catch up from its own file
+        private final Thread thread;
+        private volatile long delivered; // Newest sequence handed to the handler
+        private volatile long missed;    // Events skipped because they were lost
+        private volatile long wakeAt = Long.MAX_VALUE; // Sequence whose publication unparks the thread
+        private volatile boolean closed;
+        private volatile boolean draining; // Deliver everything published, then stop
+
+        Subscriber(long afterSequence, int batchEvents, long lingerMillis, ChangeHandler handler, String threadName,
+                boolean writesFile) {
+            this.handler = handler;
+            this.writesFile = writesFile;
+            this.batch = new ChangeBatch(Math.max(1, batchEvents));
+            this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+            this.delivered = afterSequence;
+            thread = new Thread(this::run, threadName);
+            thread.setDaemon(true);
+        }
+
+        public long getDeliveredSequence() {
+            return delivered;
+        }
+
+        // Method to get how many events this subscriber is behind the newest one
+        public long getLag() {
+            return published - delivered;
+        }
+
+        public long getMissedEvents() {
+            return missed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            unsubscribe(this);
+        }
+
+        void drainAndClose() {
+            draining = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            unsubscribe(this);
+        }
+
+        private void run() {
+            while (!closed) {
+                long cursor = delivered;
+                long available = published;
+                if (available == cursor) {
+                    if (draining) {
+                        return;
+                    }
+                    park(cursor + 1, PARK_NANOS);
+                    continue;
+                }
+                if (available - cursor < batch.capacity() && lingerNanos > 0 && !draining) {
+                    park(cursor + batch.capacity(), lingerNanos); // Let the batch fill
+                    available = published;
+                }
+                try {
+                    if (!deliverFromRing(cursor, available)) {
+                        catchUp(cursor);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Change subscriber " + thread.getName() + " stopped: " + e);
+                    closed = true;
+                    unsubscribe(this);
+                }
+            }
+        }
+
+        // Wait until the writer publishes the given sequence or the time runs out. Lingering subscribers are
+        // woken once per batch rather than once per event, which keeps posting threads off the scheduler.
+        private void park(long sequence, long nanos) {
+            wakeAt = sequence;
+            if (published < sequence && !closed && !draining) {
+                LockSupport.parkNanos(nanos);
+            }
+            wakeAt = Long.MAX_VALUE;
+        }
+
+        // Copy the events after the cursor out of the ring and deliver them; false if the writer lapped them
+        private boolean deliverFromRing(long cursor, long available) {
+            long first = cursor + 1;
+            if (first < firstInRing || first + mask < claimed) {
+                return false;
+            }
+            int count = (int) Math.min(available - cursor, batch.capacity());
+            int start = (int) (first & mask);
+            int head = Math.min(count, mask + 1 - start); // Events before the ring wraps
+            System.arraycopy(ring, start * EVENT_BYTES, batch.bytes, 0, head * EVENT_BYTES);
+            System.arraycopy(ring, 0, batch.bytes, head * EVENT_BYTES, (count - head) * EVENT_BYTES);
+            VarHandle.loadLoadFence(); // Read the claim only after the copy
+            if (first + mask < claimed) {
+                return false; // Overwritten while it was copied
+            }
+            batch.count = count;
+            handler.onEvents(batch);
+            delivered = first + count - 1;
+            return true;
+        }
+
+        // Deliver events the ring no longer holds from the change file, or skip them if it cannot
+        private void catchUp(long cursor) {
+            if (file != null && !writesFile) {
+                if (fileSink.delivered <= cursor && !fileSink.closed) {
+                    LockSupport.parkNanos(PARK_NANOS / 100); // The file sink has yet to write them
+                    return;
+                }
+                try {
+                    int count = file.read(cursor + 1, batch);
+                    if (count > 0) {
+                        long last = batch.getSequence(count - 1);
+                        missed += last - cursor - count; // Gaps the file sink itself had to skip
+                        handler.onEvents(batch);
+                        delivered = last;
+                        return;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (!fileSink.closed) {
+                    LockSupport.parkNanos(PARK_NANOS / 100); // The file sink skipped a gap and has yet to write past it
+                    return;
+                }
+            }
+            // Rejoin half a ring behind the writer, so the next copy is not lapped straight away
+            long resume = Math.max(cursor, claimed - (mask + 1) / 2);
+            missed += resume - cursor;
+            delivered = resume;
+        }
+    }
+}
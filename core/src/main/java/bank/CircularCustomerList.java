@@ -0,0 +1,93 @@
+package bank;
+
+class CircularCustomerList {
+    private CustomerNode head;
+    private int size;
+
+    // Constructor to initialize an empty circular customer list
+    public CircularCustomerList() {
+        head = null;
+        size = 0;
+    }
+
+    // Method to add a new customer account to the circular list
+    public void addCustomer(Customer customer) {
+        CustomerNode newNode = new CustomerNode(customer);
+        if (head == null) {
+            head = newNode;
+            newNode.next = newNode; // Point to itself in a circular list
+        } else {
+            newNode.next = head.next;
+            head.next = newNode;
+            head = newNode; // Update the head to the new node
+        }
+        size++;
+    }
+
+    // Method to search for a customer account by account number
+    public Customer findCustomer(int accountNumber) {
+        if (head == null) {
+            return null; // List is empty
+        }
+
+        CustomerNode current = head.next;
+        while (current != head) {
+            if (current.customer.accountNumber == accountNumber) {
+                return current.customer;
+            }
+            current = current.next;
+        }
+
+        // Check the head node
+        if (head.customer.accountNumber == accountNumber) {
+            return head.customer;
+        }
+
+        return null; // Customer not found
+    }
+
+    // Method to delete a customer account by account number
+    public boolean deleteCustomer(int accountNumber) {
+        if (head == null) {
+            return false; // List is empty
+        }
+
+        if (head.customer.accountNumber == accountNumber) {
+            if (size == 1) {
+                head = null; // List had only one element
+            } else {
+                head = head.next;
+            }
+            size--;
+            return true; // Deleted the head node
+        }
+
+        CustomerNode current = head;
+        while (current.next != head) {
+            if (current.next.customer.accountNumber == accountNumber) {
+                current.next = current.next.next;
+                size--;
+                return true; // Deleted a non-head node
+            }
+            current = current.next;
+        }
+
+        return false; // Customer not found
+    }
+
+    // Method to get the size of the circular list
+    public int getSize() {
+        return size;
+    }
+
+    // Inner class representing a node in the circular linked list
+    private class CustomerNode {
+        Customer customer;
+        CustomerNode next;
+
+        public CustomerNode(Customer customer) {
+            this.customer = customer;
+            this.next = null;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package bank;
+
+// Class representing a customer
+class Customer {
+    int accountNumber;
+    String name;
+    double balance;
+    volatile long version;                          // Commit version of the current balance
+    volatile VersionClock.BalanceVersion history; // Balances it replaced, newest first (see VersionClock)
+    AccountActivity activity;                       // Fraud rule state, guarded by the account's stripe lock
+
+    // Constructor
+    public Customer(int accountNumber, String name, double balance) {
+        this.accountNumber = accountNumber;
+        this.name = name;
+        this.balance = balance;
+    }
+}
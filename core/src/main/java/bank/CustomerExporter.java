@@ -0,0 +1,120 @@
+package bank;
+
+import java.io.IOException;
+
+// Class representing the row format of a streaming customer export. The exporter only
+// formats; Bank copies customers out a page at a time and feeds them in, so memory use
+// stays bounded by the page size however many accounts there are.
+class CustomerExporter {
+    enum Format { CSV, JSON, TEXT }
+
+    private final BufferedChannelWriter out;
+    private final Format format;
+    private final StringBuilder escaped = new StringBuilder();
+    private long rows;
+
+    public CustomerExporter(BufferedChannelWriter out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    // Method to write whatever precedes the first row
+    public void begin() throws IOException {
+        if (format == Format.CSV) {
+            out.writeAscii("account,name,balance\n");
+        } else if (format == Format.JSON) {
+            out.write((byte) '[');
+        }
+    }
+
+    // Method to write one customer
+    public void writeRow(int accountNumber, String name, double balance) throws IOException {
+        switch (format) {
+            case CSV:
+                out.writeLong(accountNumber).write((byte) ',');
+                writeCsvField(name);
+                out.write((byte) ',').writeDouble(balance).write((byte) '\n');
+                break;
+            case JSON:
+                out.writeAscii((rows == 0) ? "\n{\"account\":" : ",\n{\"account\":").writeLong(accountNumber)
+                        .writeAscii(",\"name\":");
+                writeJsonString(name);
+                out.writeAscii(",\"balance\":").writeDouble(balance).write((byte) '}');
+                break;
+            default:
+                if (rows == 0) {
+                    out.writeAscii("Customers (Dictionary Order):\n");
+                }
+                out.writeAscii("Account Number: ").writeLong(accountNumber)
+                        .writeAscii("\nCustomer Name: ").writeUtf8(name)
+                        .writeAscii("\nBalance: ").writeDouble(balance)
+                        .writeAscii("\n------------------------\n");
+                break;
+        }
+        rows++;
+    }
+
+    // Method to write whatever follows the last row and flush; returns the number of rows written
+    public long end() throws IOException {
+        if (format == Format.JSON) {
+            out.writeAscii((rows == 0) ? "]\n" : "\n]\n");
+        } else if (format == Format.TEXT) {
+            if (rows == 0) {
+                out.writeAscii("No customers found.\n");
+            }
+            out.writeAscii("Total customers retrieved: ").writeLong(rows).write((byte) '\n');
+        }
+        out.flush();
+        return rows;
+    }
+
+    // Helper method to write a CSV field, quoting it only when it needs quoting
+    private void writeCsvField(String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.writeUtf8(value);
+            return;
+        }
+        escaped.setLength(0);
+        escaped.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            escaped.append(c);
+            if (c == '"') {
+                escaped.append('"');
+            }
+        }
+        out.writeUtf8(escaped.append('"').toString());
+    }
+
+    // Helper method to write a JSON string literal, escaping only when needed
+    private void writeJsonString(String value) throws IOException {
+        boolean plain = true;
+        for (int i = 0; i < value.length() && plain; i++) {
+            char c = value.charAt(i);
+            plain = c >= 0x20 && c != '"' && c != '\\';
+        }
+        out.write((byte) '"');
+        if (plain) {
+            out.writeUtf8(value);
+        } else {
+            escaped.setLength(0);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    escaped.append('\\').append(c);
+                } else if (c < 0x20) {
+                    escaped.append(String.format("\\u%04x", (int) c));
+                } else {
+                    escaped.append(c);
+                }
+            }
+            out.writeUtf8(escaped.toString());
+        }
+        out.write((byte) '"');
+    }
+}
@@ -0,0 +1,115 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Class representing a reader for the CSV that CustomerExporter writes (account,name,balance, with an
+// optional header row), so a saved portfolio can be bulk loaded into a new bank. Rows are kept in
+// parallel columns sized from the file length, so memory grows with the row count and not per object.
+class CustomerImporter {
+    private static final int READ_BUFFER_BYTES = 1 << 22;
+    private static final int ESTIMATED_ROW_BYTES = 24;
+
+    private int[] accountNumbers;
+    private String[] names;
+    private double[] balances;
+    private int count;
+
+    // Method to read every row of a file; a malformed row fails the whole import
+    public void read(Path input) throws IOException {
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, Files.size(input) / ESTIMATED_ROW_BYTES));
+        accountNumbers = new int[capacity];
+        names = new String[capacity];
+        balances = new double[capacity];
+        count = 0;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            byte[] data = new byte[READ_BUFFER_BYTES];
+            ByteBuffer wrapper = ByteBuffer.wrap(data);
+            int length = 0; // Bytes of data currently buffered
+            long lineNumber = 0;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                wrapper.position(length);
+                int read = channel.read(wrapper);
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    length += read;
+                }
+
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (data[i] == '\n') {
+                        parseLine(data, lineStart, i, ++lineNumber);
+                        lineStart = i + 1;
+                    }
+                }
+                if (endOfInput && lineStart < length) {
+                    parseLine(data, lineStart, length, ++lineNumber); // Last line without a trailing newline
+                    lineStart = length;
+                }
+                if (lineStart == 0 && length == data.length) {
+                    throw new IOException("Line " + (lineNumber + 1) + " is longer than " + data.length + " bytes");
+                }
+                // Keep the partial line at the front of the buffer
+                System.arraycopy(data, lineStart, data, 0, length - lineStart);
+                length -= lineStart;
+            }
+        }
+    }
+
+    // Method to get the number of rows read
+    public int getCount() {
+        return count;
+    }
+
+    // Method to get the account number column (valid up to getCount())
+    public int[] getAccountNumbers() {
+        return accountNumbers;
+    }
+
+    // Method to get the name column (valid up to getCount())
+    public String[] getNames() {
+        return names;
+    }
+
+    // Method to get the balance column (valid up to getCount())
+    public double[] getBalances() {
+        return balances;
+    }
+
+    // Parse one row into the columns; blank lines and the header row are skipped
+    private void parseLine(byte[] data, int start, int end, long lineNumber) throws IOException {
+        if (end > start && data[end - 1] == '\r') {
+            end--;
+        }
+        if (start == end || (lineNumber == 1 && data[start] != '-' && (data[start] < '0' || data[start] > '9'))) {
+            return;
+        }
+        if (count == accountNumbers.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, count + (count >> 1) + 16L);
+            accountNumbers = Arrays.copyOf(accountNumbers, capacity);
+            names = Arrays.copyOf(names, capacity);
+            balances = Arrays.copyOf(balances, capacity);
+        }
+        int[] cursor = { start };
+        try {
+            long accountNumber = BatchProcessor.parseLong(data, cursor, end);
+            String name = BatchProcessor.parseName(data, cursor, end);
+            double balance = BatchProcessor.parseDecimal(data, cursor, end);
+            if (accountNumber != (int) accountNumber || cursor[0] < end) {
+                throw new NumberFormatException("Bad row");
+            }
+            accountNumbers[count] = (int) accountNumber;
+            names[count] = name;
+            balances[count++] = balance;
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + lineNumber + " is not an account,name,balance row");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package bank;
+
+class CustomerList {
+    private CustomerNode head;
+    private CustomerNode tail;
+    private AccountIndex<CustomerNode> index; // Account number -> list node
+
+    // Constructor to initialize an empty customer list
+    public CustomerList() {
+        this(16);
+    }
+
+    // Constructor to initialize an empty customer list sized for the expected number of accounts
+    public CustomerList(int expectedSize) {
+        head = null;
+        tail = null;
+        index = new AccountIndex<>(expectedSize);
+    }
+
+    // Method to add a new customer account to the list; fails if the account number is taken
+    public boolean addCustomer(Customer customer) {
+        if (index.containsKey(customer.accountNumber)) {
+            return false; // Account number already in use
+        }
+        CustomerNode newNode = new CustomerNode(customer);
+
+        if (head == null) {
+            head = newNode;
+        } else {
+            tail.next = newNode;
+            newNode.prev = tail;
+        }
+        tail = newNode;
+        index.put(customer.accountNumber, newNode);
+        return true;
+    }
+
+    // Method to search for a customer account by account number
+    public Customer findCustomer(int accountNumber) {
+        CustomerNode node = index.get(accountNumber);
+        return (node != null) ? node.customer : null; // null if customer not found
+    }
+
+    // Method to delete a customer account by account number
+    public boolean deleteCustomer(int accountNumber) {
+        CustomerNode node = index.remove(accountNumber);
+        if (node == null) {
+            return false; // Customer not found
+        }
+
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        return true;
+    }
+
+    // Method to get the number of customers in the list
+    public int getSize() {
+        return index.size();
+    }
+
+    // Inner class representing a node in the doubly linked list
+    private class CustomerNode {
+        Customer customer;
+        CustomerNode next;
+        CustomerNode prev;
+
+        public CustomerNode(Customer customer) {
+            this.customer = customer;
+            this.next = null;
+            this.prev = null;
+        }
+    }
+}
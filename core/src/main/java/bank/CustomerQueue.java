@@ -0,0 +1,211 @@
+package bank;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Class representing a bounded multi-producer/multi-consumer queue of waiting requests.
+// It is a ring buffer where every slot carries a sequence number (Vyukov's design):
+// producers and consumers claim positions with a CAS on their own counter and publish
+// through the slot's sequence, so the fast path takes no lock. Blocking variants park
+// on a condition only when the queue is full or empty, and the non-blocking side
+// signals them only when someone is actually waiting.
+class CustomerQueue<E> {
+    private static final int SPINS_BEFORE_PARKING = 64;
+
+    private final Object[] queue;
+    private final AtomicLongArray sequences; // Sequence number of each slot
+    private final int mask;
+    private final AtomicLong rear = new AtomicLong();  // Next position to enqueue
+    private final AtomicLong front = new AtomicLong(); // Next position to dequeue
+
+    // Blocking support, used only when the queue is full or empty
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final Condition notFull = waitLock.newCondition();
+    private volatile int waitingConsumers;
+    private volatile int waitingProducers;
+
+    // Constructor to initialize an empty queue; capacity is rounded up to a power of two
+    public CustomerQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+        }
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        queue = new Object[slots];
+        sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+        mask = slots - 1;
+    }
+
+    // Method to add an element if there is room; returns false when the queue is full
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("Queue elements must not be null");
+        }
+        long position = rear.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.getAcquire(slot) - position;
+            if (difference == 0) {
+                if (rear.compareAndSet(position, position + 1)) {
+                    queue[slot] = element;
+                    // A volatile store, not a release: the waiter count must not be read before the slot
+                    // is visible, or a consumer that registers and re-checks meanwhile is never woken
+                    sequences.set(slot, position + 1);
+                    if (waitingConsumers > 0) {
+                        signal(notEmpty);
+                    }
+                    return true;
+                }
+                position = rear.get();
+            } else if (difference < 0) {
+                return false; // The slot still holds an element from one lap ago
+            } else {
+                position = rear.get();
+            }
+        }
+    }
+
+    // Method to remove and return the element at the front; returns null when the queue is empty
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = front.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.getAcquire(slot) - (position + 1);
+            if (difference == 0) {
+                if (front.compareAndSet(position, position + 1)) {
+                    E element = (E) queue[slot];
+                    queue[slot] = null;
+                    sequences.set(slot, position + mask + 1); // Volatile, as in offer()
+                    if (waitingProducers > 0) {
+                        signal(notFull);
+                    }
+                    return element;
+                }
+                position = front.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = front.get();
+            }
+        }
+    }
+
+    // Method to add an element, waiting for room (backpressure) instead of dropping it
+    public void put(E element) throws InterruptedException {
+        offer(element, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    // Method to add an element, waiting up to the timeout for room; returns false if it timed out
+    public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+        for (int i = 0; i < SPINS_BEFORE_PARKING; i++) {
+            if (offer(element)) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        long remaining = unit.toNanos(timeout);
+        waitLock.lockInterruptibly();
+        try {
+            waitingProducers++;
+            VarHandle.fullFence(); // The re-check below reads slots with acquire loads only
+            try {
+                // Registering as a waiter before re-checking means a consumer either sees us or we see its slot
+                while (!offer(element)) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = notFull.awaitNanos(remaining);
+                }
+                return true;
+            } finally {
+                waitingProducers--;
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    // Method to remove the front element, waiting until one is available
+    public E take() throws InterruptedException {
+        return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    // Method to remove the front element, waiting up to the timeout; returns null if it timed out
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E element;
+        for (int i = 0; i < SPINS_BEFORE_PARKING; i++) {
+            if ((element = poll()) != null) {
+                return element;
+            }
+            Thread.onSpinWait();
+        }
+        long remaining = unit.toNanos(timeout);
+        waitLock.lockInterruptibly();
+        try {
+            waitingConsumers++;
+            VarHandle.fullFence(); // As in offer(element, timeout, unit)
+            try {
+                while ((element = poll()) == null) {
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    remaining = notEmpty.awaitNanos(remaining);
+                }
+                return element;
+            } finally {
+                waitingConsumers--;
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    // Method to move up to maxElements waiting elements into an array; returns how many were moved
+    public int drainTo(E[] target, int maxElements) {
+        int limit = Math.min(maxElements, target.length);
+        int count = 0;
+        E element;
+        while (count < limit && (element = poll()) != null) {
+            target[count++] = element;
+        }
+        return count;
+    }
+
+    // Method to check if the queue is empty
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    // Method to check if the queue is full
+    public boolean isFull() {
+        return getSize() >= queue.length;
+    }
+
+    // Method to get the number of elements in the queue (approximate while others are using it)
+    public int getSize() {
+        long size = rear.get() - front.get();
+        return (int) Math.max(0, Math.min(size, queue.length));
+    }
+
+    public int getCapacity() {
+        return queue.length;
+    }
+
+    // Helper method to wake one thread blocked in a timed or blocking call
+    private void signal(Condition condition) {
+        waitLock.lock();
+        try {
+            condition.signal();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Class representing an account table kept on disk and accessed with positional file reads and
+// writes instead of a memory mapping, so a table far larger than memory costs no address space
+// and no page-cache pressure beyond the blocks actually touched. It uses the same files and
+// layout as MappedAccountStore (either class can open the other's directory). Each thread keeps
+// the last block of slots it read, so probing and sequential scans make one read per block;
+// the block is dropped as soon as any write lands.
+class FileAccountStore implements AccountStore {
+    private static final int BLOCK_SLOTS = 128; // Slots read at a time (4 KB)
+    private static final int SLOT_BYTES = MappedAccountStore.SLOT_BYTES;
+    private static final int HEADER_BYTES = MappedAccountStore.HEADER_BYTES;
+    private static final long NAME_CHUNK_BYTES = MappedAccountStore.NAME_CHUNK_BYTES;
+
+    private final Path directory;
+    private FileChannel accountChannel;
+    private FileChannel nameChannel;
+    private long capacity; // Slots, a power of two
+    private long mask;
+    private long size;
+    private long namesUsed; // Bytes used in names.dat, including its header
+
+    // Bumped after every write so blocks read before it are not trusted
+    private final AtomicLong writes = new AtomicLong();
+    private final ThreadLocal<SlotBlock> blocks = ThreadLocal.withInitial(SlotBlock::new);
+    private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(SLOT_BYTES));
+
+    // Class representing one thread's copy of a block of slots
+    private static final class SlotBlock {
+        final ByteBuffer data = ByteBuffer.allocateDirect(BLOCK_SLOTS * SLOT_BYTES);
+        long firstSlot = -1;
+        long writeMark; // Value of writes when the block was read
+    }
+
+    // Constructor to open the store in a directory, creating it with room for expectedAccounts if absent
+    public FileAccountStore(Path directory, long expectedAccounts) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path accounts = directory.resolve("accounts.dat");
+        if (Files.exists(accounts)) {
+            openAccounts(accounts, -1);
+        } else {
+            long slots = 1024;
+            while (slots < expectedAccounts * 2) {
+                slots <<= 1;
+            }
+            openAccounts(accounts, slots);
+        }
+        openNames(directory.resolve("names.dat"));
+    }
+
+    @Override
+    public long find(int accountNumber) {
+        long slot = MappedAccountStore.hash(accountNumber) & mask;
+        while (true) {
+            ByteBuffer block = block(slot);
+            int position = positionInBlock(slot);
+            if (block.getInt(position + MappedAccountStore.STATE) == MappedAccountStore.EMPTY) {
+                return -1;
+            }
+            if (block.getInt(position + MappedAccountStore.ACCOUNT) == accountNumber) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public long getBalance(long slot) {
+        return block(slot).getLong(positionInBlock(slot) + MappedAccountStore.BALANCE);
+    }
+
+    @Override
+    public void setBalance(long slot, long minorUnits) {
+        ByteBuffer buffer = scratch.get().clear();
+        buffer.putLong(minorUnits).flip();
+        writeSlotBytes(slot, MappedAccountStore.BALANCE, buffer);
+    }
+
+    @Override
+    public void addBalance(long slot, long minorUnits) {
+        setBalance(slot, getBalance(slot) + minorUnits);
+    }
+
+    @Override
+    public int getAccountNumber(long slot) {
+        return block(slot).getInt(positionInBlock(slot) + MappedAccountStore.ACCOUNT);
+    }
+
+    @Override
+    public boolean isLive(long slot) {
+        return block(slot).getInt(positionInBlock(slot) + MappedAccountStore.STATE) == MappedAccountStore.LIVE;
+    }
+
+    @Override
+    public String getName(long slot) {
+        ByteBuffer block = block(slot);
+        int position = positionInBlock(slot);
+        long offset = block.getLong(position + MappedAccountStore.NAME_OFFSET);
+        int length = block.getInt(position + MappedAccountStore.NAME_LENGTH);
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(nameChannel, bytes, offset + 2);
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized boolean create(int accountNumber, String name, long balanceMinorUnits) throws IOException {
+        if (find(accountNumber) >= 0) {
+            return false;
+        }
+        if ((size + 1) * 2 > capacity) {
+            grow();
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(bytes.length, MappedAccountStore.MAX_NAME_BYTES);
+        long nameOffset = appendName(bytes, nameLength);
+
+        long slot = MappedAccountStore.hash(accountNumber) & mask;
+        while (isLive(slot)) {
+            slot = (slot + 1) & mask;
+        }
+        writeSlot(accountChannel, slot, accountNumber, balanceMinorUnits, nameOffset, nameLength);
+        size++;
+        writeHeaderLong(accountChannel, MappedAccountStore.HEADER_SIZE, size);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean delete(int accountNumber) {
+        long hole = find(accountNumber);
+        if (hole < 0) {
+            return false;
+        }
+        // Backward-shift deletion, as in MappedAccountStore
+        long j = hole;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!isLive(j)) {
+                break;
+            }
+            long home = MappedAccountStore.hash(getAccountNumber(j)) & mask;
+            boolean stays = (hole <= j) ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!stays) {
+                ByteBuffer block = block(j);
+                int position = positionInBlock(j);
+                writeSlot(accountChannel, hole, block.getInt(position + MappedAccountStore.ACCOUNT),
+                        block.getLong(position + MappedAccountStore.BALANCE),
+                        block.getLong(position + MappedAccountStore.NAME_OFFSET),
+                        block.getInt(position + MappedAccountStore.NAME_LENGTH));
+                hole = j;
+            }
+        }
+        ByteBuffer buffer = scratch.get().clear();
+        buffer.putInt(MappedAccountStore.EMPTY).flip();
+        writeSlotBytes(hole, MappedAccountStore.STATE, buffer);
+        size--;
+        writeHeaderLong(accountChannel, MappedAccountStore.HEADER_SIZE, size);
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    // Method to flush the files; it may run alongside postings, but not while a create swaps in a
+    // grown table
+    @Override
+    public synchronized void force() {
+        try {
+            accountChannel.force(false);
+            nameChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not flush the account store", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        accountChannel.close();
+        nameChannel.close();
+    }
+
+    // Helper method to get this thread's block holding a slot, reading it if needed
+    private ByteBuffer block(long slot) {
+        SlotBlock block = blocks.get();
+        long first = slot & -BLOCK_SLOTS;
+        long mark = writes.get();
+        if (block.firstSlot != first || block.writeMark != mark) {
+            ByteBuffer data = block.data.clear();
+            data.limit((int) (Math.min(BLOCK_SLOTS, capacity - first) * SLOT_BYTES));
+            readFully(accountChannel, data, HEADER_BYTES + first * SLOT_BYTES);
+            block.firstSlot = first;
+            block.writeMark = mark;
+        }
+        return block.data;
+    }
+
+    private static int positionInBlock(long slot) {
+        return (int) (slot & (BLOCK_SLOTS - 1)) * SLOT_BYTES;
+    }
+
+    // Helper method to write part of a slot, keeping this thread's block if no other write raced it
+    private void writeSlotBytes(long slot, int field, ByteBuffer bytes) {
+        int length = bytes.remaining();
+        writeFully(accountChannel, bytes, HEADER_BYTES + slot * SLOT_BYTES + field);
+        long before = writes.getAndIncrement();
+        SlotBlock block = blocks.get();
+        if (block.firstSlot == (slot & -BLOCK_SLOTS) && block.writeMark == before) {
+            bytes.flip();
+            block.data.put(positionInBlock(slot) + field, bytes, 0, length);
+            block.writeMark = before + 1;
+        }
+    }
+
+    private void writeSlot(FileChannel channel, long slot, int accountNumber, long balance, long nameOffset,
+            int nameLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_BYTES);
+        buffer.putInt(MappedAccountStore.ACCOUNT, accountNumber);
+        buffer.putInt(MappedAccountStore.STATE, MappedAccountStore.LIVE);
+        buffer.putLong(MappedAccountStore.BALANCE, balance);
+        buffer.putLong(MappedAccountStore.NAME_OFFSET, nameOffset);
+        buffer.putInt(MappedAccountStore.NAME_LENGTH, nameLength);
+        if (channel == accountChannel) {
+            writeSlotBytes(slot, 0, buffer);
+        } else {
+            writeFully(channel, buffer, HEADER_BYTES + slot * SLOT_BYTES);
+        }
+    }
+
+    // Helper method to append a name to names.dat, never straddling a chunk (see MappedAccountStore)
+    private long appendName(byte[] bytes, int length) {
+        long offset = namesUsed;
+        if (offset % NAME_CHUNK_BYTES + 2 + length > NAME_CHUNK_BYTES) {
+            if (offset % NAME_CHUNK_BYTES + 2 <= NAME_CHUNK_BYTES) {
+                ByteBuffer skip = ByteBuffer.allocate(2).putShort(0, (short) MappedAccountStore.SKIP_TO_NEXT_CHUNK);
+                writeFully(nameChannel, skip, offset);
+            }
+            offset = (offset / NAME_CHUNK_BYTES + 1) * NAME_CHUNK_BYTES;
+        }
+        ByteBuffer record = ByteBuffer.allocate(2 + length);
+        record.putShort((short) length).put(bytes, 0, length).flip();
+        writeFully(nameChannel, record, offset);
+        namesUsed = offset + 2 + length;
+        writeHeaderLong(nameChannel, MappedAccountStore.HEADER_NAMES_USED, namesUsed);
+        return offset;
+    }
+
+    private void openAccounts(Path accounts, long slots) throws IOException {
+        accountChannel = FileChannel.open(accounts, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (slots > 0) {
+            initialize(accountChannel, slots, 0);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(accountChannel, header, 0);
+        if (header.getInt(0) != MappedAccountStore.ACCOUNTS_MAGIC) {
+            throw new IOException("Not an account store: " + accounts);
+        }
+        capacity = header.getLong(MappedAccountStore.HEADER_CAPACITY);
+        size = header.getLong(MappedAccountStore.HEADER_SIZE);
+        mask = capacity - 1;
+        writes.incrementAndGet(); // Blocks read from the previous file are stale
+    }
+
+    // Helper method to write a table header and extend the file to hold every slot (sparse, so all zero)
+    private static void initialize(FileChannel channel, long slots, long size) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(0, MappedAccountStore.ACCOUNTS_MAGIC);
+        header.putLong(MappedAccountStore.HEADER_CAPACITY, slots);
+        header.putLong(MappedAccountStore.HEADER_SIZE, size);
+        writeFully(channel, header, 0);
+        writeFully(channel, ByteBuffer.allocate(1), HEADER_BYTES + slots * SLOT_BYTES - 1);
+    }
+
+    private void openNames(Path names) throws IOException {
+        nameChannel = FileChannel.open(names, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (nameChannel.size() >= HEADER_BYTES) {
+            readFully(nameChannel, header, 0);
+        }
+        if (header.getInt(0) != MappedAccountStore.NAMES_MAGIC) {
+            header.clear();
+            header.putInt(0, MappedAccountStore.NAMES_MAGIC);
+            header.putLong(MappedAccountStore.HEADER_NAMES_USED, HEADER_BYTES);
+            writeFully(nameChannel, header, 0);
+        }
+        namesUsed = header.getLong(MappedAccountStore.HEADER_NAMES_USED);
+    }
+
+    private static void writeHeaderLong(FileChannel channel, int field, long value) {
+        writeFully(channel, ByteBuffer.allocate(8).putLong(0, value), field);
+    }
+
+    // Rehash into a file with twice the slots, reading the old table a block at a time, then swap it in
+    private void grow() throws IOException {
+        long newCapacity = capacity * 2;
+        long newMask = newCapacity - 1;
+        Path temp = directory.resolve("accounts.tmp");
+        Files.deleteIfExists(temp);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            initialize(channel, newCapacity, size);
+            ByteBuffer state = ByteBuffer.allocate(4);
+            for (long slot = 0; slot < capacity; slot++) {
+                if (!isLive(slot)) {
+                    continue;
+                }
+                ByteBuffer block = block(slot);
+                int position = positionInBlock(slot);
+                int accountNumber = block.getInt(position + MappedAccountStore.ACCOUNT);
+                long newSlot = MappedAccountStore.hash(accountNumber) & newMask;
+                while (true) {
+                    readFully(channel, state.clear(), HEADER_BYTES + newSlot * SLOT_BYTES + MappedAccountStore.STATE);
+                    if (state.getInt(0) != MappedAccountStore.LIVE) {
+                        break;
+                    }
+                    newSlot = (newSlot + 1) & newMask;
+                }
+                writeSlot(channel, newSlot, accountNumber, block.getLong(position + MappedAccountStore.BALANCE),
+                        block.getLong(position + MappedAccountStore.NAME_OFFSET),
+                        block.getInt(position + MappedAccountStore.NAME_LENGTH));
+            }
+            channel.force(false);
+        }
+        accountChannel.close();
+        Path accounts = directory.resolve("accounts.dat");
+        Files.move(temp, accounts, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        openAccounts(accounts, -1);
+    }
+
+    // Helper method to fill a buffer from a file position; bytes past the end of the file read as zero
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) {
+        try {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    while (buffer.hasRemaining()) {
+                        buffer.put((byte) 0);
+                    }
+                    break;
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the account store", e);
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) {
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the account store", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package bank;
+
+// Interface for a fraud rule checked before money leaves an account. A rule sees the
+// debited account's activity in the current window and, for transfers within this bank,
+// the receiving account's; it runs on every debit, so it must not allocate.
+interface FraudRule {
+    int ALLOW = 0;
+    int FLAG = 1;   // Let the operation through but journal it for review
+    int REJECT = 2; // Refuse the operation and journal the attempt
+
+    // type is WITHDRAW, TRANSFER or TRANSFER_OUT; destination is null when it is unknown here
+    int check(byte type, AccountActivity source, AccountActivity destination, long amountMinorUnits,
+            long nowMillis);
+
+    // Rule refusing a debit once the account has made count debits in the window
+    static FraudRule maxDebitsPerWindow(int count) {
+        return (type, source, destination, amount, now) -> (source.getDebitCount() >= count) ? REJECT : ALLOW;
+    }
+
+    // Rule refusing a debit that would take the amount debited in the window above a limit
+    static FraudRule maxDebitAmountPerWindow(double limit) {
+        long limitMinorUnits = AccountStore.toMinorUnits(limit);
+        return (type, source, destination, amount, now) ->
+                (source.getDebitAmount() + amount > limitMinorUnits) ? REJECT : ALLOW;
+    }
+
+    // Rule flagging transfers into accounts opened less than ageMillis ago
+    static FraudRule flagTransfersToNewAccounts(long ageMillis) {
+        return (type, source, destination, amount, now) -> (type == BankOperation.TRANSFER && destination != null
+                && destination.getOpenedMillis() > now - ageMillis) ? FLAG : ALLOW;
+    }
+}
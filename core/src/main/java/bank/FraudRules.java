@@ -0,0 +1,88 @@
+package bank;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Class representing the fraud rule engine. Heap accounts keep their activity on the Customer;
+// off-heap accounts keep it in the index of their lock stripe. Either way it is only touched
+// while the account's stripe is locked, so checks need no other synchronization.
+class FraudRules {
+    private final FraudRule[] rules;
+    private final AccountIndex<AccountActivity>[] activityByStripe; // Off-heap accounts only
+    private final long bucketMillis;
+    private final int buckets;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flagged = new LongAdder();
+
+    // Constructor to check rules over a window of windowMillis split into the given number of buckets
+    @SuppressWarnings("unchecked")
+    public FraudRules(long windowMillis, int buckets, int stripeCount, FraudRule... rules) {
+        if (buckets < 1 || windowMillis < buckets) {
+            throw new IllegalArgumentException("The window must hold at least one millisecond per bucket");
+        }
+        this.rules = rules.clone();
+        this.bucketMillis = windowMillis / buckets;
+        this.buckets = buckets;
+        @SuppressWarnings("unchecked")
+        AccountIndex<AccountActivity>[] stripes = (AccountIndex<AccountActivity>[]) new AccountIndex<?>[stripeCount];
+        this.activityByStripe = stripes;
+        for (int i = 0; i < stripeCount; i++) {
+            activityByStripe[i] = new AccountIndex<>();
+        }
+    }
+
+    // Method to run every rule on a debit; the stripes of both accounts must be held.
+    // destination is null when the receiving account is not in this bank.
+    // Returns the strictest verdict: REJECT, FLAG or ALLOW.
+    public int checkDebit(byte type, AccountActivity source, AccountActivity destination, long amountMinorUnits,
+            long nowMillis) {
+        source.advance(nowMillis);
+        int verdict = FraudRule.ALLOW;
+        for (FraudRule rule : rules) {
+            verdict = Math.max(verdict, rule.check(type, source, destination, amountMinorUnits, nowMillis));
+        }
+        if (verdict == FraudRule.REJECT) {
+            rejected.increment();
+        } else if (verdict == FraudRule.FLAG) {
+            flagged.increment();
+        }
+        return verdict;
+    }
+
+    // Method to start the activity of an account opened at a time (0 for accounts opened before the rules)
+    public AccountActivity newActivity(long openedMillis) {
+        return new AccountActivity(bucketMillis, buckets, openedMillis);
+    }
+
+    // Method to get an off-heap account's activity, starting it on first use (its stripe must be held)
+    public AccountActivity activityOf(int stripe, int accountNumber) {
+        AccountActivity activity = activityByStripe[stripe].get(accountNumber);
+        if (activity == null) {
+            activity = newActivity(0);
+            activityByStripe[stripe].put(accountNumber, activity);
+        }
+        return activity;
+    }
+
+    // Method to find an off-heap account's activity, or null if it has none (its stripe must be held)
+    public AccountActivity findActivity(int stripe, int accountNumber) {
+        return activityByStripe[stripe].get(accountNumber);
+    }
+
+    // Method to note that an off-heap account was opened (its stripe must be held)
+    public void accountOpened(int stripe, int accountNumber, long nowMillis) {
+        activityByStripe[stripe].put(accountNumber, newActivity(nowMillis));
+    }
+
+    // Method to forget a closed off-heap account (its stripe must be held)
+    public void accountClosed(int stripe, int accountNumber) {
+        activityByStripe[stripe].remove(accountNumber);
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getFlaggedCount() {
+        return flagged.sum();
+    }
+}
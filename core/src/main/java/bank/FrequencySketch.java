@@ -0,0 +1,76 @@
+package bank;
+
+// Class representing a count-min sketch of how often keys were seen, with 4-bit counters that
+// are all halved after a sample of 10 increments per tracked key, so old popularity fades.
+// Not thread-safe: CachedAccountStore uses one per segment under the segment lock.
+class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    private final long[] table; // 16 counters per long
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    public FrequencySketch(int trackedKeys) {
+        int length = 8;
+        while (length < trackedKeys) {
+            length <<= 1;
+        }
+        table = new long[length];
+        tableMask = length - 1;
+        sampleSize = 10 * Math.max(trackedKeys, 8);
+    }
+
+    // Method to estimate how often a key was seen recently (0 to 15)
+    public int frequency(int key) {
+        int frequency = 15;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = spread(key, i);
+            frequency = Math.min(frequency, (int) ((table[index(hash)] >>> offset(hash)) & 15));
+        }
+        return frequency;
+    }
+
+    public void increment(int key) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = spread(key, i);
+            int index = index(hash);
+            int offset = offset(hash);
+            if (((table[index] >>> offset) & 15) != 15) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            halve();
+        }
+    }
+
+    private void halve() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & HALF_MASK;
+        }
+        additions = (additions - (odd >>> 2)) >>> 1;
+    }
+
+    private static long spread(int key, int row) {
+        long hash = (key + SEEDS[row]) * SEEDS[row];
+        return hash ^ (hash >>> 32);
+    }
+
+    private int index(long hash) {
+        return (int) hash & tableMask;
+    }
+
+    // Bit offset of the key's counter: one of the 16 nibbles, chosen by higher hash bits
+    private static int offset(long hash) {
+        return (int) ((hash >>> 40) & 15) << 2;
+    }
+}
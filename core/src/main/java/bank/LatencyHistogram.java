@@ -0,0 +1,98 @@
+package bank;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Class representing a lock-free latency histogram with HDR-style log-linear buckets.
+// Each power of two is split into 32 sub-buckets, so recorded values keep about 3%
+// precision from nanoseconds up to Long.MAX_VALUE. Recording is one atomic increment
+// per bucket plus two striped adders.
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    // Method to record one latency in nanoseconds
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0; // Clock adjustments can make an interval negative
+        }
+        counts.getAndIncrement(bucketOf(nanos));
+        totalCount.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long count = totalCount.sum();
+        return (count == 0) ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    // Method to get the value at a percentile (0-100), accurate to the bucket width
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestValueIn(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    // Method to clear all recorded values
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long highestValueIn(int bucket) {
+        int magnitude = bucket / SUB_BUCKETS;
+        int subBucket = bucket % SUB_BUCKETS;
+        if (magnitude == 0) {
+            return subBucket;
+        }
+        int shift = magnitude - 1;
+        long next = (long) (SUB_BUCKETS + subBucket + 1) << shift;
+        return (next <= 0) ? Long.MAX_VALUE : next - 1;
+    }
+}
@@ -0,0 +1,48 @@
+package bank;
+
+import java.io.IOException;
+
+// Class representing a shard that lives in the same process
+class LocalShard implements ShardClient {
+    private final Bank bank;
+
+    public LocalShard(Bank bank) {
+        this.bank = bank;
+    }
+
+    public Bank getBank() {
+        return bank;
+    }
+
+    @Override
+    public int apply(BankOperation operation) {
+        return bank.apply(operation);
+    }
+
+    @Override
+    public double getBalance(int accountNumber) {
+        Customer customer = bank.findCustomer(accountNumber);
+        return (customer != null) ? customer.balance : Double.NaN;
+    }
+
+    @Override
+    public int prepareTransferLeg(long transactionId, byte type, int accountNumber, int remoteAccountNumber,
+            double amount) {
+        return bank.prepareTransferLeg(transactionId, type, accountNumber, remoteAccountNumber, amount);
+    }
+
+    @Override
+    public int commitTransferLeg(long transactionId) {
+        return bank.commitTransferLeg(transactionId);
+    }
+
+    @Override
+    public int abortTransferLeg(long transactionId) {
+        return bank.abortTransferLeg(transactionId);
+    }
+
+    @Override
+    public void close() throws IOException {
+        bank.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package bank;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Class representing a fixed set of locks that account numbers are hashed onto.
+// Balance operations lock only the stripes of the accounts they touch, so
+// operations on different accounts run in parallel. Structural changes
+// (create/delete) lock every stripe, which keeps the account index and the
+// tree stable for the lock-free lookups done under a single stripe.
+class LockStripes {
+    private final ReentrantLock[] locks;
+    private final int shift;
+
+    // Constructor to create a power-of-two number of stripes (at least the requested count)
+    public LockStripes(int minimumStripes) {
+        int count = 1;
+        while (count < minimumStripes) {
+            count <<= 1;
+        }
+        locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        shift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    // Method to map an account number to its stripe index
+    public int stripeOf(int accountNumber) {
+        return (locks.length == 1) ? 0 : (accountNumber * 0x9E3779B9) >>> shift;
+    }
+
+    public void lock(int accountNumber) {
+        locks[stripeOf(accountNumber)].lock();
+    }
+
+    public void unlock(int accountNumber) {
+        locks[stripeOf(accountNumber)].unlock();
+    }
+
+    // Method to lock two accounts; stripes are always taken in index order so transfers cannot deadlock
+    public void lockPair(int firstAccount, int secondAccount) {
+        int first = stripeOf(firstAccount);
+        int second = stripeOf(secondAccount);
+        if (first == second) {
+            locks[first].lock();
+        } else {
+            locks[Math.min(first, second)].lock();
+            locks[Math.max(first, second)].lock();
+        }
+    }
+
+    public void unlockPair(int firstAccount, int secondAccount) {
+        int first = stripeOf(firstAccount);
+        int second = stripeOf(secondAccount);
+        locks[first].unlock();
+        if (first != second) {
+            locks[second].unlock();
+        }
+    }
+
+    // Method to lock every stripe (in index order) for structural changes
+    public void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    public void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    public int getStripeCount() {
+        return locks.length;
+    }
+}
@@ -0,0 +1,379 @@
+package bank;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Class representing an off-heap account table kept in memory-mapped files.
+// accounts.dat is an open-addressing hash table of fixed-width 32-byte slots:
+//   [int accountNumber][int state][long balance in minor units][long nameOffset][int nameLength][int unused]
+// names.dat is an append-only region of interned UTF-8 names: [short length][bytes].
+// Balances are read and written in place with absolute buffer accesses, so
+// balance operations allocate nothing, and reopening the store only re-maps the
+// files. Callers provide the locking (see Bank): balance updates on a slot must be
+// serialized per account, and create/delete must be exclusive.
+class MappedAccountStore implements AccountStore {
+    static final int ACCOUNTS_MAGIC = 0x42414354; // "BACT"
+    static final int NAMES_MAGIC = 0x424E414D;    // "BNAM"
+    static final int HEADER_BYTES = 64;
+    static final int SLOT_BYTES = 32;
+    private static final int SEGMENT_SLOT_BITS = 24; // 16M slots (512 MB) per mapping
+    private static final long SEGMENT_SLOT_MASK = (1L << SEGMENT_SLOT_BITS) - 1;
+    static final long NAME_CHUNK_BYTES = 1L << 26;
+    static final int MAX_NAME_BYTES = 0xFFFE;
+    static final int SKIP_TO_NEXT_CHUNK = 0xFFFF; // Name length marking an unused chunk tail
+
+    // Field offsets within a slot and within the headers
+    static final int ACCOUNT = 0;
+    static final int STATE = 4;
+    static final int BALANCE = 8;
+    static final int NAME_OFFSET = 16;
+    static final int NAME_LENGTH = 24;
+    static final int HEADER_CAPACITY = 8;
+    static final int HEADER_SIZE = 16;
+    static final int HEADER_NAMES_USED = 8;
+
+    static final int EMPTY = 0;
+    static final int LIVE = 1;
+
+    private final Path directory;
+    private FileChannel accountChannel;
+    private MappedByteBuffer accountHeader;
+    private MappedByteBuffer[] segments;
+    private long capacity; // Slots, a power of two
+    private long mask;
+    private long size;
+
+    private FileChannel nameChannel;
+    private MappedByteBuffer nameHeader;
+    private final List<MappedByteBuffer> nameChunks = new ArrayList<>();
+    private long namesUsed;                 // Bytes used in names.dat, including its header
+    private HashMap<String, Long> internTable; // Name -> offset, built on first create after opening
+
+    // Constructor to open the store in a directory, creating it with room for expectedAccounts if absent
+    public MappedAccountStore(Path directory, long expectedAccounts) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path accounts = directory.resolve("accounts.dat");
+        if (Files.exists(accounts)) {
+            mapAccounts(accounts, -1);
+        } else {
+            long slots = 1024;
+            while (slots < expectedAccounts * 2) {
+                slots <<= 1;
+            }
+            mapAccounts(accounts, slots);
+        }
+        mapNames(directory.resolve("names.dat"));
+    }
+
+    // Method to find the slot of an account, or -1 if it does not exist
+    @Override
+    public long find(int accountNumber) {
+        long slot = hash(accountNumber) & mask;
+        while (true) {
+            MappedByteBuffer segment = segments[(int) (slot >>> SEGMENT_SLOT_BITS)];
+            int position = position(slot);
+            if (segment.getInt(position + STATE) == EMPTY) {
+                return -1;
+            }
+            if (segment.getInt(position + ACCOUNT) == accountNumber) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public long getBalance(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SLOT_BITS)].getLong(position(slot) + BALANCE);
+    }
+
+    @Override
+    public void setBalance(long slot, long minorUnits) {
+        segments[(int) (slot >>> SEGMENT_SLOT_BITS)].putLong(position(slot) + BALANCE, minorUnits);
+    }
+
+    @Override
+    public void addBalance(long slot, long minorUnits) {
+        MappedByteBuffer segment = segments[(int) (slot >>> SEGMENT_SLOT_BITS)];
+        int position = position(slot) + BALANCE;
+        segment.putLong(position, segment.getLong(position) + minorUnits);
+    }
+
+    @Override
+    public int getAccountNumber(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SLOT_BITS)].getInt(position(slot) + ACCOUNT);
+    }
+
+    @Override
+    public boolean isLive(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SLOT_BITS)].getInt(position(slot) + STATE) == LIVE;
+    }
+
+    // Method to decode the name stored for a slot (allocates; not used on the balance path)
+    @Override
+    public String getName(long slot) {
+        MappedByteBuffer segment = segments[(int) (slot >>> SEGMENT_SLOT_BITS)];
+        long offset = segment.getLong(position(slot) + NAME_OFFSET);
+        int length = segment.getInt(position(slot) + NAME_LENGTH);
+        MappedByteBuffer chunk = nameChunks.get((int) (offset / NAME_CHUNK_BYTES));
+        byte[] bytes = new byte[length];
+        chunk.get((int) (offset % NAME_CHUNK_BYTES) + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Method to create an account; returns false if the account number is taken
+    @Override
+    public boolean create(int accountNumber, String name, long balanceMinorUnits) throws IOException {
+        if (find(accountNumber) >= 0) {
+            return false;
+        }
+        if ((size + 1) * 2 > capacity) {
+            grow();
+        }
+        long nameOffset = internName(name);
+        int nameLength = nameChunks.get((int) (nameOffset / NAME_CHUNK_BYTES))
+                .getShort((int) (nameOffset % NAME_CHUNK_BYTES)) & 0xFFFF;
+
+        long slot = hash(accountNumber) & mask;
+        while (isLive(slot)) {
+            slot = (slot + 1) & mask;
+        }
+        writeSlot(segments, slot, accountNumber, balanceMinorUnits, nameOffset, nameLength);
+        size++;
+        accountHeader.putLong(HEADER_SIZE, size);
+        return true;
+    }
+
+    // Method to delete an account; its interned name stays in the name region
+    @Override
+    public boolean delete(int accountNumber) {
+        long hole = find(accountNumber);
+        if (hole < 0) {
+            return false;
+        }
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        long j = hole;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!isLive(j)) {
+                break;
+            }
+            long home = hash(getAccountNumber(j)) & mask;
+            boolean stays = (hole <= j) ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!stays) {
+                copySlot(j, hole);
+                hole = j;
+            }
+        }
+        segments[(int) (hole >>> SEGMENT_SLOT_BITS)].putInt(position(hole) + STATE, EMPTY);
+        size--;
+        accountHeader.putLong(HEADER_SIZE, size);
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    // Method to get the number of slots; live accounts are the slots where isLive(slot) is true
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    // Method to write dirty pages back to the files
+    @Override
+    public void force() {
+        accountHeader.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        nameHeader.force();
+        for (MappedByteBuffer chunk : nameChunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        accountChannel.close();
+        nameChannel.close();
+    }
+
+    static long hash(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & 0xFFFFFFFFL;
+    }
+
+    private static int position(long slot) {
+        return (int) ((slot & SEGMENT_SLOT_MASK) * SLOT_BYTES);
+    }
+
+    // Map accounts.dat; slots > 0 creates a new table of that many slots
+    private void mapAccounts(Path accounts, long slots) throws IOException {
+        accountChannel = FileChannel.open(accounts, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        accountHeader = accountChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        if (slots > 0) {
+            accountHeader.putInt(0, ACCOUNTS_MAGIC);
+            accountHeader.putLong(HEADER_CAPACITY, slots);
+            accountHeader.putLong(HEADER_SIZE, 0);
+        } else if (accountHeader.getInt(0) != ACCOUNTS_MAGIC) {
+            throw new IOException("Not an account store: " + accounts);
+        }
+        capacity = accountHeader.getLong(HEADER_CAPACITY);
+        size = accountHeader.getLong(HEADER_SIZE);
+        mask = capacity - 1;
+        segments = mapSegments(accountChannel, capacity);
+    }
+
+    private static MappedByteBuffer[] mapSegments(FileChannel channel, long slots) throws IOException {
+        int count = (int) ((slots + SEGMENT_SLOT_MASK) >>> SEGMENT_SLOT_BITS);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long first = (long) i << SEGMENT_SLOT_BITS;
+            long slotsInSegment = Math.min(1L << SEGMENT_SLOT_BITS, slots - first);
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + first * SLOT_BYTES,
+                    slotsInSegment * SLOT_BYTES);
+        }
+        return mapped;
+    }
+
+    private void mapNames(Path names) throws IOException {
+        nameChannel = FileChannel.open(names, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        nameHeader = nameChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        if (nameHeader.getInt(0) != NAMES_MAGIC) {
+            nameHeader.putInt(0, NAMES_MAGIC);
+            nameHeader.putLong(HEADER_NAMES_USED, HEADER_BYTES);
+        }
+        namesUsed = nameHeader.getLong(HEADER_NAMES_USED);
+        for (long mapped = 0; mapped < namesUsed; mapped += NAME_CHUNK_BYTES) {
+            mapNameChunk();
+        }
+    }
+
+    private void mapNameChunk() throws IOException {
+        long start = (long) nameChunks.size() * NAME_CHUNK_BYTES;
+        nameChunks.add(nameChannel.map(FileChannel.MapMode.READ_WRITE, start, NAME_CHUNK_BYTES));
+    }
+
+    // Return the offset of a name in the name region, appending it if it is new
+    private long internName(String name) throws IOException {
+        if (internTable == null) {
+            buildInternTable();
+        }
+        Long existing = internTable.get(name);
+        if (existing != null) {
+            return existing;
+        }
+
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_NAME_BYTES);
+        long offset = namesUsed;
+        if (offset % NAME_CHUNK_BYTES + 2 + length > NAME_CHUNK_BYTES) {
+            // Names never straddle chunks: mark the rest of this chunk as unused
+            if (offset % NAME_CHUNK_BYTES + 2 <= NAME_CHUNK_BYTES) {
+                nameChunks.get((int) (offset / NAME_CHUNK_BYTES))
+                        .putShort((int) (offset % NAME_CHUNK_BYTES), (short) SKIP_TO_NEXT_CHUNK);
+            }
+            offset = (offset / NAME_CHUNK_BYTES + 1) * NAME_CHUNK_BYTES;
+        }
+        while (offset / NAME_CHUNK_BYTES >= nameChunks.size()) {
+            mapNameChunk();
+        }
+        MappedByteBuffer chunk = nameChunks.get((int) (offset / NAME_CHUNK_BYTES));
+        int position = (int) (offset % NAME_CHUNK_BYTES);
+        chunk.putShort(position, (short) length);
+        chunk.put(position + 2, bytes, 0, length);
+        namesUsed = offset + 2 + length;
+        nameHeader.putLong(HEADER_NAMES_USED, namesUsed);
+        internTable.put(name, offset);
+        return offset;
+    }
+
+    // Scan the name region once so names written before a restart are still shared
+    private void buildInternTable() {
+        internTable = new HashMap<>();
+        long offset = HEADER_BYTES;
+        while (offset < namesUsed) {
+            MappedByteBuffer chunk = nameChunks.get((int) (offset / NAME_CHUNK_BYTES));
+            int position = (int) (offset % NAME_CHUNK_BYTES);
+            int length = (position + 2 <= NAME_CHUNK_BYTES) ? chunk.getShort(position) & 0xFFFF : SKIP_TO_NEXT_CHUNK;
+            if (length == SKIP_TO_NEXT_CHUNK) {
+                offset = (offset / NAME_CHUNK_BYTES + 1) * NAME_CHUNK_BYTES;
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            chunk.get(position + 2, bytes);
+            internTable.putIfAbsent(new String(bytes, StandardCharsets.UTF_8), offset);
+            offset += 2 + length;
+        }
+    }
+
+    private static void writeSlot(MappedByteBuffer[] target, long slot, int accountNumber, long balance,
+            long nameOffset, int nameLength) {
+        MappedByteBuffer segment = target[(int) (slot >>> SEGMENT_SLOT_BITS)];
+        int position = position(slot);
+        segment.putInt(position + ACCOUNT, accountNumber);
+        segment.putLong(position + BALANCE, balance);
+        segment.putLong(position + NAME_OFFSET, nameOffset);
+        segment.putInt(position + NAME_LENGTH, nameLength);
+        segment.putInt(position + STATE, LIVE);
+    }
+
+    private void copySlot(long from, long to) {
+        MappedByteBuffer source = segments[(int) (from >>> SEGMENT_SLOT_BITS)];
+        int position = position(from);
+        writeSlot(segments, to, source.getInt(position + ACCOUNT), source.getLong(position + BALANCE),
+                source.getLong(position + NAME_OFFSET), source.getInt(position + NAME_LENGTH));
+    }
+
+    // Rehash into a file with twice the slots, then swap it in
+    private void grow() throws IOException {
+        long newCapacity = capacity * 2;
+        long newMask = newCapacity - 1;
+        Path temp = directory.resolve("accounts.tmp");
+        Files.deleteIfExists(temp);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            MappedByteBuffer[] target = mapSegments(channel, newCapacity);
+            for (long slot = 0; slot < capacity; slot++) {
+                if (!isLive(slot)) {
+                    continue;
+                }
+                MappedByteBuffer segment = segments[(int) (slot >>> SEGMENT_SLOT_BITS)];
+                int position = position(slot);
+                int accountNumber = segment.getInt(position + ACCOUNT);
+                long newSlot = hash(accountNumber) & newMask;
+                while (target[(int) (newSlot >>> SEGMENT_SLOT_BITS)].getInt(position(newSlot) + STATE) == LIVE) {
+                    newSlot = (newSlot + 1) & newMask;
+                }
+                writeSlot(target, newSlot, accountNumber, segment.getLong(position + BALANCE),
+                        segment.getLong(position + NAME_OFFSET), segment.getInt(position + NAME_LENGTH));
+            }
+            header.putInt(0, ACCOUNTS_MAGIC);
+            header.putLong(HEADER_CAPACITY, newCapacity);
+            header.putLong(HEADER_SIZE, size);
+            header.force();
+            for (MappedByteBuffer segment : target) {
+                segment.force();
+            }
+        }
+        accountChannel.close();
+        Path accounts = directory.resolve("accounts.dat");
+        Files.move(temp, accounts, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        mapAccounts(accounts, -1);
+    }
+}
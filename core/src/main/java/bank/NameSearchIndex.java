@@ -0,0 +1,582 @@
+package bank;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Class representing a name search index for prefix and typo-tolerant lookup. It is a
+// compressed (radix) trie over normalized names, stored as parallel int arrays whose edge
+// labels point into one shared character pool, so millions of names cost a few dozen bytes
+// each beyond their characters. Every name is indexed whole and from the start of each later
+// word, so "smi" finds "Patrick Smith". Fuzzy queries walk the same trie with an edit-distance
+// row per character (insertions, deletions, substitutions and transpositions), pruning every
+// branch that cannot beat the results already found.
+class NameSearchIndex {
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+
+    // Trie nodes; a free node is chained through nextSibling
+    private int[] labelStart;
+    private int[] labelLength;
+    private char[] leadChar;   // First character of the label, copied to spare a pool read while scanning siblings
+    private int[] firstChild;  // Children are kept sorted by their first character
+    private int[] nextSibling;
+    private int[] postings;    // First posting of the keys ending at this node
+    private int nodeCount;
+    private int freeNodes = NONE;
+
+    // Postings: the accounts whose key ends at a node; a free posting is chained through postingNext
+    private int[] postingAccount;
+    private int[] postingNext;
+    private boolean[] postingWholeName; // false for keys starting at a later word
+    private int postingCount;
+    private int freePostings = NONE;
+
+    private char[] pool = new char[1 << 12];
+    private int poolSize;
+    private long liveChars;
+    private long deadChars; // Pool characters of removed names, reclaimed by compact()
+    private int names;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public NameSearchIndex() {
+        reset(1 << 10);
+    }
+
+    private void reset(int capacity) {
+        labelStart = new int[capacity];
+        labelLength = new int[capacity];
+        leadChar = new char[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        postings = new int[capacity];
+        postingAccount = new int[capacity];
+        postingNext = new int[capacity];
+        postingWholeName = new boolean[capacity];
+        nodeCount = 0;
+        freeNodes = NONE;
+        postingCount = 0;
+        freePostings = NONE;
+        poolSize = 0;
+        liveChars = 0;
+        deadChars = 0;
+        names = 0;
+        newNode(0, 0); // Root
+    }
+
+    // Method to normalize a name or query: lower case, single spaces, no surrounding spaces
+    static String normalize(String name) {
+        StringBuilder out = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = out.length() > 0;
+            } else {
+                if (space) {
+                    out.append(' ');
+                    space = false;
+                }
+                out.append(Character.toLowerCase(c));
+            }
+        }
+        return out.toString();
+    }
+
+    // Method to index an account's name
+    public void add(int accountNumber, String name) {
+        String key = normalize(name);
+        if (key.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int start = appendToPool(key);
+            insertKey(start, key.length(), accountNumber, true);
+            for (int i = 1; i < key.length(); i++) {
+                if (key.charAt(i - 1) == ' ') {
+                    insertKey(start + i, key.length() - i, accountNumber, false);
+                }
+            }
+            liveChars += key.length();
+            names++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Method to remove an account's name (the name it was indexed under)
+    public void remove(int accountNumber, String name) {
+        String key = normalize(name);
+        if (key.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!removeKey(key, 0, accountNumber)) {
+                return; // Not indexed
+            }
+            for (int i = 1; i < key.length(); i++) {
+                if (key.charAt(i - 1) == ' ') {
+                    removeKey(key, i, accountNumber);
+                }
+            }
+            liveChars -= key.length();
+            deadChars += key.length();
+            names--;
+            if (deadChars > liveChars && deadChars > (1 << 20)) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Method to find up to limit accounts whose name, or a word in it, starts with a prefix;
+    // results are in dictionary order of the matching text
+    public int[] searchPrefix(String prefix, int limit) {
+        String query = normalize(prefix);
+        Collector results = new Collector(limit, 0);
+        lock.readLock().lock();
+        try {
+            int node = ROOT;
+            int matched = 0;
+            while (matched < query.length()) {
+                int child = findChild(node, query.charAt(matched));
+                if (child == NONE) {
+                    return new int[0];
+                }
+                int length = labelLength[child];
+                int start = labelStart[child];
+                for (int i = 0; i < length && matched < query.length(); i++, matched++) {
+                    if (pool[start + i] != query.charAt(matched)) {
+                        return new int[0];
+                    }
+                }
+                node = child;
+            }
+            collectSubtree(node, 0, results);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results.toArray();
+    }
+
+    // Method to find up to limit accounts whose name, or a word in it, starts with text within
+    // maxEdits edits of the query; the closest matches come first, ties in dictionary order
+    public int[] searchFuzzy(String query, int maxEdits, int limit) {
+        String target = normalize(query);
+        Collector results = new Collector(limit, maxEdits);
+        int columns = target.length() + 1;
+        FuzzyWalk walk = new FuzzyWalk(target, results);
+        int[] firstRow = walk.row(0);
+        for (int j = 0; j < columns; j++) {
+            firstRow[j] = j; // Distance from the empty prefix
+        }
+        lock.readLock().lock();
+        try {
+            for (int child = firstChild[ROOT]; child != NONE; child = nextSibling[child]) {
+                walk.descend(child, 0, target.length());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results.toArray();
+    }
+
+    // Class representing the ranked results of one query: one list per edit distance
+    private static final class Collector {
+        final int limit;
+        final int[][] byDistance;
+        final int[] counts;
+        final Map<Integer, Integer> found = new HashMap<>(); // Account -> distance it was collected at
+        int bound; // Largest distance still worth collecting
+
+        Collector(int limit, int maxEdits) {
+            this.limit = limit;
+            this.byDistance = new int[maxEdits + 1][limit];
+            this.counts = new int[maxEdits + 1];
+            this.bound = (limit > 0) ? maxEdits : -1;
+        }
+
+        // Whether any distance in [low, high] can still take a result
+        boolean wants(int low, int high) {
+            for (int d = low; d <= Math.min(high, bound); d++) {
+                if (counts[d] < limit) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(int accountNumber, int distance) {
+            if (distance > bound || counts[distance] == limit) {
+                return;
+            }
+            Integer previous = found.get(accountNumber);
+            if (previous != null) {
+                if (previous <= distance) {
+                    return;
+                }
+                removeFrom(previous, accountNumber); // Found again, closer
+            }
+            found.put(accountNumber, distance);
+            byDistance[distance][counts[distance]++] = accountNumber;
+            // Once the closest distances hold enough results, farther ones are not needed
+            int total = 0;
+            for (int d = 0; d <= bound; d++) {
+                total += counts[d];
+                if (total >= limit) {
+                    bound = d;
+                    break;
+                }
+            }
+        }
+
+        private void removeFrom(int distance, int accountNumber) {
+            int[] list = byDistance[distance];
+            for (int i = 0; i < counts[distance]; i++) {
+                if (list[i] == accountNumber) {
+                    System.arraycopy(list, i + 1, list, i, counts[distance] - i - 1);
+                    counts[distance]--;
+                    return;
+                }
+            }
+        }
+
+        int[] toArray() {
+            int[] out = new int[limit];
+            int size = 0;
+            for (int d = 0; d < counts.length && size < limit; d++) {
+                int take = Math.min(counts[d], limit - size);
+                System.arraycopy(byDistance[d], 0, out, size, take);
+                size += take;
+            }
+            return Arrays.copyOf(out, size);
+        }
+    }
+
+    // Class representing the state of one fuzzy query: an edit-distance row per trie depth
+    private final class FuzzyWalk {
+        final String target;
+        final Collector results;
+        int[][] rows = new int[32][];
+        char[] path = new char[32];
+
+        FuzzyWalk(String target, Collector results) {
+            this.target = target;
+            this.results = results;
+        }
+
+        int[] row(int depth) {
+            if (depth >= rows.length) {
+                rows = Arrays.copyOf(rows, depth * 2);
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            if (rows[depth] == null) {
+                rows[depth] = new int[target.length() + 1];
+            }
+            return rows[depth];
+        }
+
+        // Visit a node whose label starts at the given depth. best is the smallest distance
+        // between the query and any prefix of the text above this node.
+        void descend(int node, int depth, int best) {
+            int start = labelStart[node];
+            int length = labelLength[node];
+            int columns = target.length() + 1;
+            for (int i = 0; i < length; i++) {
+                char c = pool[start + i];
+                int d = depth + i + 1;
+                int[] current = row(d);
+                int[] previous = rows[d - 1];
+                int[] beforePrevious = (d >= 2) ? rows[d - 2] : null;
+                path[d - 1] = c;
+                current[0] = d;
+                // Only cells within bound of the diagonal can be within bound edits; the cells just
+                // outside the band are set to bound + 1 so the next row never reads stale values
+                int band = results.bound;
+                int tooFar = band + 1;
+                int low = Math.max(1, d - band);
+                int high = Math.min(columns - 1, d + band);
+                if (low > 1 && low <= columns) {
+                    current[low - 1] = tooFar;
+                }
+                if (high + 1 < columns) {
+                    current[high + 1] = tooFar;
+                }
+                int rowMinimum = (low == 1) ? d : tooFar;
+                for (int j = low; j <= high; j++) {
+                    char q = target.charAt(j - 1);
+                    int cost = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1),
+                            previous[j - 1] + ((q == c) ? 0 : 1));
+                    if (beforePrevious != null && j >= 2 && q == path[d - 2] && target.charAt(j - 2) == c) {
+                        cost = Math.min(cost, beforePrevious[j - 2] + 1); // Transposed pair
+                    }
+                    current[j] = cost;
+                    rowMinimum = Math.min(rowMinimum, cost);
+                }
+                best = Math.min(best, (low <= high && high == columns - 1) ? current[columns - 1] : tooFar);
+                // Every longer text is at least rowMinimum edits away, and at most best
+                if (!results.wants(Math.min(best, rowMinimum), best)) {
+                    return;
+                }
+            }
+            int distance = best;
+            if (distance <= results.bound) {
+                for (int p = postings[node]; p != NONE; p = postingNext[p]) {
+                    results.add(postingAccount[p], distance);
+                }
+            }
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                descend(child, depth + length, best);
+            }
+        }
+    }
+
+    // Helper method to collect every account under a node in dictionary order
+    private void collectSubtree(int node, int distance, Collector results) {
+        for (int p = postings[node]; p != NONE && results.wants(distance, distance); p = postingNext[p]) {
+            results.add(postingAccount[p], distance);
+        }
+        for (int child = firstChild[node]; child != NONE && results.wants(distance, distance);
+                child = nextSibling[child]) {
+            collectSubtree(child, distance, results);
+        }
+    }
+
+    private int findChild(int node, char c) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            char first = leadChar[child];
+            if (first == c) {
+                return child;
+            }
+            if (first > c) {
+                break;
+            }
+        }
+        return NONE;
+    }
+
+    // Helper method to add the key pool[start, start + length) for an account
+    private void insertKey(int start, int length, int accountNumber, boolean wholeName) {
+        int node = ROOT;
+        int position = 0;
+        while (position < length) {
+            char c = pool[start + position];
+            int previous = NONE;
+            int child = firstChild[node];
+            while (child != NONE && leadChar[child] < c) {
+                previous = child;
+                child = nextSibling[child];
+            }
+            if (child == NONE || leadChar[child] != c) {
+                // No child starts with this character: hang the rest of the key on a new leaf
+                int leaf = newNode(start + position, length - position);
+                link(node, previous, leaf, child);
+                node = leaf;
+                break;
+            }
+            int childStart = labelStart[child];
+            int childLength = labelLength[child];
+            int common = 1;
+            while (common < childLength && position + common < length
+                    && pool[childStart + common] == pool[start + position + common]) {
+                common++;
+            }
+            if (common < childLength) {
+                // The key leaves this label part way: split it
+                int middle = newNode(childStart, common);
+                link(node, previous, middle, nextSibling[child]);
+                labelStart[child] = childStart + common;
+                labelLength[child] = childLength - common;
+                leadChar[child] = pool[childStart + common];
+                nextSibling[child] = NONE;
+                firstChild[middle] = child;
+                child = middle;
+            }
+            node = child;
+            position += common;
+        }
+        int posting = newPosting(accountNumber, wholeName);
+        postingNext[posting] = postings[node];
+        postings[node] = posting;
+    }
+
+    // Helper method to remove the key starting at key[offset] for an account; returns whether it was found
+    private boolean removeKey(String key, int offset, int accountNumber) {
+        int depth = 0;
+        int[] trail = new int[16]; // Nodes from the root down
+        trail[depth++] = ROOT;
+        int node = ROOT;
+        int position = offset;
+        while (position < key.length()) {
+            int child = findChild(node, key.charAt(position));
+            if (child == NONE || labelLength[child] > key.length() - position) {
+                return false;
+            }
+            for (int i = 0; i < labelLength[child]; i++) {
+                if (pool[labelStart[child] + i] != key.charAt(position + i)) {
+                    return false;
+                }
+            }
+            position += labelLength[child];
+            node = child;
+            if (depth == trail.length) {
+                trail = Arrays.copyOf(trail, depth * 2);
+            }
+            trail[depth++] = node;
+        }
+        int previous = NONE;
+        int posting = postings[node];
+        while (posting != NONE && postingAccount[posting] != accountNumber) {
+            previous = posting;
+            posting = postingNext[posting];
+        }
+        if (posting == NONE) {
+            return false;
+        }
+        if (previous == NONE) {
+            postings[node] = postingNext[posting];
+        } else {
+            postingNext[previous] = postingNext[posting];
+        }
+        postingNext[posting] = freePostings;
+        freePostings = posting;
+
+        // Free nodes left with neither keys nor children, from the bottom up
+        for (int i = depth - 1; i > 0; i--) {
+            int current = trail[i];
+            if (postings[current] != NONE || firstChild[current] != NONE) {
+                break;
+            }
+            unlink(trail[i - 1], current);
+            nextSibling[current] = freeNodes;
+            freeNodes = current;
+        }
+        return true;
+    }
+
+    private void link(int parent, int previous, int node, int next) {
+        nextSibling[node] = next;
+        if (previous == NONE) {
+            firstChild[parent] = node;
+        } else {
+            nextSibling[previous] = node;
+        }
+    }
+
+    private void unlink(int parent, int node) {
+        if (firstChild[parent] == node) {
+            firstChild[parent] = nextSibling[node];
+            return;
+        }
+        for (int child = firstChild[parent]; child != NONE; child = nextSibling[child]) {
+            if (nextSibling[child] == node) {
+                nextSibling[child] = nextSibling[node];
+                return;
+            }
+        }
+    }
+
+    private int newNode(int start, int length) {
+        int node;
+        if (freeNodes != NONE) {
+            node = freeNodes;
+            freeNodes = nextSibling[node];
+        } else {
+            if (nodeCount == labelStart.length) {
+                int capacity = nodeCount * 2;
+                labelStart = Arrays.copyOf(labelStart, capacity);
+                labelLength = Arrays.copyOf(labelLength, capacity);
+                leadChar = Arrays.copyOf(leadChar, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                postings = Arrays.copyOf(postings, capacity);
+            }
+            node = nodeCount++;
+        }
+        labelStart[node] = start;
+        labelLength[node] = length;
+        leadChar[node] = (length > 0) ? pool[start] : 0;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        postings[node] = NONE;
+        return node;
+    }
+
+    private int newPosting(int accountNumber, boolean wholeName) {
+        int posting;
+        if (freePostings != NONE) {
+            posting = freePostings;
+            freePostings = postingNext[posting];
+        } else {
+            if (postingCount == postingAccount.length) {
+                int capacity = postingCount * 2;
+                postingAccount = Arrays.copyOf(postingAccount, capacity);
+                postingNext = Arrays.copyOf(postingNext, capacity);
+                postingWholeName = Arrays.copyOf(postingWholeName, capacity);
+            }
+            posting = postingCount++;
+        }
+        postingAccount[posting] = accountNumber;
+        postingWholeName[posting] = wholeName;
+        postingNext[posting] = NONE;
+        return posting;
+    }
+
+    private int appendToPool(String key) {
+        if (poolSize + key.length() > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + key.length()));
+        }
+        int start = poolSize;
+        key.getChars(0, key.length(), pool, start);
+        poolSize += key.length();
+        return start;
+    }
+
+    // Helper method to rebuild the index from its live names, dropping removed names' characters
+    private void compact() {
+        int[] accounts = new int[names];
+        String[] keys = new String[names];
+        int[] count = new int[1];
+        StringBuilder text = new StringBuilder();
+        gatherNames(ROOT, text, accounts, keys, count);
+        reset(Math.max(1 << 10, nodeCount));
+        for (int i = 0; i < count[0]; i++) {
+            int start = appendToPool(keys[i]);
+            insertKey(start, keys[i].length(), accounts[i], true);
+            for (int j = 1; j < keys[i].length(); j++) {
+                if (keys[i].charAt(j - 1) == ' ') {
+                    insertKey(start + j, keys[i].length() - j, accounts[i], false);
+                }
+            }
+            liveChars += keys[i].length();
+        }
+        names = count[0];
+    }
+
+    private void gatherNames(int node, StringBuilder text, int[] accounts, String[] keys, int[] count) {
+        int mark = text.length();
+        text.append(pool, labelStart[node], labelLength[node]);
+        for (int p = postings[node]; p != NONE; p = postingNext[p]) {
+            if (postingWholeName[p]) {
+                accounts[count[0]] = postingAccount[p];
+                keys[count[0]++] = text.toString();
+            }
+        }
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            gatherNames(child, text, accounts, keys, count);
+        }
+        text.setLength(mark);
+    }
+}
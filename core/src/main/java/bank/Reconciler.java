@@ -0,0 +1,311 @@
+package bank;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Class representing the ledger reconciliation job. It replays the structured journal
+// (never its description strings) to recompute every account's expected balance and
+// compares that with the live balances at one consistent cut. The work is split into
+// shards by account hash: every shard streams the journal columns once, keeps state
+// only for its own accounts, and reports order-independent checksums of the expected
+// and live balances, so two shards (or two runs) can be compared by checksum alone.
+class Reconciler {
+    private static final int MAX_REPORTED = 1000; // Discrepancies kept in detail; all are counted
+
+    private final TransactionHistory history;
+    private final ForkJoinPool pool;
+    private final int shardCount;
+
+    // Interface for a source of live balances at the reconciliation cut
+    interface LiveAccounts {
+        void forEach(LiveAccountVisitor visitor);
+    }
+
+    interface LiveAccountVisitor {
+        void visit(int accountNumber, long balanceMinorUnits);
+    }
+
+    public Reconciler(TransactionHistory history, ForkJoinPool pool, int shardCount) {
+        this.history = history;
+        this.pool = pool;
+        this.shardCount = shardCount;
+    }
+
+    // Method to reconcile the first journalSize entries against the live balances captured with them
+    public Report run(int journalSize, LiveAccounts live) {
+        long start = System.nanoTime();
+        List<java.util.concurrent.ForkJoinTask<Shard>> tasks = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard(i);
+            tasks.add(pool.submit(() -> shard.replay(journalSize)));
+        }
+        Shard[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = tasks.get(i).join();
+        }
+
+        Report report = new Report(shards, journalSize);
+        // One pass over the live accounts, each checked against its shard
+        live.forEach((accountNumber, balance) -> shards[shardOf(accountNumber)].compare(accountNumber, balance,
+                report));
+        for (Shard shard : shards) {
+            shard.finish(report);
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private int shardOf(int accountNumber) {
+        return Integer.remainderUnsigned(accountNumber * 0x9E3779B9, shardCount);
+    }
+
+    // Order-independent hash of one account's balance, summed into the shard checksums
+    private static long checksumOf(int accountNumber, long balanceMinorUnits) {
+        long h = accountNumber * 0x9E3779B97F4A7C15L + balanceMinorUnits;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    // Class representing the expected state of one account after replay
+    private static final class Expected {
+        final int accountNumber;
+        long balance; // Minor units
+        boolean open;
+        boolean seenLive;
+
+        Expected(int accountNumber) {
+            this.accountNumber = accountNumber;
+        }
+    }
+
+    // Class representing one shard's replay state and results
+    final class Shard {
+        final int index;
+        final AccountIndex<Expected> accounts = new AccountIndex<>();
+        long entriesReplayed;
+        long openAccounts;
+        long expectedChecksum;
+        long liveChecksum;
+        long discrepancies;
+        private List<Discrepancy> pendingClosingMismatches; // Found during replay, reported in finish
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        // Helper method to stream the journal and apply every entry that touches this shard
+        Shard replay(int journalSize) {
+            List<Discrepancy> closingMismatches = new ArrayList<>();
+            for (int i = 0; i < journalSize; i++) {
+                int source = history.getSource(i);
+                byte type = history.getType(i);
+                boolean ownsSource = shardOf(source) == index;
+                if (type == BankOperation.TRANSFER || type == BankOperation.REVERSAL) {
+                    int destination = history.getDestination(i);
+                    // A reversal without a destination (0) only changes its source
+                    boolean ownsDestination = (type == BankOperation.TRANSFER || destination != 0)
+                            && shardOf(destination) == index;
+                    if (ownsSource || ownsDestination) {
+                        long amount = AccountStore.toMinorUnits(history.getAmount(i));
+                        if (ownsSource) {
+                            account(source).balance -= amount;
+                        }
+                        if (ownsDestination) {
+                            account(destination).balance += amount;
+                        }
+                        entriesReplayed++;
+                    }
+                    continue;
+                }
+                if (!ownsSource) {
+                    continue;
+                }
+                long amount = AccountStore.toMinorUnits(history.getAmount(i));
+                Expected account = account(source);
+                switch (type) {
+                    case BankOperation.CREATE:
+                        account.balance = amount;
+                        account.open = true;
+                        break;
+                    case BankOperation.DEPOSIT:
+                    case BankOperation.INTEREST:
+                    case BankOperation.TRANSFER_IN:
+                        account.balance += amount;
+                        break;
+                    case BankOperation.WITHDRAW:
+                    case BankOperation.FEE:
+                    case BankOperation.TRANSFER_OUT:
+                        account.balance -= amount;
+                        break;
+                    case BankOperation.DELETE:
+                        if (account.balance != amount) {
+                            closingMismatches.add(new Discrepancy(Discrepancy.Kind.CLOSING_BALANCE_MISMATCH,
+                                    source, account.balance, amount));
+                        }
+                        account.balance = 0;
+                        account.open = false;
+                        break;
+                    default:
+                        break;
+                }
+                entriesReplayed++;
+            }
+            pendingClosingMismatches = closingMismatches;
+            return this;
+        }
+
+        private Expected account(int accountNumber) {
+            Expected account = accounts.get(accountNumber);
+            if (account == null) {
+                account = new Expected(accountNumber);
+                accounts.put(accountNumber, account);
+            }
+            return account;
+        }
+
+        // Helper method to check one live account (called from the single comparison pass)
+        void compare(int accountNumber, long liveBalance, Report report) {
+            liveChecksum += checksumOf(accountNumber, liveBalance);
+            Expected account = accounts.get(accountNumber);
+            if (account == null || !account.open) {
+                report.add(this, new Discrepancy(Discrepancy.Kind.UNEXPECTED_ACCOUNT, accountNumber, 0, liveBalance));
+                return;
+            }
+            account.seenLive = true;
+            if (account.balance != liveBalance) {
+                report.add(this, new Discrepancy(Discrepancy.Kind.BALANCE_MISMATCH, accountNumber, account.balance,
+                        liveBalance));
+            }
+        }
+
+        // Helper method to report accounts the journal expects but the bank no longer has
+        void finish(Report report) {
+            for (Discrepancy discrepancy : pendingClosingMismatches) {
+                report.add(this, discrepancy);
+            }
+            pendingClosingMismatches = null;
+            accounts.forEach(account -> {
+                if (account.open) {
+                    openAccounts++;
+                    expectedChecksum += checksumOf(account.accountNumber, account.balance);
+                    if (!account.seenLive) {
+                        report.add(this, new Discrepancy(Discrepancy.Kind.MISSING_ACCOUNT, account.accountNumber,
+                                account.balance, 0));
+                    }
+                }
+            });
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getEntriesReplayed() {
+            return entriesReplayed;
+        }
+
+        public long getOpenAccounts() {
+            return openAccounts;
+        }
+
+        public long getExpectedChecksum() {
+            return expectedChecksum;
+        }
+
+        public long getLiveChecksum() {
+            return liveChecksum;
+        }
+
+        public long getDiscrepancyCount() {
+            return discrepancies;
+        }
+    }
+
+    // Class representing one difference between the journal and the live balances
+    static final class Discrepancy {
+        enum Kind { BALANCE_MISMATCH, MISSING_ACCOUNT, UNEXPECTED_ACCOUNT, CLOSING_BALANCE_MISMATCH }
+
+        final Kind kind;
+        final int accountNumber;
+        final long expected; // Minor units
+        final long actual;   // Minor units
+
+        Discrepancy(Kind kind, int accountNumber, long expected, long actual) {
+            this.kind = kind;
+            this.accountNumber = accountNumber;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " account " + accountNumber + ": expected "
+                    + AccountStore.fromMinorUnits(expected) + ", found "
+                    + AccountStore.fromMinorUnits(actual);
+        }
+    }
+
+    // Class representing the result of a reconciliation run
+    static final class Report {
+        private final Shard[] shards;
+        private final int journalEntries;
+        private final List<Discrepancy> discrepancies = new ArrayList<>();
+        private long discrepancyCount;
+        private long elapsedNanos;
+
+        Report(Shard[] shards, int journalEntries) {
+            this.shards = shards;
+            this.journalEntries = journalEntries;
+        }
+
+        void add(Shard shard, Discrepancy discrepancy) {
+            shard.discrepancies++;
+            discrepancyCount++;
+            if (discrepancies.size() < MAX_REPORTED) {
+                discrepancies.add(discrepancy);
+            }
+        }
+
+        public boolean isBalanced() {
+            return discrepancyCount == 0;
+        }
+
+        public long getDiscrepancyCount() {
+            return discrepancyCount;
+        }
+
+        // Method to get the first discrepancies found (at most 1000)
+        public List<Discrepancy> getDiscrepancies() {
+            return discrepancies;
+        }
+
+        public Shard[] getShards() {
+            return shards;
+        }
+
+        public int getJournalEntries() {
+            return journalEntries;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public String toText() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("Reconciled %d journal entries in %.1f ms: %s%n", journalEntries,
+                    elapsedNanos / 1e6, isBalanced() ? "balanced" : discrepancyCount + " discrepancies"));
+            for (Shard shard : shards) {
+                out.append(String.format("shard %3d  accounts %10d  entries %12d  expected %016x  live %016x  %s%n",
+                        shard.index, shard.openAccounts, shard.entriesReplayed, shard.expectedChecksum,
+                        shard.liveChecksum, (shard.discrepancies == 0) ? "ok" : shard.discrepancies + " differ"));
+            }
+            for (Discrepancy discrepancy : discrepancies) {
+                out.append(discrepancy).append('\n');
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package bank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Class representing a shard in another process, reached over TCP. Calls from many
+// threads share a small pool of connections, one request in flight per connection.
+class RemoteShard implements ShardClient {
+    private final InetSocketAddress address;
+    private final ArrayBlockingQueue<Connection> idle;
+    private final AtomicInteger opened = new AtomicInteger();
+    private final int maxConnections;
+
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 12));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 12));
+        }
+    }
+
+    public RemoteShard(InetSocketAddress address, int maxConnections) {
+        this.address = address;
+        this.maxConnections = maxConnections;
+        this.idle = new ArrayBlockingQueue<>(maxConnections);
+    }
+
+    @Override
+    public int apply(BankOperation operation) throws IOException {
+        return call(ShardProtocol.APPLY, 0, operation.type, operation.accountNumber, operation.targetAccountNumber,
+                operation.amount, operation.name, null);
+    }
+
+    @Override
+    public double getBalance(int accountNumber) throws IOException {
+        double[] balance = new double[1];
+        call(ShardProtocol.BALANCE, 0, (byte) 0, accountNumber, 0, 0, null, balance);
+        return balance[0];
+    }
+
+    @Override
+    public int prepareTransferLeg(long transactionId, byte type, int accountNumber, int remoteAccountNumber,
+            double amount) throws IOException {
+        return call(ShardProtocol.PREPARE, transactionId, type, accountNumber, remoteAccountNumber, amount, null,
+                null);
+    }
+
+    @Override
+    public int commitTransferLeg(long transactionId) throws IOException {
+        return call(ShardProtocol.COMMIT, transactionId, (byte) 0, 0, 0, 0, null, null);
+    }
+
+    @Override
+    public int abortTransferLeg(long transactionId) throws IOException {
+        return call(ShardProtocol.ABORT, transactionId, (byte) 0, 0, 0, 0, null, null);
+    }
+
+    // Helper method to send one request and wait for its response
+    private int call(byte command, long transactionId, byte type, int accountNumber, int targetAccountNumber,
+            double amount, String name, double[] balance) throws IOException {
+        Connection connection = borrow();
+        boolean healthy = false;
+        try {
+            connection.out.writeByte(command);
+            connection.out.writeLong(transactionId);
+            connection.out.writeByte(type);
+            connection.out.writeInt(accountNumber);
+            connection.out.writeInt(targetAccountNumber);
+            connection.out.writeDouble(amount);
+            connection.out.writeUTF((name != null) ? name : "");
+            connection.out.flush();
+            int result = connection.in.readInt();
+            double value = connection.in.readDouble();
+            if (balance != null) {
+                balance[0] = value;
+            }
+            healthy = true;
+            return result;
+        } finally {
+            if (healthy) {
+                idle.offer(connection);
+            } else {
+                opened.decrementAndGet();
+                connection.socket.close(); // The stream is in an unknown state
+            }
+        }
+    }
+
+    private Connection borrow() throws IOException {
+        Connection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        if (opened.incrementAndGet() <= maxConnections) {
+            try {
+                return new Connection(address);
+            } catch (IOException e) {
+                opened.decrementAndGet();
+                throw e;
+            }
+        }
+        opened.decrementAndGet();
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException("Interrupted while waiting for a shard connection");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.socket.close();
+        }
+    }
+}
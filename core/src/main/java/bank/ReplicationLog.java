@@ -0,0 +1,122 @@
+package bank;
+
+// Class representing the primary's backlog of committed operations for replicas. Records are
+// numbered from 1 in commit order and kept in a ring; a replica that falls further behind
+// than the ring holds is caught up from a snapshot instead.
+class ReplicationLog {
+    private final long logId; // Tells a replica whether its position refers to this log
+    private final int mask;
+    private final byte[] types;
+    private final int[] accountNumbers;
+    private final int[] targetAccountNumbers;
+    private final double[] amounts;
+    private final String[] names;
+    private final long[] commitMillis;
+    private long lastSequence;
+    private int waiting; // Readers blocked in read()
+    private boolean closed;
+
+    // Class representing records copied out of the log by one reader
+    static final class Batch {
+        final long[] sequences;
+        final long[] commitMillis;
+        final byte[] types;
+        final int[] accountNumbers;
+        final int[] targetAccountNumbers;
+        final double[] amounts;
+        final String[] names;
+
+        Batch(int capacity) {
+            sequences = new long[capacity];
+            commitMillis = new long[capacity];
+            types = new byte[capacity];
+            accountNumbers = new int[capacity];
+            targetAccountNumbers = new int[capacity];
+            amounts = new double[capacity];
+            names = new String[capacity];
+        }
+    }
+
+    // Constructor to keep the most recent backlogRecords records (rounded up to a power of two)
+    public ReplicationLog(int backlogRecords) {
+        int capacity = Integer.highestOneBit(Math.max(2, backlogRecords - 1)) << 1;
+        logId = new java.security.SecureRandom().nextLong();
+        mask = capacity - 1;
+        types = new byte[capacity];
+        accountNumbers = new int[capacity];
+        targetAccountNumbers = new int[capacity];
+        amounts = new double[capacity];
+        names = new String[capacity];
+        commitMillis = new long[capacity];
+    }
+
+    // Method to append a committed operation (called while its locks are held); returns its sequence number
+    public synchronized long append(byte type, int accountNumber, int targetAccountNumber, String name,
+            double amount) {
+        long sequence = ++lastSequence;
+        int index = (int) sequence & mask;
+        types[index] = type;
+        accountNumbers[index] = accountNumber;
+        targetAccountNumbers[index] = targetAccountNumber;
+        amounts[index] = amount;
+        names[index] = name;
+        commitMillis[index] = System.currentTimeMillis();
+        if (waiting > 0) {
+            notifyAll();
+        }
+        return sequence;
+    }
+
+    // Method to copy the records after a sequence number into a batch, waiting up to maxWaitMillis
+    // for the first one. Returns the number copied, or -1 if some were already overwritten.
+    public synchronized int read(long afterSequence, Batch batch, long maxWaitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        while (lastSequence == afterSequence && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return 0;
+            }
+            waiting++;
+            try {
+                wait(remaining);
+            } finally {
+                waiting--;
+            }
+        }
+        if (afterSequence + 1 < getOldestSequence()) {
+            return -1;
+        }
+        int count = (int) Math.min(lastSequence - afterSequence, batch.sequences.length);
+        for (int i = 0; i < count; i++) {
+            long sequence = afterSequence + 1 + i;
+            int index = (int) sequence & mask;
+            batch.sequences[i] = sequence;
+            batch.commitMillis[i] = commitMillis[index];
+            batch.types[i] = types[index];
+            batch.accountNumbers[i] = accountNumbers[index];
+            batch.targetAccountNumbers[i] = targetAccountNumbers[index];
+            batch.amounts[i] = amounts[index];
+            batch.names[i] = names[index];
+        }
+        return count;
+    }
+
+    public long getLogId() {
+        return logId;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    // Method to get the oldest sequence number still held
+    public synchronized long getOldestSequence() {
+        return Math.max(1, lastSequence - mask);
+    }
+
+    // Method to wake every blocked reader for good
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
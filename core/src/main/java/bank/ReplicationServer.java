@@ -0,0 +1,127 @@
+package bank;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+
+// Class representing the primary side of replication: ships the replication log to each
+// connected replica over TCP, one sender thread per replica.
+// Replica hello: [long logId][long appliedSequence]
+// Frames sent:   SNAPSHOT [long logId][long sequence][int journalSize]{byte type, int source, int destination,
+//                           double amount, long timestamp}[int accounts]{int account, double balance, UTF name}
+//                RECORD   [long sequence][long commitMillis][byte type][int account][int target][double amount][UTF name]
+//                HEARTBEAT [long primarySequence][long primaryMillis]
+class ReplicationServer implements AutoCloseable {
+    static final byte SNAPSHOT = 'S';
+    static final byte RECORD = 'R';
+    static final byte HEARTBEAT = 'H';
+    static final long HEARTBEAT_MILLIS = 100;
+    private static final int BATCH_RECORDS = 512;
+
+    private final Bank bank;
+    private final ReplicationLog log;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> replicas = java.util.concurrent.ConcurrentHashMap.newKeySet();
+
+    public ReplicationServer(Bank bank, ReplicationLog log, int port) throws IOException {
+        this.bank = bank;
+        this.log = log;
+        this.serverSocket = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptReplicas, "replication-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    private void acceptReplicas() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                replicas.add(socket);
+                Thread sender = new Thread(() -> ship(socket), "replication-sender");
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Replication accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    // Helper method to bring one replica up to date and then stream every new record to it
+    private void ship(Socket socket) {
+        ReplicationLog.Batch batch = new ReplicationLog.Batch(BATCH_RECORDS);
+        try (DataInputStream in = new DataInputStream(socket.getInputStream());
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(), 1 << 16))) {
+            long replicaLogId = in.readLong();
+            long sent = in.readLong();
+            // Resume from the replica's position only if it is in this log and still held
+            if (replicaLogId != log.getLogId() || sent > log.getLastSequence()
+                    || sent + 1 < log.getOldestSequence()) {
+                sent = bank.writeReplicationSnapshot(out, log);
+            }
+            while (!serverSocket.isClosed()) {
+                int count = log.read(sent, batch, HEARTBEAT_MILLIS);
+                if (count < 0) {
+                    // This replica fell behind the backlog: start it over from a snapshot
+                    sent = bank.writeReplicationSnapshot(out, log);
+                    continue;
+                }
+                for (int i = 0; i < count; i++) {
+                    out.writeByte(RECORD);
+                    out.writeLong(batch.sequences[i]);
+                    out.writeLong(batch.commitMillis[i]);
+                    out.writeByte(batch.types[i]);
+                    out.writeInt(batch.accountNumbers[i]);
+                    out.writeInt(batch.targetAccountNumbers[i]);
+                    out.writeDouble(batch.amounts[i]);
+                    out.writeUTF((batch.names[i] != null) ? batch.names[i] : "");
+                    batch.names[i] = null;
+                }
+                if (count > 0) {
+                    sent = batch.sequences[count - 1];
+                }
+                // Every batch ends with the primary's position, so the replica can measure its lag
+                out.writeByte(HEARTBEAT);
+                out.writeLong(log.getLastSequence());
+                out.writeLong(System.currentTimeMillis());
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The replica disconnected; it resumes from its own position when it reconnects
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            replicas.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        log.close();
+        for (Socket socket : replicas) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package bank;
+
+import java.io.IOException;
+
+// Interface for talking to one shard, either in the same process or over a socket
+interface ShardClient extends AutoCloseable {
+    // Method to apply a single-account operation on the shard
+    int apply(BankOperation operation) throws IOException;
+
+    // Method to get an account's balance, or NaN if the shard has no such account
+    double getBalance(int accountNumber) throws IOException;
+
+    int prepareTransferLeg(long transactionId, byte type, int accountNumber, int remoteAccountNumber,
+            double amount) throws IOException;
+
+    int commitTransferLeg(long transactionId) throws IOException;
+
+    int abortTransferLeg(long transactionId) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
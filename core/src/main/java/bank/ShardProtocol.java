@@ -0,0 +1,15 @@
+package bank;
+
+// Class representing the wire protocol between a ShardServer and a RemoteShard.
+// Request:  [byte command][long transactionId][byte type][int account][int target][double amount][UTF name]
+// Response: [int result][double balance]
+final class ShardProtocol {
+    static final byte APPLY = 1;
+    static final byte BALANCE = 2;
+    static final byte PREPARE = 3;
+    static final byte COMMIT = 4;
+    static final byte ABORT = 5;
+
+    private ShardProtocol() {
+    }
+}
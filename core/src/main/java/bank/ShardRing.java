@@ -0,0 +1,57 @@
+package bank;
+
+import java.util.*;
+
+// Class representing a consistent-hash ring that assigns account numbers to shards.
+// Each shard owns many points on the ring, so accounts spread evenly and adding a
+// shard moves only about 1/N of them.
+class ShardRing {
+    private static final int POINTS_PER_SHARD = 128;
+
+    private final int[] points; // Sorted ring positions
+    private final int[] owners; // Shard owning each position
+    private final int shardCount;
+
+    public ShardRing(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardCount = shardCount;
+        long[] entries = new long[shardCount * POINTS_PER_SHARD];
+        int count = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int point = 0; point < POINTS_PER_SHARD; point++) {
+                int position = hash(shard * 0x10000 + point);
+                // Pack position and owner so one sort orders both
+                entries[count++] = ((long) position << 32) | shard;
+            }
+        }
+        Arrays.sort(entries);
+        points = new int[count];
+        owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = (int) (entries[i] >> 32);
+            owners[i] = (int) entries[i];
+        }
+    }
+
+    // Method to get the shard that owns an account: the first ring point at or after its hash
+    public int shardOf(int accountNumber) {
+        int index = Arrays.binarySearch(points, hash(accountNumber));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[(index == points.length) ? 0 : index];
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+}
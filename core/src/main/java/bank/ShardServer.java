@@ -0,0 +1,117 @@
+package bank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+
+// Class representing a shard process: serves one local bank to coordinators over TCP,
+// one thread per connection
+class ShardServer implements AutoCloseable {
+    private final LocalShard shard;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final Set<Socket> connections = java.util.concurrent.ConcurrentHashMap.newKeySet();
+
+    public ShardServer(Bank bank, int port) throws IOException {
+        this.shard = new LocalShard(bank);
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::acceptConnections, "shard-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "shard-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Shard server accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    // Helper method to answer requests on one connection until it closes
+    private void serve(Socket socket) {
+        BankOperation operation = new BankOperation();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(), 1 << 16))) {
+            while (true) {
+                byte command;
+                try {
+                    command = in.readByte();
+                } catch (EOFException e) {
+                    return; // Client closed the connection
+                }
+                long transactionId = in.readLong();
+                byte type = in.readByte();
+                int accountNumber = in.readInt();
+                int targetAccountNumber = in.readInt();
+                double amount = in.readDouble();
+                String name = in.readUTF();
+                int result = BankOperation.INVALID_OPERATION;
+                double balance = Double.NaN;
+                switch (command) {
+                    case ShardProtocol.APPLY:
+                        result = shard.apply(operation.set(type, accountNumber, targetAccountNumber,
+                                name.isEmpty() ? null : name, amount));
+                        break;
+                    case ShardProtocol.BALANCE:
+                        balance = shard.getBalance(accountNumber);
+                        result = Double.isNaN(balance) ? BankOperation.ACCOUNT_NOT_FOUND : BankOperation.SUCCESS;
+                        break;
+                    case ShardProtocol.PREPARE:
+                        result = shard.prepareTransferLeg(transactionId, type, accountNumber, targetAccountNumber,
+                                amount);
+                        break;
+                    case ShardProtocol.COMMIT:
+                        result = shard.commitTransferLeg(transactionId);
+                        break;
+                    case ShardProtocol.ABORT:
+                        result = shard.abortTransferLeg(transactionId);
+                        break;
+                    default:
+                        break;
+                }
+                out.writeInt(result);
+                out.writeDouble(balance);
+                if (in.available() == 0) {
+                    out.flush(); // Pipelined requests are answered with one write
+                }
+            }
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                System.err.println("Shard connection failed: " + e);
+            }
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package bank;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Class representing the coordinator of a partitioned ledger. Accounts are assigned to
+// shards by a consistent-hash ring; single-account operations and same-shard transfers
+// go straight to the owning shard, and transfers between shards use two-phase commit:
+//   1. log BEGIN, then prepare the debit leg (funds leave the source) and the credit leg;
+//   2. log the decision (COMMIT if both legs prepared, otherwise ABORT);
+//   3. commit or abort both legs, then log END.
+// The recovery log is replayed on startup: a transaction with a COMMIT decision is
+// committed again and any other unfinished one is aborted. Commit and abort are
+// idempotent on the shards, so funds are never created or lost. A transaction whose
+// legs cannot be resolved because a shard is unreachable is retried by later transfers.
+// BEGIN and decision records are group committed: transfers on different shards that
+// log at the same time share one fsync.
+class ShardedBank implements AutoCloseable {
+    private static final byte LOG_BEGIN = 1;
+    private static final byte LOG_COMMIT = 2;
+    private static final byte LOG_ABORT = 3;
+    private static final byte LOG_END = 4;
+    private static final int LOG_RECORD_BYTES = 4 + 1 + 8 + 4 + 4 + 8; // crc, kind, id, source, destination, amount
+    private static final long LOG_COMPACT_BYTES = 64L << 20;
+
+    private final ShardRing ring;
+    private final ShardClient[] shards;
+    private final FileChannel recoveryLog;
+    private ByteBuffer pendingLog = ByteBuffer.allocate(LOG_RECORD_BYTES * 64); // Records for the next group commit
+    private ByteBuffer spareLog = ByteBuffer.allocate(LOG_RECORD_BYTES * 64);   // Batch being written
+    private final CRC32 crc = new CRC32();
+    private long nextTransactionId;
+    private int inFlight;        // Cross-shard transfers between BEGIN and END, guarded by this
+    private long loggedRecords;  // Records appended to the recovery log, guarded by this
+    private long durableRecords; // Records known to be on disk, guarded by this
+    private boolean flushing;    // A thread is writing a batch, guarded by this
+    private IOException logFailure;
+    // Decided transactions whose legs could not all be resolved: id -> {commit ? 1 : 0, source shard, destination shard}
+    private final java.util.concurrent.ConcurrentHashMap<Long, int[]> unresolved =
+            new java.util.concurrent.ConcurrentHashMap<>();
+
+    // Constructor to coordinate the given shards, recovering unfinished transfers from the log file
+    public ShardedBank(ShardClient[] shards, Path recoveryLogFile) throws IOException {
+        this.shards = shards;
+        this.ring = new ShardRing(shards.length);
+        this.recoveryLog = FileChannel.open(recoveryLogFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        recover();
+    }
+
+    // Method to start N in-process shards, each a separate Bank with its own locks and journal
+    public static ShardedBank inProcess(int shardCount, Path recoveryLogFile) throws IOException {
+        ShardClient[] shards = new ShardClient[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LocalShard(new Bank());
+        }
+        return new ShardedBank(shards, recoveryLogFile);
+    }
+
+    // Method to connect to shard processes listening on loopback ports (see --shard-server)
+    public static ShardedBank connect(int[] ports, Path recoveryLogFile) throws IOException {
+        ShardClient[] shards = new ShardClient[ports.length];
+        for (int i = 0; i < ports.length; i++) {
+            shards[i] = new RemoteShard(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    ports[i]), 64);
+        }
+        return new ShardedBank(shards, recoveryLogFile);
+    }
+
+    public int shardOf(int accountNumber) {
+        return ring.shardOf(accountNumber);
+    }
+
+    public ShardClient getShard(int index) {
+        return shards[index];
+    }
+
+    public int createAccount(int accountNumber, String name, double balance) throws IOException {
+        return route(BankOperation.create(accountNumber, name, balance));
+    }
+
+    public int deposit(int accountNumber, double amount) throws IOException {
+        return route(BankOperation.deposit(accountNumber, amount));
+    }
+
+    public int withdraw(int accountNumber, double amount) throws IOException {
+        return route(BankOperation.withdraw(accountNumber, amount));
+    }
+
+    public int deleteAccount(int accountNumber) throws IOException {
+        return route(BankOperation.delete(accountNumber));
+    }
+
+    // Method to get an account's balance, or NaN if it does not exist
+    public double getBalance(int accountNumber) throws IOException {
+        return shards[ring.shardOf(accountNumber)].getBalance(accountNumber);
+    }
+
+    // Method to move money between two accounts on any shards
+    public int transfer(int sourceAccountNumber, int destinationAccountNumber, double amount) throws IOException {
+        int sourceShard = ring.shardOf(sourceAccountNumber);
+        int destinationShard = ring.shardOf(destinationAccountNumber);
+        if (sourceShard == destinationShard) {
+            return shards[sourceShard].apply(
+                    BankOperation.transfer(sourceAccountNumber, destinationAccountNumber, amount));
+        }
+        retryUnresolved();
+
+        long transactionId = begin(sourceAccountNumber, destinationAccountNumber, amount);
+        int result;
+        try {
+            result = shards[sourceShard].prepareTransferLeg(transactionId, BankOperation.TRANSFER_OUT,
+                    sourceAccountNumber, destinationAccountNumber, amount);
+            if (result == BankOperation.SUCCESS) {
+                result = shards[destinationShard].prepareTransferLeg(transactionId, BankOperation.TRANSFER_IN,
+                        destinationAccountNumber, sourceAccountNumber, amount);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Either leg may be prepared, and neither can be committed without a logged decision: abort
+            try {
+                awaitLogged(writeLog(LOG_ABORT, transactionId, sourceAccountNumber, destinationAccountNumber,
+                        amount));
+            } catch (IOException logError) {
+                e.addSuppressed(logError); // Recovery aborts a transaction that has no decision anyway
+            }
+            resolveOrDefer(transactionId, false, sourceShard, destinationShard);
+            throw e;
+        }
+        boolean commit = result == BankOperation.SUCCESS;
+        awaitLogged(writeLog(commit ? LOG_COMMIT : LOG_ABORT, transactionId, sourceAccountNumber,
+                destinationAccountNumber, amount));
+        if (!resolveOrDefer(transactionId, commit, sourceShard, destinationShard)) {
+            throw new IOException("Transaction " + transactionId + " is decided but a shard is unreachable; "
+                    + "it is resolved when the shard is back");
+        }
+        return result;
+    }
+
+    // Method to get the number of decided transactions still waiting for an unreachable shard
+    public int getUnresolvedCount() {
+        return unresolved.size();
+    }
+
+    // Method to resolve again every transaction a shard failure left unresolved; returns how many remain
+    public int retryUnresolved() {
+        for (Long transactionId : unresolved.keySet()) {
+            int[] transaction = unresolved.remove(transactionId);
+            if (transaction != null) {
+                resolveOrDefer(transactionId, transaction[0] == 1, transaction[1], transaction[2]);
+            }
+        }
+        return unresolved.size();
+    }
+
+    // Helper method to route a single-account operation to its shard
+    private int route(BankOperation operation) throws IOException {
+        return shards[ring.shardOf(operation.accountNumber)].apply(operation);
+    }
+
+    // Helper method to resolve a decided transaction, or keep it for a later retry if a shard fails.
+    // It stays in flight until resolved, so compaction never drops its records.
+    private boolean resolveOrDefer(long transactionId, boolean commit, int sourceShard, int destinationShard) {
+        try {
+            resolve(transactionId, commit, sourceShard, destinationShard);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            unresolved.put(transactionId, new int[] {commit ? 1 : 0, sourceShard, destinationShard});
+            return false;
+        }
+    }
+
+    // Helper method to finish both legs of a decided transaction and log END
+    private void resolve(long transactionId, boolean commit, int sourceShard, int destinationShard)
+            throws IOException {
+        if (commit) {
+            shards[sourceShard].commitTransferLeg(transactionId);
+            shards[destinationShard].commitTransferLeg(transactionId);
+        } else {
+            shards[sourceShard].abortTransferLeg(transactionId);
+            shards[destinationShard].abortTransferLeg(transactionId);
+        }
+        end(transactionId);
+    }
+
+    private long begin(int sourceAccountNumber, int destinationAccountNumber, double amount) throws IOException {
+        long transactionId;
+        long record;
+        synchronized (this) {
+            transactionId = ++nextTransactionId;
+            inFlight++;
+            record = writeLog(LOG_BEGIN, transactionId, sourceAccountNumber, destinationAccountNumber, amount);
+        }
+        awaitLogged(record);
+        return transactionId;
+    }
+
+    private synchronized void end(long transactionId) throws IOException {
+        // A lost END only makes recovery resolve the transaction again, which is harmless, so it is not waited for
+        writeLog(LOG_END, transactionId, 0, 0, 0);
+        inFlight--;
+        if (inFlight == 0 && !flushing && recoveryLog.size() > LOG_COMPACT_BYTES) {
+            // Nothing is unfinished, so no record is needed any more; keep the id counter moving forward
+            pendingLog.clear();
+            durableRecords = loggedRecords;
+            recoveryLog.truncate(0);
+            recoveryLog.position(0);
+            writeLog(LOG_END, nextTransactionId, 0, 0, 0);
+            pendingLog.flip();
+            while (pendingLog.hasRemaining()) {
+                recoveryLog.write(pendingLog);
+            }
+            pendingLog.clear();
+            recoveryLog.force(false);
+            durableRecords = loggedRecords;
+        }
+    }
+
+    // Helper method to add one record to the next group commit; returns its number for awaitLogged
+    private synchronized long writeLog(byte kind, long transactionId, int sourceAccountNumber,
+            int destinationAccountNumber, double amount) throws IOException {
+        if (logFailure != null) {
+            throw new IOException("The recovery log failed", logFailure);
+        }
+        if (pendingLog.remaining() < LOG_RECORD_BYTES) {
+            ByteBuffer larger = ByteBuffer.allocate(pendingLog.capacity() * 2);
+            pendingLog.flip();
+            larger.put(pendingLog);
+            pendingLog = larger;
+        }
+        int start = pendingLog.position();
+        pendingLog.putInt(0);
+        pendingLog.put(kind).putLong(transactionId).putInt(sourceAccountNumber).putInt(destinationAccountNumber)
+                .putDouble(amount);
+        crc.reset();
+        crc.update(pendingLog.array(), start + 4, LOG_RECORD_BYTES - 4);
+        pendingLog.putInt(start, (int) crc.getValue());
+        return ++loggedRecords;
+    }
+
+    // Helper method to wait until a record is on disk. The first waiter that finds no write running
+    // writes every pending record with one fsync while the others wait for it, as the write-ahead
+    // log's flusher does.
+    private void awaitLogged(long record) throws IOException {
+        while (true) {
+            ByteBuffer batch;
+            long batchEnd;
+            synchronized (this) {
+                boolean interrupted = false;
+                while (durableRecords < record && flushing && logFailure == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if (durableRecords >= record) {
+                    return;
+                }
+                if (logFailure != null) {
+                    throw new IOException("The recovery log failed", logFailure);
+                }
+                flushing = true;
+                batch = pendingLog;
+                pendingLog = spareLog;
+                spareLog = batch;
+                batchEnd = loggedRecords;
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    recoveryLog.write(batch);
+                }
+                recoveryLog.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    logFailure = e;
+                    flushing = false;
+                    notifyAll();
+                }
+                throw e;
+            } finally {
+                batch.clear();
+            }
+            synchronized (this) {
+                durableRecords = batchEnd;
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    // Helper method to finish every transaction the log shows as started but not ended
+    private void recover() throws IOException {
+        Map<Long, long[]> unfinished = new LinkedHashMap<>(); // id -> {decision, source, destination}
+        Map<Long, Double> amounts = new HashMap<>();
+        ByteBuffer record = ByteBuffer.allocate(LOG_RECORD_BYTES);
+        long position = 0;
+        recoveryLog.position(0);
+        while (true) {
+            record.clear();
+            while (record.hasRemaining() && recoveryLog.read(record) > 0) {
+                // Keep reading until the record is complete or the file ends
+            }
+            if (record.hasRemaining()) {
+                break; // Clean end, or a record torn by a crash
+            }
+            crc.reset();
+            crc.update(record.array(), 4, LOG_RECORD_BYTES - 4);
+            if (record.getInt(0) != (int) crc.getValue()) {
+                break;
+            }
+            byte kind = record.get(4);
+            long transactionId = record.getLong(5);
+            nextTransactionId = Math.max(nextTransactionId, transactionId);
+            switch (kind) {
+                case LOG_BEGIN:
+                    unfinished.put(transactionId, new long[] {LOG_BEGIN, record.getInt(13), record.getInt(17)});
+                    amounts.put(transactionId, record.getDouble(21));
+                    break;
+                case LOG_COMMIT:
+                case LOG_ABORT:
+                    long[] transaction = unfinished.get(transactionId);
+                    if (transaction != null) {
+                        transaction[0] = kind;
+                    }
+                    break;
+                default:
+                    unfinished.remove(transactionId);
+                    amounts.remove(transactionId);
+                    break;
+            }
+            position += LOG_RECORD_BYTES;
+        }
+        recoveryLog.truncate(position); // Drop a torn tail
+        recoveryLog.position(position);
+
+        for (Map.Entry<Long, long[]> entry : unfinished.entrySet()) {
+            long[] transaction = entry.getValue();
+            int source = (int) transaction[1];
+            int destination = (int) transaction[2];
+            boolean commit = transaction[0] == LOG_COMMIT;
+            if (transaction[0] == LOG_BEGIN) {
+                // No decision was logged, so no leg can have been committed: abort
+                awaitLogged(writeLog(LOG_ABORT, entry.getKey(), source, destination, amounts.get(entry.getKey())));
+            }
+            synchronized (this) {
+                inFlight++;
+            }
+            resolveOrDefer(entry.getKey(), commit, ring.shardOf(source), ring.shardOf(destination));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ShardClient shard : shards) {
+            shard.close();
+        }
+        synchronized (this) {
+            if (logFailure == null) {
+                pendingLog.flip(); // END records nobody waited for
+                while (pendingLog.hasRemaining()) {
+                    recoveryLog.write(pendingLog);
+                }
+                pendingLog.clear();
+            }
+        }
+        recoveryLog.close();
+    }
+}
@@ -0,0 +1,166 @@
+package bank;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Class representing a pool of tellers that take operations from a CustomerQueue and run
+// them against the bank. Each teller drains a batch of waiting requests and applies it
+// with one durability wait, then completes the callers' futures. Tellers are virtual
+// threads when the runtime supports them and daemon platform threads otherwise.
+class TellerPool {
+    private static final int DRAIN_BATCH = 64;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final Bank bank;
+    private final CustomerQueue<Request> customerQueue;
+    private final Thread[] tellers;
+    private volatile boolean running = true;
+    private final AtomicInteger submitting = new AtomicInteger(); // Callers between checkRunning() and enqueueing
+
+    // Class representing one queued operation and the future that receives its result code
+    static final class Request {
+        final BankOperation operation;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Request(BankOperation operation) {
+            this.operation = operation;
+        }
+    }
+
+    public TellerPool(Bank bank, CustomerQueue<Request> customerQueue, int tellerCount) {
+        this.bank = bank;
+        this.customerQueue = customerQueue;
+        this.tellers = new Thread[tellerCount];
+        ThreadFactory factory = tellerThreadFactory();
+        for (int i = 0; i < tellerCount; i++) {
+            tellers[i] = factory.newThread(this::serveCustomers);
+            tellers[i].setName("bank-teller-" + i);
+            tellers[i].start();
+        }
+    }
+
+    // Method to queue an operation, waiting while the queue is full
+    public CompletableFuture<Integer> submit(BankOperation operation) throws InterruptedException {
+        Request request = new Request(operation);
+        submitting.incrementAndGet();
+        try {
+            checkRunning();
+            customerQueue.put(request);
+        } finally {
+            submitting.decrementAndGet();
+        }
+        return request.result;
+    }
+
+    // Method to queue an operation, waiting up to the timeout for room; returns null if the queue stayed full
+    public CompletableFuture<Integer> submit(BankOperation operation, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Request request = new Request(operation);
+        submitting.incrementAndGet();
+        try {
+            checkRunning();
+            return customerQueue.offer(request, timeout, unit) ? request.result : null;
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    // Method to stop the tellers once the requests already queued have been served
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread teller : tellers) {
+            teller.join();
+        }
+        // A caller that passed checkRunning() before the flag may still be enqueueing
+        while (submitting.get() > 0) {
+            Thread.sleep(1);
+        }
+        // Anything queued after the tellers saw the flag is failed rather than silently dropped
+        Request request;
+        while ((request = customerQueue.poll()) != null) {
+            request.result.completeExceptionally(new IllegalStateException("Teller pool is shut down"));
+        }
+    }
+
+    public int getTellerCount() {
+        return tellers.length;
+    }
+
+    public boolean usesVirtualThreads() {
+        return tellers.length > 0 && isVirtual(tellers[0]);
+    }
+
+    // Helper method run by every teller
+    private void serveCustomers() {
+        Request[] batch = new Request[DRAIN_BATCH];
+        BankOperation[] operations = new BankOperation[DRAIN_BATCH];
+        int[] results = new int[DRAIN_BATCH];
+        while (true) {
+            int count = customerQueue.drainTo(batch, DRAIN_BATCH);
+            if (count == 0) {
+                if (!running) {
+                    return;
+                }
+                try {
+                    Request next = customerQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        continue;
+                    }
+                    batch[0] = next;
+                    count = 1;
+                    while (count < DRAIN_BATCH && (next = customerQueue.poll()) != null) {
+                        batch[count++] = next;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                operations[i] = batch[i].operation;
+            }
+            try {
+                bank.applyBatch(operations, count, results);
+                for (int i = 0; i < count; i++) {
+                    batch[i].result.complete(results[i]);
+                }
+            } catch (RuntimeException e) {
+                for (int i = 0; i < count; i++) {
+                    batch[i].result.completeExceptionally(e);
+                }
+            }
+            Arrays.fill(batch, 0, count, null);
+            Arrays.fill(operations, 0, count, null);
+        }
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throw new IllegalStateException("Teller pool is shut down");
+        }
+    }
+
+    // Helper method to get a virtual-thread factory through reflection (Java 21+), or daemon platform threads
+    private static ThreadFactory tellerThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package bank;
+
+import java.util.*;
+
+// Class representing the transaction journal: an append-only log of structured entries.
+// Each field is stored in its own primitive column, split into fixed-size chunks, so
+// recording a transaction writes a few array slots and allocates nothing (a new chunk
+// is allocated once every CHUNK_SIZE entries). Text is produced only when a record is
+// rendered. An entry costs 41 bytes: type, source, destination, amount, timestamp,
+// sequence number and two per-account chain links.
+//
+// Every entry is also linked into a newest-first chain for each account it touches
+// (both sides of a transfer), so one account's statement is read by following its
+// chain rather than scanning the whole journal.
+class TransactionHistory {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private byte[][] types;
+    private int[][] sources;
+    private int[][] destinations;
+    private double[][] amounts;
+    private long[][] timestamps;
+    private long[][] sequences;
+    private int[][] previousForSource;      // Previous entry touching the source account, or -1
+    private int[][] previousForDestination; // Previous entry touching the destination account, or -1
+    private final AccountIndex<AccountChain> chains = new AccountIndex<>(); // Account -> newest entry
+    private volatile int size; // Published after an entry's columns are written
+    private long nextSequence;
+    private long lastTimestamp;
+    private long stampedSequence = -1; // Sequence number for the next entry while a log is replayed, or -1
+    private long stampedTimestamp;
+
+    // Constructor to initialize an empty transaction history
+    public TransactionHistory() {
+        types = new byte[0][];
+        sources = new int[0][];
+        destinations = new int[0][];
+        amounts = new double[0][];
+        timestamps = new long[0][];
+        sequences = new long[0][];
+        previousForSource = new int[0][];
+        previousForDestination = new int[0][];
+        size = 0;
+        nextSequence = 1;
+    }
+
+    // Method to record a transaction; returns its sequence number.
+    // For transfers the source pays and the destination receives; other types use only the source.
+    public long recordTransaction(byte type, int source, int destination, double amount) {
+        return recordTransaction(type, source, destination, amount, System.currentTimeMillis());
+    }
+
+    // Method to record a transaction that happened at a given time (such as one copied from another bank)
+    public synchronized long recordTransaction(byte type, int source, int destination, double amount,
+            long timestamp) {
+        int index = size;
+        int chunk = index >>> CHUNK_BITS;
+        if (chunk == types.length) {
+            addChunk();
+        }
+        int offset = index & CHUNK_MASK;
+        long sequence;
+        if (stampedSequence >= 0) {
+            sequence = stampedSequence;
+            timestamp = stampedTimestamp;
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            stampedSequence = -1;
+        } else {
+            sequence = nextSequence++;
+        }
+        // Timestamps never go backwards, so entries are ordered by both sequence and time
+        long now = Math.max(timestamp, lastTimestamp);
+        lastTimestamp = now;
+
+        types[chunk][offset] = type;
+        sources[chunk][offset] = source;
+        destinations[chunk][offset] = destination;
+        amounts[chunk][offset] = amount;
+        timestamps[chunk][offset] = now;
+        sequences[chunk][offset] = sequence;
+        previousForSource[chunk][offset] = link(source, index);
+        // A transfer to the same account is linked once, through its source side
+        previousForDestination[chunk][offset] = (changesDestination(type, source, destination)
+                || (type == BankOperation.FLAGGED && destination != source))
+                ? link(destination, index) : -1;
+        size = index + 1;
+        return sequence;
+    }
+
+    // Method to record one single-account entry per account (such as interest) under one lock acquisition;
+    // returns the sequence number of the first, and the others follow it
+    public synchronized long recordBatch(byte type, int[] batchAccounts, double[] batchAmounts, int count) {
+        long now = Math.max(System.currentTimeMillis(), lastTimestamp);
+        lastTimestamp = now;
+        long first = nextSequence;
+        for (int i = 0; i < count; i++) {
+            int index = size;
+            int chunk = index >>> CHUNK_BITS;
+            if (chunk == types.length) {
+                addChunk();
+            }
+            int offset = index & CHUNK_MASK;
+            types[chunk][offset] = type;
+            sources[chunk][offset] = batchAccounts[i];
+            destinations[chunk][offset] = 0;
+            amounts[chunk][offset] = batchAmounts[i];
+            timestamps[chunk][offset] = now;
+            sequences[chunk][offset] = nextSequence++;
+            previousForSource[chunk][offset] = link(batchAccounts[i], index);
+            previousForDestination[chunk][offset] = -1;
+            size = index + 1;
+        }
+        return first;
+    }
+
+    // Method to make the next recorded entry keep the sequence number and time it was first committed
+    // with, while a log is replayed on one thread. Sequence 0 marks an entry that only restores an
+    // account from a snapshot and has no original of its own.
+    public synchronized void stampNext(long sequence, long timestamp) {
+        stampedSequence = sequence;
+        stampedTimestamp = timestamp;
+    }
+
+    // Method to drop a stamp that no entry used (the replayed operation recorded nothing)
+    public synchronized void clearStamp() {
+        stampedSequence = -1;
+    }
+
+    // Method to continue numbering after a sequence number handed out before a restart
+    public synchronized void continueAfter(long sequence) {
+        nextSequence = Math.max(nextSequence, sequence + 1);
+    }
+
+    // Method to get the sequence number of the newest entry (0 if there is none)
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    // Method to get the time of the newest entry
+    public synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    // Make an entry the newest in an account's chain; returns the previous newest entry
+    private int link(int accountNumber, int index) {
+        AccountChain chain = chains.get(accountNumber);
+        if (chain == null) {
+            chain = new AccountChain();
+            chains.put(accountNumber, chain);
+        }
+        int previous = chain.newest;
+        chain.newest = index;
+        chain.count++;
+        return previous;
+    }
+
+    // Method to check whether an entry changes its destination account's balance as well as its source's
+    // (a reversal with no destination only changes its source)
+    static boolean changesDestination(byte type, int source, int destination) {
+        return destination != source && (type == BankOperation.TRANSFER
+                || (type == BankOperation.REVERSAL && destination != 0));
+    }
+
+    // Method to get the number of recorded transactions
+    public int size() {
+        return size;
+    }
+
+    // Method to find the entry with a sequence number, or -1 if there is none. Sequence numbers
+    // increase with the entries (restored ones, numbered 0, come first) but may skip values: after a
+    // restart they continue from where the log left off. So this is a binary search.
+    public int indexOf(long sequence) {
+        if (sequence < 1) {
+            return -1;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long found = getSequence(middle);
+            if (found < sequence) {
+                low = middle + 1;
+            } else if (found > sequence) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // Method to count how many of the first limit entries were recorded at or before a time
+    // (a binary search, since timestamps never go backwards)
+    public int countUntil(long timestamp, int limit) {
+        int low = 0;
+        int high = limit;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getTimestamp(middle) <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public byte getType(int index) {
+        return types[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    public int getSource(int index) {
+        return sources[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    public int getDestination(int index) {
+        return destinations[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    public double getAmount(int index) {
+        return amounts[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    public long getSequence(int index) {
+        return sequences[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    // Method to get the number of entries that touch an account
+    public synchronized int countForAccount(int accountNumber) {
+        AccountChain chain = chains.get(accountNumber);
+        return (chain != null) ? chain.count : 0;
+    }
+
+    // Method to get the newest entry that touches an account, or -1 if there is none
+    public synchronized int newestForAccount(int accountNumber) {
+        AccountChain chain = chains.get(accountNumber);
+        return (chain != null) ? chain.newest : -1;
+    }
+
+    // Method to step from an entry to the next older entry touching the same account, or -1
+    public int previousForAccount(int index, int accountNumber) {
+        int chunk = index >>> CHUNK_BITS;
+        int offset = index & CHUNK_MASK;
+        return (sources[chunk][offset] == accountNumber) ? previousForSource[chunk][offset]
+                : previousForDestination[chunk][offset];
+    }
+
+    // Method to read one page of an account's statement, newest first.
+    // Fills entries with journal indexes whose timestamp is in [fromTime, toTime] and returns how
+    // many were found. Pass -1 as afterIndex for the first page, then the last index returned.
+    public int statementPage(int accountNumber, int afterIndex, long fromTime, long toTime, int[] entries) {
+        int index = (afterIndex < 0) ? newestForAccount(accountNumber) : previousForAccount(afterIndex, accountNumber);
+        int count = 0;
+        while (index >= 0 && count < entries.length) {
+            long timestamp = getTimestamp(index);
+            if (timestamp < fromTime) {
+                break; // Chains are in time order, so nothing older can match
+            }
+            if (timestamp <= toTime) {
+                entries[count++] = index;
+            }
+            index = previousForAccount(index, accountNumber);
+        }
+        return count;
+    }
+
+    // Method to materialize one entry as a record object
+    public TransactionRecord getRecord(int index) {
+        return new TransactionRecord(getType(index), getSource(index), getDestination(index), getAmount(index),
+                getTimestamp(index), getSequence(index));
+    }
+
+    // Method to append the human-readable lines of an entry (a transfer yields two lines)
+    public void describe(int index, StringBuilder out) {
+        describe(getType(index), getSource(index), getDestination(index), getAmount(index), out);
+    }
+
+    static void describe(byte type, int source, int destination, double amount, StringBuilder out) {
+        switch (type) {
+            case BankOperation.CREATE:
+                out.append("Opened account ").append(source).append(" with balance ").append(amount);
+                break;
+            case BankOperation.DEPOSIT:
+                out.append("Deposited ").append(amount).append(" into account ").append(source);
+                break;
+            case BankOperation.WITHDRAW:
+                out.append("Withdrawn ").append(amount).append(" from account ").append(source);
+                break;
+            case BankOperation.TRANSFER:
+                out.append("Transferred ").append(amount).append(" to account ").append(destination).append('\n');
+                out.append("Received ").append(amount).append(" from account ").append(source);
+                break;
+            case BankOperation.DELETE:
+                out.append("Closed account ").append(source).append(" with balance ").append(amount);
+                break;
+            case BankOperation.INTEREST:
+                out.append("Interest of ").append(amount).append(" credited to account ").append(source);
+                break;
+            case BankOperation.FEE:
+                out.append("Fee of ").append(amount).append(" charged to account ").append(source);
+                break;
+            case BankOperation.TRANSFER_OUT:
+                // Cross-shard legs store the local account as the source and the remote one as the destination
+                out.append("Transferred ").append(amount).append(" from account ").append(source)
+                        .append(" to account ").append(destination);
+                break;
+            case BankOperation.TRANSFER_IN:
+                out.append("Received ").append(amount).append(" into account ").append(source)
+                        .append(" from account ").append(destination);
+                break;
+            case BankOperation.REVERSAL:
+                // A reversal moves the amount from its source to its destination, or out of its source
+                // (into it, when negative) if there is no destination
+                if (destination != 0) {
+                    out.append("Reversal moved ").append(amount).append(" from account ").append(source)
+                            .append(" to account ").append(destination);
+                } else if (amount >= 0) {
+                    out.append("Reversal took back ").append(amount).append(" from account ").append(source);
+                } else {
+                    out.append("Reversal returned ").append(-amount).append(" to account ").append(source);
+                }
+                break;
+            case BankOperation.REJECTED:
+            case BankOperation.FLAGGED:
+                // Rule outcomes on withdrawals have no destination
+                out.append((type == BankOperation.REJECTED) ? "Refused " : "Flagged ")
+                        .append((destination != 0) ? "transfer" : "withdrawal").append(" of ").append(amount)
+                        .append(" from account ").append(source);
+                if (destination != 0) {
+                    out.append(" to account ").append(destination);
+                }
+                break;
+            default:
+                out.append("Unknown transaction on account ").append(source);
+        }
+    }
+
+    private void addChunk() {
+        int count = types.length + 1;
+        types = Arrays.copyOf(types, count);
+        sources = Arrays.copyOf(sources, count);
+        destinations = Arrays.copyOf(destinations, count);
+        amounts = Arrays.copyOf(amounts, count);
+        timestamps = Arrays.copyOf(timestamps, count);
+        sequences = Arrays.copyOf(sequences, count);
+        previousForSource = Arrays.copyOf(previousForSource, count);
+        previousForDestination = Arrays.copyOf(previousForDestination, count);
+        int chunk = count - 1;
+        types[chunk] = new byte[CHUNK_SIZE];
+        sources[chunk] = new int[CHUNK_SIZE];
+        destinations[chunk] = new int[CHUNK_SIZE];
+        amounts[chunk] = new double[CHUNK_SIZE];
+        timestamps[chunk] = new long[CHUNK_SIZE];
+        sequences[chunk] = new long[CHUNK_SIZE];
+        previousForSource[chunk] = new int[CHUNK_SIZE];
+        previousForDestination[chunk] = new int[CHUNK_SIZE];
+    }
+
+    // Inner class holding the head of one account's chain
+    private static class AccountChain {
+        int newest = -1;
+        int count;
+    }
+
+    // Inner class representing a transaction record materialized from the journal
+    public static class TransactionRecord {
+        private final byte type;
+        private final int source;
+        private final int destination;
+        private final double amount;
+        private final long timestamp;
+        private final long sequence;
+
+        public TransactionRecord(byte type, int source, int destination, double amount, long timestamp,
+                long sequence) {
+            this.type = type;
+            this.source = source;
+            this.destination = destination;
+            this.amount = amount;
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public int getSource() {
+            return source;
+        }
+
+        public int getDestination() {
+            return destination;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getDescription() {
+            StringBuilder out = new StringBuilder();
+            describe(type, source, destination, amount, out);
+            return out.toString();
+        }
+    }
+}
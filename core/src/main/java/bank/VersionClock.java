@@ -0,0 +1,176 @@
+package bank;
+
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Class representing the commit clock behind consistent snapshots of heap accounts.
+// Every balance change (and every create/delete) takes the next version while holding its
+// account locks and announces itself in a writer slot until it commits. A reader pins the
+// version just below the oldest one still in flight, so it sees every change up to it and none
+// after it, while writers never wait for one another to publish. The balance a change
+// replaces is pushed onto the account's version chain, which reaches back to the newest value
+// a snapshot opened now could see, or further while older snapshots are open. Older values are
+// cut off and left to the garbage collector as snapshots close.
+class VersionClock {
+    private static final long WRITING = Long.MAX_VALUE; // Version of a balance that is being rewritten
+    private static final int WRITER_SLOTS = 64; // Power of two; more concurrent writers than this take turns
+    private static final int SLOT_STRIDE = 8; // Longs per slot, so writers do not share cache lines
+
+    private final AtomicLong nextVersion = new AtomicLong();
+    // Version each in-flight writer holds, 0 for a free slot, or minus a lower bound while it takes one
+    private final AtomicLongArray inFlight = new AtomicLongArray(WRITER_SLOTS * SLOT_STRIDE);
+    private volatile long stableFloor; // At or below getStableVersion(); refreshed every WRITER_SLOTS commits
+    private volatile int openSnapshots;
+    private volatile long oldestPinned = Long.MAX_VALUE;
+    private final TreeMap<Long, Integer> pinned = new TreeMap<>(); // Pinned version -> open snapshots
+
+    // Class representing a replaced balance and the version it belonged to
+    static final class BalanceVersion {
+        final long version;
+        final double balance;
+        BalanceVersion older; // Cut to null once no open snapshot can need older values
+
+        BalanceVersion(long version, double balance, BalanceVersion older) {
+            this.version = version;
+            this.balance = balance;
+            this.older = older;
+        }
+    }
+
+    // Method to take the next version; the caller must hold the locks of everything it changes
+    // and must call commit, in a finally block, once its changes are written
+    public long begin() {
+        int home = homeSlot();
+        while (true) {
+            for (int probe = 0; probe < WRITER_SLOTS; probe++) {
+                int slot = ((home + probe) & (WRITER_SLOTS - 1)) * SLOT_STRIDE;
+                // Announce a lower bound before taking the version, so no reader can count the
+                // version as published in between
+                if (inFlight.get(slot) == 0 && inFlight.compareAndSet(slot, 0, -(nextVersion.get() + 1))) {
+                    long version = nextVersion.incrementAndGet();
+                    inFlight.set(slot, version);
+                    return version;
+                }
+            }
+            Thread.yield(); // Every slot is taken
+        }
+    }
+
+    // Method to publish a version; versions may be published in any order
+    public void commit(long version) {
+        int home = homeSlot();
+        for (int probe = 0; probe < WRITER_SLOTS; probe++) {
+            int slot = ((home + probe) & (WRITER_SLOTS - 1)) * SLOT_STRIDE;
+            if (inFlight.get(slot) == version) {
+                inFlight.set(slot, 0); // Releases the writes made at this version
+                if ((version & (WRITER_SLOTS - 1)) == 0) {
+                    getStableVersion(); // Lets writers cut version chains below the new floor
+                }
+                return;
+            }
+        }
+        throw new IllegalStateException("Version " + version + " is not in flight");
+    }
+
+    // Method to find the newest version at and below which every version is published
+    public long getStableVersion() {
+        long stable = nextVersion.get(); // Read before the slots, so later writers are above it
+        for (int slot = 0; slot < inFlight.length(); slot += SLOT_STRIDE) {
+            long held = inFlight.get(slot);
+            if (held != 0) {
+                stable = Math.min(stable, Math.abs(held) - 1);
+            }
+        }
+        if (stable > stableFloor) {
+            stableFloor = stable; // A racing store may lower it again, which only keeps more values
+        }
+        return stable;
+    }
+
+    // Helper method to find the slot a thread tries first; begin and commit run on one thread
+    private static int homeSlot() {
+        return (int) Thread.currentThread().getId() & (WRITER_SLOTS - 1);
+    }
+
+    // Method to change a balance as part of the change with the given version
+    public void writeBalance(Customer customer, double balance, long version) {
+        // Versions commit out of order, so the value being replaced may be newer than what a snapshot
+        // opened now would pin. Read the floor before the snapshot count: a snapshot that opens after
+        // this pins no lower than the floor, and one already open no lower than oldestPinned.
+        long keep = stableFloor;
+        if (openSnapshots != 0) {
+            keep = Math.min(keep, oldestPinned);
+        }
+        BalanceVersion replaced = new BalanceVersion(customer.version, customer.balance, customer.history);
+        // Keep values down to the newest one any snapshot can see
+        for (BalanceVersion node = replaced; node != null; node = node.older) {
+            if (node.version <= keep) {
+                node.older = null;
+                break;
+            }
+        }
+        customer.history = replaced;
+        customer.version = WRITING;
+        VarHandle.storeStoreFence(); // Readers must see WRITING before the balance changes
+        customer.balance = balance;
+        customer.version = version;
+    }
+
+    // Method to read the balance an account had at a version
+    public double readBalance(Customer customer, long version) {
+        while (true) {
+            long current = customer.version;
+            if (current <= version) {
+                double balance = customer.balance;
+                VarHandle.loadLoadFence();
+                if (customer.version == current) {
+                    return balance;
+                }
+                continue; // Rewritten while it was read
+            }
+            for (BalanceVersion node = customer.history; node != null; node = node.older) {
+                if (node.version <= version) {
+                    return node.balance;
+                }
+            }
+            throw new IllegalStateException("Balance of account " + customer.accountNumber
+                    + " at version " + version + " is no longer kept");
+        }
+    }
+
+    // Method to pin the latest published version together with the tree roots that match it
+    public BankSnapshot open(BankTree tree) {
+        synchronized (pinned) {
+            // Announce a safe lower bound before the snapshot itself, so a writer that sees the
+            // snapshot also sees a bound that keeps every value it could need
+            oldestPinned = Math.min(oldestPinned, getStableVersion());
+            openSnapshots++;
+            long version;
+            BankTree.Roots roots;
+            while (true) {
+                version = getStableVersion();
+                roots = tree.getRoots();
+                if (roots.version <= version) {
+                    break;
+                }
+                Thread.onSpinWait(); // A create or delete published its roots but not yet its version
+            }
+            pinned.merge(version, 1, Integer::sum);
+            oldestPinned = pinned.firstKey();
+            return new BankSnapshot(this, roots, version);
+        }
+    }
+
+    // Method to release a pinned version so the values only it needed can be reclaimed
+    void release(long version) {
+        synchronized (pinned) {
+            if (pinned.merge(version, -1, Integer::sum) == 0) {
+                pinned.remove(version);
+            }
+            oldestPinned = pinned.isEmpty() ? Long.MAX_VALUE : pinned.firstKey();
+            openSnapshots--;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package bank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Class representing a recorded workload file, so a stream can be replayed exactly (for example
+// at 10x speed) to compare builds. Layout:
+//   header: [int magic][int version][int accounts][double initialBalance][long seed]
+//   records: [long startNanos][byte type][int account][int target][double amount][UTF name, CREATE only]
+class WorkloadFile implements WorkloadSource, AutoCloseable {
+    private static final int MAGIC = 0x42574B4C; // "BWKL"
+    private static final int VERSION = 1;
+
+    private final DataInputStream in;
+    private final int accounts;
+    private final double initialBalance;
+    private final long seed;
+
+    // Method to record count operations of a generated stream; returns the file's duration in nanoseconds
+    public static long record(WorkloadGenerator generator, long count, Path file) throws IOException {
+        long last = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(generator.getAccounts());
+            out.writeDouble(generator.getInitialBalance());
+            out.writeLong(generator.getSeed());
+            BankOperation operation = new BankOperation();
+            for (long i = 0; i < count; i++) {
+                last = generator.next(operation);
+                out.writeLong(last);
+                out.writeByte(operation.type);
+                out.writeInt(operation.accountNumber);
+                out.writeInt(operation.targetAccountNumber);
+                out.writeDouble(operation.amount);
+                if (operation.type == BankOperation.CREATE) {
+                    out.writeUTF(operation.name);
+                }
+            }
+        }
+        return last;
+    }
+
+    // Constructor to open a recorded workload for replay
+    public WorkloadFile(Path file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            in.close();
+            throw new IOException("Not a workload file: " + file);
+        }
+        accounts = in.readInt();
+        initialBalance = in.readDouble();
+        seed = in.readLong();
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public double getInitialBalance() {
+        return initialBalance;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public long next(BankOperation operation) throws IOException {
+        long start;
+        try {
+            start = in.readLong();
+        } catch (EOFException e) {
+            return -1;
+        }
+        byte type = in.readByte();
+        int accountNumber = in.readInt();
+        int target = in.readInt();
+        double amount = in.readDouble();
+        operation.set(type, accountNumber, target, (type == BankOperation.CREATE) ? in.readUTF() : null, amount);
+        return start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
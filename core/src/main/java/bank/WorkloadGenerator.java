@@ -0,0 +1,184 @@
+package bank;
+
+import java.util.*;
+
+// Class representing a seeded generator of synthetic bank traffic. Accounts 1 to accounts are
+// opened by setUp; the stream then mixes creates, deposits, withdrawals, transfers and deletes
+// in configurable proportions, picks accounts with Zipf(skew) popularity (scattered over the
+// account numbers, so hot accounts are not neighbours) and spaces operations as a Poisson
+// process at the given rate. The same seed and settings always produce the same stream.
+// Created accounts are numbered after the initial ones; deletes close the oldest of them (a
+// deposit is generated instead while there are none), so the initial population and its hot
+// accounts stay open.
+class WorkloadGenerator implements WorkloadSource {
+    private final long seed;
+    private final int accounts;
+    private final SplittableRandom random;
+    private final ZipfSampler popularity;
+    private final long stride; // Coprime with accounts: rank -> account number is a permutation
+    private int[] weights = {1, 40, 25, 30, 1}; // create, deposit, withdraw, transfer, delete
+    private int totalWeight = 97;
+    private double ratePerSecond = 10_000;
+    private double maxAmount = 500;
+    private double initialBalance = 10_000;
+    private double clockNanos;
+    private int nextAccountNumber;
+    private int[] created = new int[64]; // Accounts opened by the stream and not yet deleted, oldest first
+    private int createdHead;
+    private int createdTail;
+
+    public WorkloadGenerator(long seed, int accounts, double skew) {
+        if (accounts < 1) {
+            throw new IllegalArgumentException("accounts must be positive");
+        }
+        this.seed = seed;
+        this.accounts = accounts;
+        this.random = new SplittableRandom(seed);
+        this.popularity = new ZipfSampler(accounts, skew);
+        long candidate = Math.max(1, (long) (accounts * 0.6180339887));
+        while (gcd(candidate, accounts) != 1) {
+            candidate++;
+        }
+        this.stride = candidate;
+        this.nextAccountNumber = accounts + 1;
+    }
+
+    // Method to set the relative weights of creates, deposits, withdrawals, transfers and deletes
+    public WorkloadGenerator setMix(int create, int deposit, int withdraw, int transfer, int delete) {
+        int[] mix = {create, deposit, withdraw, transfer, delete};
+        int total = 0;
+        for (int weight : mix) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights must not be negative");
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        weights = mix;
+        totalWeight = total;
+        return this;
+    }
+
+    // Method to set the mean arrival rate in operations per second
+    public WorkloadGenerator setRate(double operationsPerSecond) {
+        if (!(operationsPerSecond > 0)) {
+            throw new IllegalArgumentException("The rate must be positive");
+        }
+        ratePerSecond = operationsPerSecond;
+        return this;
+    }
+
+    // Method to set the largest deposit, withdrawal or transfer amount
+    public WorkloadGenerator setMaxAmount(double amount) {
+        maxAmount = amount;
+        return this;
+    }
+
+    public WorkloadGenerator setInitialBalance(double balance) {
+        initialBalance = balance;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public double getInitialBalance() {
+        return initialBalance;
+    }
+
+    // Method to open the initial accounts in a bank (untimed)
+    public static void setUp(Bank bank, int accounts, double initialBalance) {
+        BankOperation[] batch = new BankOperation[4096];
+        int[] results = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new BankOperation();
+        }
+        for (int first = 1; first <= accounts; first += batch.length) {
+            int count = Math.min(batch.length, accounts - first + 1);
+            for (int i = 0; i < count; i++) {
+                batch[i].set(BankOperation.CREATE, first + i, 0, customerName(first + i), initialBalance);
+            }
+            bank.applyBatch(batch, count, results);
+        }
+    }
+
+    static String customerName(int accountNumber) {
+        return "Customer " + accountNumber;
+    }
+
+    @Override
+    public long next(BankOperation operation) {
+        // Exponential gaps make the arrivals a Poisson process
+        clockNanos += -Math.log(1 - random.nextDouble()) * 1e9 / ratePerSecond;
+        int pick = random.nextInt(totalWeight);
+        int kind = 0;
+        while (pick >= weights[kind]) {
+            pick -= weights[kind++];
+        }
+        switch (kind) {
+            case 0: {
+                int accountNumber = nextAccountNumber++;
+                if (createdTail == created.length) {
+                    // Slide the pending accounts to the front, growing only if most are pending
+                    int pending = createdTail - createdHead;
+                    int[] target = (pending * 2 > created.length) ? new int[created.length * 2] : created;
+                    System.arraycopy(created, createdHead, target, 0, pending);
+                    created = target;
+                    createdHead = 0;
+                    createdTail = pending;
+                }
+                created[createdTail++] = accountNumber;
+                operation.set(BankOperation.CREATE, accountNumber, 0, customerName(accountNumber), amount());
+                break;
+            }
+            case 2:
+                operation.set(BankOperation.WITHDRAW, hotAccount(), 0, null, amount());
+                break;
+            case 3: {
+                int source = hotAccount();
+                int destination = hotAccount();
+                if (destination == source) {
+                    destination = (source % accounts) + 1;
+                }
+                operation.set(BankOperation.TRANSFER, source, destination, null, amount());
+                break;
+            }
+            case 4:
+                if (createdHead < createdTail) {
+                    operation.set(BankOperation.DELETE, created[createdHead++], 0, null, 0);
+                    break;
+                }
+                // Nothing to delete yet: fall through to a deposit
+            default:
+                operation.set(BankOperation.DEPOSIT, hotAccount(), 0, null, amount());
+        }
+        return (long) clockNanos;
+    }
+
+    private int hotAccount() {
+        long rank = popularity.sample(random) - 1;
+        return (int) ((rank * stride) % accounts) + 1;
+    }
+
+    // Helper method to draw an amount in whole cents between 0.01 and maxAmount
+    private double amount() {
+        long cents = 1 + random.nextLong(Math.max(1, AccountStore.toMinorUnits(maxAmount)));
+        return AccountStore.fromMinorUnits(cents);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
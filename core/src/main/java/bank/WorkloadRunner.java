@@ -0,0 +1,172 @@
+package bank;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+// Class representing an open-loop load driver: operations start at their scheduled times (scaled
+// by a speed factor) whether or not earlier ones have finished, the way independent customers
+// arrive. Operation i runs on worker i % threads. Latency is measured from the scheduled start,
+// so time an operation spends waiting behind a slow one is counted (no coordinated omission);
+// the service time from the actual start is reported alongside for comparison.
+class WorkloadRunner {
+    private static final int QUEUE_CAPACITY = 1024; // Scheduled operations waiting per worker
+    private static final long PARK_SLACK_NANOS = 50_000;
+
+    private final Bank bank;
+    private final int threads;
+
+    public WorkloadRunner(Bank bank, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.bank = bank;
+        this.threads = threads;
+    }
+
+    // Class representing one scheduled operation
+    private static final class Task {
+        final BankOperation operation = new BankOperation();
+        long scheduledNanos; // System.nanoTime() at which it should start; Long.MIN_VALUE stops the worker
+    }
+
+    // Class representing the outcome of a run
+    static final class Report {
+        final LatencyHistogram latency = new LatencyHistogram();     // From the scheduled start
+        final LatencyHistogram serviceTime = new LatencyHistogram(); // From the actual start
+        final long[] resultCounts = new long[BankOperation.RESULT_CODES];
+        long operations;
+        long elapsedNanos;
+        long scheduledNanos; // Span of the schedule at this speed
+        double speed;
+
+        double getThroughput() {
+            return operations * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        double getOfferedRate() {
+            return operations * 1e9 / Math.max(1, scheduledNanos);
+        }
+
+        // Method to format the report as text
+        String toText() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("Ran %d operations at %.1fx speed in %.3f s: %.0f ops/s sustained, %.0f ops/s offered%n",
+                    operations, speed, elapsedNanos / 1e9, getThroughput(), getOfferedRate()));
+            appendPercentiles(text, "latency (from scheduled start)", latency);
+            appendPercentiles(text, "service time (from actual start)", serviceTime);
+            for (int result = 0; result < resultCounts.length; result++) {
+                if (resultCounts[result] > 0) {
+                    text.append("  ").append(BankOperation.resultName(result)).append(": ")
+                            .append(resultCounts[result]).append('\n');
+                }
+            }
+            return text.toString();
+        }
+
+        private static void appendPercentiles(StringBuilder text, String label, LatencyHistogram histogram) {
+            text.append(String.format("  %-33s p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n", label,
+                    micros(histogram.getPercentileNanos(50)), micros(histogram.getPercentileNanos(90)),
+                    micros(histogram.getPercentileNanos(99)), micros(histogram.getPercentileNanos(99.9)),
+                    micros(histogram.getMaxNanos())));
+        }
+
+        private static String micros(long nanos) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+    }
+
+    // Method to run up to limit operations of a source at speed times their recorded pace
+    public Report run(WorkloadSource source, long limit, double speed) throws IOException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        Report report = new Report();
+        report.speed = speed;
+        List<ArrayBlockingQueue<Task>> queues = new ArrayList<>();
+        ArrayBlockingQueue<Task> free = new ArrayBlockingQueue<>(QUEUE_CAPACITY * threads + threads);
+        for (int i = 0; i < QUEUE_CAPACITY * threads; i++) {
+            free.add(new Task());
+        }
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            ArrayBlockingQueue<Task> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+            queues.add(queue);
+            workers[i] = new Thread(() -> work(queue, free, report), "workload-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        long start = System.nanoTime();
+        long scheduled = 0;
+        try {
+            for (long i = 0; i < limit; i++) {
+                Task task = free.take();
+                long offset = source.next(task.operation);
+                if (offset < 0) {
+                    free.add(task);
+                    break;
+                }
+                scheduled = (long) (offset / speed);
+                task.scheduledNanos = start + scheduled;
+                queues.get((int) (i % threads)).put(task);
+            }
+            for (ArrayBlockingQueue<Task> queue : queues) {
+                Task stop = new Task();
+                stop.scheduledNanos = Long.MIN_VALUE;
+                queue.put(stop);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Workload run interrupted", e);
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        report.scheduledNanos = scheduled;
+        return report;
+    }
+
+    // Worker loop: wait for each operation's scheduled time, run it and record its latencies
+    private void work(ArrayBlockingQueue<Task> queue, ArrayBlockingQueue<Task> free, Report report) {
+        long[] resultCounts = new long[BankOperation.RESULT_CODES];
+        long operations = 0;
+        try {
+            while (true) {
+                Task task = queue.take();
+                if (task.scheduledNanos == Long.MIN_VALUE) {
+                    break;
+                }
+                // Park until shortly before the start (parking oversleeps by tens of microseconds), then yield
+                long now;
+                while ((now = System.nanoTime()) < task.scheduledNanos) {
+                    if (task.scheduledNanos - now > PARK_SLACK_NANOS) {
+                        LockSupport.parkNanos(task.scheduledNanos - now - PARK_SLACK_NANOS);
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                int result = bank.apply(task.operation);
+                long end = System.nanoTime();
+                report.latency.record(end - task.scheduledNanos);
+                report.serviceTime.record(end - now);
+                resultCounts[result]++;
+                operations++;
+                free.add(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (report) {
+            report.operations += operations;
+            for (int i = 0; i < resultCounts.length; i++) {
+                report.resultCounts[i] += resultCounts[i];
+            }
+        }
+    }
+}
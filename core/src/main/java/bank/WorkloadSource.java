@@ -0,0 +1,9 @@
+package bank;
+
+import java.io.IOException;
+
+// Interface representing a timed stream of operations: each call fills in the next operation and
+// returns when it should start, in nanoseconds from the start of the stream (-1 at the end)
+interface WorkloadSource {
+    long next(BankOperation operation) throws IOException;
+}
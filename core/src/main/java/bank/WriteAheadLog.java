@@ -0,0 +1,462 @@
+package bank;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Class representing a binary write-ahead log with group commit and snapshots.
+// Committed operations are appended to an in-memory batch; a single flusher
+// thread writes the batch to the current log segment and fsyncs it, so all
+// operations appended while the previous fsync was running share the next one.
+// Segments are named after the first log sequence number (LSN) they may hold,
+// which lets a snapshot retire every older segment.
+//
+// Record layout: [int payloadLength][int crc32(payload)][payload]
+// Payload layout: [long lsn][byte type][int account][int target][double amount][long reference]
+//                 [long journal sequence][long commit time][short nameLength][name UTF-8]
+class WriteAheadLog {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String SNAPSHOT_TEMP_FILE = "snapshot.tmp";
+    private static final int SNAPSHOT_MAGIC = 0x42534E50; // "BSNP"
+    private static final int HEADER_BYTES = 8;
+    private static final int FIXED_PAYLOAD_BYTES = 8 + 1 + 4 + 4 + 8 + 8 + 8 + 8 + 2;
+    private static final int MAX_PAYLOAD_BYTES = FIXED_PAYLOAD_BYTES + 0xFFFF;
+
+    private final Path directory;
+    private FileChannel channel; // Current segment
+    private ByteBuffer pending;  // Records waiting for the next group commit
+    private ByteBuffer spare;    // Buffer being written by the flusher
+    private final CRC32 crc = new CRC32();
+    private long lastLsn;        // Last LSN handed out
+    private long durableLsn;     // Last LSN known to be on disk
+    private boolean closed;
+    private IOException failure;
+    private Thread flusher;
+
+    // Constructor to open the log directory; call recover() and then start() before appending
+    public WriteAheadLog(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        pending = ByteBuffer.allocate(1 << 16);
+        spare = ByteBuffer.allocate(1 << 16);
+    }
+
+    // Interface for receiving the recovered state
+    interface RecoveryHandler {
+        // Called before the snapshot's accounts: its journal ended at lastSequence at snapshotMillis
+        void restoreHistory(long lastSequence, long snapshotMillis);
+
+        void restoreAccount(int accountNumber, String name, double balance);
+
+        // sequence and commitMillis are the journal entry the operation was committed as (0 if none)
+        void replay(BankOperation operation, long sequence, long commitMillis);
+
+        void restorePreparedLeg(long transactionId, byte type, int accountNumber, int remoteAccountNumber,
+                double amount);
+    }
+
+    // Method to load the latest snapshot and replay the log tail after it.
+    // A torn or corrupt record at the end of the newest segment is truncated away.
+    public void recover(RecoveryHandler handler) throws IOException {
+        long snapshotLsn = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            snapshotLsn = loadSnapshot(snapshot, handler);
+        }
+        lastLsn = snapshotLsn;
+
+        List<Path> segments = listSegments();
+        BankOperation operation = new BankOperation();
+        for (int i = 0; i < segments.size(); i++) {
+            boolean newest = (i == segments.size() - 1);
+            lastLsn = Math.max(lastLsn, replaySegment(segments.get(i), snapshotLsn, newest, operation, handler));
+        }
+        durableLsn = lastLsn;
+
+        // Continue in the newest segment, or start the first one
+        Path current = segments.isEmpty() ? segmentPath(lastLsn + 1) : segments.get(segments.size() - 1);
+        channel = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    // Method to start the group-commit flusher thread
+    public synchronized void start() {
+        if (channel == null) {
+            throw new IllegalStateException("recover() must be called before start()");
+        }
+        flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Method to append a committed operation; returns its LSN. The record is durable once awaitDurable(lsn) returns.
+    // reference is the cross-shard transaction id of a transfer leg, or the sequence number of the entry a
+    // reversal compensates, or 0; sequence and commitMillis are the journal entry it was recorded as, or 0.
+    public synchronized long append(byte type, int accountNumber, int targetAccountNumber, String name, double amount,
+            long reference, long sequence, long commitMillis) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        byte[] nameBytes = (name != null) ? name.getBytes(StandardCharsets.UTF_8) : null;
+        int nameLength = (nameBytes != null) ? Math.min(nameBytes.length, 0xFFFF) : 0;
+        int payloadLength = FIXED_PAYLOAD_BYTES + nameLength;
+        ensureCapacity(HEADER_BYTES + payloadLength);
+
+        long lsn = ++lastLsn;
+        boolean wasEmpty = pending.position() == 0;
+        int start = pending.position();
+        pending.putInt(payloadLength);
+        pending.putInt(0); // CRC placeholder
+        pending.putLong(lsn);
+        pending.put(type);
+        pending.putInt(accountNumber);
+        pending.putInt(targetAccountNumber);
+        pending.putDouble(amount);
+        pending.putLong(reference);
+        pending.putLong(sequence);
+        pending.putLong(commitMillis);
+        pending.putShort((short) nameLength);
+        if (nameLength > 0) {
+            pending.put(nameBytes, 0, nameLength);
+        }
+        crc.reset();
+        crc.update(pending.array(), start + HEADER_BYTES, payloadLength);
+        pending.putInt(start + 4, (int) crc.getValue());
+
+        if (wasEmpty) {
+            notifyAll(); // Wake the flusher
+        }
+        return lsn;
+    }
+
+    // Method to block until every record up to the given LSN has been fsynced
+    public synchronized void awaitDurable(long lsn) {
+        boolean interrupted = false;
+        while (durableLsn < lsn && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null && durableLsn < lsn) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+    }
+
+    // Method to switch to a new segment once everything appended so far is durable.
+    // Returns the last LSN of the old segments, which a snapshot taken now must cover.
+    public synchronized long rotate() throws IOException {
+        awaitDurable(lastLsn);
+        channel.close();
+        channel = FileChannel.open(segmentPath(lastLsn + 1), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return lastLsn;
+    }
+
+    // Method to write a snapshot of the account table and the cross-shard legs still prepared (each
+    // with its transaction id as reference) covering all records up to lastLsn, then delete the
+    // segments it makes redundant. lastSequence and snapshotMillis are the newest journal entry
+    // the snapshot covers, so numbering and as-of times continue after a restart.
+    public void writeSnapshot(int[] accountNumbers, String[] names, double[] balances, int count,
+            List<BankOperation> preparedLegs, long snapshotLsn, long lastSequence, long snapshotMillis)
+            throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        CRC32 checksum = new CRC32();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putLong(snapshotLsn);
+            buffer.putLong(lastSequence);
+            buffer.putLong(snapshotMillis);
+            buffer.putInt(count);
+            for (int i = 0; i < count; i++) {
+                byte[] nameBytes = names[i].getBytes(StandardCharsets.UTF_8);
+                int nameLength = Math.min(nameBytes.length, 0xFFFF);
+                if (buffer.remaining() < 4 + 8 + 2 + nameLength) {
+                    drain(buffer, out, checksum);
+                }
+                buffer.putInt(accountNumbers[i]);
+                buffer.putDouble(balances[i]);
+                buffer.putShort((short) nameLength);
+                buffer.put(nameBytes, 0, nameLength);
+            }
+            if (buffer.remaining() < 4) {
+                drain(buffer, out, checksum);
+            }
+            buffer.putInt(preparedLegs.size());
+            for (BankOperation leg : preparedLegs) {
+                if (buffer.remaining() < 8 + 1 + 4 + 4 + 8) {
+                    drain(buffer, out, checksum);
+                }
+                buffer.putLong(leg.reference);
+                buffer.put(leg.type);
+                buffer.putInt(leg.accountNumber);
+                buffer.putInt(leg.targetAccountNumber);
+                buffer.putDouble(leg.amount);
+            }
+            drain(buffer, out, checksum);
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+
+        // Every segment that starts at or before the snapshot LSN, except the newest, is now redundant
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (segmentStart(segments.get(i + 1)) <= snapshotLsn + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    // Method to flush outstanding records and stop the flusher
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    public synchronized long getDurableLsn() {
+        return durableLsn;
+    }
+
+    // Flusher loop: take the whole pending batch, write it, fsync once, then release every waiter
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long batchLsn;
+            FileChannel target;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // The flusher only stops when the log is closed
+                    }
+                }
+                if (pending.position() == 0) {
+                    return; // Closed and fully flushed
+                }
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                batchLsn = lastLsn;
+                target = channel;
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                target.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    closed = true;
+                    notifyAll();
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+
+            synchronized (this) {
+                durableLsn = batchLsn;
+                notifyAll();
+            }
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel out, CRC32 checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.array(), buffer.position(), buffer.remaining());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Load a snapshot into the handler; returns the LSN it covers
+    private long loadSnapshot(Path snapshot, RecoveryHandler handler) throws IOException {
+        byte[] bytes = Files.readAllBytes(snapshot);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length - 4);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < 36 || buffer.getInt(bytes.length - 4) != (int) checksum.getValue()
+                || buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Corrupt snapshot: " + snapshot);
+        }
+        long snapshotLsn = buffer.getLong();
+        long lastSequence = buffer.getLong();
+        handler.restoreHistory(lastSequence, buffer.getLong());
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            int accountNumber = buffer.getInt();
+            double balance = buffer.getDouble();
+            int nameLength = buffer.getShort() & 0xFFFF;
+            String name = new String(bytes, buffer.position(), nameLength, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + nameLength);
+            handler.restoreAccount(accountNumber, name, balance);
+        }
+        int legCount = buffer.getInt();
+        for (int i = 0; i < legCount; i++) {
+            long transactionId = buffer.getLong();
+            byte type = buffer.get();
+            int accountNumber = buffer.getInt();
+            int remoteAccountNumber = buffer.getInt();
+            handler.restorePreparedLeg(transactionId, type, accountNumber, remoteAccountNumber, buffer.getDouble());
+        }
+        return snapshotLsn;
+    }
+
+    // Replay one segment; returns the highest LSN seen
+    private long replaySegment(Path segment, long afterLsn, boolean newest, BankOperation operation,
+            RecoveryHandler handler) throws IOException {
+        long highestLsn = 0;
+        long validBytes = 0;
+        boolean torn = false;
+        byte[] payload = new byte[MAX_PAYLOAD_BYTES];
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+            while (true) {
+                int payloadLength;
+                try {
+                    payloadLength = in.readInt();
+                } catch (EOFException e) {
+                    break; // Clean end of segment
+                }
+                try {
+                    int expectedCrc = in.readInt();
+                    if (payloadLength < FIXED_PAYLOAD_BYTES || payloadLength > MAX_PAYLOAD_BYTES) {
+                        torn = true;
+                        break;
+                    }
+                    in.readFully(payload, 0, payloadLength);
+                    checksum.reset();
+                    checksum.update(payload, 0, payloadLength);
+                    if ((int) checksum.getValue() != expectedCrc) {
+                        torn = true;
+                        break;
+                    }
+                } catch (EOFException e) {
+                    torn = true;
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(payload, 0, payloadLength);
+                long lsn = record.getLong();
+                byte type = record.get();
+                int accountNumber = record.getInt();
+                int targetAccountNumber = record.getInt();
+                double amount = record.getDouble();
+                long reference = record.getLong();
+                long sequence = record.getLong();
+                long commitMillis = record.getLong();
+                int nameLength = record.getShort() & 0xFFFF;
+                String name = (type == BankOperation.CREATE)
+                        ? new String(payload, FIXED_PAYLOAD_BYTES, nameLength, StandardCharsets.UTF_8)
+                        : null;
+                if (lsn > afterLsn) {
+                    operation.set(type, accountNumber, targetAccountNumber, name, amount);
+                    operation.reference = reference;
+                    handler.replay(operation, sequence, commitMillis);
+                }
+                highestLsn = lsn;
+                validBytes += HEADER_BYTES + payloadLength;
+            }
+        }
+
+        if (torn) {
+            if (!newest) {
+                throw new IOException("Corrupt record in sealed log segment " + segment + " at byte " + validBytes);
+            }
+            // The last write before a crash was cut short: drop it
+            try (FileChannel truncate = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                truncate.truncate(validBytes);
+                truncate.force(true);
+            }
+        }
+        return highestLsn;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort(Comparator.comparingLong(WriteAheadLog::segmentStart));
+        return segments;
+    }
+
+    private Path segmentPath(long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentStart(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Make the snapshot rename durable (best effort; not every platform can open a directory)
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Ignored: the rename is still atomic, only its durability is platform dependent
+        }
+    }
+}
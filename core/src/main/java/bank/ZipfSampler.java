@@ -0,0 +1,65 @@
+package bank;
+
+import java.util.*;
+
+// Class representing a Zipf distribution over ranks 1 to n (P(k) proportional to 1 / k^skew),
+// sampled in constant time and memory by rejection-inversion (Hormann and Derflinger), so
+// millions of ranks need no probability table. A skew of 0 is uniform.
+class ZipfSampler {
+    private final int n;
+    private final double skew;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    public ZipfSampler(int n, double skew) {
+        if (n < 1 || skew < 0) {
+            throw new IllegalArgumentException("Need n >= 1 and skew >= 0");
+        }
+        this.n = n;
+        this.skew = skew;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    // Method to draw a rank between 1 and n
+    public int sample(SplittableRandom random) {
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > n) {
+                k = n;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    private double h(double x) {
+        return Math.exp(-skew * Math.log(x));
+    }
+
+    // Integral of h, shifted so it is continuous at skew = 1
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1 - skew) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1, x * (1 - skew));
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    private static double log1pOverX(double x) {
+        return (Math.abs(x) > 1e-8) ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1 / 3.0 - 0.25 * x));
+    }
+
+    private static double expm1OverX(double x) {
+        return (Math.abs(x) > 1e-8) ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
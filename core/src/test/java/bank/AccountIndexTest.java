@@ -0,0 +1,77 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class AccountIndexTest {
+    @Test
+    void randomOperationsMatchAHashMapAcrossSeveralResizes() {
+        Random random = new Random(42);
+        AccountIndex<Integer> index = new AccountIndex<>();
+        Map<Integer, Integer> reference = new HashMap<>();
+        // Grow from 16 slots to well past 64K entries, then shrink, with the key range kept
+        // tight enough that removes, replaces and misses all land in long probe clusters
+        int[] phases = {2_000, 20_000, 80_000, 10_000};
+        int operation = 0;
+        for (int target : phases) {
+            int keyRange = Math.max(target * 2, 1_000);
+            for (int i = 0; i < target * 4; i++, operation++) {
+                int key = random.nextInt(keyRange);
+                int choice = random.nextInt(10);
+                if (choice < 5 && reference.size() < target || choice < 2) {
+                    assertEquals(reference.put(key, operation), index.put(key, operation), "put " + key);
+                } else if (choice < 8) {
+                    assertEquals(reference.remove(key), index.remove(key), "remove " + key);
+                } else {
+                    assertEquals(reference.get(key), index.get(key), "get " + key);
+                    assertEquals(reference.containsKey(key), index.containsKey(key));
+                }
+                assertEquals(reference.size(), index.size());
+            }
+            assertSameEntries(reference, index, keyRange);
+        }
+    }
+
+    @Test
+    void removesDuringAnIncrementalResizeKeepEveryOtherKeyReachable() {
+        AccountIndex<Integer> index = new AccountIndex<>();
+        Map<Integer, Integer> reference = new HashMap<>();
+        // Sequential account numbers, as the bank assigns them, with every third one closed
+        // straight after it is opened, so removes hit both tables while a resize drains
+        for (int account = 1; account <= 50_000; account++) {
+            index.put(account, account);
+            reference.put(account, account);
+            if (account % 3 == 0) {
+                int closed = account / 3 * 2;
+                assertEquals(reference.remove(closed), index.remove(closed));
+            }
+            if (account % 1_000 == 0) {
+                assertSameEntries(reference, index, account + 1);
+            }
+        }
+        for (int account = 1; account <= 50_000; account++) {
+            assertEquals(reference.remove(account), index.remove(account));
+        }
+        assertEquals(0, index.size());
+        assertNull(index.get(1));
+        assertFalse(index.containsKey(50_000));
+    }
+
+    private static void assertSameEntries(Map<Integer, Integer> reference, AccountIndex<Integer> index, int keyRange) {
+        for (int key = 0; key < keyRange; key++) {
+            assertEquals(reference.get(key), index.get(key), "key " + key);
+        }
+        Set<Integer> visited = new HashSet<>();
+        index.forEach(value -> assertTrue(visited.add(value), "value " + value + " visited twice"));
+        assertEquals(new HashSet<>(reference.values()), visited);
+    }
+}
@@ -0,0 +1,111 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccrualEngineTest {
+    private static final int ACCOUNTS = 40_000; // More than one shard, so the pool splits the work
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void interestAndFeesMatchASerialWalkOnHeapAccounts() throws Exception {
+        checkAccruals(new Bank());
+    }
+
+    @Test
+    void interestAndFeesMatchASerialWalkOffHeap() throws Exception {
+        Bank bank = new Bank();
+        bank.useMappedStore(directory, ACCOUNTS);
+        checkAccruals(bank);
+    }
+
+    @Test
+    void onlyInterestAndFeesAreAccrualTypes() {
+        Bank bank = new Bank();
+        assertThrows(IllegalArgumentException.class,
+                () -> bank.runAccrual(BankOperation.DEPOSIT, AccrualRule.dailyInterest(1)));
+    }
+
+    private static void checkAccruals(Bank bank) throws Exception {
+        Random random = new Random(13);
+        for (int account = 1; account <= ACCOUNTS; account++) {
+            // Empty accounts, accounts below the fee, and accounts either side of the waiver
+            double balance = (account % 10 == 0) ? 0 : (account % 10 == 1) ? 2.5 : random.nextInt(400_000) / 100.0;
+            bank.createAccount(account, "Customer " + account, balance);
+        }
+        bank.deleteAccount(ACCOUNTS); // Closed accounts are skipped
+
+        Map<Integer, Long> before = balances(bank);
+        Map<Integer, Long> expected = serialWalk(before, AccrualRule.dailyInterest(3.65), false);
+        checkRun(bank, BankOperation.INTEREST, bank.accrueDailyInterest(3.65), before, expected, 1);
+
+        before = balances(bank);
+        expected = serialWalk(before, AccrualRule.monthlyFee(5, 1_000), true);
+        assertTrue(expected.size() < before.size(), "some fees must be waived");
+        checkRun(bank, BankOperation.FEE, bank.chargeMonthlyFee(5, 1_000), before, expected, -1);
+
+        assertTrue(bank.reconcile().isBalanced());
+        bank.shutdown();
+    }
+
+    private static Map<Integer, Long> balances(Bank bank) {
+        Map<Integer, Long> balances = new HashMap<>();
+        for (int account = 1; account <= ACCOUNTS; account++) {
+            Customer customer = bank.findCustomer(account);
+            if (customer != null) {
+                balances.put(account, AccountStore.toMinorUnits(customer.balance));
+            }
+        }
+        return balances;
+    }
+
+    // Amount in minor units each account should get, worked out one account at a time
+    private static Map<Integer, Long> serialWalk(Map<Integer, Long> balances, AccrualRule rule, boolean fee) {
+        Map<Integer, Long> amounts = new HashMap<>();
+        for (Map.Entry<Integer, Long> entry : balances.entrySet()) {
+            double balance = AccountStore.fromMinorUnits(entry.getValue());
+            long minorUnits = AccountStore.toMinorUnits(rule.amountFor(entry.getKey(), balance));
+            if (fee) {
+                minorUnits = Math.min(minorUnits, entry.getValue()); // Never below zero
+            }
+            if (minorUnits > 0) {
+                amounts.put(entry.getKey(), minorUnits);
+            }
+        }
+        return amounts;
+    }
+
+    private static void checkRun(Bank bank, byte type, AccrualEngine.Result result, Map<Integer, Long> before,
+            Map<Integer, Long> expected, int sign) {
+        long total = expected.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(expected.size(), result.getAccountsAdjusted());
+        assertEquals(AccountStore.fromMinorUnits(total), result.getTotalAmount(), 1e-9);
+
+        // One journal entry per adjusted account, for the amount it was adjusted by
+        TransactionHistory history = bank.getTransactionHistory();
+        Map<Integer, Long> journaled = new HashMap<>();
+        for (int i = history.size() - 1; i >= 0 && history.getType(i) == type; i--) {
+            Long previous = journaled.put(history.getSource(i), AccountStore.toMinorUnits(history.getAmount(i)));
+            assertNull(previous, "account " + history.getSource(i) + " journaled twice");
+        }
+        assertEquals(expected, journaled);
+
+        // Every balance moved by exactly its journaled amount; waived and empty accounts did not move
+        for (Map.Entry<Integer, Long> entry : before.entrySet()) {
+            long after = AccountStore.toMinorUnits(bank.findCustomer(entry.getKey()).balance);
+            assertEquals(entry.getValue() + sign * expected.getOrDefault(entry.getKey(), 0L), after,
+                    "account " + entry.getKey());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BalanceHistoryTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void reversedEntryStaysReversedAfterARestart() throws Exception {
+        Bank bank = new Bank();
+        bank.enableDurability(directory, 0);
+        bank.createAccount(1, "Alice", 100);
+        bank.deposit(1, 50);
+        long deposit = bank.getTransactionHistory().getLastSequence();
+        assertEquals(BankOperation.SUCCESS, bank.reverseTransaction(deposit));
+        assertEquals(100, bank.findCustomer(1).balance);
+        bank.shutdown();
+
+        Bank restarted = new Bank();
+        restarted.enableDurability(directory, 0);
+        assertEquals(100, restarted.findCustomer(1).balance);
+        TransactionHistory history = restarted.getTransactionHistory();
+        assertEquals(BankOperation.DEPOSIT, history.getType(history.indexOf(deposit)));
+        assertEquals(BankOperation.INVALID_OPERATION, restarted.reverseTransaction(deposit));
+        assertEquals(100, restarted.findCustomer(1).balance);
+        restarted.shutdown();
+    }
+
+    @Test
+    void asOfBalancesKeepTheirTimesAfterARestart() throws Exception {
+        Bank bank = new Bank();
+        bank.enableDurability(directory, 0);
+        bank.createAccount(1, "Alice", 100);
+        bank.deposit(1, 50);
+        long before = bank.getTransactionHistory().getLastTimestamp();
+        Thread.sleep(20);
+        bank.deposit(1, 25);
+        bank.shutdown();
+
+        Thread.sleep(20); // Replayed entries must not take the restart's time
+        Bank restarted = new Bank();
+        restarted.enableDurability(directory, 0);
+        restarted.enableBalanceHistory();
+        assertEquals(150, restarted.balanceAsOf(1, before));
+        assertEquals(175, restarted.balanceAsOf(1, System.currentTimeMillis()));
+        restarted.shutdown();
+    }
+
+    @Test
+    void sequenceNumbersContinueAcrossACheckpoint() throws Exception {
+        Bank bank = new Bank();
+        bank.enableDurability(directory, 0);
+        bank.createAccount(1, "Alice", 100);
+        bank.deposit(1, 50);
+        long checkpointed = bank.getTransactionHistory().getLastSequence();
+        bank.checkpoint();
+        Thread.sleep(20);
+        bank.deposit(1, 25);
+        long logged = bank.getTransactionHistory().getLastSequence();
+        bank.shutdown();
+
+        Bank restarted = new Bank();
+        restarted.enableDurability(directory, 0);
+        restarted.enableBalanceHistory();
+        TransactionHistory history = restarted.getTransactionHistory();
+        assertEquals(logged, history.getLastSequence());
+        assertEquals(-1, history.indexOf(checkpointed)); // Covered by the snapshot
+        assertEquals(BankOperation.INVALID_OPERATION, restarted.reverseTransaction(checkpointed));
+        assertTrue(restarted.getHistoryStartMillis() > 0);
+        assertTrue(Double.isNaN(restarted.balanceAsOf(1, restarted.getHistoryStartMillis() - 1)));
+        assertEquals(150, restarted.balanceAsOf(1, restarted.getHistoryStartMillis()));
+
+        restarted.deposit(1, 5);
+        assertEquals(logged + 1, history.getLastSequence());
+        assertEquals(BankOperation.SUCCESS, restarted.reverseTransaction(logged));
+        assertEquals(155, restarted.findCustomer(1).balance);
+        restarted.shutdown();
+    }
+}
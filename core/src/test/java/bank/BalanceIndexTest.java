@@ -0,0 +1,144 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BalanceIndexTest {
+    @Test
+    void queriesSeeEveryEarlierChangeWhilePostingsContinue() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            BalanceIndex index = new BalanceIndex();
+            int accounts = 10_000;
+            for (int account = 0; account < accounts; account++) {
+                index.add(account, 100);
+            }
+            // Each poster owns a slice of the accounts, so it knows their balances
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> failures = new ArrayList<>();
+            int posters = 4;
+            for (int t = 0; t < posters; t++) {
+                int slice = t;
+                threads.add(new Thread(() -> {
+                    long[] balances = new long[accounts / posters];
+                    Arrays.fill(balances, 100);
+                    for (int i = 0; i < 200_000; i++) {
+                        int j = (i * 31) % balances.length;
+                        long next = balances[j] + ((i & 1) == 0 ? 7 : -3);
+                        index.update(slice * balances.length + j, balances[j], next);
+                        balances[j] = next;
+                    }
+                }));
+            }
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            assertEquals(accounts, index.size());
+                            // Each query sees one state, so every account counts once however balances move
+                            assertEquals(accounts, index.countBetween(Long.MIN_VALUE, Long.MAX_VALUE));
+                            assertTrue(index.percentile(0) <= index.percentile(100));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(List.of(), failures);
+
+            // A change is visible to the next query
+            index.add(-1, Long.MAX_VALUE / 2);
+            int[] topAccounts = new int[1];
+            long[] topBalances = new long[1];
+            assertEquals(1, index.top(1, topAccounts, topBalances));
+            assertEquals(-1, topAccounts[0]);
+            assertEquals(accounts + 1, index.size());
+            assertEquals(accounts, index.countBelow(Long.MAX_VALUE / 2));
+        });
+    }
+
+    @Test
+    void queriesMatchASortedReferenceAsBlocksSplitAndJoin() {
+        BalanceIndex index = new BalanceIndex();
+        Random random = new Random(11);
+        int accounts = 5_000;
+        long[] balances = new long[accounts];
+        int[] loadAccounts = new int[accounts / 2];
+        long[] loadBalances = new long[accounts / 2];
+        for (int account = 0; account < accounts; account++) {
+            balances[account] = random.nextInt(1_000);
+            if (account < accounts / 2) {
+                loadAccounts[account] = account;
+                loadBalances[account] = balances[account];
+            }
+        }
+        index.load(loadAccounts, loadBalances, loadAccounts.length);
+        boolean[] indexed = new boolean[accounts];
+        Arrays.fill(indexed, 0, accounts / 2, true);
+        for (int round = 0; round < 100_000; round++) {
+            int account = random.nextInt(accounts);
+            int action = random.nextInt(10);
+            if (!indexed[account]) {
+                index.add(account, balances[account]);
+                indexed[account] = true;
+            } else if (action == 0) {
+                index.remove(account, balances[account]);
+                indexed[account] = false;
+            } else {
+                // Skewed moves pile accounts onto a few balances, then spread them out again
+                long next = (round % 20_000 < 10_000) ? random.nextInt(4) : random.nextInt(1_000_000);
+                index.update(account, balances[account], next);
+                balances[account] = next;
+            }
+            if (round % 5_000 == 0) {
+                check(index, balances, indexed, random);
+            }
+        }
+        check(index, balances, indexed, random);
+    }
+
+    private static void check(BalanceIndex index, long[] balances, boolean[] indexed, Random random) {
+        long[] sorted = new long[balances.length];
+        int count = 0;
+        for (int account = 0; account < balances.length; account++) {
+            if (indexed[account]) {
+                sorted[count++] = balances[account];
+            }
+        }
+        Arrays.sort(sorted, 0, count);
+        assertEquals(count, index.size());
+        for (int i = 0; i < 50; i++) {
+            long value = random.nextInt(1_000_001);
+            long below = 0;
+            while (below < count && sorted[(int) below] < value) {
+                below++;
+            }
+            assertEquals(below, index.countBelow(value));
+            if (count > 0) {
+                int rank = random.nextInt(count);
+                assertEquals(sorted[rank], index.balanceAt(rank));
+            }
+        }
+        int limit = Math.min(count, 20);
+        int[] topAccounts = new int[limit];
+        long[] topBalances = new long[limit];
+        assertEquals(limit, index.top(limit, topAccounts, topBalances));
+        for (int i = 0; i < limit; i++) {
+            assertEquals(sorted[count - 1 - i], topBalances[i]);
+            assertEquals(sorted[count - 1 - i], balances[topAccounts[i]]);
+        }
+    }
+}
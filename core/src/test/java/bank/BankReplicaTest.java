@@ -0,0 +1,63 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BankReplicaTest {
+    private static final int ACCOUNTS = 50;
+
+    @Test
+    void replicasCatchUpByStreamingAndFromASnapshot() throws Exception {
+        Bank primary = new Bank();
+        for (int account = 1; account <= ACCOUNTS; account++) {
+            primary.createAccount(account, "Customer " + account, 1_000);
+        }
+        int port = primary.startReplication(0, 64);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+        try (BankReplica streaming = new BankReplica(address)) {
+            streaming.start();
+            assertTrue(streaming.awaitToken(primary.getReplicationToken(), 30, TimeUnit.SECONDS));
+            assertSameBalances(primary, streaming);
+
+            // Far more commits than the backlog holds: a replica that joins now starts from a snapshot
+            post(primary, 0, 2_000);
+            try (BankReplica joining = new BankReplica(address)) {
+                joining.start();
+                post(primary, 2_000, 4_000); // Still committing while it catches up
+                long token = primary.getReplicationToken();
+                assertTrue(streaming.awaitToken(token, 30, TimeUnit.SECONDS));
+                assertTrue(joining.awaitToken(token, 30, TimeUnit.SECONDS));
+                assertSameBalances(primary, streaming);
+                assertSameBalances(primary, joining);
+                assertEquals(0, joining.getLagRecords());
+            }
+        } finally {
+            primary.shutdown();
+        }
+    }
+
+    private static void post(Bank bank, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int source = 1 + (i * 7) % ACCOUNTS;
+            int destination = 1 + (i * 13 + 1) % ACCOUNTS;
+            if (source != destination) {
+                bank.transfer(source, destination, 1 + i % 9);
+            } else {
+                bank.deposit(source, 1);
+            }
+        }
+    }
+
+    private static void assertSameBalances(Bank primary, BankReplica replica) {
+        for (int account = 1; account <= ACCOUNTS; account++) {
+            assertEquals(primary.findCustomer(account).balance, replica.findCustomer(account).balance,
+                    "balance of account " + account);
+        }
+    }
+}
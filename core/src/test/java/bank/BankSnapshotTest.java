@@ -0,0 +1,100 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class BankSnapshotTest {
+    @Test
+    void snapshotKeepsTheStateItWasOpenedAt() {
+        Bank bank = new Bank();
+        bank.createAccount(1, "Alice", 100);
+        bank.createAccount(2, "Bob", 50);
+        try (BankSnapshot snapshot = bank.openSnapshot()) {
+            bank.deposit(1, 10);
+            bank.transfer(1, 2, 30);
+            bank.createAccount(3, "Carol", 5);
+            bank.deleteAccount(2);
+
+            assertEquals(2, snapshot.size());
+            assertEquals(100, snapshot.findCustomer(1).balance);
+            assertEquals(50, snapshot.findCustomer(2).balance);
+            assertNull(snapshot.findCustomer(3));
+            assertEquals(150, snapshot.totalBalance());
+            Iterator<Customer> byAccount = snapshot.iterateByAccount();
+            assertEquals(1, byAccount.next().accountNumber);
+            assertEquals(2, byAccount.next().accountNumber);
+        }
+        try (BankSnapshot later = bank.openSnapshot()) {
+            assertEquals(2, later.size());
+            assertEquals(80, later.findCustomer(1).balance);
+            assertNull(later.findCustomer(2));
+            assertEquals(85, later.totalBalance());
+        }
+    }
+
+    @Test
+    void laterVersionsCommitWithoutWaitingAndSnapshotsStopBelowTheOldestInFlight() throws Exception {
+        VersionClock clock = new VersionClock();
+        long stalled = clock.begin();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                clock.commit(clock.begin()); // Never waits for the stalled version
+            }
+        });
+        writer.start();
+        writer.join(10_000);
+        assertFalse(writer.isAlive());
+        assertEquals(stalled - 1, clock.getStableVersion());
+
+        clock.commit(stalled);
+        assertEquals(stalled + 100, clock.getStableVersion());
+    }
+
+    @Test
+    void everySnapshotSeesTheTotalThatTransfersKeep() throws Exception {
+        Bank bank = new Bank();
+        int accounts = 200;
+        for (int account = 1; account <= accounts; account++) {
+            bank.createAccount(account, "Customer " + account, 100);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            writers.add(new Thread(() -> {
+                for (int i = 0; running.get(); i++) {
+                    int from = 1 + (seed * 37 + i * 7) % accounts;
+                    int to = 1 + (seed * 11 + i * 13 + 1) % accounts;
+                    if (from != to) {
+                        bank.transfer(from, to, 1 + i % 5);
+                    }
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        try {
+            // A transfer moves money between two accounts at one version, so no snapshot can see half of it
+            for (int i = 0; i < 500; i++) {
+                try (BankSnapshot snapshot = bank.openSnapshot()) {
+                    assertEquals(accounts * 100.0, snapshot.totalBalance());
+                    assertEquals(accounts, snapshot.size());
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        try (BankSnapshot snapshot = bank.openSnapshot()) {
+            assertEquals(accounts * 100.0, snapshot.totalBalance());
+        }
+    }
+}
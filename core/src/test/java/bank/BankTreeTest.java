@@ -0,0 +1,161 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class BankTreeTest {
+    private static final Comparator<Customer> BY_NAME = (a, b) -> {
+        int order = a.name.compareTo(b.name);
+        return (order != 0) ? order : Integer.compare(a.accountNumber, b.accountNumber);
+    };
+
+    @Test
+    void sortedInsertsKeepBothTreesBalanced() {
+        BankTree tree = new BankTree();
+        int count = 1 << 16;
+        for (int account = 1; account <= count; account++) {
+            // Ascending in both orders: the worst case for an unbalanced tree
+            assertTrue(tree.insert(new Customer(account, String.format("Customer %06d", account), account)));
+        }
+        assertFalse(tree.insert(new Customer(count, "Duplicate", 0)));
+        assertEquals(count, tree.getSize());
+
+        BankTree.Roots roots = tree.getRoots();
+        int limit = (int) Math.ceil(1.45 * (Math.log(count + 2) / Math.log(2))); // AVL height bound
+        assertTrue(checkedHeight(roots.accountRoot) <= limit);
+        assertTrue(checkedHeight(roots.nameRoot) <= limit);
+
+        Iterator<Customer> byAccount = tree.iterateByAccount();
+        for (int account = 1; account <= count; account++) {
+            assertEquals(account, byAccount.next().accountNumber);
+        }
+        assertFalse(byAccount.hasNext());
+        assertThrows(NoSuchElementException.class, byAccount::next);
+    }
+
+    @Test
+    void randomInsertsAndDeletesMatchATreeMapReference() {
+        Random random = new Random(7);
+        BankTree tree = new BankTree();
+        TreeMap<Integer, Customer> byAccount = new TreeMap<>();
+        TreeSet<Customer> byName = new TreeSet<>(BY_NAME);
+        for (int i = 0; i < 40_000; i++) {
+            int account = random.nextInt(5_000);
+            if (random.nextInt(3) > 0) {
+                // Few distinct names, so many customers share one and order by account number
+                Customer customer = new Customer(account, "N" + random.nextInt(300), 0);
+                boolean added = !byAccount.containsKey(account);
+                assertEquals(added, tree.insert(customer));
+                if (added) {
+                    byAccount.put(account, customer);
+                    byName.add(customer);
+                }
+            } else {
+                Customer removed = byAccount.remove(account);
+                assertEquals(removed != null, tree.deleteCustomer(account));
+                if (removed != null) {
+                    byName.remove(removed);
+                }
+            }
+            assertSame(byAccount.get(account), tree.findCustomer(account));
+
+            if (i % 1_000 == 0) {
+                assertEquals(byAccount.size(), tree.getSize());
+                checkedHeight(tree.getRoots().accountRoot);
+                checkedHeight(tree.getRoots().nameRoot);
+                assertSameOrder(byAccount.values(), tree.iterateByAccount());
+                assertSameOrder(byName, tree.iterateByName());
+                checkRanges(random, tree, byAccount, byName);
+            }
+        }
+    }
+
+    @Test
+    void publishedRootsKeepTheirViewAfterLaterChanges() {
+        BankTree tree = new BankTree();
+        for (int account = 1; account <= 100; account++) {
+            tree.insert(new Customer(account, "Customer " + account, 0), account);
+        }
+        BankTree.Roots before = tree.getRoots();
+        for (int account = 1; account <= 100; account += 2) {
+            tree.deleteCustomer(account, 100 + account);
+        }
+        tree.insert(new Customer(500, "Late", 0), 300);
+
+        assertEquals(100, before.size);
+        assertEquals(100, before.version);
+        assertEquals(1, before.findCustomer(1).accountNumber);
+        assertNull(before.findCustomer(500));
+        int expected = 1;
+        for (Iterator<Customer> it = before.iterateByAccount(); it.hasNext(); expected++) {
+            assertEquals(expected, it.next().accountNumber);
+        }
+        assertEquals(101, expected);
+        assertEquals(51, tree.getSize());
+        assertEquals(300, tree.getRoots().version);
+    }
+
+    private static void checkRanges(Random random, BankTree tree, TreeMap<Integer, Customer> byAccount,
+            TreeSet<Customer> byName) {
+        int from = random.nextInt(5_000);
+        int to = from + random.nextInt(500);
+        assertSameOrder(byAccount.subMap(from, true, to, true).values(), tree.rangeByAccount(from, to));
+        assertSameOrder(List.of(), tree.rangeByAccount(to, from - 1));
+
+        String fromName = "N" + random.nextInt(300);
+        String toName = "N" + random.nextInt(300);
+        List<Customer> expected = new ArrayList<>();
+        for (Customer customer : byName) {
+            if (customer.name.compareTo(fromName) >= 0 && customer.name.compareTo(toName) < 0) {
+                expected.add(customer);
+            }
+        }
+        assertSameOrder(expected, tree.rangeByName(fromName, toName));
+        assertSameOrder(byName.headSet(new Customer(Integer.MIN_VALUE, toName, 0)), tree.rangeByName(null, toName));
+        assertSameOrder(byName.tailSet(new Customer(Integer.MIN_VALUE, fromName, 0)),
+                tree.rangeByName(fromName, null));
+
+        // Keyset paging resumes strictly after the last (name, account) handed out
+        Customer cursor = new Customer(random.nextInt(5_000), fromName, 0);
+        assertSameOrder(byName.tailSet(cursor, false), tree.iterateByNameAfter(cursor.name, cursor.accountNumber));
+        if (!byName.isEmpty()) {
+            Customer last = byName.last();
+            assertFalse(tree.iterateByNameAfter(last.name, last.accountNumber).hasNext());
+        }
+        assertSameOrder(byName, tree.iterateByNameAfter(null, 0));
+    }
+
+    private static void assertSameOrder(Iterable<Customer> expected, Iterator<Customer> actual) {
+        for (Customer customer : expected) {
+            assertTrue(actual.hasNext());
+            assertSame(customer, actual.next());
+        }
+        assertFalse(actual.hasNext());
+    }
+
+    // Recompute a subtree's height, checking the stored heights and the AVL balance on the way
+    private static int checkedHeight(BankTree.TreeNode node) {
+        if (node == null) {
+            return 0;
+        }
+        int left = checkedHeight(node.left);
+        int right = checkedHeight(node.right);
+        assertTrue(Math.abs(left - right) <= 1, "unbalanced at account " + node.customer.accountNumber);
+        assertEquals(1 + Math.max(left, right), node.height);
+        return node.height;
+    }
+}
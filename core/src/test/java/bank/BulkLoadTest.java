@@ -0,0 +1,146 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class BulkLoadTest {
+    private static final Comparator<Customer> BY_NAME = (a, b) -> {
+        int order = a.name.compareTo(b.name);
+        return (order != 0) ? order : Integer.compare(a.accountNumber, b.accountNumber);
+    };
+
+    @Test
+    void shuffledRowsWithRepeatsOpenOneAccountEach() throws Exception {
+        Random random = new Random(5);
+        int rows = 50_000;
+        int[] accountNumbers = new int[rows];
+        String[] names = new String[rows];
+        double[] balances = new double[rows];
+        Map<Integer, Customer> firstRows = new LinkedHashMap<>();
+        for (int i = 0; i < rows; i++) {
+            accountNumbers[i] = 1 + random.nextInt(40_000); // Some numbers repeat
+            names[i] = "Name " + random.nextInt(2_000);
+            balances[i] = random.nextInt(100_000) / 100.0;
+            firstRows.putIfAbsent(accountNumbers[i], new Customer(accountNumbers[i], names[i], balances[i]));
+        }
+
+        Bank bank = new Bank();
+        bank.enableNameSearch();
+        bank.enableBalanceIndex();
+        assertEquals(firstRows.size(), bank.bulkLoad(accountNumbers, names, balances, rows));
+        assertLoaded(bank, new ArrayList<>(firstRows.values()));
+
+        // The indexes enabled beforehand were filled too
+        Customer richest = Collections.max(firstRows.values(), Comparator.comparingDouble(c -> c.balance));
+        assertEquals(richest.balance, bank.topBalances(1).get(0).balance);
+        assertFalse(bank.searchCustomersByName(names[0], 1).isEmpty());
+
+        // The bank carries on as if every account had been opened one at a time
+        int account = accountNumbers[0];
+        assertEquals(BankOperation.DUPLICATE_ACCOUNT, bank.createAccount(account, "Again", 1));
+        assertEquals(BankOperation.SUCCESS, bank.deposit(account, 5));
+        assertEquals(BankOperation.SUCCESS, bank.createAccount(50_000, "Late", 1));
+        assertTrue(bank.reconcile().isBalanced());
+        assertThrows(IllegalStateException.class, () -> bank.bulkLoad(new int[] {60_000}, new String[] {"X"},
+                new double[] {1}, 1));
+        bank.shutdown();
+    }
+
+    @Test
+    void rowsAlreadyInBothOrdersAreLoadedWithoutSorting() throws Exception {
+        int rows = 40_000;
+        int[] accountNumbers = new int[rows];
+        String[] names = new String[rows];
+        double[] balances = new double[rows];
+        List<Customer> expected = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            // Ascending account numbers and ascending names: an exported portfolio read back in
+            accountNumbers[i] = 1_000 + i;
+            names[i] = String.format("Customer %06d", i);
+            balances[i] = i;
+            expected.add(new Customer(accountNumbers[i], names[i], balances[i]));
+        }
+
+        Bank bank = new Bank();
+        assertEquals(rows, bank.bulkLoad(accountNumbers, names, balances, rows));
+        assertLoaded(bank, expected);
+        assertTrue(bank.reconcile().isBalanced());
+        bank.shutdown();
+    }
+
+    @Test
+    void loadedTreesAreBalancedWhateverTheInputOrder() {
+        int count = 100_000;
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            customers.add(new Customer(i * 3, "Customer " + (count - i), 0)); // Names run the other way
+        }
+        BankTree descendingNames = new BankTree();
+        descendingNames.load(customers.toArray(new Customer[0]), count, 1, ForkJoinPool.commonPool());
+        assertBalanced(descendingNames, count);
+
+        Collections.shuffle(customers, new Random(9));
+        BankTree shuffled = new BankTree();
+        // A longer array than count: only the first count entries are loaded
+        Customer[] padded = customers.toArray(new Customer[count + 10]);
+        shuffled.load(padded, count, 1, ForkJoinPool.commonPool());
+        assertBalanced(shuffled, count);
+        assertThrows(IllegalStateException.class, () -> shuffled.load(padded, count, 2, ForkJoinPool.commonPool()));
+    }
+
+    private static void assertLoaded(Bank bank, List<Customer> expected) {
+        assertEquals(expected.size(), bank.getAccountCount());
+        for (Customer customer : expected) {
+            Customer found = bank.findCustomer(customer.accountNumber);
+            assertEquals(customer.name, found.name);
+            assertEquals(customer.balance, found.balance);
+        }
+        try (BankSnapshot snapshot = bank.openSnapshot()) {
+            List<Customer> byAccount = new ArrayList<>(expected);
+            byAccount.sort(Comparator.comparingInt(c -> c.accountNumber));
+            assertSameAccounts(byAccount, snapshot.iterateByAccount());
+            List<Customer> byName = new ArrayList<>(expected);
+            byName.sort(BY_NAME);
+            assertSameAccounts(byName, snapshot.iterateByName());
+        }
+    }
+
+    private static void assertSameAccounts(List<Customer> expected, Iterator<Customer> actual) {
+        for (Customer customer : expected) {
+            assertEquals(customer.accountNumber, actual.next().accountNumber);
+        }
+        assertFalse(actual.hasNext());
+    }
+
+    private static void assertBalanced(BankTree tree, int count) {
+        BankTree.Roots roots = tree.getRoots();
+        assertEquals(count, roots.size);
+        int limit = 1 + (int) Math.ceil(Math.log(count + 1) / Math.log(2)); // Perfectly balanced, give or take one
+        assertTrue(roots.accountRoot.height <= limit && roots.nameRoot.height <= limit);
+        int previous = Integer.MIN_VALUE;
+        for (Iterator<Customer> it = tree.iterateByAccount(); it.hasNext(); ) {
+            int account = it.next().accountNumber;
+            assertTrue(account > previous);
+            previous = account;
+        }
+        Customer last = null;
+        for (Iterator<Customer> it = tree.iterateByName(); it.hasNext(); ) {
+            Customer customer = it.next();
+            assertTrue(last == null || BY_NAME.compare(last, customer) < 0);
+            last = customer;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CachedAccountStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void writeBackKeepsBalancesWhileAccountsAreCreatedAndDeleted() throws Exception {
+        Bank bank = new Bank();
+        // A tiny cache and a 1 ms flush, so the flush keeps running while creates grow the table
+        // and deletes shift slots
+        bank.useDiskStore(directory, 16, 64, 1);
+        Map<Integer, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int account = 1; account <= 20_000; account++) {
+            assertEquals(BankOperation.SUCCESS, bank.createAccount(account, "Customer " + account, 100));
+            expected.put(account, AccountStore.toMinorUnits(100));
+            int other = 1 + random.nextInt(account);
+            if (expected.containsKey(other)) {
+                assertEquals(BankOperation.SUCCESS, bank.deposit(other, 1.25));
+                expected.merge(other, AccountStore.toMinorUnits(1.25), Long::sum);
+            }
+            if (account % 3 == 0) {
+                int victim = 1 + random.nextInt(account);
+                if (expected.remove(victim) != null) {
+                    assertEquals(BankOperation.SUCCESS, bank.deleteAccount(victim));
+                }
+            }
+        }
+        bank.shutdown();
+
+        try (FileAccountStore store = new FileAccountStore(directory, 16)) {
+            assertEquals(expected.size(), store.size());
+            for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+                long slot = store.find(entry.getKey());
+                assertTrue(slot >= 0, "account " + entry.getKey() + " is missing");
+                assertEquals(entry.getValue(), store.getBalance(slot), "balance of account " + entry.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangePublisherTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void lappedSubscriberSkipsWhatItLostWithoutAChangeFile() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            Bank bank = new Bank();
+            bank.createAccount(1, "Alice", 0);
+            ChangePublisher changes = bank.enableChangeCapture(null, 16);
+            List<Long> received = new ArrayList<>();
+            ChangePublisher.Subscriber slow = bank.subscribeChanges(0, 4, 0, slowly(received));
+            for (int i = 0; i < 2_000; i++) {
+                bank.deposit(1, 1);
+            }
+            awaitDelivered(slow, changes.getLastSequence());
+
+            assertTrue(slow.getMissedEvents() > 0, "a 16-event ring must lap a slow subscriber");
+            assertEquals(changes.getLastSequence(), received.size() + slow.getMissedEvents());
+            assertIncreasing(received);
+            assertEquals(changes.getLastSequence(), (long) received.get(received.size() - 1));
+            slow.close();
+            bank.shutdown();
+        });
+    }
+
+    @Test
+    void lappedSubscriberCatchesUpFromTheChangeFile() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            Bank bank = new Bank();
+            bank.createAccount(1, "Alice", 0);
+            ChangePublisher changes = bank.enableChangeCapture(directory.resolve("changes.dat"), 16);
+            List<Long> received = new ArrayList<>();
+            ChangePublisher.Subscriber slow = bank.subscribeChanges(0, 4, 0, slowly(received));
+            for (int i = 0; i < 2_000; i++) {
+                bank.deposit(1, 1);
+            }
+            awaitDelivered(slow, changes.getLastSequence());
+
+            // Postings never wait for the file sink either, so the file may have gaps of its own:
+            // the subscriber misses those and nothing else
+            assertTrue(slow.getMissedEvents() <= changes.getUnfiledEvents());
+            assertEquals(changes.getLastSequence(), received.size() + slow.getMissedEvents());
+            assertIncreasing(received);
+            if (changes.getUnfiledEvents() == 0) {
+                assertContiguous(received, 1, changes.getLastSequence());
+            }
+            slow.close();
+            bank.shutdown();
+        });
+    }
+
+    @Test
+    void numberingAndSubscriptionsResumeFromTheChangeFileAfterARestart() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            Path file = directory.resolve("changes.dat");
+            Bank bank = new Bank();
+            bank.createAccount(1, "Alice", 0);
+            bank.enableChangeCapture(file, 1024); // Room for every event, so the file sink is never lapped
+            for (int i = 0; i < 100; i++) {
+                bank.deposit(1, 1);
+            }
+            bank.shutdown(); // The change file gets every event
+
+            Bank restarted = new Bank();
+            restarted.createAccount(1, "Alice", 100);
+            ChangePublisher changes = restarted.enableChangeCapture(file, 1024);
+            assertEquals(100, changes.getLastSequence());
+            for (int i = 0; i < 50; i++) {
+                restarted.deposit(1, 1);
+            }
+            assertEquals(150, changes.getLastSequence());
+            assertEquals(0, changes.getUnfiledEvents());
+
+            // A consumer that had handled event 40 before the restart picks up right after it
+            List<Long> received = new ArrayList<>();
+            List<Double> balances = new ArrayList<>();
+            ChangePublisher.Subscriber resumed = restarted.subscribeChanges(40, 8, 0, batch -> {
+                synchronized (received) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        received.add(batch.getSequence(i));
+                        balances.add(batch.getBalance(i));
+                    }
+                }
+            });
+            awaitDelivered(resumed, 150);
+            assertEquals(0, resumed.getMissedEvents());
+            assertContiguous(received, 41, 150);
+            assertEquals(41, balances.get(0));
+            assertEquals(150, balances.get(balances.size() - 1));
+            resumed.close();
+            restarted.shutdown();
+        });
+    }
+
+    // A handler that records sequence numbers and takes its time over every batch
+    private static ChangeHandler slowly(List<Long> received) {
+        return batch -> {
+            synchronized (received) {
+                for (int i = 0; i < batch.size(); i++) {
+                    received.add(batch.getSequence(i));
+                }
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private static void awaitDelivered(ChangePublisher.Subscriber subscriber, long sequence) throws Exception {
+        while (subscriber.getDeliveredSequence() < sequence) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void assertIncreasing(List<Long> sequences) {
+        synchronized (sequences) {
+            for (int i = 1; i < sequences.size(); i++) {
+                assertTrue(sequences.get(i) > sequences.get(i - 1), "sequence " + sequences.get(i) + " out of order");
+            }
+        }
+    }
+
+    private static void assertContiguous(List<Long> sequences, long first, long last) {
+        synchronized (sequences) {
+            assertEquals(last - first + 1, sequences.size());
+            for (int i = 0; i < sequences.size(); i++) {
+                assertEquals(first + i, (long) sequences.get(i));
+            }
+        }
+    }
+}
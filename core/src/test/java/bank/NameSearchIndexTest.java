@@ -0,0 +1,234 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class NameSearchIndexTest {
+    private static final String[] FIRST = {"Patrick", "Anna", "Annabel", "Ann", "Mohammed", "Mo", "Li", "Lia",
+            "Grace", "Gracie", "Oliver", "Olivia", "Sam", "Samuel", "Zoe"};
+    private static final String[] LAST = {"Smith", "Smyth", "Smithers", "Jones", "Johnson", "Jonson", "Lee",
+            "Leigh", "Nguyen", "O'Brien", "Brien", "Schmidt", "Taylor", "Tailor", "Van der Berg"};
+
+    @Test
+    void prefixesMatchTheWholeNameOrAnyLaterWord() {
+        NameSearchIndex index = new NameSearchIndex();
+        index.add(1, "Patrick Smith");
+        index.add(2, "  SMITHERS,   Anna ");
+        index.add(3, "Anna van der Berg");
+        index.add(4, "Sam");
+
+        assertArrayEquals(new int[] {1, 2}, index.searchPrefix("smi", 10));
+        assertArrayEquals(new int[] {3}, index.searchPrefix("Der b", 10));
+        assertArrayEquals(new int[] {2, 3}, index.searchPrefix("anna", 10)); // Dictionary order of the match
+        assertArrayEquals(new int[] {2}, index.searchPrefix("smithers, a", 10));
+        assertArrayEquals(new int[0], index.searchPrefix("trick", 10)); // Not the start of a word
+        assertEquals(4, index.searchPrefix("", 10).length);
+        assertEquals(1, index.searchPrefix("s", 1).length);
+    }
+
+    @Test
+    void transposedLettersCostOneEdit() {
+        NameSearchIndex index = new NameSearchIndex();
+        index.add(1, "Patrick Smith");
+        index.add(2, "Grace Jones");
+
+        assertArrayEquals(new int[] {1}, index.searchFuzzy("Smtih", 1, 10));
+        assertArrayEquals(new int[] {1}, index.searchFuzzy("aptrick", 1, 10));
+        assertArrayEquals(new int[] {2}, index.searchFuzzy("jnoes", 1, 10));
+        assertArrayEquals(new int[0], index.searchFuzzy("sitmh", 1, 10)); // Two edits even with a swap
+        assertArrayEquals(new int[] {1}, index.searchFuzzy("sitmh", 2, 10));
+    }
+
+    @Test
+    void searchesMatchABruteForceReference() {
+        Random random = new Random(19);
+        NameSearchIndex index = new NameSearchIndex();
+        Map<Integer, String> names = new HashMap<>();
+        for (int account = 1; account <= 3_000; account++) {
+            String name = randomName(random);
+            index.add(account, name);
+            names.put(account, name);
+        }
+        for (int account = 1; account <= 3_000; account += 3) {
+            index.remove(account, names.remove(account));
+        }
+        assertEquals(names.size(), index.size());
+        checkQueries(random, index, names, 200);
+    }
+
+    @Test
+    void removedNamesStayGoneAfterCompaction() {
+        Random random = new Random(23);
+        NameSearchIndex index = new NameSearchIndex();
+        Map<Integer, String> names = new HashMap<>();
+        long chars = 0;
+        int account = 0;
+        // Enough removed characters (over a million, and over the live ones) to make remove compact
+        while (chars < 3L << 19) {
+            String name = randomName(random) + " " + account;
+            index.add(++account, name);
+            names.put(account, name);
+            chars += name.length();
+        }
+        for (int removed = 1; removed <= account; removed++) {
+            if (removed % 4 != 0) { // Three in four
+                index.remove(removed, names.remove(removed));
+            }
+        }
+        assertEquals(names.size(), index.size());
+        checkQueries(random, index, names, 50);
+
+        // The index keeps working after compaction
+        index.add(account + 1, "Patrick Smith");
+        names.put(account + 1, "Patrick Smith");
+        checkQueries(random, index, names, 20);
+    }
+
+    private static void checkQueries(Random random, NameSearchIndex index, Map<Integer, String> names, int queries) {
+        for (int i = 0; i < queries; i++) {
+            String word = (random.nextBoolean() ? FIRST : LAST)[random.nextInt(FIRST.length)];
+            String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+            int limit = 1 + random.nextInt(40);
+            checkPrefix(prefix, index.searchPrefix(prefix, limit), limit, names);
+            checkPrefix(prefix, index.searchPrefix(prefix, names.size() + 1), names.size() + 1, names);
+
+            String query = typo(random, word);
+            int maxEdits = 1 + random.nextInt(2);
+            checkFuzzy(query, maxEdits, index.searchFuzzy(query, maxEdits, limit), limit, names);
+        }
+    }
+
+    // The results must be the first matches in dictionary order of each account's first matching key
+    private static void checkPrefix(String prefix, int[] results, int limit, Map<Integer, String> names) {
+        String query = NameSearchIndex.normalize(prefix);
+        Map<Integer, String> firstMatch = new HashMap<>();
+        for (Map.Entry<Integer, String> entry : names.entrySet()) {
+            for (String key : keys(entry.getValue())) {
+                if (key.startsWith(query)) {
+                    firstMatch.merge(entry.getKey(), key, (a, b) -> (a.compareTo(b) <= 0) ? a : b);
+                }
+            }
+        }
+        assertEquals(Math.min(limit, firstMatch.size()), results.length, "matches for " + prefix);
+        Set<Integer> seen = new HashSet<>();
+        String previous = "";
+        for (int account : results) {
+            assertTrue(seen.add(account), "account " + account + " returned twice");
+            String key = firstMatch.get(account);
+            assertTrue(key != null && key.compareTo(previous) >= 0, "account " + account + " for " + prefix);
+            previous = key;
+        }
+        for (Map.Entry<Integer, String> entry : firstMatch.entrySet()) {
+            if (!seen.contains(entry.getKey())) {
+                assertTrue(entry.getValue().compareTo(previous) >= 0, "account " + entry.getKey() + " left out");
+            }
+        }
+    }
+
+    // The results must be the closest matches, ordered by distance, with none closer left out
+    private static void checkFuzzy(String query, int maxEdits, int[] results, int limit, Map<Integer, String> names) {
+        String target = NameSearchIndex.normalize(query);
+        Map<Integer, Integer> distances = new HashMap<>();
+        for (Map.Entry<Integer, String> entry : names.entrySet()) {
+            int distance = Integer.MAX_VALUE;
+            for (String key : keys(entry.getValue())) {
+                distance = Math.min(distance, prefixDistance(target, key));
+            }
+            if (distance <= maxEdits) {
+                distances.put(entry.getKey(), distance);
+            }
+        }
+        assertEquals(Math.min(limit, distances.size()), results.length, "matches for " + query);
+        Set<Integer> seen = new HashSet<>();
+        int previous = 0;
+        for (int account : results) {
+            assertTrue(seen.add(account), "account " + account + " returned twice");
+            Integer distance = distances.get(account);
+            assertTrue(distance != null && distance >= previous, "account " + account + " for " + query);
+            previous = distance;
+        }
+        for (Map.Entry<Integer, Integer> entry : distances.entrySet()) {
+            if (!seen.contains(entry.getKey())) {
+                assertTrue(entry.getValue() >= previous, "account " + entry.getKey() + " left out of " + query);
+            }
+        }
+    }
+
+    // Keys a name is indexed under: the whole normalized name and its suffix from every later word
+    private static List<String> keys(String name) {
+        String key = NameSearchIndex.normalize(name);
+        List<String> keys = new ArrayList<>();
+        keys.add(key);
+        for (int i = 1; i < key.length(); i++) {
+            if (key.charAt(i - 1) == ' ') {
+                keys.add(key.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    // Smallest optimal-string-alignment distance between the query and any prefix of the text
+    private static int prefixDistance(String query, String text) {
+        int[][] d = new int[text.length() + 1][query.length() + 1];
+        for (int j = 0; j <= query.length(); j++) {
+            d[0][j] = j;
+        }
+        int best = query.length();
+        for (int i = 1; i <= text.length(); i++) {
+            d[i][0] = i;
+            for (int j = 1; j <= query.length(); j++) {
+                int cost = (text.charAt(i - 1) == query.charAt(j - 1)) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i >= 2 && j >= 2 && text.charAt(i - 1) == query.charAt(j - 2)
+                        && text.charAt(i - 2) == query.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+            best = Math.min(best, d[i][query.length()]);
+        }
+        return best;
+    }
+
+    private static String randomName(Random random) {
+        String first = FIRST[random.nextInt(FIRST.length)];
+        String last = LAST[random.nextInt(LAST.length)];
+        return random.nextInt(4) == 0 ? last + ", " + first : first + " " + last;
+    }
+
+    // Mangle a word with one random edit: a swap, a dropped letter, an extra letter or a changed one
+    private static String typo(Random random, String word) {
+        StringBuilder text = new StringBuilder(word.toLowerCase());
+        int at = random.nextInt(text.length());
+        switch (random.nextInt(4)) {
+            case 0:
+                if (at + 1 < text.length()) {
+                    char c = text.charAt(at);
+                    text.setCharAt(at, text.charAt(at + 1));
+                    text.setCharAt(at + 1, c);
+                }
+                break;
+            case 1:
+                if (text.length() > 1) {
+                    text.deleteCharAt(at);
+                }
+                break;
+            case 2:
+                text.insert(at, (char) ('a' + random.nextInt(26)));
+                break;
+            default:
+                text.setCharAt(at, (char) ('a' + random.nextInt(26)));
+                break;
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,151 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class ReconcilerTest {
+    private static final int ACCOUNTS = 1_000;
+
+    @Test
+    void aJournalAndTheBalancesItProducedReconcile() {
+        TransactionHistory history = new TransactionHistory();
+        Map<Integer, Long> live = journalActivity(history);
+        for (int shards : new int[] {1, 4, 7}) {
+            Reconciler.Report report = new Reconciler(history, ForkJoinPool.commonPool(), shards)
+                    .run(history.size(), visitorOf(live));
+            assertTrue(report.isBalanced(), report.toText());
+            assertEquals(history.size(), report.getJournalEntries());
+            long open = 0;
+            for (Reconciler.Shard shard : report.getShards()) {
+                assertEquals(shard.getExpectedChecksum(), shard.getLiveChecksum(), "shard " + shard.getIndex());
+                open += shard.getOpenAccounts();
+            }
+            assertEquals(live.size(), open);
+        }
+    }
+
+    @Test
+    void everyKindOfDiscrepancyIsReportedInItsShard() {
+        TransactionHistory history = new TransactionHistory();
+        Map<Integer, Long> live = journalActivity(history);
+        history.recordTransaction(BankOperation.DELETE, 20, 0, 1.23); // Closed at a balance it never had
+        live.remove(20);
+        int journalSize = history.size();
+        history.recordTransaction(BankOperation.DEPOSIT, 30, 0, 1_000); // After the cut: not replayed
+
+        live.merge(7, 1L, Long::sum);                  // BALANCE_MISMATCH
+        long missingBalance = live.remove(9);          // MISSING_ACCOUNT
+        live.put(ACCOUNTS + 1, 500L);                  // UNEXPECTED_ACCOUNT: never opened
+        live.put(6, 0L);                               // UNEXPECTED_ACCOUNT: closed in the journal
+
+        Reconciler.Report report = new Reconciler(history, ForkJoinPool.commonPool(), 4)
+                .run(journalSize, visitorOf(live));
+        assertFalse(report.isBalanced());
+
+        Map<Integer, Reconciler.Discrepancy> found = new TreeMap<>();
+        for (Reconciler.Discrepancy discrepancy : report.getDiscrepancies()) {
+            found.put(discrepancy.accountNumber, discrepancy);
+        }
+        assertEquals(5, report.getDiscrepancyCount(), report.toText());
+        assertEquals(5, found.size(), report.toText());
+        assertDiscrepancy(found.get(7), Reconciler.Discrepancy.Kind.BALANCE_MISMATCH, live.get(7) - 1, live.get(7));
+        assertDiscrepancy(found.get(9), Reconciler.Discrepancy.Kind.MISSING_ACCOUNT, missingBalance, 0);
+        assertDiscrepancy(found.get(ACCOUNTS + 1), Reconciler.Discrepancy.Kind.UNEXPECTED_ACCOUNT, 0, 500);
+        assertDiscrepancy(found.get(6), Reconciler.Discrepancy.Kind.UNEXPECTED_ACCOUNT, 0, 0);
+        assertEquals(Reconciler.Discrepancy.Kind.CLOSING_BALANCE_MISMATCH, found.get(20).kind);
+        assertEquals(123, found.get(20).actual);
+
+        // Only the shards holding a wrong, missing or extra balance disagree on their checksums,
+        // and the per-shard counts add up to the total
+        long counted = 0;
+        int disagreeing = 0;
+        for (Reconciler.Shard shard : report.getShards()) {
+            counted += shard.getDiscrepancyCount();
+            if (shard.getExpectedChecksum() != shard.getLiveChecksum()) {
+                assertNotEquals(0, shard.getDiscrepancyCount(), "shard " + shard.getIndex());
+                disagreeing++;
+            } else if (shard.getDiscrepancyCount() != 0) {
+                // Agreeing checksums can only hide a discrepancy that leaves the live balances right
+                assertEquals(1, shard.getDiscrepancyCount());
+            }
+        }
+        assertEquals(5, counted);
+        assertTrue(disagreeing >= 1 && disagreeing <= 4);
+    }
+
+    // Journal a day of activity over every kind of entry the reconciler replays; returns the balances
+    // (in minor units) it leaves, as the live accounts would hold them
+    private static Map<Integer, Long> journalActivity(TransactionHistory history) {
+        Map<Integer, Long> balances = new HashMap<>();
+        for (int account = 1; account <= ACCOUNTS; account++) {
+            history.recordTransaction(BankOperation.CREATE, account, 0, account);
+            balances.put(account, account * 100L);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            int source = 1 + (i * 7) % ACCOUNTS;
+            int destination = 1 + (i * 13 + 5) % ACCOUNTS;
+            long cents = 1 + i % 50;
+            double amount = cents / 100.0;
+            switch (i % 6) {
+                case 0:
+                    history.recordTransaction(BankOperation.DEPOSIT, source, 0, amount);
+                    balances.merge(source, cents, Long::sum);
+                    break;
+                case 1:
+                    history.recordTransaction(BankOperation.WITHDRAW, source, 0, amount);
+                    balances.merge(source, -cents, Long::sum);
+                    break;
+                case 2:
+                    if (source != destination) {
+                        history.recordTransaction(BankOperation.TRANSFER, source, destination, amount);
+                        balances.merge(source, -cents, Long::sum);
+                        balances.merge(destination, cents, Long::sum);
+                    }
+                    break;
+                case 3:
+                    history.recordTransaction(i % 2 == 0 ? BankOperation.INTEREST : BankOperation.TRANSFER_IN,
+                            source, 0, amount);
+                    balances.merge(source, cents, Long::sum);
+                    break;
+                case 4:
+                    history.recordTransaction(i % 2 == 0 ? BankOperation.FEE : BankOperation.TRANSFER_OUT,
+                            source, 0, amount);
+                    balances.merge(source, -cents, Long::sum);
+                    break;
+                default:
+                    // A reversal gives money back from its source to its destination, or only debits
+                    // the source when there is none; journal-only entries change nothing
+                    int target = (i % 4 == 1) ? 0 : destination;
+                    history.recordTransaction(BankOperation.REVERSAL, source, target, amount);
+                    balances.merge(source, -cents, Long::sum);
+                    if (target != 0) {
+                        balances.merge(target, cents, Long::sum);
+                    }
+                    history.recordTransaction(BankOperation.FLAGGED, source, destination, amount);
+                    history.recordTransaction(BankOperation.REJECTED, source, 0, amount);
+                    break;
+            }
+        }
+        history.recordTransaction(BankOperation.DELETE, 6, 0, AccountStore.fromMinorUnits(balances.remove(6)));
+        return balances;
+    }
+
+    private static Reconciler.LiveAccounts visitorOf(Map<Integer, Long> live) {
+        return visitor -> live.forEach(visitor::visit);
+    }
+
+    private static void assertDiscrepancy(Reconciler.Discrepancy discrepancy, Reconciler.Discrepancy.Kind kind,
+            long expected, long actual) {
+        assertEquals(kind, discrepancy.kind, String.valueOf(discrepancy));
+        assertEquals(expected, discrepancy.expected, String.valueOf(discrepancy));
+        assertEquals(actual, discrepancy.actual, String.valueOf(discrepancy));
+    }
+}
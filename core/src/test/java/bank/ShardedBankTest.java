@@ -0,0 +1,184 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardedBankTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void preparedDebitIsRefundedByAnAbortAfterTheShardRestarts() throws Exception {
+        Bank shard = new Bank();
+        shard.enableDurability(directory, 0);
+        shard.createAccount(1, "Alice", 100);
+        assertEquals(BankOperation.SUCCESS, shard.prepareTransferLeg(7, BankOperation.TRANSFER_OUT, 1, 99, 40));
+        shard.shutdown();
+
+        Bank restarted = new Bank();
+        restarted.enableDurability(directory, 0);
+        assertEquals(60, restarted.findCustomer(1).balance);
+        assertEquals(BankOperation.TRANSFER_IN_PROGRESS, restarted.deleteAccount(1));
+        assertEquals(BankOperation.SUCCESS, restarted.abortTransferLeg(7));
+        assertEquals(100, restarted.findCustomer(1).balance);
+        restarted.shutdown();
+
+        Bank again = new Bank();
+        again.enableDurability(directory, 0);
+        assertEquals(BankOperation.SUCCESS, again.abortTransferLeg(7)); // Already resolved: no second refund
+        assertEquals(100, again.findCustomer(1).balance);
+        again.shutdown();
+    }
+
+    @Test
+    void preparedCreditSurvivesACheckpointAndARestart() throws Exception {
+        Bank shard = new Bank();
+        shard.enableDurability(directory, 0);
+        shard.createAccount(2, "Bob", 10);
+        assertEquals(BankOperation.SUCCESS, shard.prepareTransferLeg(8, BankOperation.TRANSFER_IN, 2, 1, 25));
+        shard.checkpoint(); // The leg now lives only in the snapshot
+        shard.shutdown();
+
+        Bank restarted = new Bank();
+        restarted.enableDurability(directory, 0);
+        assertEquals(10, restarted.findCustomer(2).balance);
+        assertEquals(BankOperation.SUCCESS, restarted.commitTransferLeg(8));
+        assertEquals(BankOperation.SUCCESS, restarted.commitTransferLeg(8));
+        assertEquals(35, restarted.findCustomer(2).balance);
+        restarted.shutdown();
+
+        Bank again = new Bank();
+        again.enableDurability(directory, 0);
+        assertEquals(35, again.findCustomer(2).balance);
+        assertEquals(BankOperation.SUCCESS, again.deleteAccount(2));
+        again.shutdown();
+    }
+
+    @Test
+    void failedPrepareAbortsAndIsRetriedOnceTheShardIsBack() throws Exception {
+        FlakyShard[] shards = {new FlakyShard(new Bank()), new FlakyShard(new Bank())};
+        ShardedBank bank = new ShardedBank(shards, directory.resolve("coordinator.log"));
+        int source = accountOnShard(bank, 0, 1);
+        int destination = accountOnShard(bank, 1, 1);
+        bank.createAccount(source, "Source", 100);
+        bank.createAccount(destination, "Destination", 0);
+
+        shards[1].failing = true;
+        assertThrows(IOException.class, () -> bank.transfer(source, destination, 30));
+        assertEquals(100, bank.getBalance(source)); // The debit leg was aborted straight away
+        assertEquals(1, bank.getUnresolvedCount()); // The unreachable shard still has to hear the abort
+
+        shards[1].failing = false;
+        assertEquals(0, bank.retryUnresolved());
+        assertEquals(BankOperation.SUCCESS, bank.transfer(source, destination, 30));
+        assertEquals(70, bank.getBalance(source));
+        assertEquals(30, bank.getBalance(destination));
+        bank.close();
+    }
+
+    @Test
+    void concurrentCrossShardTransfersKeepTheTotal() throws Exception {
+        ShardedBank bank = ShardedBank.inProcess(4, directory.resolve("coordinator.log"));
+        int accounts = 64;
+        for (int account = 1; account <= accounts; account++) {
+            bank.createAccount(account, "Customer " + account, 1_000);
+        }
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        int from = 1 + (seed * 31 + i * 7) % accounts;
+                        int to = 1 + (seed * 17 + i * 13 + 1) % accounts;
+                        if (from != to) {
+                            bank.transfer(from, to, 3);
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+        double total = 0;
+        for (int account = 1; account <= accounts; account++) {
+            total += bank.getBalance(account);
+        }
+        assertEquals(accounts * 1_000.0, total);
+        bank.close();
+    }
+
+    private static int accountOnShard(ShardedBank bank, int shard, int from) {
+        int account = from;
+        while (bank.shardOf(account) != shard) {
+            account++;
+        }
+        return account;
+    }
+
+    // A local shard whose transfer legs fail as if its connection were lost
+    private static final class FlakyShard implements ShardClient {
+        private final LocalShard shard;
+        volatile boolean failing;
+
+        FlakyShard(Bank bank) {
+            shard = new LocalShard(bank);
+        }
+
+        @Override
+        public int apply(BankOperation operation) {
+            return shard.apply(operation);
+        }
+
+        @Override
+        public double getBalance(int accountNumber) {
+            return shard.getBalance(accountNumber);
+        }
+
+        @Override
+        public int prepareTransferLeg(long transactionId, byte type, int accountNumber, int remoteAccountNumber,
+                double amount) throws IOException {
+            check();
+            return shard.prepareTransferLeg(transactionId, type, accountNumber, remoteAccountNumber, amount);
+        }
+
+        @Override
+        public int commitTransferLeg(long transactionId) throws IOException {
+            check();
+            return shard.commitTransferLeg(transactionId);
+        }
+
+        @Override
+        public int abortTransferLeg(long transactionId) throws IOException {
+            check();
+            return shard.abortTransferLeg(transactionId);
+        }
+
+        @Override
+        public void close() throws IOException {
+            shard.close();
+        }
+
+        private void check() throws IOException {
+            if (failing) {
+                throw new IOException("Connection reset");
+            }
+        }
+    }
+}
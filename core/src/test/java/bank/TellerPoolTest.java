@@ -0,0 +1,101 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TellerPoolTest {
+    @Test
+    void blockingQueueNeverLosesAWakeup() {
+        // A two-slot queue keeps both sides parking, which is where a lost wakeup would hang
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            CustomerQueue<Integer> queue = new CustomerQueue<>(2);
+            int producers = 4;
+            int perProducer = 20_000;
+            AtomicLong sum = new AtomicLong();
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 1; i <= perProducer; i++) {
+                            queue.put(i);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < perProducer; i++) {
+                            sum.addAndGet(queue.take());
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(producers * (long) perProducer * (perProducer + 1) / 2, sum.get());
+            assertTrue(queue.isEmpty());
+        });
+    }
+
+    @Test
+    void everySubmissionCompletesWhenShutdownRacesIt() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            for (int round = 0; round < 20; round++) {
+                Bank bank = new Bank();
+                bank.createAccount(1, "Alice", 0);
+                int submitters = 4;
+                CountDownLatch started = new CountDownLatch(submitters);
+                List<CompletableFuture<Integer>> futures = new ArrayList<>();
+                List<Thread> threads = new ArrayList<>();
+                for (int t = 0; t < submitters; t++) {
+                    Thread thread = new Thread(() -> {
+                        started.countDown();
+                        try {
+                            for (int i = 0; i < 2_000; i++) {
+                                CompletableFuture<Integer> future = bank.submit(BankOperation.deposit(1, 1));
+                                synchronized (futures) {
+                                    futures.add(future);
+                                }
+                            }
+                        } catch (IllegalStateException | InterruptedException e) {
+                            // The pool shut down: later submissions are refused
+                        }
+                    });
+                    threads.add(thread);
+                    thread.start();
+                }
+                started.await();
+                bank.shutdown();
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                int served = 0;
+                for (CompletableFuture<Integer> future : futures) {
+                    try {
+                        assertEquals(BankOperation.SUCCESS, future.get(10, TimeUnit.SECONDS));
+                        served++;
+                    } catch (ExecutionException e) {
+                        assertTrue(e.getCause() instanceof IllegalStateException);
+                    }
+                }
+                assertEquals(served, bank.findCustomer(1).balance);
+            }
+        });
+    }
+}
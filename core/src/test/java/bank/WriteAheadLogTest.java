@@ -0,0 +1,90 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornLastRecordIsDroppedAndTheLogContinuesAfterIt() throws Exception {
+        Bank bank = new Bank();
+        bank.enableDurability(directory, 0);
+        bank.createAccount(1, "Alice", 100);
+        bank.deposit(1, 10);
+        bank.deposit(1, 20); // Torn below
+        bank.shutdown();
+
+        // Cut the last record short, as a crash in the middle of its write would
+        Path segment = newestSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        Bank recovered = new Bank();
+        recovered.enableDurability(directory, 0);
+        assertEquals(110, recovered.findCustomer(1).balance);
+        recovered.deposit(1, 5);
+        recovered.shutdown();
+
+        // The new record follows the last whole one, so nothing is lost on the next restart
+        Bank restarted = new Bank();
+        restarted.enableDurability(directory, 0);
+        assertEquals(115, restarted.findCustomer(1).balance);
+        restarted.shutdown();
+    }
+
+    @Test
+    void corruptLastRecordIsDroppedWithoutLosingTheSnapshot() throws Exception {
+        Bank bank = new Bank();
+        bank.enableDurability(directory, 0);
+        bank.createAccount(1, "Alice", 100);
+        bank.createAccount(2, "Bob", 50);
+        bank.checkpoint();
+        bank.transfer(1, 2, 30);
+        bank.deleteAccount(2); // Corrupted below
+        bank.shutdown();
+
+        // Flip a byte in the last record's payload: its checksum no longer matches
+        Path segment = newestSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) (last.get(0) ^ 0x5A)).rewind();
+            channel.write(last, channel.size() - 1);
+        }
+
+        Bank recovered = new Bank();
+        recovered.enableDurability(directory, 0);
+        assertEquals(70, recovered.findCustomer(1).balance);
+        assertEquals(80, recovered.findCustomer(2).balance);
+        assertEquals(BankOperation.SUCCESS, recovered.deleteAccount(2));
+        recovered.shutdown();
+
+        Bank restarted = new Bank();
+        restarted.enableDurability(directory, 0);
+        assertEquals(70, restarted.findCustomer(1).balance);
+        assertNull(restarted.findCustomer(2));
+        restarted.shutdown();
+    }
+
+    private Path newestSegment() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(path -> path.getFileName().toString().startsWith("wal-"))
+                    .sorted().collect(Collectors.toList());
+            return segments.get(segments.size() - 1);
+        }
+    }
+}